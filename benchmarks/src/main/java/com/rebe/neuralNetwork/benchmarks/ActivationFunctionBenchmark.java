@@ -0,0 +1,96 @@
+package com.rebe.neuralNetwork.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rebe.neuralNetwork.activations.Sigmoid;
+import com.rebe.neuralNetwork.utils.Utils;
+
+/**
+ * Benchmarks of the sigmoid over a layer of values, one value at a time with
+ * {@link Utils#activationFunction(double)} and through the {@link Sigmoid}
+ * activation, which uses the kernels of the selected backend
+ *
+ * @author Mattia Rebesan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ActivationFunctionBenchmark {
+
+	/**
+	 * Count of the values of the layer
+	 */
+	@Param({ "16", "128", "512", "2048" })
+	public int width;
+
+	/**
+	 * Values given to the function
+	 */
+	private double[] values;
+
+	/**
+	 * Buffer of the computed values
+	 */
+	private double[] result;
+
+	/**
+	 * The sigmoid activation
+	 */
+	private Sigmoid sigmoid;
+
+	/**
+	 * Build the values
+	 */
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		values = new double[width];
+		result = new double[width];
+		for (int index = 0; index < width; index++) {
+			values[index] = random.nextGaussian() * 4;
+		}
+		sigmoid = new Sigmoid();
+	}
+
+	/**
+	 * Sigmoid of every value with {@link Utils#activationFunction(double)}
+	 *
+	 * @return the computed values
+	 */
+	@Benchmark
+	public double[] activationFunction() {
+		for (int index = 0; index < width; index++) {
+			result[index] = Utils.activationFunction(values[index]);
+		}
+		return result;
+	}
+
+	/**
+	 * Sigmoid of every value with the {@link Sigmoid} activation
+	 *
+	 * @return the computed values
+	 */
+	@Benchmark
+	public double[] sigmoidActivation() {
+		sigmoid.forward(values, result, width);
+		return result;
+	}
+
+}
@@ -0,0 +1,39 @@
+package com.rebe.neuralNetwork.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. It accepts the JMH command line options
+ * and always adds the allocation profiler, so every run reports the bytes
+ * allocated per operation next to the throughput
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class BenchmarksRunner {
+
+	/**
+	 * Run the benchmarks
+	 *
+	 * @param args
+	 *            JMH command line options, for example a regular expression
+	 *            selecting the benchmarks or -rf json -rff results.json to save
+	 *            the results
+	 * @throws CommandLineOptionException
+	 *             Thrown if an option is not valid
+	 * @throws RunnerException
+	 *             Thrown if a benchmark fails
+	 */
+	public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+		Options options = new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+}
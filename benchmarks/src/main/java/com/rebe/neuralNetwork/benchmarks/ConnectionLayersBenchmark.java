@@ -0,0 +1,93 @@
+package com.rebe.neuralNetwork.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rebe.neuralNetwork.components.ConnectionLayers;
+import com.rebe.neuralNetwork.components.Layer;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+
+/**
+ * Benchmarks of a single {@link ConnectionLayers}, the forward computation of
+ * the right layer and the optimization of the weights, between two layers of
+ * the same width
+ *
+ * @author Mattia Rebesan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ConnectionLayersBenchmark {
+
+	/**
+	 * Neurons count of the left and right layers
+	 */
+	@Param({ "16", "128", "512", "2048" })
+	public int width;
+
+	/**
+	 * The benchmarked connection layer
+	 */
+	private ConnectionLayers connectionLayer;
+
+	/**
+	 * Errors of the right layer given to the optimization
+	 */
+	private double[] rightLayerErrors;
+
+	/**
+	 * Build the layers and the connection layer
+	 *
+	 * @throws NeuralNetworkException
+	 *             Thrown if the connection layer can not be built
+	 */
+	@Setup
+	public void setup() throws NeuralNetworkException {
+		Layer leftLayer = new Layer(width);
+		Layer rightLayer = new Layer(width);
+		connectionLayer = new ConnectionLayers(leftLayer, rightLayer, 0.5, 0.1);
+
+		Random random = new Random(42);
+		double[] values = new double[width];
+		rightLayerErrors = new double[width];
+		for (int index = 0; index < width; index++) {
+			values[index] = random.nextDouble();
+			rightLayerErrors[index] = (random.nextDouble() - 0.5) * 1e-3;
+		}
+		leftLayer.setValues(values);
+		connectionLayer.compute();
+	}
+
+	/**
+	 * Computation of the right layer values
+	 */
+	@Benchmark
+	public void compute() {
+		connectionLayer.compute();
+	}
+
+	/**
+	 * Optimization of the weights and biases, including the left layer errors
+	 */
+	@Benchmark
+	public void optimize() {
+		connectionLayer.optimize(rightLayerErrors);
+	}
+
+}
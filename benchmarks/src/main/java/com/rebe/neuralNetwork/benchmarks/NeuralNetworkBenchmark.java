@@ -0,0 +1,174 @@
+package com.rebe.neuralNetwork.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rebe.neuralNetwork.NeuralNetwork;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+
+/**
+ * Benchmarks of the public API of {@link NeuralNetwork}: the forward pass, the
+ * backward pass and the end-to-end training, online and by mini-batch. Every
+ * layer but the output one has the same width
+ *
+ * @author Mattia Rebesan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class NeuralNetworkBenchmark {
+
+	/**
+	 * Count of the output neurons
+	 */
+	private static final int OUTPUTS_COUNT = 10;
+
+	/**
+	 * Count of the samples of the mini-batches
+	 */
+	private static final int BATCH_SIZE = 32;
+
+	/**
+	 * Neurons count of the input and hidden layers
+	 */
+	@Param({ "16", "128", "512" })
+	public int width;
+
+	/**
+	 * Count of the hidden layers
+	 */
+	@Param({ "1", "2", "4" })
+	public int depth;
+
+	/**
+	 * The benchmarked network
+	 */
+	private NeuralNetwork network;
+
+	/**
+	 * Inputs of the mini-batch, the first one is used by the single sample
+	 * benchmarks
+	 */
+	private double[][] inputs;
+
+	/**
+	 * Expected outputs of the mini-batch
+	 */
+	private double[][] expectedResults;
+
+	/**
+	 * Build the network and the samples
+	 *
+	 * @throws NeuralNetworkException
+	 *             Thrown if the network can not be built
+	 */
+	@Setup
+	public void setup() throws NeuralNetworkException {
+		int[] hiddenLayersNeuronsCount = new int[depth];
+		Arrays.fill(hiddenLayersNeuronsCount, width);
+		network = new NeuralNetwork(width, depth, hiddenLayersNeuronsCount, OUTPUTS_COUNT, 0.5, 0.1);
+
+		Random random = new Random(42);
+		inputs = new double[BATCH_SIZE][width];
+		expectedResults = new double[BATCH_SIZE][OUTPUTS_COUNT];
+		for (int sampleIndex = 0; sampleIndex < BATCH_SIZE; sampleIndex++) {
+			for (int inputIndex = 0; inputIndex < width; inputIndex++) {
+				inputs[sampleIndex][inputIndex] = random.nextDouble();
+			}
+			expectedResults[sampleIndex][random.nextInt(OUTPUTS_COUNT)] = 1;
+		}
+
+		network.computeResult(inputs[0]);
+	}
+
+	/**
+	 * Forward pass of a single sample through the network layers
+	 *
+	 * @return the computed values
+	 * @throws NeuralNetworkException
+	 *             Thrown if the samples do not match the network
+	 */
+	@Benchmark
+	public double[] computeResult() throws NeuralNetworkException {
+		return network.computeResult(inputs[0]);
+	}
+
+	/**
+	 * Forward pass of a single sample through the thread buffers
+	 *
+	 * @return the computed values
+	 * @throws NeuralNetworkException
+	 *             Thrown if the samples do not match the network
+	 */
+	@Benchmark
+	public double[] predict() throws NeuralNetworkException {
+		return network.predict(inputs[0]);
+	}
+
+	/**
+	 * Backward pass of a single sample, over the values of the last forward pass
+	 *
+	 * @throws NeuralNetworkException
+	 *             Thrown if the samples do not match the network
+	 */
+	@Benchmark
+	public void learn() throws NeuralNetworkException {
+		network.learn(expectedResults[0]);
+	}
+
+	/**
+	 * End-to-end online training step, forward and backward pass of a single
+	 * sample
+	 *
+	 * @throws NeuralNetworkException
+	 *             Thrown if the samples do not match the network
+	 */
+	@Benchmark
+	public void trainSample() throws NeuralNetworkException {
+		network.computeResult(inputs[0]);
+		network.learn(expectedResults[0]);
+	}
+
+	/**
+	 * Fused online training step of a single sample, expected to allocate
+	 * nothing in steady state
+	 *
+	 * @throws NeuralNetworkException
+	 *             Thrown if the samples do not match the network
+	 */
+	@Benchmark
+	public void trainStep() throws NeuralNetworkException {
+		network.trainStep(inputs[0], expectedResults[0]);
+	}
+
+	/**
+	 * End-to-end training step of a mini-batch
+	 *
+	 * @throws NeuralNetworkException
+	 *             Thrown if the samples do not match the network
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void trainBatch() throws NeuralNetworkException {
+		network.trainBatch(inputs, expectedResults);
+	}
+
+}
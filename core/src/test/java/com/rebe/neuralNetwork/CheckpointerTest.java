@@ -0,0 +1,132 @@
+package com.rebe.neuralNetwork;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.rebe.neuralNetwork.components.ConnectionLayers;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+import com.rebe.neuralNetwork.optimizers.Adam;
+
+/**
+ * Check that a run restored by {@link Checkpointer#restore(NeuralNetwork, Path)}
+ * goes on exactly like the interrupted one: a network trained for some steps,
+ * checkpointed, restored into a fresh network and trained for more steps must
+ * end with every bit of the weights, biases and counters of a network trained
+ * for all the steps without interruption
+ *
+ * @author Mattia Rebesan
+ *
+ */
+class CheckpointerTest {
+
+	/**
+	 * Count of the steps trained before the checkpoint
+	 */
+	private static final int STEPS_BEFORE = 300;
+
+	/**
+	 * Count of the steps trained after the restore
+	 */
+	private static final int STEPS_AFTER = 200;
+
+	/**
+	 * Count of the training samples
+	 */
+	private static final int SAMPLES = 37;
+
+	@TempDir
+	Path directory;
+
+	@ParameterizedTest(name = "adam={0}")
+	@ValueSource(booleans = { false, true })
+	void restoredRunMatchesUninterruptedRun(final boolean adam) throws IOException, NeuralNetworkException {
+		double[][] inputs = new double[SAMPLES][12];
+		double[][] expectedResults = new double[SAMPLES][4];
+		for (int sampleIndex = 0; sampleIndex < SAMPLES; sampleIndex++) {
+			for (int index = 0; index < inputs[sampleIndex].length; index++) {
+				inputs[sampleIndex][index] = Math.sin(sampleIndex * 31 + index) / 2 + 0.5;
+			}
+			expectedResults[sampleIndex][sampleIndex % 4] = 1;
+		}
+
+		NeuralNetwork interrupted = newNetwork(adam);
+		Path model = directory.resolve("model.bin");
+		interrupted.save(model);
+		NeuralNetwork uninterrupted = NeuralNetwork.load(model);
+		if (adam) {
+			uninterrupted.setOptimizer(new Adam(0.001));
+		}
+
+		train(interrupted, inputs, expectedResults, 0, STEPS_BEFORE);
+		Path checkpoint = directory.resolve("checkpoint.bin");
+		try (Checkpointer checkpointer = new Checkpointer(interrupted, checkpoint, 0, 0)) {
+			assertTrue(checkpointer.checkpoint(), "checkpoint taken");
+		}
+
+		NeuralNetwork restored = newNetwork(adam);
+		Checkpointer.restore(restored, checkpoint);
+		train(restored, inputs, expectedResults, STEPS_BEFORE, STEPS_AFTER);
+		train(uninterrupted, inputs, expectedResults, 0, STEPS_BEFORE + STEPS_AFTER);
+
+		ConnectionLayers[] expected = uninterrupted.connectionLayers();
+		ConnectionLayers[] actual = restored.connectionLayers();
+		for (int connectionIndex = 0; connectionIndex < expected.length; connectionIndex++) {
+			assertArrayEquals(expected[connectionIndex].getWeights(), actual[connectionIndex].getWeights(),
+					"weights of connection layer " + connectionIndex);
+			assertArrayEquals(expected[connectionIndex].getBiases(), actual[connectionIndex].getBiases(),
+					"biases of connection layer " + connectionIndex);
+		}
+		assertEquals(uninterrupted.trainingCycle(), restored.trainingCycle());
+		assertEquals(Double.doubleToLongBits(uninterrupted.getNetworkErrorCoefficent()),
+				Double.doubleToLongBits(restored.getNetworkErrorCoefficent()), "error coefficient");
+	}
+
+	/**
+	 * Build a network with random weights
+	 *
+	 * @param adam
+	 *            true to train it with Adam, false with the default optimizer
+	 * @return the network
+	 * @throws NeuralNetworkException
+	 *             Thrown if the network can not be built
+	 */
+	private static NeuralNetwork newNetwork(final boolean adam) throws NeuralNetworkException {
+		NeuralNetwork network = new NeuralNetwork(12, 2, new int[] { 16, 8 }, 4, 0.5, 0.1);
+		if (adam) {
+			network.setOptimizer(new Adam(0.001));
+		}
+		return network;
+	}
+
+	/**
+	 * Train a network one sample per step, cycling over the samples
+	 *
+	 * @param network
+	 *            the trained network
+	 * @param inputs
+	 *            the inputs, one row per sample
+	 * @param expectedResults
+	 *            the expected outputs, one row per sample
+	 * @param firstStep
+	 *            index of the first step, which selects its sample
+	 * @param steps
+	 *            count of the steps
+	 * @throws NeuralNetworkException
+	 *             Thrown if the network can not be trained
+	 */
+	private static void train(final NeuralNetwork network, final double[][] inputs, final double[][] expectedResults,
+			final int firstStep, final int steps) throws NeuralNetworkException {
+		for (int step = firstStep; step < firstStep + steps; step++) {
+			network.trainStep(inputs[step % inputs.length], expectedResults[step % inputs.length]);
+		}
+	}
+
+}
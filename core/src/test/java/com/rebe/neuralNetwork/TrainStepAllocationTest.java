@@ -0,0 +1,167 @@
+package com.rebe.neuralNetwork;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.rebe.neuralNetwork.activations.Activation;
+import com.rebe.neuralNetwork.activations.Sigmoid;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+import com.rebe.neuralNetwork.math.Precision;
+import com.rebe.neuralNetwork.math.Storage;
+import com.rebe.neuralNetwork.optimizers.Adam;
+
+/**
+ * Check that {@link NeuralNetwork#trainStep(double[], double[])} allocates
+ * nothing in steady state, for every precision, storage and optimizer, with
+ * and without a pool partitioning the connection layers. After a warm up that
+ * lets the JIT compile the step, the bytes allocated by the calling thread,
+ * and by the threads of the pool of a partitioned network, are measured over
+ * windows of steps, each of which must allocate nothing
+ *
+ * @author Mattia Rebesan
+ *
+ */
+class TrainStepAllocationTest {
+
+	/**
+	 * Count of the warm up steps
+	 */
+	private static final int WARM_UP_STEPS = 50_000;
+
+	/**
+	 * Count of the steps of a measured window
+	 */
+	private static final int WINDOW_STEPS = 10_000;
+
+	/**
+	 * Count of the measured windows
+	 */
+	private static final int WINDOWS = 3;
+
+	/**
+	 * Count of the threads of the pool of a partitioned network
+	 */
+	private static final int PARALLELISM = 2;
+
+	/**
+	 * Return the measured configurations: every precision and storage the
+	 * network accepts, with the default optimizer or Adam, with and without a
+	 * pool
+	 *
+	 * @return the precision, storage, whether Adam is used and whether the
+	 *         connection layers are partitioned of each configuration
+	 */
+	static Stream<Arguments> configurations() {
+		List<Arguments> configurations = new ArrayList<>();
+		for (Precision precision : Precision.values()) {
+			for (Storage storage : Storage.values()) {
+				if (precision == Precision.FLOAT && storage == Storage.OFF_HEAP) {
+					// off-heap weights are stored in double precision only
+					continue;
+				}
+				for (boolean adam : new boolean[] { false, true }) {
+					for (boolean partitioned : new boolean[] { false, true }) {
+						configurations.add(Arguments.of(precision, storage, adam, partitioned));
+					}
+				}
+			}
+		}
+		return configurations.stream();
+	}
+
+	@ParameterizedTest(name = "{0} {1} adam={2} partitioned={3}")
+	@MethodSource("configurations")
+	void trainStepAllocatesNothing(final Precision precision, final Storage storage, final boolean adam,
+			final boolean partitioned) throws NeuralNetworkException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		Activation[] activations = new Activation[3];
+		Arrays.fill(activations, new Sigmoid());
+		NeuralNetwork network = new NeuralNetwork(64, 2, new int[] { 128, 64 }, 10, 0.5, 0.1, activations,
+				precision, storage);
+		if (adam) {
+			network.setOptimizer(new Adam(0.001));
+		}
+
+		List<Thread> workers = new CopyOnWriteArrayList<>();
+		ForkJoinPool pool = null;
+		if (partitioned) {
+			pool = new ForkJoinPool(PARALLELISM, forkJoinPool -> {
+				ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+				workers.add(worker);
+				return worker;
+			}, null, false);
+			network.setLayerParallelism(pool, 0);
+		}
+		try {
+			assertTrainStepsAllocateNothing(threads, network, workers);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Check that every measured window of training steps of a warmed up network
+	 * allocates nothing
+	 *
+	 * @param threads
+	 *            bean measuring the allocated bytes
+	 * @param network
+	 *            the trained network
+	 * @param workers
+	 *            threads of the pool of a partitioned network, measured with the
+	 *            calling thread
+	 * @throws NeuralNetworkException
+	 *             Thrown if the network can not be trained
+	 */
+	private static void assertTrainStepsAllocateNothing(final com.sun.management.ThreadMXBean threads,
+			final NeuralNetwork network, final List<Thread> workers) throws NeuralNetworkException {
+		double[] inputs = new double[64];
+		for (int index = 0; index < inputs.length; index++) {
+			inputs[index] = index / 64.0;
+		}
+		double[] expectedResult = new double[10];
+		expectedResult[3] = 1;
+
+		for (int step = 0; step < WARM_UP_STEPS; step++) {
+			network.trainStep(inputs, expectedResult);
+		}
+
+		// the bytes of the workers are read outside of the window of the calling
+		// thread, since reading them allocates an array
+		long[] workersIds = workers.stream().mapToLong(Thread::getId).toArray();
+		for (int window = 0; window < WINDOWS; window++) {
+			long[] workersBefore = threads.getThreadAllocatedBytes(workersIds);
+			long before = threads.getCurrentThreadAllocatedBytes();
+			for (int step = 0; step < WINDOW_STEPS; step++) {
+				network.trainStep(inputs, expectedResult);
+			}
+			long allocatedBytes = threads.getCurrentThreadAllocatedBytes() - before;
+			long[] workersAfter = threads.getThreadAllocatedBytes(workersIds);
+			for (int workerIndex = 0; workerIndex < workersIds.length; workerIndex++) {
+				allocatedBytes += workersAfter[workerIndex] - workersBefore[workerIndex];
+			}
+			assertEquals(0, allocatedBytes,
+					"bytes allocated by the " + WINDOW_STEPS + " training steps of window " + window);
+		}
+	}
+
+}
@@ -0,0 +1,553 @@
+package com.rebe.neuralNetwork;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.rebe.neuralNetwork.components.ConnectionLayers;
+import com.rebe.neuralNetwork.components.ConnectionLayersState;
+import com.rebe.neuralNetwork.exceptions.IllegalModelFormatException;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+
+/**
+ * Periodic checkpoints of the training state of a {@link NeuralNetwork}:
+ * weights, biases, optimizer state and training counters, every bit of them,
+ * so that {@link #restore(NeuralNetwork, Path)} resumes a run exactly where the
+ * checkpoint was taken.
+ * <p>
+ * After each training cycle or batch the network asks the checkpointer if a
+ * checkpoint is due, every count of cycles or of seconds. The training thread
+ * only copies the state arrays in one of two snapshot buffers and hands it to
+ * a background writer, which streams it to a temporary file and renames it
+ * over the checkpoint file, so the checkpoint on disk is always complete. If
+ * both buffers are still being written the checkpoint is skipped instead of
+ * blocking the training. A checkpoint the writer failed to write is reported
+ * to the training thread by the next checkpoint, so a run does not go on
+ * believing it is saved: {@link #checkpoint()} throws the error, and the
+ * training method that found a checkpoint due throws it wrapped in an
+ * {@link UncheckedIOException}.
+ * <p>
+ * The optimizer itself is not part of the checkpoint, only its class and its
+ * hyper-parameters: the restored network must use the same optimizer, and a
+ * checkpoint of another one is rejected, since its state would be read with a
+ * different meaning
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class Checkpointer implements AutoCloseable {
+
+	/**
+	 * First bytes of a checkpoint file, "RNNC"
+	 */
+	private static final int MAGIC = 0x524E4E43;
+
+	/**
+	 * Version of the checkpoint format
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * Size of the buffer staging the written and read values
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Count of the snapshot buffers
+	 */
+	private static final int SNAPSHOTS = 2;
+
+	/**
+	 * Snapshot marking the closing of the checkpointer
+	 */
+	private static final Snapshot CLOSE = new Snapshot();
+
+	/**
+	 * The checkpointed network
+	 */
+	private final NeuralNetwork network;
+
+	/**
+	 * Path of the checkpoint file
+	 */
+	private final Path path;
+
+	/**
+	 * Path of the file written before the rename
+	 */
+	private final Path temporaryPath;
+
+	/**
+	 * Count of training cycles between two checkpoints, 0 if not counted
+	 */
+	private final long cyclesInterval;
+
+	/**
+	 * Nanoseconds between two checkpoints, 0 if not timed
+	 */
+	private final long nanosInterval;
+
+	/**
+	 * Snapshots ready to be filled
+	 */
+	private final BlockingQueue<Snapshot> free;
+
+	/**
+	 * Snapshots waiting for the writer
+	 */
+	private final BlockingQueue<Snapshot> filled;
+
+	/**
+	 * Background thread writing the snapshots
+	 */
+	private final Thread writer;
+
+	/**
+	 * Training cycle of the last checkpoint, read by the training thread only
+	 */
+	private long lastCycle;
+
+	/**
+	 * Time of the last checkpoint, read by the training thread only
+	 */
+	private long lastNanos;
+
+	/**
+	 * Indicates if the checkpointer was closed
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * First error of the writer not yet thrown to the training thread
+	 */
+	private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+	/**
+	 * Count of the written checkpoints
+	 */
+	private volatile long writtenCount;
+
+	/**
+	 * Count of the checkpoints skipped because both snapshots were busy
+	 */
+	private volatile long skippedCount;
+
+	/**
+	 * Training cycle of the last written checkpoint
+	 */
+	private volatile long lastWrittenCycle;
+
+	/**
+	 * Nanoseconds taken to write the last checkpoint
+	 */
+	private volatile long lastWriteNanos;
+
+	/**
+	 * Constructor that start the writer thread and attach the checkpointer to
+	 * the network, replacing its previous one
+	 *
+	 * @param network
+	 *            the checkpointed network
+	 * @param path
+	 *            path of the checkpoint file
+	 * @param cyclesInterval
+	 *            count of training cycles between two checkpoints, 0 to not count
+	 *            them
+	 * @param secondsInterval
+	 *            seconds between two checkpoints, 0 to not time them
+	 */
+	public Checkpointer(final NeuralNetwork network, final Path path, final long cyclesInterval,
+			final long secondsInterval) {
+		this.network = network;
+		this.path = path;
+		this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+		this.cyclesInterval = Math.max(0, cyclesInterval);
+		this.nanosInterval = TimeUnit.SECONDS.toNanos(Math.max(0, secondsInterval));
+
+		this.free = new ArrayBlockingQueue<>(SNAPSHOTS);
+		this.filled = new ArrayBlockingQueue<>(SNAPSHOTS + 1);
+		for (int snapshotIndex = 0; snapshotIndex < SNAPSHOTS; snapshotIndex++) {
+			free.add(new Snapshot());
+		}
+		this.lastCycle = network.trainingCycle();
+		this.lastNanos = System.nanoTime();
+
+		this.writer = new Thread(this::write, "checkpoint-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		network.setCheckpointer(this);
+	}
+
+	/**
+	 * Take a checkpoint now if a snapshot buffer is free. It must be called by
+	 * the training thread, between two training cycles
+	 *
+	 * @return true if the checkpoint was taken, false if it was skipped
+	 * @throws IOException
+	 *             Thrown if the writer failed to write a previous checkpoint
+	 *             since the last error was thrown, in which case no checkpoint
+	 *             is taken
+	 */
+	public boolean checkpoint() throws IOException {
+		IOException error = failure.getAndSet(null);
+		if (error != null) {
+			throw error;
+		}
+		lastCycle = network.trainingCycle();
+		lastNanos = System.nanoTime();
+
+		Snapshot snapshot = closed ? null : free.poll();
+		if (snapshot == null) {
+			skippedCount++;
+			return false;
+		}
+		snapshot.take(network);
+		filled.add(snapshot);
+		return true;
+	}
+
+	/**
+	 * Take a checkpoint if one is due, called by the network after each
+	 * training cycle or batch
+	 *
+	 * @throws UncheckedIOException
+	 *             Thrown if the writer failed to write a previous checkpoint,
+	 *             see {@link #checkpoint()}
+	 */
+	void maybeCheckpoint() {
+		if ((cyclesInterval > 0 && network.trainingCycle() - lastCycle >= cyclesInterval)
+				|| (nanosInterval > 0 && System.nanoTime() - lastNanos >= nanosInterval)) {
+			try {
+				checkpoint();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Return the count of the checkpoints written to disk
+	 *
+	 * @return the written count
+	 */
+	public long getWrittenCount() {
+		return writtenCount;
+	}
+
+	/**
+	 * Return the count of the checkpoints skipped because the writer was still
+	 * busy with both snapshots
+	 *
+	 * @return the skipped count
+	 */
+	public long getSkippedCount() {
+		return skippedCount;
+	}
+
+	/**
+	 * Return the training cycle of the last checkpoint written to disk
+	 *
+	 * @return the last written cycle, 0 if none was written
+	 */
+	public long getLastWrittenCycle() {
+		return lastWrittenCycle;
+	}
+
+	/**
+	 * Return the nanoseconds taken by the writer for the last checkpoint
+	 *
+	 * @return the last write nanoseconds
+	 */
+	public long getLastWriteNanos() {
+		return lastWriteNanos;
+	}
+
+	/**
+	 * Detach the checkpointer from the network and wait for the writer to
+	 * finish the checkpoints already taken
+	 *
+	 * @throws IOException
+	 *             Thrown if the writer failed to write a checkpoint since the
+	 *             last error was thrown
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			network.setCheckpointer(null);
+			filled.add(CLOSE);
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		IOException error = failure.getAndSet(null);
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Replace the training state of a network with the one of a checkpoint. The
+	 * network must have the layers sizes, the precision and the optimizer of the
+	 * checkpointed one; the state is applied only after the whole checkpoint
+	 * was read
+	 *
+	 * @param network
+	 *            the restored network
+	 * @param path
+	 *            path of the checkpoint file
+	 * @throws IOException
+	 *             Thrown if the file can not be read
+	 * @throws NeuralNetworkException
+	 *             Thrown if the file is not a checkpoint of a network like the
+	 *             restored one
+	 */
+	public static void restore(final NeuralNetwork network, final Path path)
+			throws IOException, NeuralNetworkException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		ConnectionLayers[] connectionLayers = network.connectionLayers();
+		ConnectionLayersState[] states = new ConnectionLayersState[connectionLayers.length];
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ConnectionLayersState.fill(channel, buffer, 3 * Integer.BYTES);
+			if (buffer.getInt() != MAGIC) {
+				throw new IllegalModelFormatException("not a checkpoint");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IllegalModelFormatException("unsupported checkpoint version " + version);
+			}
+			int[] layersSizes = network.layersSizes();
+			if (buffer.getInt() != layersSizes.length) {
+				throw new IllegalModelFormatException("checkpoint of a network with other layers");
+			}
+
+			ConnectionLayersState.fill(channel, buffer, (layersSizes.length + 6) * Integer.BYTES + 4 * Double.BYTES);
+			for (int layerSize : layersSizes) {
+				if (buffer.getInt() != layerSize) {
+					throw new IllegalModelFormatException("checkpoint of a network with other layers");
+				}
+			}
+			if (buffer.getInt() != network.getPrecision().ordinal()) {
+				throw new IllegalModelFormatException("checkpoint of a network with another precision");
+			}
+			if (buffer.getInt() != network.getOptimizer().stateSize()) {
+				throw new IllegalModelFormatException("checkpoint of a network with another optimizer");
+			}
+			int trainingCycle = buffer.getInt();
+			boolean isTrained = buffer.getInt() != 0;
+			double networkErrorCoefficient = buffer.getDouble();
+			double errorCoefficientsHistory = buffer.getDouble();
+			double lastErrorCoefficient = buffer.getDouble();
+			double trainerThreshold = buffer.getDouble();
+			int optimizerNameLength = buffer.getInt();
+			int optimizerParametersCount = buffer.getInt();
+
+			long optimizerBytes = optimizerNameLength + (long) optimizerParametersCount * Double.BYTES;
+			if (optimizerNameLength < 0 || optimizerParametersCount < 0 || optimizerBytes > BUFFER_SIZE) {
+				throw new IllegalModelFormatException("corrupted checkpoint optimizer");
+			}
+			ConnectionLayersState.fill(channel, buffer, (int) optimizerBytes);
+			byte[] optimizerName = new byte[optimizerNameLength];
+			buffer.get(optimizerName);
+			double[] optimizerParameters = new double[optimizerParametersCount];
+			for (int index = 0; index < optimizerParametersCount; index++) {
+				optimizerParameters[index] = buffer.getDouble();
+			}
+			if (!new String(optimizerName, StandardCharsets.UTF_8).equals(network.getOptimizer().getClass().getName())
+					|| !Arrays.equals(optimizerParameters, network.getOptimizer().hyperParameters())) {
+				throw new IllegalModelFormatException("checkpoint of a network with another optimizer");
+			}
+
+			for (int connectionIndex = 0; connectionIndex < connectionLayers.length; connectionIndex++) {
+				states[connectionIndex] = connectionLayers[connectionIndex].newState();
+				states[connectionIndex].read(channel, buffer);
+			}
+			if (channel.position() != channel.size()) {
+				throw new IllegalModelFormatException("checkpoint longer than expected");
+			}
+
+			for (int connectionIndex = 0; connectionIndex < connectionLayers.length; connectionIndex++) {
+				connectionLayers[connectionIndex].restoreState(states[connectionIndex]);
+			}
+			network.restoreCounters(trainingCycle, networkErrorCoefficient, errorCoefficientsHistory,
+					lastErrorCoefficient, isTrained);
+			network.setTrainerThreshold(trainerThreshold);
+		}
+	}
+
+	/**
+	 * Write the filled snapshots until the checkpointer is closed
+	 */
+	private void write() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			for (Snapshot snapshot = filled.take(); snapshot != CLOSE; snapshot = filled.take()) {
+				long start = System.nanoTime();
+				try {
+					try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+							StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+						snapshot.write(channel, buffer);
+						channel.force(true);
+					}
+					Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE,
+							StandardCopyOption.REPLACE_EXISTING);
+					lastWrittenCycle = snapshot.trainingCycle;
+					lastWriteNanos = System.nanoTime() - start;
+					writtenCount++;
+				} catch (IOException e) {
+					failure.compareAndSet(null, e);
+				}
+				free.add(snapshot);
+			}
+		} catch (InterruptedException e) {
+			// the checkpoints left are lost
+		}
+	}
+
+	/**
+	 * Copy of the training state of a network
+	 */
+	private static class Snapshot {
+
+		/**
+		 * State of each connection layer, allocated by the first checkpoint
+		 */
+		private ConnectionLayersState[] states;
+
+		/**
+		 * Neurons count of each layer
+		 */
+		private int[] layersSizes;
+
+		/**
+		 * Storage precision of the weights
+		 */
+		private int precision;
+
+		/**
+		 * Class name of the optimizer, UTF-8 encoded
+		 */
+		private byte[] optimizerName;
+
+		/**
+		 * Hyper-parameters of the optimizer
+		 */
+		private double[] optimizerParameters;
+
+		/**
+		 * The training cycle
+		 */
+		private int trainingCycle;
+
+		/**
+		 * The trained flag
+		 */
+		private boolean isTrained;
+
+		/**
+		 * The error coefficient
+		 */
+		private double networkErrorCoefficient;
+
+		/**
+		 * The error coefficients history
+		 */
+		private double errorCoefficientsHistory;
+
+		/**
+		 * The error coefficient of the last trained sample or batch
+		 */
+		private double lastErrorCoefficient;
+
+		/**
+		 * The trainer threshold
+		 */
+		private double trainerThreshold;
+
+		/**
+		 * Copy the training state of a network, allocating the states again only
+		 * if the optimizer changed
+		 *
+		 * @param network
+		 *            the checkpointed network
+		 */
+		private void take(final NeuralNetwork network) {
+			ConnectionLayers[] connectionLayers = network.connectionLayers();
+			if (states == null || states[0].getStateSize() != network.getOptimizer().stateSize()) {
+				states = new ConnectionLayersState[connectionLayers.length];
+				for (int connectionIndex = 0; connectionIndex < connectionLayers.length; connectionIndex++) {
+					states[connectionIndex] = connectionLayers[connectionIndex].newState();
+				}
+			}
+			for (int connectionIndex = 0; connectionIndex < connectionLayers.length; connectionIndex++) {
+				connectionLayers[connectionIndex].saveState(states[connectionIndex]);
+			}
+
+			layersSizes = network.layersSizes();
+			precision = network.getPrecision().ordinal();
+			optimizerName = network.getOptimizer().getClass().getName().getBytes(StandardCharsets.UTF_8);
+			optimizerParameters = network.getOptimizer().hyperParameters();
+			trainingCycle = network.trainingCycle();
+			isTrained = network.isTrained();
+			networkErrorCoefficient = network.getNetworkErrorCoefficent();
+			errorCoefficientsHistory = network.getErrorCoefficientsHistory();
+			lastErrorCoefficient = network.getLastErrorCoefficient();
+			trainerThreshold = network.getTrainerThreshold();
+		}
+
+		/**
+		 * Stream the snapshot to a channel
+		 *
+		 * @param channel
+		 *            the written channel
+		 * @param buffer
+		 *            the staging buffer
+		 * @throws IOException
+		 *             Thrown if the channel can not be written
+		 */
+		private void write(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+			buffer.clear();
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(layersSizes.length);
+			for (int layerSize : layersSizes) {
+				buffer.putInt(layerSize);
+			}
+			buffer.putInt(precision);
+			buffer.putInt(states[0].getStateSize());
+			buffer.putInt(trainingCycle);
+			buffer.putInt(isTrained ? 1 : 0);
+			buffer.putDouble(networkErrorCoefficient);
+			buffer.putDouble(errorCoefficientsHistory);
+			buffer.putDouble(lastErrorCoefficient);
+			buffer.putDouble(trainerThreshold);
+			buffer.putInt(optimizerName.length);
+			buffer.putInt(optimizerParameters.length);
+			buffer.put(optimizerName);
+			for (double optimizerParameter : optimizerParameters) {
+				buffer.putDouble(optimizerParameter);
+			}
+			ConnectionLayersState.flush(channel, buffer);
+
+			for (ConnectionLayersState state : states) {
+				state.write(channel, buffer);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,621 @@
+package com.rebe.neuralNetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.rebe.neuralNetwork.SearchReport.Outcome;
+import com.rebe.neuralNetwork.SearchReport.Result;
+import com.rebe.neuralNetwork.TrainingReport.StopReason;
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
+import com.rebe.neuralNetwork.exceptions.IllegalTrainerArgumentException;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+
+/**
+ * Search of the hyper-parameters of a {@link NeuralNetwork} on a set of
+ * samples held in memory. Every candidate, see {@link HyperParameters}, is an
+ * independent network trained by its own {@link Trainer}, so the candidates
+ * run concurrently on a {@link ForkJoinPool}, as many at a time as its
+ * parallelism, sharing only the read-only samples.
+ * <p>
+ * The candidates are trained in rounds of epochs and compared by their best
+ * loss, held-out if a validation split or set is given, otherwise the window
+ * loss of the trainer. {@link #search(List)} stops after a round every
+ * candidate whose best loss is worse than the median of the ones of the other
+ * candidates at the same round, while {@link #successiveHalving(List, int)}
+ * trains every candidate for a small budget, keeps the best fraction and
+ * trains it further, until the epochs budget is reached.
+ * <p>
+ * The networks are not reproducible, since their weights are randomized,
+ * while the shuffled orders of each candidate are seeded
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class HyperParameterSearch {
+
+	/**
+	 * Minimum count of other candidates that must have reached a round before
+	 * the median stopping rule is applied to it
+	 */
+	private static final int MIN_MEDIAN_CANDIDATES = 2;
+
+	/**
+	 * Array of the inputs, one row per sample
+	 */
+	private final double[][] inputs;
+
+	/**
+	 * Array of the expected outputs, one row per sample
+	 */
+	private final double[][] expectedResults;
+
+	/**
+	 * Pool running the candidates
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Count of the samples of each batch
+	 */
+	private int batchSize = 32;
+
+	/**
+	 * Max count of epochs of each candidate
+	 */
+	private int maxEpochs = 100;
+
+	/**
+	 * Count of epochs of a round
+	 */
+	private int roundEpochs = 5;
+
+	/**
+	 * Count of epochs without improvement that stops a candidate
+	 */
+	private int patience = 10;
+
+	/**
+	 * Minimum decrease of the loss counted as an improvement
+	 */
+	private double minImprovement = 0;
+
+	/**
+	 * Seed of the shuffled orders, the one of each candidate is offset by its
+	 * index
+	 */
+	private long seed = 0;
+
+	/**
+	 * Fraction of the samples, taken from the end, held out to measure the loss
+	 */
+	private double validationSplit = 0;
+
+	/**
+	 * Inputs of the validation set, null if not set
+	 */
+	private double[][] validationInputs;
+
+	/**
+	 * Expected outputs of the validation set, null if not set
+	 */
+	private double[][] validationExpectedResults;
+
+	/**
+	 * Constructor that build a search running on the common pool, with the
+	 * default parameters: batches of 32 samples, at most 100 epochs in rounds of
+	 * 5, a patience of 10 epochs and no held-out samples
+	 *
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if there are no samples or inputs and expected outputs
+	 *             counts differ
+	 */
+	public HyperParameterSearch(final double[][] inputs, final double[][] expectedResults)
+			throws IllegalBatchSizeException {
+		this(inputs, expectedResults, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor that build a search running on the received pool
+	 *
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @param pool
+	 *            pool running the candidates
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if there are no samples or inputs and expected outputs
+	 *             counts differ
+	 */
+	public HyperParameterSearch(final double[][] inputs, final double[][] expectedResults, final ForkJoinPool pool)
+			throws IllegalBatchSizeException {
+		if (inputs.length == 0 || inputs.length != expectedResults.length) {
+			throw new IllegalBatchSizeException();
+		}
+		this.inputs = inputs;
+		this.expectedResults = expectedResults;
+		this.pool = pool;
+	}
+
+	/**
+	 * Train every candidate concurrently, in rounds, stopping the ones whose
+	 * best loss at the end of a round is worse than the median of the best
+	 * losses of the other candidates at the same round. The rule is applied
+	 * once at least {@value #MIN_MEDIAN_CANDIDATES} other candidates reached the
+	 * round, so the candidates that run first are always compared with fewer
+	 * candidates than the ones that run later
+	 *
+	 * @param candidates
+	 *            the configurations, for example built with
+	 *            {@link HyperParameters#grid(double[], double[], int[][])} or
+	 *            {@link HyperParameters#random(int, double, double, double, double, int[][], long)}
+	 * @return the report of the search
+	 * @throws NeuralNetworkException
+	 *             Thrown if there are no candidates, a configuration is not
+	 *             valid or the samples do not fit the networks
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 */
+	public SearchReport search(final List<HyperParameters> candidates)
+			throws NeuralNetworkException, InterruptedException {
+		long start = System.nanoTime();
+		Candidate[] trained = candidates(candidates);
+		MedianRule medianRule = new MedianRule(trained.length, (maxEpochs + roundEpochs - 1) / roundEpochs);
+
+		List<Callable<Void>> tasks = new ArrayList<>(trained.length);
+		for (Candidate candidate : trained) {
+			tasks.add(() -> {
+				candidate.build();
+				for (int round = 0; candidate.outcome == null; round++) {
+					candidate.train(Math.min(maxEpochs, candidate.epochsCount + roundEpochs));
+					if (candidate.outcome == null && medianRule.isWorse(candidate.index, round, candidate.bestLoss)) {
+						candidate.outcome = Outcome.ELIMINATED;
+					}
+				}
+				return null;
+			});
+		}
+		run(tasks);
+
+		return report(trained, start);
+	}
+
+	/**
+	 * Successive halving: train every candidate concurrently for one round,
+	 * keep the fraction 1 / reduction with the lowest best losses, stopping the
+	 * others, and train the kept ones until their epochs are reduction times
+	 * as many, repeating until the candidates reach the max count of epochs.
+	 * Most of the budget goes to the most promising candidates, and unlike
+	 * {@link #search(List)} every comparison is made at the same count of
+	 * epochs
+	 *
+	 * @param candidates
+	 *            the configurations
+	 * @param reduction
+	 *            factor of reduction of the candidates and of growth of their
+	 *            epochs at each step
+	 * @return the report of the search
+	 * @throws NeuralNetworkException
+	 *             Thrown if there are no candidates, the reduction is lower
+	 *             than 2, a configuration is not valid or the samples do not fit
+	 *             the networks
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 */
+	public SearchReport successiveHalving(final List<HyperParameters> candidates, final int reduction)
+			throws NeuralNetworkException, InterruptedException {
+		if (reduction < 2) {
+			throw new IllegalTrainerArgumentException("reduction must be greater than 1");
+		}
+		long start = System.nanoTime();
+		Candidate[] trained = candidates(candidates);
+
+		List<Candidate> active = new ArrayList<>(Arrays.asList(trained));
+		int targetEpochs = Math.min(maxEpochs, roundEpochs);
+		while (!active.isEmpty()) {
+			int target = targetEpochs;
+			List<Callable<Void>> tasks = new ArrayList<>(active.size());
+			for (Candidate candidate : active) {
+				tasks.add(() -> {
+					if (candidate.network == null) {
+						candidate.build();
+					}
+					while (candidate.outcome == null && candidate.epochsCount < target) {
+						candidate.train(Math.min(target, candidate.epochsCount + roundEpochs));
+					}
+					return null;
+				});
+			}
+			run(tasks);
+
+			active.removeIf(candidate -> candidate.outcome != null);
+			active.sort(Comparator.comparingDouble(candidate -> candidate.bestLoss));
+			int keptCount = (active.size() + reduction - 1) / reduction;
+			for (Candidate candidate : active.subList(keptCount, active.size())) {
+				candidate.outcome = Outcome.ELIMINATED;
+			}
+			active.subList(keptCount, active.size()).clear();
+			targetEpochs = (int) Math.min(maxEpochs, (long) targetEpochs * reduction);
+		}
+
+		return report(trained, start);
+	}
+
+	/**
+	 * Wrap the configurations in candidates
+	 *
+	 * @param candidates
+	 *            the configurations
+	 * @return the candidates
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if there are no candidates
+	 */
+	private Candidate[] candidates(final List<HyperParameters> candidates) throws IllegalTrainerArgumentException {
+		if (candidates.isEmpty()) {
+			throw new IllegalTrainerArgumentException("candidates must be at least 1");
+		}
+		Candidate[] trained = new Candidate[candidates.size()];
+		for (int index = 0; index < trained.length; index++) {
+			trained[index] = new Candidate(index, candidates.get(index));
+		}
+		return trained;
+	}
+
+	/**
+	 * Run the tasks on the pool and wait for all of them
+	 *
+	 * @param tasks
+	 *            the tasks of the candidates
+	 * @throws NeuralNetworkException
+	 *             Thrown by a task
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 */
+	private void run(final List<Callable<Void>> tasks) throws NeuralNetworkException, InterruptedException {
+		for (Future<Void> future : pool.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				// the pool wraps the checked exceptions of the tasks
+				for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+					if (cause instanceof NeuralNetworkException) {
+						throw (NeuralNetworkException) cause;
+					}
+				}
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Build the report of the trained candidates
+	 *
+	 * @param trained
+	 *            the candidates
+	 * @param start
+	 *            nano time of the start of the search
+	 * @return the report of the search
+	 */
+	private SearchReport report(final Candidate[] trained, final long start) {
+		List<Result> results = new ArrayList<>(trained.length);
+		long cyclesSaved = 0;
+		for (Candidate candidate : trained) {
+			results.add(new Result(candidate.hyperParameters, candidate.network, candidate.outcome,
+					candidate.epochsCount, candidate.cyclesCount, candidate.bestLoss));
+			cyclesSaved += Math.max(0, candidate.epochCycles * maxEpochs - candidate.cyclesCount);
+		}
+		results.sort(Comparator.comparingDouble(Result::getBestLoss));
+		return new SearchReport(results, cyclesSaved, System.nanoTime() - start);
+	}
+
+	/**
+	 * Set the count of the samples of each batch, 32 by default
+	 *
+	 * @param batchSize
+	 *            the batch size
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch size is lower than 1
+	 */
+	public void setBatchSize(final int batchSize) throws IllegalBatchSizeException {
+		if (batchSize < 1) {
+			throw new IllegalBatchSizeException();
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the max count of epochs of each candidate, 100 by default
+	 *
+	 * @param maxEpochs
+	 *            the epochs budget
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if the count is lower than 1
+	 */
+	public void setMaxEpochs(final int maxEpochs) throws IllegalTrainerArgumentException {
+		if (maxEpochs < 1) {
+			throw new IllegalTrainerArgumentException("max epochs must be greater than 0");
+		}
+		this.maxEpochs = maxEpochs;
+	}
+
+	/**
+	 * Set the count of epochs of a round, after which the candidates are
+	 * compared, 5 by default. Shorter rounds stop the losing candidates sooner
+	 * but on noisier losses
+	 *
+	 * @param roundEpochs
+	 *            the epochs of a round
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if the count is lower than 1
+	 */
+	public void setRoundEpochs(final int roundEpochs) throws IllegalTrainerArgumentException {
+		if (roundEpochs < 1) {
+			throw new IllegalTrainerArgumentException("round epochs must be greater than 0");
+		}
+		this.roundEpochs = roundEpochs;
+	}
+
+	/**
+	 * Set the count of epochs without improvement of the loss that stops a
+	 * candidate, 10 by default
+	 *
+	 * @param patience
+	 *            the patience
+	 * @param minImprovement
+	 *            minimum decrease of the loss counted as an improvement, 0 by
+	 *            default
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if the patience is lower than 1 or the minimum
+	 *             improvement is negative
+	 */
+	public void setPatience(final int patience, final double minImprovement) throws IllegalTrainerArgumentException {
+		if (patience < 1 || minImprovement < 0) {
+			throw new IllegalTrainerArgumentException("patience must be greater than 0 and min improvement positive");
+		}
+		this.patience = patience;
+		this.minImprovement = minImprovement;
+	}
+
+	/**
+	 * Set the seed of the shuffled orders, the one of each candidate is offset
+	 * by its index, 0 by default
+	 *
+	 * @param seed
+	 *            the seed
+	 */
+	public void setSeed(final long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Hold out a fraction of the samples, taken from the end, to measure the loss
+	 * at the end of each epoch. Ignored if a validation set is set
+	 *
+	 * @param validationSplit
+	 *            the held-out fraction, 0 by default
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if the fraction is not in [0, 1)
+	 */
+	public void setValidationSplit(final double validationSplit) throws IllegalTrainerArgumentException {
+		if (validationSplit < 0 || validationSplit >= 1) {
+			throw new IllegalTrainerArgumentException("validation split must be in [0, 1)");
+		}
+		this.validationSplit = validationSplit;
+	}
+
+	/**
+	 * Set the samples used to measure the loss at the end of each epoch
+	 *
+	 * @param inputs
+	 *            array of the inputs, one row per sample, or null to remove the
+	 *            validation set
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the set is empty or inputs and expected outputs
+	 *             counts differ
+	 */
+	public void setValidationSet(final double[][] inputs, final double[][] expectedResults)
+			throws IllegalBatchSizeException {
+		if (inputs != null && (inputs.length == 0 || inputs.length != expectedResults.length)) {
+			throw new IllegalBatchSizeException();
+		}
+		this.validationInputs = inputs;
+		this.validationExpectedResults = inputs == null ? null : expectedResults;
+	}
+
+	/**
+	 * Candidate of the search, trained by a single thread at a time
+	 */
+	private class Candidate {
+
+		/**
+		 * Index of the candidate in the search
+		 */
+		private final int index;
+
+		/**
+		 * Configuration of the candidate
+		 */
+		private final HyperParameters hyperParameters;
+
+		/**
+		 * The trained network, null until built
+		 */
+		private NeuralNetwork network;
+
+		/**
+		 * Trainer of the network
+		 */
+		private Trainer trainer;
+
+		/**
+		 * Count of the training samples of an epoch
+		 */
+		private long epochCycles;
+
+		/**
+		 * Count of the epochs run
+		 */
+		private int epochsCount;
+
+		/**
+		 * Count of the trained samples
+		 */
+		private long cyclesCount;
+
+		/**
+		 * Lowest loss measured at the end of an epoch
+		 */
+		private double bestLoss = Double.POSITIVE_INFINITY;
+
+		/**
+		 * Epoch of the lowest loss
+		 */
+		private int bestEpoch;
+
+		/**
+		 * Why the training stopped, null while the candidate is trained
+		 */
+		private Outcome outcome;
+
+		/**
+		 * Constructor that build a candidate
+		 *
+		 * @param index
+		 *            index of the candidate in the search
+		 * @param hyperParameters
+		 *            configuration of the candidate
+		 */
+		Candidate(final int index, final HyperParameters hyperParameters) {
+			this.index = index;
+			this.hyperParameters = hyperParameters;
+		}
+
+		/**
+		 * Build the network and its trainer
+		 *
+		 * @throws NeuralNetworkException
+		 *             Thrown if the configuration is not valid
+		 */
+		void build() throws NeuralNetworkException {
+			network = hyperParameters.build(inputs[0].length, expectedResults[0].length);
+			trainer = new Trainer(network);
+			trainer.setBatchSize(batchSize);
+			trainer.setPatience(patience, minImprovement);
+			trainer.setShuffle(true, seed + index);
+			trainer.setValidationSplit(validationSplit);
+			trainer.setValidationSet(validationInputs, validationExpectedResults);
+			epochCycles = validationInputs == null ? inputs.length - (int) (inputs.length * validationSplit)
+					: inputs.length;
+		}
+
+		/**
+		 * Train the network until the received count of epochs, setting the
+		 * outcome if the training stopped
+		 *
+		 * @param targetEpochs
+		 *            count of epochs reached by the training
+		 * @throws NeuralNetworkException
+		 *             Thrown if the samples do not fit the network
+		 */
+		void train(final int targetEpochs) throws NeuralNetworkException {
+			trainer.setMaxEpochs(targetEpochs - epochsCount);
+			TrainingReport report = trainer.train(inputs, expectedResults);
+			if (report.getBestLoss() < bestLoss - minImprovement) {
+				bestLoss = report.getBestLoss();
+				bestEpoch = epochsCount + report.getBestEpoch();
+			}
+			epochsCount += report.getEpochsCount();
+			cyclesCount += report.getCyclesCount();
+
+			if (report.getStopReason() == StopReason.CONVERGED) {
+				bestLoss = Math.min(bestLoss, report.getLastLoss());
+				outcome = Outcome.CONVERGED;
+			} else if (epochsCount - bestEpoch >= patience) {
+				outcome = Outcome.PATIENCE;
+			} else if (epochsCount >= maxEpochs) {
+				outcome = Outcome.MAX_EPOCHS;
+			}
+		}
+
+	}
+
+	/**
+	 * Median stopping rule shared by the candidates of a search
+	 */
+	private static class MedianRule {
+
+		/**
+		 * Best loss of each candidate at the end of each round, NaN if the round
+		 * was not reached
+		 */
+		private final double[][] losses;
+
+		/**
+		 * Constructor that build the rule
+		 *
+		 * @param candidatesCount
+		 *            count of the candidates
+		 * @param roundsCount
+		 *            max count of rounds
+		 */
+		MedianRule(final int candidatesCount, final int roundsCount) {
+			this.losses = new double[roundsCount][candidatesCount];
+			for (double[] roundLosses : losses) {
+				Arrays.fill(roundLosses, Double.NaN);
+			}
+		}
+
+		/**
+		 * Record the best loss of a candidate at the end of a round and compare
+		 * it with the median of the ones of the other candidates
+		 *
+		 * @param candidateIndex
+		 *            index of the candidate
+		 * @param round
+		 *            index of the round
+		 * @param loss
+		 *            best loss of the candidate
+		 * @return true if the loss is worse than the median, false otherwise or if
+		 *         too few candidates reached the round
+		 */
+		synchronized boolean isWorse(final int candidateIndex, final int round, final double loss) {
+			double[] roundLosses = losses[round];
+			roundLosses[candidateIndex] = loss;
+
+			double[] others = new double[roundLosses.length];
+			int othersCount = 0;
+			for (int index = 0; index < roundLosses.length; index++) {
+				if (index != candidateIndex && !Double.isNaN(roundLosses[index])) {
+					others[othersCount++] = roundLosses[index];
+				}
+			}
+			if (othersCount < MIN_MEDIAN_CANDIDATES) {
+				return false;
+			}
+			Arrays.sort(others, 0, othersCount);
+			double median = othersCount % 2 == 1 ? others[othersCount / 2]
+					: (others[othersCount / 2 - 1] + others[othersCount / 2]) / 2;
+			return loss > median;
+		}
+
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.rebe.neuralNetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.rebe.neuralNetwork.exceptions.IllegalTrainerArgumentException;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+
+/**
+ * Configuration of a candidate network of a {@link HyperParameterSearch}: its
+ * momentum, its learning rate and the neurons count of each of its hidden
+ * layers, whose length is the count of hidden layers. The lists of candidates
+ * are built with {@link #grid(double[], double[], int[][])} or
+ * {@link #random(int, double, double, double, double, int[][], long)}
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class HyperParameters {
+
+	/**
+	 * Value of the momentum
+	 */
+	private final double momentum;
+
+	/**
+	 * Value of the learning rate
+	 */
+	private final double learningRate;
+
+	/**
+	 * Neurons count of each hidden layer
+	 */
+	private final int[] hiddenLayersNeuronsCount;
+
+	/**
+	 * Constructor that build a configuration
+	 *
+	 * @param momentum
+	 *            value of the momentum, in [0, 1[
+	 * @param learningRate
+	 *            value of the learning rate, in ]0, 1]
+	 * @param hiddenLayersNeuronsCount
+	 *            neurons count of each hidden layer
+	 */
+	public HyperParameters(final double momentum, final double learningRate, final int[] hiddenLayersNeuronsCount) {
+		this.momentum = momentum;
+		this.learningRate = learningRate;
+		this.hiddenLayersNeuronsCount = hiddenLayersNeuronsCount.clone();
+	}
+
+	/**
+	 * Build every combination of the received values, the momentums varying
+	 * slowest and the hidden layers fastest
+	 *
+	 * @param momentums
+	 *            values of the momentum
+	 * @param learningRates
+	 *            values of the learning rate
+	 * @param hiddenLayers
+	 *            neurons counts of the hidden layers, one array per architecture
+	 * @return the candidates
+	 */
+	public static List<HyperParameters> grid(final double[] momentums, final double[] learningRates,
+			final int[][] hiddenLayers) {
+		List<HyperParameters> candidates = new ArrayList<>(
+				momentums.length * learningRates.length * hiddenLayers.length);
+		for (double momentum : momentums) {
+			for (double learningRate : learningRates) {
+				for (int[] hiddenLayersNeuronsCount : hiddenLayers) {
+					candidates.add(new HyperParameters(momentum, learningRate, hiddenLayersNeuronsCount));
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Build random configurations. The momentum is drawn uniformly, the
+	 * learning rate log-uniformly, since its effect depends on its order of
+	 * magnitude, and the architecture among the received ones
+	 *
+	 * @param count
+	 *            count of the candidates
+	 * @param minMomentum
+	 *            lowest momentum, included
+	 * @param maxMomentum
+	 *            highest momentum, excluded
+	 * @param minLearningRate
+	 *            lowest learning rate, included
+	 * @param maxLearningRate
+	 *            highest learning rate, included
+	 * @param hiddenLayers
+	 *            neurons counts of the hidden layers, one array per architecture
+	 * @param seed
+	 *            seed of the draws, so that a search can be repeated
+	 * @return the candidates
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if the count is lower than 1, a range is empty, the
+	 *             ranges are not within the ones of {@link NeuralNetwork} or there
+	 *             are no architectures
+	 */
+	public static List<HyperParameters> random(final int count, final double minMomentum, final double maxMomentum,
+			final double minLearningRate, final double maxLearningRate, final int[][] hiddenLayers, final long seed)
+			throws IllegalTrainerArgumentException {
+		if (count < 1 || hiddenLayers.length == 0) {
+			throw new IllegalTrainerArgumentException("count and architectures must be greater than 0");
+		}
+		if (!(minMomentum >= 0 && minMomentum <= maxMomentum && maxMomentum <= 1 && minMomentum < 1)) {
+			throw new IllegalTrainerArgumentException("momentum range must be within [0, 1[");
+		}
+		if (!(minLearningRate > 0 && minLearningRate <= maxLearningRate && maxLearningRate <= 1)) {
+			throw new IllegalTrainerArgumentException("learning rate range must be within ]0, 1]");
+		}
+
+		Random random = new Random(seed);
+		double logMin = Math.log(minLearningRate);
+		double logMax = Math.log(maxLearningRate);
+		List<HyperParameters> candidates = new ArrayList<>(count);
+		for (int index = 0; index < count; index++) {
+			double momentum = minMomentum + random.nextDouble() * (maxMomentum - minMomentum);
+			double learningRate = Math.min(maxLearningRate, Math.exp(logMin + random.nextDouble() * (logMax - logMin)));
+			candidates.add(new HyperParameters(momentum, learningRate,
+					hiddenLayers[random.nextInt(hiddenLayers.length)]));
+		}
+		return candidates;
+	}
+
+	/**
+	 * Build a network with this configuration
+	 *
+	 * @param inputNeuronsCount
+	 *            count of the neurons of the input layer
+	 * @param outputNeuronsCount
+	 *            count of the neurons of the output layer
+	 * @return the new network
+	 * @throws NeuralNetworkException
+	 *             Thrown if the configuration is not valid
+	 */
+	NeuralNetwork build(final int inputNeuronsCount, final int outputNeuronsCount) throws NeuralNetworkException {
+		return new NeuralNetwork(inputNeuronsCount, hiddenLayersNeuronsCount.length, hiddenLayersNeuronsCount,
+				outputNeuronsCount, momentum, learningRate);
+	}
+
+	/**
+	 * Return the value of the momentum
+	 *
+	 * @return the momentum
+	 */
+	public double getMomentum() {
+		return momentum;
+	}
+
+	/**
+	 * Return the value of the learning rate
+	 *
+	 * @return the learning rate
+	 */
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	/**
+	 * Return the count of the hidden layers
+	 *
+	 * @return the hidden layers count
+	 */
+	public int getHiddenLayerLayersCount() {
+		return hiddenLayersNeuronsCount.length;
+	}
+
+	/**
+	 * Return the neurons count of each hidden layer
+	 *
+	 * @return a copy of the neurons counts
+	 */
+	public int[] getHiddenLayersNeuronsCount() {
+		return hiddenLayersNeuronsCount.clone();
+	}
+
+	@Override
+	public String toString() {
+		return "Momentum: " + momentum + " Learning rate: " + learningRate + " Hidden layers: "
+				+ Arrays.toString(hiddenLayersNeuronsCount);
+	}
+
+}
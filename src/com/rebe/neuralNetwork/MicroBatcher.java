@@ -0,0 +1,306 @@
+package com.rebe.neuralNetwork;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.rebe.neuralNetwork.components.Workspace;
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
+import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+
+/**
+ * Inference front-end of a {@link NeuralNetwork} that coalesces concurrent
+ * single sample requests. A dispatcher thread collects the submitted samples
+ * until a batch is full or the oldest sample waited the max delay, then runs a
+ * single matrix-matrix forward pass over the batch and completes the future of
+ * each request, trading a bounded latency for more throughput per core.
+ * <p>
+ * Callers never hold a monitor: the requests go through a blocking queue
+ * built on {@link java.util.concurrent.locks.ReentrantLock}, so the batcher
+ * can be used from any count of threads, including virtual ones. The futures
+ * are completed by the dispatcher thread, so the dependent actions that must
+ * not slow down the next batches should use the async methods of
+ * {@link CompletableFuture}. Like {@link NeuralNetwork#predict(double[])}, the
+ * batcher must not run while the network is trained
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class MicroBatcher implements AutoCloseable {
+
+	/**
+	 * Count of the requests that can wait in the queue for each batch slot
+	 */
+	private static final int QUEUED_BATCHES = 16;
+
+	/**
+	 * Request marking the closing of the batcher
+	 */
+	private static final Request CLOSE = new Request(null);
+
+	/**
+	 * The network computing the batches
+	 */
+	private final NeuralNetwork network;
+
+	/**
+	 * Max count of samples of a batch
+	 */
+	private final int maxBatchSize;
+
+	/**
+	 * Max time that the oldest request of a batch waits for other requests
+	 */
+	private final long maxDelayNanos;
+
+	/**
+	 * Requests waiting for a batch
+	 */
+	private final BlockingQueue<Request> requests;
+
+	/**
+	 * Buffers of the forward pass, used by the dispatcher only
+	 */
+	private final Workspace workspace;
+
+	/**
+	 * Thread collecting the requests and computing the batches
+	 */
+	private final Thread dispatcher;
+
+	/**
+	 * Indicates if the batcher was closed
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Indicates if the dispatcher stopped taking requests
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * Count of the computed samples
+	 */
+	private volatile long samplesCount;
+
+	/**
+	 * Count of the computed batches
+	 */
+	private volatile long batchesCount;
+
+	/**
+	 * Constructor that start the dispatcher thread
+	 *
+	 * @param network
+	 *            the network computing the batches
+	 * @param maxBatchSize
+	 *            max count of samples of a batch
+	 * @param maxDelayMicros
+	 *            max microseconds that the oldest request of a batch waits for
+	 *            other requests
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the max batch size is lower than 1
+	 */
+	public MicroBatcher(final NeuralNetwork network, final int maxBatchSize, final long maxDelayMicros)
+			throws IllegalBatchSizeException {
+		if (maxBatchSize < 1) {
+			throw new IllegalBatchSizeException();
+		}
+		this.network = network;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxDelayMicros));
+		this.requests = new ArrayBlockingQueue<>(QUEUED_BATCHES * maxBatchSize);
+		this.workspace = new Workspace(network.layersSizes(), maxBatchSize, false);
+
+		this.dispatcher = new Thread(this::dispatch, "micro-batcher");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+
+	/**
+	 * Submit a sample, waiting if the queue is full. The inputs array must not
+	 * be changed until the future is completed
+	 *
+	 * @param inputs
+	 *            an array of values
+	 * @return the future of the array of computed values, completed
+	 *         exceptionally if the batcher is closed before computing it
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to the network input neurons
+	 *             count
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting for
+	 *             the queue
+	 */
+	public CompletableFuture<double[]> submit(final double[] inputs)
+			throws IllegalNeuronsCountException, InterruptedException {
+		if (inputs.length != network.layersSizes()[0]) {
+			throw new IllegalNeuronsCountException();
+		}
+
+		Request request = new Request(inputs);
+		if (closed) {
+			request.future.completeExceptionally(new IllegalStateException("Batcher closed"));
+			return request.future;
+		}
+		requests.put(request);
+		if (stopped) {
+			// the dispatcher stopped before the request was queued
+			failQueued();
+		}
+		return request.future;
+	}
+
+	/**
+	 * Return the mean count of samples of the computed batches
+	 *
+	 * @return the mean batch size, 0 if no batch was computed
+	 */
+	public double getMeanBatchSize() {
+		long batches = batchesCount;
+		return batches == 0 ? 0 : (double) samplesCount / batches;
+	}
+
+	/**
+	 * Stop accepting requests. The requests already queued are computed before
+	 * the dispatcher thread stops
+	 */
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			try {
+				requests.put(CLOSE);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Collect the requests in batches and compute them until the batcher is
+	 * closed. An exception fails only its batch, while an error, like an
+	 * {@link OutOfMemoryError}, stops the thread. Whatever stops it, the
+	 * requests not computed are completed exceptionally
+	 */
+	private void dispatch() {
+		Request[] batch = new Request[maxBatchSize];
+		Throwable failure = null;
+		try {
+			boolean closing = false;
+			while (!closing) {
+				Request request = requests.take();
+				if (request == CLOSE) {
+					break;
+				}
+				batch[0] = request;
+				int count = 1;
+
+				long deadline = System.nanoTime() + maxDelayNanos;
+				while (count < maxBatchSize) {
+					long remaining = deadline - System.nanoTime();
+					request = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : requests.poll();
+					if (request == null) {
+						break;
+					}
+					if (request == CLOSE) {
+						closing = true;
+						break;
+					}
+					batch[count++] = request;
+				}
+
+				compute(batch, count);
+			}
+		} catch (InterruptedException e) {
+			// the batcher stops as if it was closed
+		} catch (Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			closed = true;
+			stopped = true;
+			for (int requestIndex = 0; requestIndex < batch.length && batch[requestIndex] != null; requestIndex++) {
+				batch[requestIndex].future.completeExceptionally(
+						failure != null ? failure : new IllegalStateException("Batcher closed"));
+			}
+			failQueued();
+		}
+	}
+
+	/**
+	 * Compute a batch with a single forward pass and complete its futures
+	 *
+	 * @param batch
+	 *            the requests of the batch
+	 * @param count
+	 *            count of the requests of the batch
+	 */
+	private void compute(final Request[] batch, final int count) {
+		int inputsCount = network.layersSizes()[0];
+		int outputsCount = network.layersSizes()[network.layersSizes().length - 1];
+		try {
+			double[] inputValues = workspace.values(0);
+			for (int sampleIndex = 0; sampleIndex < count; sampleIndex++) {
+				System.arraycopy(batch[sampleIndex].inputs, 0, inputValues, sampleIndex * inputsCount, inputsCount);
+			}
+
+			network.forwardBatch(workspace, count);
+
+			double[] outputValues = workspace.values(network.layersSizes().length - 1);
+			for (int sampleIndex = 0; sampleIndex < count; sampleIndex++) {
+				batch[sampleIndex].future.complete(Arrays.copyOfRange(outputValues, sampleIndex * outputsCount,
+						(sampleIndex + 1) * outputsCount));
+			}
+		} catch (RuntimeException e) {
+			// an exception fails only this batch, the dispatcher goes on
+			for (int sampleIndex = 0; sampleIndex < count; sampleIndex++) {
+				batch[sampleIndex].future.completeExceptionally(e);
+			}
+		}
+		Arrays.fill(batch, 0, count, null);
+		samplesCount += count;
+		batchesCount++;
+	}
+
+	/**
+	 * Complete exceptionally every request left in the queue
+	 */
+	private void failQueued() {
+		for (Request request = requests.poll(); request != null; request = requests.poll()) {
+			if (request != CLOSE) {
+				request.future.completeExceptionally(new IllegalStateException("Batcher closed"));
+			}
+		}
+	}
+
+	/**
+	 * Sample waiting to be computed
+	 */
+	private static class Request {
+
+		/**
+		 * Inputs of the sample
+		 */
+		private final double[] inputs;
+
+		/**
+		 * Future of the computed values
+		 */
+		private final CompletableFuture<double[]> future = new CompletableFuture<>();
+
+		/**
+		 * Constructor that build a request
+		 *
+		 * @param inputs
+		 *            inputs of the sample
+		 */
+		private Request(final double[] inputs) {
+			this.inputs = inputs;
+		}
+
+	}
+
+}
@@ -0,0 +1,469 @@
+package com.rebe.neuralNetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.rebe.neuralNetwork.activations.Activation;
+import com.rebe.neuralNetwork.activations.LeakyReLU;
+import com.rebe.neuralNetwork.activations.ReLU;
+import com.rebe.neuralNetwork.activations.Sigmoid;
+import com.rebe.neuralNetwork.activations.Tanh;
+import com.rebe.neuralNetwork.components.ConnectionLayers;
+import com.rebe.neuralNetwork.components.Layer;
+import com.rebe.neuralNetwork.exceptions.IllegalModelFormatException;
+import com.rebe.neuralNetwork.exceptions.IllegalPrecisionException;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+import com.rebe.neuralNetwork.exceptions.UnsupportedActivationException;
+import com.rebe.neuralNetwork.math.Precision;
+import com.rebe.neuralNetwork.math.Storage;
+
+/**
+ * Binary model file of a {@link NeuralNetwork}. All the values are little
+ * endian and the file is laid out as follow:
+ * <ul>
+ * <li>int magic number and int format version</li>
+ * <li>int layers count L, then L ints with the neurons count of each layer,
+ * from the input to the output layer</li>
+ * <li>L - 1 ints with the activation function identifier of each layer but the
+ * input one, padded with zeros to a multiple of 8 bytes</li>
+ * <li>L - 1 doubles with the activation function parameter of each layer but
+ * the input one (the slope of the leaky ReLU, 0 otherwise)</li>
+ * <li>double momentum, double learning rate, double trainer threshold</li>
+ * <li>for each connection layer, its weights matrix in the layout of
+ * {@link ConnectionLayers#getWeights()} followed by its biases</li>
+ * </ul>
+ * Every double is aligned to 8 bytes, so the weights sections can be mapped
+ * and read with bulk copies
+ *
+ * @author Mattia Rebesan
+ *
+ */
+class ModelFile {
+
+	/**
+	 * Magic number at the beginning of every model file, "RNNM"
+	 */
+	private static final int MAGIC = 0x524E4E4D;
+
+	/**
+	 * Version of the format written by this class
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Identifiers of the supported activation functions
+	 */
+	private static final int SIGMOID = 0;
+	private static final int TANH = 1;
+	private static final int RELU = 2;
+	private static final int LEAKY_RELU = 3;
+
+	/**
+	 * Max count of bytes mapped at once, a single mapping can not exceed 2 GB
+	 */
+	private static final long MAX_MAPPED_BYTES = 1L << 30;
+
+	/**
+	 * Max length of an array, a few values lower than the max int since the
+	 * virtual machine keeps some header words in the array
+	 */
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Write the network in the model file
+	 *
+	 * @param network
+	 *            the network to save
+	 * @param path
+	 *            path of the model file, replaced if it exists
+	 * @throws IOException
+	 *             Thrown if the file can not be written
+	 * @throws UnsupportedActivationException
+	 *             Thrown if a layer uses a custom activation function
+	 */
+	static void write(final NeuralNetwork network, final Path path)
+			throws IOException, UnsupportedActivationException {
+		int[] layersSizes = network.layersSizes();
+		Activation[] activations = network.activations();
+
+		ByteBuffer header = ByteBuffer.allocate((int) headerSize(layersSizes.length)).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(layersSizes.length);
+		for (int layerSize : layersSizes) {
+			header.putInt(layerSize);
+		}
+		for (Activation activation : activations) {
+			header.putInt(activationId(activation));
+		}
+		header.position((int) align(header.position()));
+		for (Activation activation : activations) {
+			header.putDouble(activation instanceof LeakyReLU ? ((LeakyReLU) activation).getSlope() : 0);
+		}
+		header.putDouble(network.getMomentum());
+		header.putDouble(network.getLearningRate());
+		header.putDouble(network.getTrainerThreshold());
+		header.flip();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+
+			long position = headerSize(layersSizes.length);
+			for (ConnectionLayers connectionLayer : network.connections()) {
+				position = writeDoubles(channel, position, connectionLayer.getWeights());
+				position = writeDoubles(channel, position, connectionLayer.getBiases());
+			}
+		}
+	}
+
+	/**
+	 * Read a network from the model file
+	 *
+	 * @param path
+	 *            path of the model file
+	 * @param precision
+	 *            storage precision of the weights matrices of the loaded network
+	 * @param storage
+	 *            storage of the weights matrices of the loaded network
+	 * @return the loaded network
+	 * @throws IOException
+	 *             Thrown if the file can not be read
+	 * @throws NeuralNetworkException
+	 *             Thrown if the file is not a valid model file
+	 * @throws IllegalPrecisionException
+	 *             Thrown if the off heap storage is requested in single
+	 *             precision
+	 */
+	static NeuralNetwork read(final Path path, final Precision precision, final Storage storage)
+			throws IOException, NeuralNetworkException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			Header header = readHeader(channel);
+			int[] layersSizes = header.layersSizes;
+			int layersCount = layersSizes.length;
+
+			double[][] weights = new double[layersCount - 1][];
+			double[][] biases = new double[layersCount - 1][];
+			long position = headerSize(layersCount);
+			for (int connectionIndex = 0; connectionIndex < layersCount - 1; connectionIndex++) {
+				long weightsCount = (long) layersSizes[connectionIndex] * layersSizes[connectionIndex + 1];
+				if (weightsCount > MAX_ARRAY_LENGTH) {
+					throw new IllegalModelFormatException(
+							"weights matrix of " + weightsCount + " values too large for an array");
+				}
+				weights[connectionIndex] = new double[(int) weightsCount];
+				position = readDoubles(channel, position, weights[connectionIndex]);
+				biases[connectionIndex] = new double[layersSizes[connectionIndex + 1]];
+				position = readDoubles(channel, position, biases[connectionIndex]);
+			}
+
+			int[] hiddenLayersNeuronsCount = new int[layersCount - 2];
+			System.arraycopy(layersSizes, 1, hiddenLayersNeuronsCount, 0, layersCount - 2);
+			NeuralNetwork network = new NeuralNetwork(layersSizes[0], layersCount - 2, hiddenLayersNeuronsCount,
+					layersSizes[layersCount - 1], header.momentum, header.learningRate, header.activations,
+					precision, storage, weights, biases);
+			network.setTrainerThreshold(header.trainerThreshold);
+			return network;
+		}
+	}
+
+	/**
+	 * Map the weights of the model file in an off-heap network, without
+	 * copying them. Every weights matrix is mapped in chunks of whole rows, so
+	 * the operating system pages the weights in when they are first read and
+	 * the heap holds only the mappings and the biases
+	 *
+	 * @param path
+	 *            path of the model file
+	 * @return the mapped network
+	 * @throws IOException
+	 *             Thrown if the file can not be read or mapped
+	 * @throws NeuralNetworkException
+	 *             Thrown if the file is not a valid model file
+	 */
+	static OffHeapNeuralNetwork map(final Path path) throws IOException, NeuralNetworkException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			Header header = readHeader(channel);
+			int[] layersSizes = header.layersSizes;
+			int layersCount = layersSizes.length;
+
+			ConnectionLayers[] network = new ConnectionLayers[layersCount - 1];
+			Layer leftLayer = new Layer(layersSizes[0]);
+			long position = headerSize(layersCount);
+			for (int connectionIndex = 0; connectionIndex < layersCount - 1; connectionIndex++) {
+				int leftSize = layersSizes[connectionIndex];
+				int rightSize = layersSizes[connectionIndex + 1];
+				int chunkRows = ConnectionLayers.chunkRows(rightSize);
+				ByteBuffer[] weightsChunks = new ByteBuffer[ConnectionLayers.chunksCount(leftSize, rightSize)];
+				for (int chunkIndex = 0; chunkIndex < weightsChunks.length; chunkIndex++) {
+					long bytes = 8L * Math.min(chunkRows, leftSize - chunkIndex * chunkRows) * rightSize;
+					weightsChunks[chunkIndex] = channel.map(MapMode.READ_ONLY, position, bytes)
+							.order(ByteOrder.LITTLE_ENDIAN);
+					position += bytes;
+				}
+				double[] biases = new double[rightSize];
+				position = readDoubles(channel, position, biases);
+				Layer rightLayer = new Layer(rightSize, header.activations[connectionIndex]);
+				network[connectionIndex] = new ConnectionLayers(leftLayer, rightLayer, header.momentum,
+						header.learningRate, weightsChunks, biases);
+				leftLayer = rightLayer;
+			}
+			return new OffHeapNeuralNetwork(layersSizes, network);
+		}
+	}
+
+	/**
+	 * Read and check the header of the model file
+	 *
+	 * @param channel
+	 *            channel of the file
+	 * @return the header
+	 * @throws IOException
+	 *             Thrown if the file can not be read
+	 * @throws NeuralNetworkException
+	 *             Thrown if the file is not a valid model file
+	 */
+	private static Header readHeader(final FileChannel channel) throws IOException, NeuralNetworkException {
+		long fileSize = channel.size();
+		if (fileSize < 12) {
+			throw new IllegalModelFormatException("file too short");
+		}
+
+		ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, 12).order(ByteOrder.LITTLE_ENDIAN);
+		if (header.getInt() != MAGIC) {
+			throw new IllegalModelFormatException("wrong magic number");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IllegalModelFormatException("unsupported version " + version);
+		}
+		int layersCount = header.getInt();
+		// every layer takes at least 16 bytes of header, a larger count is corrupt
+		if (layersCount < 2 || layersCount > (fileSize - 12) / 16 || headerSize(layersCount) > fileSize) {
+			throw new IllegalModelFormatException("wrong layers count " + layersCount);
+		}
+
+		header = channel.map(MapMode.READ_ONLY, 0, headerSize(layersCount)).order(ByteOrder.LITTLE_ENDIAN);
+		header.position(12);
+		int[] layersSizes = new int[layersCount];
+		long expectedSize = headerSize(layersCount);
+		for (int layerIndex = 0; layerIndex < layersCount; layerIndex++) {
+			layersSizes[layerIndex] = header.getInt();
+			if (layersSizes[layerIndex] < 1) {
+				throw new IllegalModelFormatException("wrong layer size " + layersSizes[layerIndex]);
+			}
+			if (layerIndex > 0) {
+				expectedSize += 8L * ((long) layersSizes[layerIndex - 1] * layersSizes[layerIndex]
+						+ layersSizes[layerIndex]);
+			}
+		}
+		if (expectedSize != fileSize) {
+			throw new IllegalModelFormatException("wrong file size " + fileSize + ", expected " + expectedSize);
+		}
+
+		int[] activationIds = new int[layersCount - 1];
+		for (int layerIndex = 0; layerIndex < layersCount - 1; layerIndex++) {
+			activationIds[layerIndex] = header.getInt();
+		}
+		header.position((int) align(header.position()));
+		Activation[] activations = new Activation[layersCount - 1];
+		for (int layerIndex = 0; layerIndex < layersCount - 1; layerIndex++) {
+			activations[layerIndex] = activation(activationIds[layerIndex], header.getDouble());
+		}
+		double momentum = header.getDouble();
+		double learningRate = header.getDouble();
+		double trainerThreshold = header.getDouble();
+		return new Header(layersSizes, activations, momentum, learningRate, trainerThreshold);
+	}
+
+	/**
+	 * Compute the size of the header of a model file
+	 *
+	 * @param layersCount
+	 *            count of the layers of the network
+	 * @return the header size in bytes
+	 */
+	private static long headerSize(final int layersCount) {
+		return align(12 + 4L * layersCount + 4L * (layersCount - 1)) + 8L * (layersCount - 1) + 24;
+	}
+
+	/**
+	 * Round a position up to the next multiple of 8
+	 *
+	 * @param position
+	 *            the position to align
+	 * @return the aligned position
+	 */
+	private static long align(final long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Write an array of doubles at a position of the file, mapping it in chunks
+	 *
+	 * @param channel
+	 *            channel of the file
+	 * @param position
+	 *            position of the first double
+	 * @param values
+	 *            the values to write
+	 * @return the position after the last double
+	 * @throws IOException
+	 *             Thrown if the file can not be mapped
+	 */
+	private static long writeDoubles(final FileChannel channel, final long position, final double[] values)
+			throws IOException {
+		int written = 0;
+		long chunkPosition = position;
+		while (written < values.length) {
+			int count = (int) Math.min(values.length - written, MAX_MAPPED_BYTES / 8);
+			channel.map(MapMode.READ_WRITE, chunkPosition, 8L * count).order(ByteOrder.LITTLE_ENDIAN)
+					.asDoubleBuffer().put(values, written, count);
+			written += count;
+			chunkPosition += 8L * count;
+		}
+		return chunkPosition;
+	}
+
+	/**
+	 * Read an array of doubles from a position of the file, mapping it in chunks
+	 * and copying each chunk in bulk
+	 *
+	 * @param channel
+	 *            channel of the file
+	 * @param position
+	 *            position of the first double
+	 * @param values
+	 *            array filled with the read values
+	 * @return the position after the last double
+	 * @throws IOException
+	 *             Thrown if the file can not be mapped
+	 */
+	private static long readDoubles(final FileChannel channel, final long position, final double[] values)
+			throws IOException {
+		int read = 0;
+		long chunkPosition = position;
+		while (read < values.length) {
+			int count = (int) Math.min(values.length - read, MAX_MAPPED_BYTES / 8);
+			channel.map(MapMode.READ_ONLY, chunkPosition, 8L * count).order(ByteOrder.LITTLE_ENDIAN)
+					.asDoubleBuffer().get(values, read, count);
+			read += count;
+			chunkPosition += 8L * count;
+		}
+		return chunkPosition;
+	}
+
+	/**
+	 * Return the identifier of an activation function
+	 *
+	 * @param activation
+	 *            the activation function
+	 * @return the identifier
+	 * @throws UnsupportedActivationException
+	 *             Thrown if the activation function is a custom one
+	 */
+	private static int activationId(final Activation activation) throws UnsupportedActivationException {
+		if (activation.getClass() == Sigmoid.class) {
+			return SIGMOID;
+		}
+		if (activation.getClass() == Tanh.class) {
+			return TANH;
+		}
+		if (activation.getClass() == ReLU.class) {
+			return RELU;
+		}
+		if (activation.getClass() == LeakyReLU.class) {
+			return LEAKY_RELU;
+		}
+		throw new UnsupportedActivationException(activation.getClass());
+	}
+
+	/**
+	 * Build the activation function matching an identifier
+	 *
+	 * @param id
+	 *            the identifier
+	 * @param parameter
+	 *            the parameter of the function
+	 * @return the activation function
+	 * @throws IllegalModelFormatException
+	 *             Thrown if the identifier is unknown
+	 */
+	private static Activation activation(final int id, final double parameter) throws IllegalModelFormatException {
+		switch (id) {
+		case SIGMOID:
+			return new Sigmoid();
+		case TANH:
+			return new Tanh();
+		case RELU:
+			return new ReLU();
+		case LEAKY_RELU:
+			return new LeakyReLU(parameter);
+		default:
+			throw new IllegalModelFormatException("unknown activation " + id);
+		}
+	}
+
+	/**
+	 * Values read from the header of a model file
+	 */
+	private static class Header {
+
+		/**
+		 * Neurons count of each layer, from the input to the output layer
+		 */
+		private final int[] layersSizes;
+
+		/**
+		 * Activation function of each layer but the input one
+		 */
+		private final Activation[] activations;
+
+		/**
+		 * Momentum of the network
+		 */
+		private final double momentum;
+
+		/**
+		 * Learning rate of the network
+		 */
+		private final double learningRate;
+
+		/**
+		 * Error coefficient under which the network is trained
+		 */
+		private final double trainerThreshold;
+
+		/**
+		 * Constructor that hold the values of a header
+		 *
+		 * @param layersSizes
+		 *            neurons count of each layer
+		 * @param activations
+		 *            activation function of each layer but the input one
+		 * @param momentum
+		 *            momentum of the network
+		 * @param learningRate
+		 *            learning rate of the network
+		 * @param trainerThreshold
+		 *            error coefficient under which the network is trained
+		 */
+		Header(final int[] layersSizes, final Activation[] activations, final double momentum,
+				final double learningRate, final double trainerThreshold) {
+			this.layersSizes = layersSizes;
+			this.activations = activations;
+			this.momentum = momentum;
+			this.learningRate = learningRate;
+			this.trainerThreshold = trainerThreshold;
+		}
+
+	}
+
+}
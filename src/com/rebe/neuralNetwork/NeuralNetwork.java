@@ -1,15 +1,33 @@
 package com.rebe.neuralNetwork;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
+import com.rebe.neuralNetwork.activations.Activation;
+import com.rebe.neuralNetwork.activations.Sigmoid;
 import com.rebe.neuralNetwork.components.ConnectionLayers;
 import com.rebe.neuralNetwork.components.Layer;
+import com.rebe.neuralNetwork.components.Workspace;
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
 import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+import com.rebe.neuralNetwork.exceptions.IllegalPrecisionException;
+import com.rebe.neuralNetwork.exceptions.IllegalPruningArgumentException;
 import com.rebe.neuralNetwork.exceptions.LearningRateOutOfRangeException;
 import com.rebe.neuralNetwork.exceptions.MomentumOutOfRangeException;
 import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+import com.rebe.neuralNetwork.exceptions.NotEnoughActivationsException;
 import com.rebe.neuralNetwork.exceptions.NotEnoughLayersException;
+import com.rebe.neuralNetwork.exceptions.UnsupportedActivationException;
+import com.rebe.neuralNetwork.math.Precision;
+import com.rebe.neuralNetwork.math.Storage;
+import com.rebe.neuralNetwork.metrics.TrainingMetrics;
+import com.rebe.neuralNetwork.optimizers.Optimizer;
+import com.rebe.neuralNetwork.optimizers.Sgd;
+import com.rebe.neuralNetwork.utils.StripedPool;
 import com.rebe.neuralNetwork.utils.Utils;
 
 /**
@@ -45,6 +63,83 @@ public class NeuralNetwork {
 	 */
 	private TreeSet<ConnectionLayers> network;
 
+	/**
+	 * The connection layers of the network in order, iterated by the single
+	 * sample methods without allocating iterators
+	 */
+	private ConnectionLayers[] connectionLayers;
+
+	/**
+	 * Buffer of the output layer errors of a single sample
+	 */
+	private double[] outputErrors;
+
+	/**
+	 * Indexes of the non-zero inputs of the last sparse sample, reallocated only
+	 * when a sample with more non-zero inputs is received
+	 */
+	private int[] sparseIndices = new int[0];
+
+	/**
+	 * Non-zero inputs of the last sparse sample
+	 */
+	private double[] sparseValues = new double[0];
+
+	/**
+	 * Count of the non-zero inputs of the last sparse sample
+	 */
+	private int sparseCount;
+
+	/**
+	 * Indicates if the last computed sample had sparse inputs, so that only
+	 * their weights rows are read and learned
+	 */
+	private boolean sparseInputs;
+
+	/**
+	 * Checkpointer taking the snapshots of the training state, or null
+	 */
+	private Checkpointer checkpointer;
+
+	/**
+	 * Neurons count of each layer, from the input to the output layer
+	 */
+	private int[] layersSizes;
+
+	/**
+	 * Activation function of each layer but the input one, from the first hidden
+	 * layer to the output layer
+	 */
+	private Activation[] activations;
+
+	/**
+	 * Storage precision of the weights matrices of the network
+	 */
+	private final Precision precision;
+
+	/**
+	 * Storage of the weights matrices of the network and of their optimizer
+	 * state
+	 */
+	private final Storage storage;
+
+	/**
+	 * Training metrics of the network, disabled by default
+	 */
+	private TrainingMetrics metrics;
+
+	/**
+	 * Buffers used by the batch training, reallocated only when a bigger batch
+	 * is received
+	 */
+	private Workspace batchWorkspace;
+
+	/**
+	 * Inference only buffers of the threads calling {@link #predict(double[])}
+	 */
+	private final StripedPool<Workspace> inferenceWorkspaces = new StripedPool<>(
+			() -> new Workspace(layersSizes, 1, false));
+
 	/**
 	 * List of the network error coefficients, used to compute the current network
 	 * error coefficient
@@ -63,6 +158,12 @@ public class NeuralNetwork {
 	 */
 	private double networkErrorCoefficient;
 
+	/**
+	 * Error coefficient of the last trained sample or batch alone, without the
+	 * history
+	 */
+	private double lastErrorCoefficient;
+
 	/**
 	 * Value used to avoid to be stuck in local minimal, higher value means higher
 	 * variation. Common to all network connection layer
@@ -120,6 +221,176 @@ public class NeuralNetwork {
 			final int[] hiddenLayersNeuronsCount, final int outputNeuronsCount, final double momentum,
 			final double learningRate) throws IllegalNeuronsCountException, NotEnoughLayersException,
 			MomentumOutOfRangeException, LearningRateOutOfRangeException, NeuralNetworkException {
+		this(inputNeuronsCount, hiddenLayerLayersCount, hiddenLayersNeuronsCount, outputNeuronsCount, momentum,
+				learningRate, sigmoids(hiddenLayerLayersCount + 1));
+	}
+
+	/**
+	 * Constructor that build the neural network like
+	 * {@link #NeuralNetwork(int, int, int[], int, double, double)}, choosing the
+	 * activation function of each layer. The first hiddenLayerLayersCount
+	 * activations are used by the hidden layers, retrieved by position, and the
+	 * following one by the output layer. Extra activations are ignored
+	 * 
+	 * @param inputNeuronsCount
+	 *            count of the neurons of the input layer
+	 * @param hiddenLayerLayersCount
+	 *            count of the layers that compose the hidden layer
+	 * @param hiddenLayersNeuronsCount
+	 *            array representing the neurons count for each layer of the hidden
+	 *            layer
+	 * @param outputNeuronsCount
+	 *            count of the neurons of the input layer
+	 * @param momentum
+	 *            value of the momentum, to avoid to be stuck in local minimal,
+	 *            higher value means higher variation, selected between [0, 1[
+	 * @param learningRate
+	 *            value used to control the network learning speed, lower values
+	 *            mean lower speed learning, selected between ]0, 1]
+	 * @param activations
+	 *            activation functions of the hidden layers followed by the one of
+	 *            the output layer
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputNeuronsCount or outputNeuronsCount are less than 1
+	 * @throws NotEnoughLayersException
+	 *             Throw if the hiddenLayersNeuronsCount length is less than the
+	 *             hiddenLayerLayersCount
+	 * @throws NotEnoughActivationsException
+	 *             Throw if the activations length is less than the
+	 *             hiddenLayerLayersCount plus one
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown if the momentum value is out of range
+	 */
+	public NeuralNetwork(final int inputNeuronsCount, final int hiddenLayerLayersCount,
+			final int[] hiddenLayersNeuronsCount, final int outputNeuronsCount, final double momentum,
+			final double learningRate, final Activation[] activations)
+			throws IllegalNeuronsCountException, NotEnoughLayersException, NotEnoughActivationsException,
+			MomentumOutOfRangeException, LearningRateOutOfRangeException, NeuralNetworkException {
+		this(inputNeuronsCount, hiddenLayerLayersCount, hiddenLayersNeuronsCount, outputNeuronsCount, momentum,
+				learningRate, activations, Precision.DOUBLE);
+	}
+
+	/**
+	 * Constructor that build the neural network like
+	 * {@link #NeuralNetwork(int, int, int[], int, double, double, Activation[])},
+	 * storing the weights matrices and the momentum deltas with the received
+	 * precision. Inputs, outputs and activations stay double precision values
+	 * and the products are always accumulated in double precision, so
+	 * {@link Precision#FLOAT} halves the memory of the weights keeping the same
+	 * API
+	 * 
+	 * @param inputNeuronsCount
+	 *            count of the neurons of the input layer
+	 * @param hiddenLayerLayersCount
+	 *            count of the layers that compose the hidden layer
+	 * @param hiddenLayersNeuronsCount
+	 *            array representing the neurons count for each layer of the hidden
+	 *            layer
+	 * @param outputNeuronsCount
+	 *            count of the neurons of the input layer
+	 * @param momentum
+	 *            value of the momentum, to avoid to be stuck in local minimal,
+	 *            higher value means higher variation, selected between [0, 1[
+	 * @param learningRate
+	 *            value used to control the network learning speed, lower values
+	 *            mean lower speed learning, selected between ]0, 1]
+	 * @param activations
+	 *            activation functions of the hidden layers followed by the one of
+	 *            the output layer
+	 * @param precision
+	 *            storage precision of the weights matrices
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputNeuronsCount or outputNeuronsCount are less than 1
+	 * @throws NotEnoughLayersException
+	 *             Throw if the hiddenLayersNeuronsCount length is less than the
+	 *             hiddenLayerLayersCount
+	 * @throws NotEnoughActivationsException
+	 *             Throw if the activations length is less than the
+	 *             hiddenLayerLayersCount plus one
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown if the momentum value is out of range
+	 */
+	public NeuralNetwork(final int inputNeuronsCount, final int hiddenLayerLayersCount,
+			final int[] hiddenLayersNeuronsCount, final int outputNeuronsCount, final double momentum,
+			final double learningRate, final Activation[] activations, final Precision precision)
+			throws IllegalNeuronsCountException, NotEnoughLayersException, NotEnoughActivationsException,
+			MomentumOutOfRangeException, LearningRateOutOfRangeException, NeuralNetworkException {
+		this(inputNeuronsCount, hiddenLayerLayersCount, hiddenLayersNeuronsCount, outputNeuronsCount, momentum,
+				learningRate, activations, precision, Storage.HEAP);
+	}
+
+	/**
+	 * Constructor that build the neural network like
+	 * {@link #NeuralNetwork(int, int, int[], int, double, double, Activation[], Precision)},
+	 * storing the weights matrices and their optimizer state with the received
+	 * storage. With {@link Storage#OFF_HEAP} they live in direct buffers, so a
+	 * large network can be trained with a small heap, while the biases and the
+	 * layers values stay on the heap. The off heap storage holds double
+	 * precision weights only
+	 * 
+	 * @param inputNeuronsCount
+	 *            count of the neurons of the input layer
+	 * @param hiddenLayerLayersCount
+	 *            count of the layers that compose the hidden layer
+	 * @param hiddenLayersNeuronsCount
+	 *            array representing the neurons count for each layer of the hidden
+	 *            layer
+	 * @param outputNeuronsCount
+	 *            count of the neurons of the input layer
+	 * @param momentum
+	 *            value of the momentum, to avoid to be stuck in local minimal,
+	 *            higher value means higher variation, selected between [0, 1[
+	 * @param learningRate
+	 *            value used to control the network learning speed, lower values
+	 *            mean lower speed learning, selected between ]0, 1]
+	 * @param activations
+	 *            activation functions of the hidden layers followed by the one of
+	 *            the output layer
+	 * @param precision
+	 *            storage precision of the weights matrices
+	 * @param storage
+	 *            storage of the weights matrices and of their optimizer state
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputNeuronsCount or outputNeuronsCount are less than 1
+	 * @throws NotEnoughLayersException
+	 *             Throw if the hiddenLayersNeuronsCount length is less than the
+	 *             hiddenLayerLayersCount
+	 * @throws NotEnoughActivationsException
+	 *             Throw if the activations length is less than the
+	 *             hiddenLayerLayersCount plus one
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown if the momentum value is out of range
+	 * @throws IllegalPrecisionException
+	 *             Thrown if the off heap storage is requested in single
+	 *             precision
+	 */
+	public NeuralNetwork(final int inputNeuronsCount, final int hiddenLayerLayersCount,
+			final int[] hiddenLayersNeuronsCount, final int outputNeuronsCount, final double momentum,
+			final double learningRate, final Activation[] activations, final Precision precision,
+			final Storage storage) throws IllegalNeuronsCountException, NotEnoughLayersException,
+			NotEnoughActivationsException, MomentumOutOfRangeException, LearningRateOutOfRangeException,
+			IllegalPrecisionException, NeuralNetworkException {
+		this(inputNeuronsCount, hiddenLayerLayersCount, hiddenLayersNeuronsCount, outputNeuronsCount, momentum,
+				learningRate, activations, precision, storage, null, null);
+	}
+
+	/**
+	 * Constructor that build the neural network like
+	 * {@link #NeuralNetwork(int, int, int[], int, double, double, Activation[], Precision, Storage)},
+	 * using the received weights and biases instead of random ones when they are
+	 * not null
+	 * 
+	 * @param weights
+	 *            weights matrix of each connection layer, taken without copying,
+	 *            or null for random weights
+	 * @param biases
+	 *            biases of each connection layer, taken without copying, or null
+	 *            for random weights
+	 */
+	NeuralNetwork(final int inputNeuronsCount, final int hiddenLayerLayersCount,
+			final int[] hiddenLayersNeuronsCount, final int outputNeuronsCount, final double momentum,
+			final double learningRate, final Activation[] activations, final Precision precision,
+			final Storage storage, final double[][] weights, final double[][] biases) throws NeuralNetworkException {
 
 		if (inputNeuronsCount == 0 || outputNeuronsCount == 0) {
 			throw new IllegalNeuronsCountException();
@@ -127,25 +398,73 @@ public class NeuralNetwork {
 		if (hiddenLayersNeuronsCount.length < hiddenLayerLayersCount) {
 			throw new NotEnoughLayersException();
 		}
+		if (activations.length < hiddenLayerLayersCount + 1) {
+			throw new NotEnoughActivationsException();
+		}
 		if (momentum < 0 || momentum >= 1) {
 			throw new MomentumOutOfRangeException();
 		}
 		if (learningRate <= 0 || learningRate > 1) {
 			throw new LearningRateOutOfRangeException();
 		}
+		if (storage == Storage.OFF_HEAP && precision == Precision.FLOAT) {
+			throw new IllegalPrecisionException();
+		}
 
 		this.inputNeuronsCount = inputNeuronsCount;
 		this.outputNeuronsCount = outputNeuronsCount;
 		this.momentum = momentum;
 		this.learningRate = learningRate;
+		this.precision = precision;
+		this.storage = storage;
 
 		this.trainerThreshold = 0.001;
 		this.networkErrorCoefficientsHistory = 0;
 		this.trainingCycle = 1;
 		this.isTrained = false;
 
-		buildNetwork(hiddenLayerLayersCount, hiddenLayersNeuronsCount);
+		buildNetwork(hiddenLayerLayersCount, hiddenLayersNeuronsCount, activations, weights, biases);
+
+	}
+
+	/**
+	 * Build a connection layer, with random weights or with the received ones
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param connectionIndex
+	 *            position of the connection layer
+	 * @param weights
+	 *            weights matrix of each connection layer, or null for random
+	 *            weights
+	 * @param biases
+	 *            biases of each connection layer, or null for random weights
+	 * @return the new connection layer
+	 * @throws NeuralNetworkException
+	 */
+	private ConnectionLayers buildConnectionLayers(final Layer leftLayer, final Layer rightLayer,
+			final int connectionIndex, final double[][] weights, final double[][] biases)
+			throws NeuralNetworkException {
+		if (weights == null || biases == null) {
+			return new ConnectionLayers(leftLayer, rightLayer, momentum, learningRate, precision, storage);
+		}
+		return new ConnectionLayers(leftLayer, rightLayer, momentum, learningRate, weights[connectionIndex],
+				biases[connectionIndex], precision, storage);
+	}
 
+	/**
+	 * Create the default activations, a sigmoid for each layer
+	 * 
+	 * @param count
+	 *            count of the activations
+	 * @return the array of activations
+	 */
+	private static Activation[] sigmoids(final int count) {
+		Activation[] activations = new Activation[Math.max(count, 0)];
+		Arrays.fill(activations, new Sigmoid());
+		return activations;
 	}
 
 	/**
@@ -156,27 +475,47 @@ public class NeuralNetwork {
 	 * @param hiddenLayersNeuronsCount
 	 *            array representing the neurons count for each layer of the hidden
 	 *            layer
+	 * @param activations
+	 *            activation functions of the hidden layers followed by the one of
+	 *            the output layer
+	 * @param weights
+	 *            weights matrix of each connection layer, or null for random
+	 *            weights
+	 * @param biases
+	 *            biases of each connection layer, or null for random weights
 	 * @throws NeuralNetworkException
 	 */
-	private void buildNetwork(final int hiddenLayerLayersCount, final int[] hiddenLayersNeuronsCount)
+	private void buildNetwork(final int hiddenLayerLayersCount, final int[] hiddenLayersNeuronsCount,
+			final Activation[] activations, final double[][] weights, final double[][] biases)
 			throws NeuralNetworkException {
 
 		network = new TreeSet<ConnectionLayers>();
 
+		layersSizes = new int[hiddenLayerLayersCount + 2];
+		layersSizes[0] = inputNeuronsCount;
+		System.arraycopy(hiddenLayersNeuronsCount, 0, layersSizes, 1, hiddenLayerLayersCount);
+		layersSizes[hiddenLayerLayersCount + 1] = outputNeuronsCount;
+
+		this.activations = Arrays.copyOf(activations, hiddenLayerLayersCount + 1);
+
 		inputLayer = new Layer(inputNeuronsCount);
 
 		Layer temp1 = inputLayer;
 		Layer temp2;
 
 		for (int hiddenLayerIndex = 0; hiddenLayerIndex < hiddenLayerLayersCount; hiddenLayerIndex++) {
-			temp2 = new Layer(hiddenLayersNeuronsCount[hiddenLayerIndex]);
-			network.add(new ConnectionLayers(temp1, temp2, momentum, learningRate));
+			temp2 = new Layer(hiddenLayersNeuronsCount[hiddenLayerIndex], activations[hiddenLayerIndex]);
+			network.add(buildConnectionLayers(temp1, temp2, hiddenLayerIndex, weights, biases));
 			temp1 = temp2;
 		}
 
-		outputLayer = new Layer(outputNeuronsCount);
+		outputLayer = new Layer(outputNeuronsCount, activations[hiddenLayerLayersCount]);
+
+		network.add(buildConnectionLayers(temp1, outputLayer, hiddenLayerLayersCount, weights, biases));
 
-		network.add(new ConnectionLayers(temp1, outputLayer, momentum, learningRate));
+		connectionLayers = network.toArray(new ConnectionLayers[network.size()]);
+		outputErrors = new double[outputNeuronsCount];
+		metrics = new TrainingMetrics(network.size());
 
 	}
 
@@ -187,7 +526,7 @@ public class NeuralNetwork {
 	 * 
 	 * @param inputs
 	 *            an array of values
-	 * @return the array of computed values
+	 * @return a copy of the array of computed values
 	 * @throws IllegalNeuronsCountException
 	 *             Thrown if inputs count not equals to inputNeuronsCount
 	 */
@@ -197,10 +536,193 @@ public class NeuralNetwork {
 		}
 
 		inputLayer.setValues(inputs);
+		sparseInputs = false;
+		forward();
 
-		network.forEach(connLayer -> connLayer.compute());
+		return outputLayer.values().clone();
+	}
+
+	/**
+	 * Compute the outputs of sparse inputs, like {@link #computeResult(double[])}
+	 * with every input not listed equal to 0. The first connection layer reads
+	 * only the weights rows of the listed inputs, and a following
+	 * {@link #learn(double[])} updates only those rows
+	 * 
+	 * @param indices
+	 *            indexes of the non-zero inputs, distinct
+	 * @param values
+	 *            the non-zero inputs, in the order of their indexes
+	 * @return a copy of the array of computed values
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if indices and values counts differ or an index is not
+	 *             lower than inputNeuronsCount
+	 */
+	public double[] computeResult(final int[] indices, final double[] values) throws IllegalNeuronsCountException {
+		setSparseInputs(indices, values);
+		forward();
+
+		return outputLayer.values().clone();
+	}
+
+	/**
+	 * Fused training step on a single sample: compute the outputs of the inputs
+	 * and learn the expected results, like {@link #computeResult(double[])}
+	 * followed by {@link #learn(double[])}. Every buffer is owned by the network,
+	 * so in steady state a step allocates nothing
+	 * 
+	 * @param inputs
+	 *            an array of values
+	 * @param expectedResult
+	 *            array of the expected output
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to inputNeuronsCount or
+	 *             results count not equals to outputNeuronsCount
+	 */
+	public void trainStep(final double[] inputs, final double[] expectedResult)
+			throws IllegalNeuronsCountException {
+		if (inputs.length != inputNeuronsCount) {
+			throw new IllegalNeuronsCountException();
+		}
+
+		inputLayer.setValues(inputs);
+		sparseInputs = false;
+		forward();
+		learn(expectedResult);
+	}
+
+	/**
+	 * Fused training step on a single sample with sparse inputs, like
+	 * {@link #computeResult(int[], double[])} followed by
+	 * {@link #learn(double[])}
+	 * 
+	 * @param indices
+	 *            indexes of the non-zero inputs, distinct
+	 * @param values
+	 *            the non-zero inputs, in the order of their indexes
+	 * @param expectedResult
+	 *            array of the expected output
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if indices and values counts differ, an index is not
+	 *             lower than inputNeuronsCount or results count not equals to
+	 *             outputNeuronsCount
+	 */
+	public void trainStep(final int[] indices, final double[] values, final double[] expectedResult)
+			throws IllegalNeuronsCountException {
+		setSparseInputs(indices, values);
+		forward();
+		learn(expectedResult);
+	}
+
+	/**
+	 * Copy the received sparse inputs in the buffers of the network
+	 * 
+	 * @param indices
+	 *            indexes of the non-zero inputs
+	 * @param values
+	 *            the non-zero inputs
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if indices and values counts differ or an index is not
+	 *             lower than inputNeuronsCount
+	 */
+	private void setSparseInputs(final int[] indices, final double[] values) throws IllegalNeuronsCountException {
+		if (indices.length != values.length) {
+			throw new IllegalNeuronsCountException();
+		}
+		for (int index : indices) {
+			if (index < 0 || index >= inputNeuronsCount) {
+				throw new IllegalNeuronsCountException();
+			}
+		}
+
+		if (sparseIndices.length < indices.length) {
+			sparseIndices = new int[indices.length];
+			sparseValues = new double[indices.length];
+		}
+		System.arraycopy(indices, 0, sparseIndices, 0, indices.length);
+		System.arraycopy(values, 0, sparseValues, 0, values.length);
+		sparseCount = indices.length;
+		sparseInputs = true;
+	}
+
+	/**
+	 * Compute the values of every layer from the values of the input layer
+	 */
+	private void forward() {
+		if (metrics.isEnabled()) {
+			long start;
+			for (int connectionIndex = 0; connectionIndex < connectionLayers.length; connectionIndex++) {
+				start = System.nanoTime();
+				compute(connectionIndex);
+				metrics.recordPass(connectionIndex, false, 1, System.nanoTime() - start);
+			}
+		} else {
+			for (int connectionIndex = 0; connectionIndex < connectionLayers.length; connectionIndex++) {
+				compute(connectionIndex);
+			}
+		}
+	}
+
+	/**
+	 * Compute the right layer values of a connection layer, reading only the
+	 * non-zero inputs in the first one when the inputs are sparse
+	 * 
+	 * @param connectionIndex
+	 *            index of the connection layer
+	 */
+	private void compute(final int connectionIndex) {
+		if (connectionIndex == 0 && sparseInputs) {
+			connectionLayers[0].computeSparse(sparseIndices, sparseValues, sparseCount);
+		} else {
+			connectionLayers[connectionIndex].compute();
+		}
+	}
+
+	/**
+	 * Compute the outputs using the received inputs without touching the network
+	 * layers. The weights are only read and the intermediate values are stored in
+	 * buffers taken from a pool for the time of the call, so any count of threads
+	 * can call this method concurrently without locking. It must not run
+	 * concurrently with a
+	 * training method, which updates the weights
+	 * 
+	 * @param inputs
+	 *            an array of values
+	 * @return the array of computed values
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to inputNeuronsCount
+	 */
+	public double[] predict(final double[] inputs) throws IllegalNeuronsCountException {
+		double[] outputs = new double[outputNeuronsCount];
+		predict(inputs, outputs);
+		return outputs;
+	}
+
+	/**
+	 * Compute the outputs using the received inputs, like
+	 * {@link #predict(double[])}, writing them in the received array so that no
+	 * allocation is made
+	 * 
+	 * @param inputs
+	 *            an array of values
+	 * @param outputs
+	 *            array where the computed values are written
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to inputNeuronsCount or
+	 *             outputs count not equals to outputNeuronsCount
+	 */
+	public void predict(final double[] inputs, final double[] outputs) throws IllegalNeuronsCountException {
+		if (inputs.length != inputNeuronsCount || outputs.length != outputNeuronsCount) {
+			throw new IllegalNeuronsCountException();
+		}
 
-		return outputLayer.values();
+		Workspace workspace = inferenceWorkspaces.acquire();
+		try {
+			System.arraycopy(inputs, 0, workspace.values(0), 0, inputNeuronsCount);
+			forwardBatch(workspace, 1);
+			System.arraycopy(workspace.values(network.size()), 0, outputs, 0, outputNeuronsCount);
+		} finally {
+			inferenceWorkspaces.release(workspace);
+		}
 	}
 
 	/**
@@ -217,38 +739,346 @@ public class NeuralNetwork {
 			throw new IllegalNeuronsCountException();
 		}
 
+		boolean recording = metrics.isEnabled();
+		long allocatedBytes = recording ? TrainingMetrics.allocatedBytes() : 0;
+
 		double[] currentLayerCost = computeOutputCost(expectedResult);
 
 		updateNetworkErrorCoefficient(currentLayerCost);
 
-		Iterator<ConnectionLayers> descIterator = network.descendingIterator();
 		ConnectionLayers currentConnectionLayer;
-		while (descIterator.hasNext()) {
-			currentConnectionLayer = descIterator.next();
-			currentConnectionLayer.optimize(currentLayerCost);
+		long start = 0;
+		for (int connectionIndex = connectionLayers.length - 1; connectionIndex >= 0; connectionIndex--) {
+			currentConnectionLayer = connectionLayers[connectionIndex];
+			if (recording) {
+				start = System.nanoTime();
+			}
+			if (connectionIndex == 0 && sparseInputs) {
+				currentConnectionLayer.optimizeSparse(currentLayerCost, sparseIndices, sparseValues, sparseCount);
+			} else {
+				currentConnectionLayer.optimize(currentLayerCost);
+			}
 			currentLayerCost = currentConnectionLayer.getError();
+			if (recording) {
+				metrics.recordPass(connectionIndex, true, 1, System.nanoTime() - start);
+				metrics.recordWeightsUpdate(connectionIndex, currentConnectionLayer.getWeightsUpdateNorm());
+			}
 		}
 
 		this.isTrained = networkErrorCoefficient < trainerThreshold;
 		this.trainingCycle++;
+
+		if (recording) {
+			metrics.recordCycle(1, allocatedDuring(allocatedBytes), networkErrorCoefficient);
+		}
+		if (checkpointer != null) {
+			checkpointer.maybeCheckpoint();
+		}
+	}
+
+	/**
+	 * Method that make the network learn from a batch of samples. The forward and
+	 * backward passes run over the whole batch, the gradients are accumulated and
+	 * each connection layer is updated once with their mean. The error
+	 * coefficient and the training cycle are updated as if each sample was
+	 * learned on its own
+	 * 
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch is empty or inputs and expected outputs
+	 *             counts differ
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if a row count not equals to inputNeuronsCount or
+	 *             outputNeuronsCount
+	 */
+	public void trainBatch(final double[][] inputs, final double[][] expectedResults)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		if (inputs.length != expectedResults.length) {
+			throw new IllegalBatchSizeException();
+		}
+		trainBatch(inputs, expectedResults, inputs.length);
+	}
+
+	/**
+	 * Method that make the network learn from the first samples of a batch, like
+	 * {@link #trainBatch(double[][], double[][])}. The rows after the samples
+	 * count are ignored, so a partial batch can be trained from the arrays of a
+	 * full one without copying its rows
+	 * 
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @param samplesCount
+	 *            count of the samples to learn, from the first row
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the samples count is less than 1 or more than the
+	 *             rows of inputs or expected outputs
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if a row count not equals to inputNeuronsCount or
+	 *             outputNeuronsCount
+	 */
+	public void trainBatch(final double[][] inputs, final double[][] expectedResults, final int samplesCount)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		checkBatch(inputs, expectedResults, samplesCount);
+
+		boolean recording = metrics.isEnabled();
+		long allocatedBytes = recording ? TrainingMetrics.allocatedBytes() : 0;
+
+		if (batchWorkspace == null || batchWorkspace.capacity() < samplesCount) {
+			batchWorkspace = newWorkspace(samplesCount);
+		}
+
+		double squaredNormsSum = computeBatchGradients(batchWorkspace, inputs, expectedResults, 0, samplesCount);
+		applyBatchGradients(batchWorkspace, samplesCount);
+		updateNetworkErrorCoefficient(squaredNormsSum, samplesCount);
+
+		if (recording) {
+			metrics.recordCycle(samplesCount, allocatedDuring(allocatedBytes), networkErrorCoefficient);
+		}
+	}
+
+	/**
+	 * Return the bytes allocated by the calling thread since a previous reading
+	 * of {@link TrainingMetrics#allocatedBytes()}
+	 * 
+	 * @param allocatedBytes
+	 *            the previous reading
+	 * @return the allocated bytes, -1 if they can not be measured
+	 */
+	static long allocatedDuring(final long allocatedBytes) {
+		return allocatedBytes < 0 ? -1 : TrainingMetrics.allocatedBytes() - allocatedBytes;
 	}
 
 	/**
-	 * Compute the error of the output layer
+	 * Check that a batch is not empty and that every row has the right size
+	 * 
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch is empty or inputs and expected outputs
+	 *             counts differ
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if a row count not equals to inputNeuronsCount or
+	 *             outputNeuronsCount
+	 */
+	void checkBatch(final double[][] inputs, final double[][] expectedResults)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		if (inputs.length != expectedResults.length) {
+			throw new IllegalBatchSizeException();
+		}
+		checkBatch(inputs, expectedResults, inputs.length);
+	}
+
+	/**
+	 * Check that the first samples of a batch exist and that each of their rows
+	 * has the right size
+	 * 
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @param samplesCount
+	 *            count of the checked samples, from the first row
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the samples count is less than 1 or more than the
+	 *             rows of inputs or expected outputs
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if a row count not equals to inputNeuronsCount or
+	 *             outputNeuronsCount
+	 */
+	void checkBatch(final double[][] inputs, final double[][] expectedResults, final int samplesCount)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		if (samplesCount < 1 || samplesCount > inputs.length || samplesCount > expectedResults.length) {
+			throw new IllegalBatchSizeException();
+		}
+		for (int sampleIndex = 0; sampleIndex < samplesCount; sampleIndex++) {
+			if (inputs[sampleIndex].length != inputNeuronsCount
+					|| expectedResults[sampleIndex].length != outputNeuronsCount) {
+				throw new IllegalNeuronsCountException();
+			}
+		}
+	}
+
+	/**
+	 * Create a new {@link Workspace} sized for this network
+	 * 
+	 * @param capacity
+	 *            count of the samples that the workspace can hold
+	 * @return the new workspace
+	 */
+	Workspace newWorkspace(final int capacity) {
+		return new Workspace(layersSizes, capacity);
+	}
+
+	/**
+	 * Run the forward and backward passes over a slice of a batch and store the
+	 * gradients of every connection layer in the workspace. The weights are only
+	 * read, so different workspaces can be used concurrently
+	 * 
+	 * @param workspace
+	 *            buffers used for the computation, where the gradients are stored
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @param firstSample
+	 *            index of the first sample of the slice
+	 * @param samplesCount
+	 *            count of the samples of the slice
+	 * @return the sum of the squared norms of the output errors of the slice
+	 */
+	double computeBatchGradients(final Workspace workspace, final double[][] inputs,
+			final double[][] expectedResults, final int firstSample, final int samplesCount) {
+		boolean recording = metrics.isEnabled();
+		double[] inputValues = workspace.values(0);
+		for (int sampleIndex = 0; sampleIndex < samplesCount; sampleIndex++) {
+			System.arraycopy(inputs[firstSample + sampleIndex], 0, inputValues, sampleIndex * inputNeuronsCount,
+					inputNeuronsCount);
+		}
+
+		forwardBatch(workspace, samplesCount, recording);
+
+		// output errors
+		double[] outputValues = workspace.values(network.size());
+		double[] outputErrors = workspace.errors(network.size());
+		double squaredNormsSum = 0;
+		int offset;
+		for (int sampleIndex = 0; sampleIndex < samplesCount; sampleIndex++) {
+			offset = sampleIndex * outputNeuronsCount;
+			for (int index = 0; index < outputNeuronsCount; index++) {
+				outputErrors[offset + index] = expectedResults[firstSample + sampleIndex][index]
+						- outputValues[offset + index];
+			}
+		}
+		outputLayer.activation().multiplyDerivate(workspace.notActivatedValues(network.size()), outputValues,
+				outputErrors, samplesCount * outputNeuronsCount);
+		for (int sampleIndex = 0; sampleIndex < samplesCount; sampleIndex++) {
+			offset = sampleIndex * outputNeuronsCount;
+			squaredNormsSum += Math.pow(Utils.norm(outputErrors, offset, outputNeuronsCount), 2);
+		}
+
+		// backward pass, the input layer errors are never used
+		Iterator<ConnectionLayers> descIterator = network.descendingIterator();
+		ConnectionLayers currentConnectionLayer;
+		int connectionIndex = network.size() - 1;
+		long start = 0;
+		while (descIterator.hasNext()) {
+			currentConnectionLayer = descIterator.next();
+			if (recording) {
+				start = System.nanoTime();
+			}
+			Arrays.fill(workspace.weightsGradient(connectionIndex), 0);
+			Arrays.fill(workspace.biasesGradient(connectionIndex), 0);
+			currentConnectionLayer.accumulateGradients(workspace.values(connectionIndex),
+					workspace.errors(connectionIndex + 1), samplesCount, workspace.weightsGradient(connectionIndex),
+					workspace.biasesGradient(connectionIndex));
+			if (connectionIndex > 0) {
+				currentConnectionLayer.backPropagateBatch(workspace.errors(connectionIndex + 1),
+						workspace.notActivatedValues(connectionIndex), workspace.values(connectionIndex),
+						workspace.errors(connectionIndex), samplesCount);
+			}
+			if (recording) {
+				metrics.recordPass(connectionIndex, true, samplesCount, System.nanoTime() - start);
+			}
+			connectionIndex--;
+		}
+
+		return squaredNormsSum;
+	}
+
+	/**
+	 * Run the forward pass over the inputs stored in the first layer buffer of
+	 * the workspace. The weights are only read
+	 * 
+	 * @param workspace
+	 *            buffers holding the inputs and receiving the values of every
+	 *            layer
+	 * @param samplesCount
+	 *            count of the samples stored in the workspace
+	 */
+	void forwardBatch(final Workspace workspace, final int samplesCount) {
+		forwardBatch(workspace, samplesCount, false);
+	}
+
+	/**
+	 * Run the forward pass like {@link #forwardBatch(Workspace, int)},
+	 * recording the time of each connection layer in the training metrics if
+	 * requested
+	 * 
+	 * @param workspace
+	 *            buffers holding the inputs and receiving the values of every
+	 *            layer
+	 * @param samplesCount
+	 *            count of the samples stored in the workspace
+	 * @param recording
+	 *            true to record the time of each connection layer
+	 */
+	private void forwardBatch(final Workspace workspace, final int samplesCount, final boolean recording) {
+		int layerIndex = 0;
+		long start = 0;
+		for (ConnectionLayers connectionLayer : network) {
+			if (recording) {
+				start = System.nanoTime();
+			}
+			connectionLayer.computeBatch(workspace.values(layerIndex), workspace.notActivatedValues(layerIndex + 1),
+					workspace.values(layerIndex + 1), samplesCount);
+			if (recording) {
+				metrics.recordPass(layerIndex, false, samplesCount, System.nanoTime() - start);
+			}
+			layerIndex++;
+		}
+	}
+
+	/**
+	 * Update every connection layer once with the mean of the gradients stored
+	 * in the workspace
+	 * 
+	 * @param workspace
+	 *            workspace holding the accumulated gradients
+	 * @param samplesCount
+	 *            count of the samples the gradients are accumulated over
+	 */
+	void applyBatchGradients(final Workspace workspace, final int samplesCount) {
+		boolean recording = metrics.isEnabled();
+		int connectionIndex = 0;
+		long start = 0;
+		for (ConnectionLayers connectionLayer : network) {
+			if (recording) {
+				start = System.nanoTime();
+			}
+			connectionLayer.applyGradients(workspace.weightsGradient(connectionIndex),
+					workspace.biasesGradient(connectionIndex), samplesCount);
+			if (recording) {
+				metrics.recordPass(connectionIndex, true, samplesCount, System.nanoTime() - start);
+				metrics.recordWeightsUpdate(connectionIndex, connectionLayer.getWeightsUpdateNorm());
+			}
+			connectionIndex++;
+		}
+	}
+
+	/**
+	 * Compute the error of the output layer in the output errors buffer
 	 * 
 	 * @param expectedResult
 	 *            array of the expected result
-	 * @return array of the computed errors
+	 * @return array of the computed errors, the output errors buffer
 	 */
 	private double[] computeOutputCost(double[] expectedResult) {
 
 		double[] actualResult = outputLayer.values();
-		double[] result = new double[outputLayer.size()];
+		double[] result = outputErrors;
 
 		for (int index = 0; index < outputLayer.size(); index++) {
-			result[index] = (expectedResult[index] - actualResult[index])
-					* Utils.activationFunctionDerivate(actualResult[index]);
+			result[index] = expectedResult[index] - actualResult[index];
 		}
+		outputLayer.activation().multiplyDerivate(outputLayer.notActivatedValues(), actualResult, result,
+				result.length);
 
 		return result;
 	}
@@ -267,12 +1097,356 @@ public class NeuralNetwork {
 
 		// add to history
 		networkErrorCoefficientsHistory += squaredNorm;
+		lastErrorCoefficient = squaredNorm / 2;
 
 		// current coefficient is equals to
 		networkErrorCoefficient = networkErrorCoefficientsHistory / (2 * trainingCycle);
 
 	}
 
+	/**
+	 * Method that compute the error coefficient of the network after a batch of
+	 * samples, with the same result of updating it once per sample. Also advance
+	 * the training cycle and set isTrained value
+	 * 
+	 * @param squaredNormsSum
+	 *            sum of the squared norms of the output errors of the batch
+	 * @param samplesCount
+	 *            count of the samples of the batch
+	 */
+	void updateNetworkErrorCoefficient(final double squaredNormsSum, final int samplesCount) {
+		networkErrorCoefficientsHistory += squaredNormsSum;
+		lastErrorCoefficient = squaredNormsSum / (2 * samplesCount);
+		networkErrorCoefficient = networkErrorCoefficientsHistory / (2 * (trainingCycle + samplesCount - 1));
+
+		this.trainingCycle += samplesCount;
+		this.isTrained = networkErrorCoefficient < trainerThreshold;
+
+		if (checkpointer != null) {
+			checkpointer.maybeCheckpoint();
+		}
+	}
+
+	/**
+	 * Save the network in a binary model file: layers sizes, activation
+	 * functions, hyper-parameters, weights and biases. The training state is not
+	 * saved
+	 * 
+	 * @param path
+	 *            path of the model file, replaced if it exists
+	 * @throws IOException
+	 *             Thrown if the file can not be written
+	 * @throws UnsupportedActivationException
+	 *             Thrown if a layer uses a custom activation function
+	 */
+	public void save(final Path path) throws IOException, UnsupportedActivationException {
+		ModelFile.write(this, path);
+	}
+
+	/**
+	 * Load a network from a binary model file written by {@link #save(Path)}.
+	 * The file is memory mapped and copied once, in bulk, straight into the
+	 * weights and biases of the new network
+	 * 
+	 * @param path
+	 *            path of the model file
+	 * @return the loaded network
+	 * @throws IOException
+	 *             Thrown if the file can not be read
+	 * @throws NeuralNetworkException
+	 *             Thrown if the file is not a valid model file
+	 */
+	public static NeuralNetwork load(final Path path) throws IOException, NeuralNetworkException {
+		return load(path, Precision.DOUBLE);
+	}
+
+	/**
+	 * Load a network from a binary model file like {@link #load(Path)}, storing
+	 * its weights with the received precision. The model file always holds double
+	 * precision weights, they are rounded when loaded in single precision
+	 * 
+	 * @param path
+	 *            path of the model file
+	 * @param precision
+	 *            storage precision of the weights matrices
+	 * @return the loaded network
+	 * @throws IOException
+	 *             Thrown if the file can not be read
+	 * @throws NeuralNetworkException
+	 *             Thrown if the file is not a valid model file
+	 */
+	public static NeuralNetwork load(final Path path, final Precision precision)
+			throws IOException, NeuralNetworkException {
+		return load(path, precision, Storage.HEAP);
+	}
+
+	/**
+	 * Load a network from a binary model file like
+	 * {@link #load(Path, Precision)}, storing its weights with the received
+	 * storage
+	 * 
+	 * @param path
+	 *            path of the model file
+	 * @param precision
+	 *            storage precision of the weights matrices
+	 * @param storage
+	 *            storage of the weights matrices and of their optimizer state
+	 * @return the loaded network
+	 * @throws IOException
+	 *             Thrown if the file can not be read
+	 * @throws NeuralNetworkException
+	 *             Thrown if the file is not a valid model file
+	 * @throws IllegalPrecisionException
+	 *             Thrown if the off heap storage is requested in single
+	 *             precision
+	 */
+	public static NeuralNetwork load(final Path path, final Precision precision, final Storage storage)
+			throws IOException, NeuralNetworkException {
+		return ModelFile.read(path, precision, storage);
+	}
+
+	/**
+	 * Return the ordered connection layers of the network
+	 * 
+	 * @return the connection layers
+	 */
+	TreeSet<ConnectionLayers> connections() {
+		return network;
+	}
+
+	/**
+	 * Return the neurons count of each layer, from the input to the output layer
+	 * 
+	 * @return the layers sizes
+	 */
+	int[] layersSizes() {
+		return layersSizes;
+	}
+
+	/**
+	 * Return the activation function of each layer but the input one
+	 * 
+	 * @return the activation functions
+	 */
+	Activation[] activations() {
+		return activations;
+	}
+
+	/**
+	 * Return the momentum of the network
+	 * 
+	 * @return the momentum
+	 */
+	double getMomentum() {
+		return momentum;
+	}
+
+	/**
+	 * Return the learning rate of the network
+	 * 
+	 * @return the learning rate
+	 */
+	double getLearningRate() {
+		return learningRate;
+	}
+
+	/**
+	 * Return the trainer threshold of the network
+	 * 
+	 * @return the trainer threshold
+	 */
+	double getTrainerThreshold() {
+		return trainerThreshold;
+	}
+
+	/**
+	 * Return the error coefficient of the last trained sample or batch alone,
+	 * the mean of its squared output errors halved. Unlike
+	 * {@link #getNetworkErrorCoefficent()} it does not depend on the history
+	 * 
+	 * @return the last error coefficient
+	 */
+	double getLastErrorCoefficient() {
+		return lastErrorCoefficient;
+	}
+
+	/**
+	 * Return the sum of the squared norms of the output errors of every trained
+	 * sample, the history of the error coefficient
+	 * 
+	 * @return the error coefficients history
+	 */
+	double getErrorCoefficientsHistory() {
+		return networkErrorCoefficientsHistory;
+	}
+
+	/**
+	 * Replace the training counters with saved ones
+	 * 
+	 * @param trainingCycle
+	 *            the training cycle
+	 * @param networkErrorCoefficient
+	 *            the error coefficient
+	 * @param errorCoefficientsHistory
+	 *            the error coefficients history
+	 * @param lastErrorCoefficient
+	 *            the error coefficient of the last trained sample or batch
+	 * @param isTrained
+	 *            the trained flag
+	 */
+	void restoreCounters(final int trainingCycle, final double networkErrorCoefficient,
+			final double errorCoefficientsHistory, final double lastErrorCoefficient, final boolean isTrained) {
+		this.trainingCycle = trainingCycle;
+		this.networkErrorCoefficient = networkErrorCoefficient;
+		this.networkErrorCoefficientsHistory = errorCoefficientsHistory;
+		this.lastErrorCoefficient = lastErrorCoefficient;
+		this.isTrained = isTrained;
+	}
+
+	/**
+	 * Set the checkpointer notified after each training cycle or batch
+	 * 
+	 * @param checkpointer
+	 *            the checkpointer, null to remove it
+	 */
+	void setCheckpointer(final Checkpointer checkpointer) {
+		this.checkpointer = checkpointer;
+	}
+
+	/**
+	 * Return the connection layers of the network in order
+	 * 
+	 * @return the connection layers array
+	 */
+	ConnectionLayers[] connectionLayers() {
+		return connectionLayers;
+	}
+
+	/**
+	 * Prune the weights of every connection layer whose magnitude is lower than
+	 * a threshold. The pruned weights are set to 0 and kept at 0 by the
+	 * following training, so the pruning can be repeated with higher thresholds
+	 * between rounds of fine-tuning. A network with enough pruned weights can be
+	 * executed in a compressed form by a {@link SparseNeuralNetwork}
+	 * 
+	 * @param threshold
+	 *            the lowest magnitude of the weights kept
+	 * @throws IllegalPruningArgumentException
+	 *             Thrown if the threshold is negative or not a number
+	 */
+	public void prune(final double threshold) throws IllegalPruningArgumentException {
+		if (!(threshold >= 0)) {
+			throw new IllegalPruningArgumentException("threshold must be at least 0");
+		}
+		for (ConnectionLayers connectionLayer : connectionLayers) {
+			connectionLayer.prune(threshold);
+		}
+	}
+
+	/**
+	 * Prune the weights with the lowest magnitude of each connection layer until
+	 * the ratio of its pruned weights reaches the target sparsity, like
+	 * {@link #prune(double)}
+	 * 
+	 * @param sparsity
+	 *            ratio of the weights of each connection layer to prune, in
+	 *            [0, 1[
+	 * @throws IllegalPruningArgumentException
+	 *             Thrown if the sparsity is not in [0, 1[
+	 */
+	public void pruneToSparsity(final double sparsity) throws IllegalPruningArgumentException {
+		if (!(sparsity >= 0 && sparsity < 1)) {
+			throw new IllegalPruningArgumentException("sparsity must be in [0, 1[");
+		}
+		for (ConnectionLayers connectionLayer : connectionLayers) {
+			connectionLayer.pruneToSparsity(sparsity);
+		}
+	}
+
+	/**
+	 * Replace the update rule of the weights and biases of every connection
+	 * layer, by default a {@link Sgd} with the learning rate and the momentum of
+	 * the network. The state of the previous optimizer is discarded. The
+	 * optimizer is not saved in the model file
+	 * 
+	 * @param optimizer
+	 *            the new optimizer, shared by every connection layer
+	 */
+	public void setOptimizer(final Optimizer optimizer) {
+		network.forEach(connectionLayer -> connectionLayer.setOptimizer(optimizer));
+	}
+
+	/**
+	 * Return the update rule of the weights and biases
+	 * 
+	 * @return the optimizer
+	 */
+	public Optimizer getOptimizer() {
+		return network.first().getOptimizer();
+	}
+
+	/**
+	 * Partition the wide connection layers across a pool, see
+	 * {@link ConnectionLayers#setParallelism(ForkJoinPool, int)}: each connection
+	 * layer with at least the received count of weights computes its forward
+	 * pass on a single sample, its weights update and its back-propagated errors
+	 * one range of neurons per pool thread, which cuts the latency of
+	 * {@link #predict(double[])} and {@link #trainStep(double[], double[])} on
+	 * networks with very wide layers. The smaller connection layers stay serial
+	 * 
+	 * @param pool
+	 *            pool computing the ranges, or null to compute every connection
+	 *            layer serially
+	 * @param minWeights
+	 *            lowest count of weights of a partitioned connection layer
+	 */
+	public void setLayerParallelism(final ForkJoinPool pool, final int minWeights) {
+		network.forEach(connectionLayer -> connectionLayer.setParallelism(pool, minWeights));
+	}
+
+	/**
+	 * Partition the connection layers with at least
+	 * {@link ConnectionLayers#DEFAULT_MIN_PARALLEL_WEIGHTS} weights across the
+	 * received pool, like {@link #setLayerParallelism(ForkJoinPool, int)}
+	 * 
+	 * @param pool
+	 *            pool computing the ranges, or null to compute every connection
+	 *            layer serially
+	 */
+	public void setLayerParallelism(final ForkJoinPool pool) {
+		setLayerParallelism(pool, ConnectionLayers.DEFAULT_MIN_PARALLEL_WEIGHTS);
+	}
+
+	/**
+	 * Return the training metrics of the network, disabled by default. They can
+	 * be enabled at any time with {@link TrainingMetrics#setEnabled(boolean)} and
+	 * exposed through JMX with {@link TrainingMetrics#register(String)}
+	 * 
+	 * @return the training metrics
+	 */
+	public TrainingMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Return the storage precision of the weights matrices of the network
+	 * 
+	 * @return the precision
+	 */
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * Return the storage of the weights matrices of the network and of their
+	 * optimizer state
+	 * 
+	 * @return the storage
+	 */
+	public Storage getStorage() {
+		return storage;
+	}
+
 	/**
 	 * Return a value that represent the error coefficient of the network. The lower
 	 * the coefficient the more the network is reliable
@@ -0,0 +1,159 @@
+package com.rebe.neuralNetwork;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.rebe.neuralNetwork.components.ConnectionLayers;
+import com.rebe.neuralNetwork.components.Workspace;
+import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+import com.rebe.neuralNetwork.math.Storage;
+import com.rebe.neuralNetwork.utils.StripedPool;
+
+/**
+ * Inference only network whose weights live outside of the heap, made of
+ * {@link ConnectionLayers} with {@link Storage#OFF_HEAP} storage. It is either
+ * copied from a {@link NeuralNetwork} in direct buffers with
+ * {@link #copyOf(NeuralNetwork)} or mapped straight from a model file with
+ * {@link #map(Path)}, in which case the weights are never copied and the
+ * operating system pages them in on demand. Either way the heap holds only the
+ * buffer objects, the biases and the layers values, so heap size and garbage
+ * collection pauses do not grow with the model.
+ * <p>
+ * The off-heap memory is released when the network is garbage collected. The
+ * network never changes, so any count of threads can call
+ * {@link #predict(double[])} concurrently, each call borrowing its buffers
+ * from a pool shared by the threads
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class OffHeapNeuralNetwork {
+
+	/**
+	 * Neurons count of each layer, from the input to the output layer
+	 */
+	private final int[] layersSizes;
+
+	/**
+	 * The off-heap connection layers, in order
+	 */
+	private final ConnectionLayers[] network;
+
+	/**
+	 * Buffers of the layers values of the threads calling
+	 * {@link #predict(double[], double[])}
+	 */
+	private final StripedPool<Workspace> inferenceWorkspaces;
+
+	/**
+	 * Constructor that build the network from its off-heap connection layers
+	 *
+	 * @param layersSizes
+	 *            neurons count of each layer
+	 * @param network
+	 *            the off-heap connection layers
+	 */
+	OffHeapNeuralNetwork(final int[] layersSizes, final ConnectionLayers[] network) {
+		this.layersSizes = layersSizes;
+		this.network = network;
+		this.inferenceWorkspaces = new StripedPool<>(() -> new Workspace(layersSizes, 1, false));
+	}
+
+	/**
+	 * Copy the weights and biases of a network in direct buffers. The copy is in
+	 * double precision whatever the precision of the network
+	 *
+	 * @param network
+	 *            the network to copy
+	 * @return the off-heap network
+	 */
+	public static OffHeapNeuralNetwork copyOf(final NeuralNetwork network) {
+		int[] layersSizes = network.layersSizes().clone();
+		ConnectionLayers[] offHeapNetwork = new ConnectionLayers[layersSizes.length - 1];
+		int connectionIndex = 0;
+		for (ConnectionLayers connectionLayer : network.connections()) {
+			offHeapNetwork[connectionIndex++] = new ConnectionLayers(connectionLayer, Storage.OFF_HEAP);
+		}
+
+		return new OffHeapNeuralNetwork(layersSizes, offHeapNetwork);
+	}
+
+	/**
+	 * Map a model file written by {@link NeuralNetwork#save(Path)} without
+	 * copying its weights. The file must not be modified while the network is
+	 * used
+	 *
+	 * @param path
+	 *            path of the model file
+	 * @return the off-heap network
+	 * @throws IOException
+	 *             Thrown if the file can not be read or mapped
+	 * @throws NeuralNetworkException
+	 *             Thrown if the file is not a valid model file
+	 */
+	public static OffHeapNeuralNetwork map(final Path path) throws IOException, NeuralNetworkException {
+		return ModelFile.map(path);
+	}
+
+	/**
+	 * Compute the outputs using the received inputs
+	 *
+	 * @param inputs
+	 *            an array of values
+	 * @return the array of computed values
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to the input neurons count
+	 */
+	public double[] predict(final double[] inputs) throws IllegalNeuronsCountException {
+		double[] outputs = new double[layersSizes[layersSizes.length - 1]];
+		predict(inputs, outputs);
+		return outputs;
+	}
+
+	/**
+	 * Compute the outputs using the received inputs, like
+	 * {@link #predict(double[])}, writing them in the received array so that no
+	 * allocation is made
+	 *
+	 * @param inputs
+	 *            an array of values
+	 * @param outputs
+	 *            array where the computed values are written
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to the input neurons count or
+	 *             outputs count not equals to the output neurons count
+	 */
+	public void predict(final double[] inputs, final double[] outputs) throws IllegalNeuronsCountException {
+		if (inputs.length != layersSizes[0] || outputs.length != layersSizes[layersSizes.length - 1]) {
+			throw new IllegalNeuronsCountException();
+		}
+
+		Workspace workspace = inferenceWorkspaces.acquire();
+		try {
+			System.arraycopy(inputs, 0, workspace.values(0), 0, inputs.length);
+			for (int connectionIndex = 0; connectionIndex < network.length; connectionIndex++) {
+				network[connectionIndex].computeBatch(workspace.values(connectionIndex),
+						workspace.notActivatedValues(connectionIndex + 1), workspace.values(connectionIndex + 1), 1);
+			}
+			System.arraycopy(workspace.values(network.length), 0, outputs, 0, outputs.length);
+		} finally {
+			inferenceWorkspaces.release(workspace);
+		}
+	}
+
+	/**
+	 * Return the bytes of the weights of every connection layer, all outside of
+	 * the heap
+	 *
+	 * @return the off-heap bytes
+	 */
+	public long getOffHeapBytes() {
+		long bytes = 0;
+		for (int layerIndex = 0; layerIndex < layersSizes.length - 1; layerIndex++) {
+			bytes += (long) layersSizes[layerIndex] * layersSizes[layerIndex + 1] * Double.BYTES;
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,193 @@
+package com.rebe.neuralNetwork;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.rebe.neuralNetwork.components.Workspace;
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
+import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+import com.rebe.neuralNetwork.metrics.TrainingMetrics;
+
+/**
+ * Data-parallel trainer of a {@link NeuralNetwork}. Each mini-batch is split in
+ * shards that run concurrently on a {@link ForkJoinPool}, every shard with its
+ * own {@link Workspace} over the shared weights. The shard gradients are merged
+ * by a tree reduction and the network is updated once per batch, with the same
+ * result of {@link NeuralNetwork#trainBatch(double[][], double[][])} up to the
+ * floating point summation order.
+ * <p>
+ * The network must not be used by other threads while a batch is trained.
+ * While the {@link NeuralNetwork#getMetrics() training metrics} are enabled
+ * the shards record their passes concurrently, so the recorded nanoseconds
+ * are summed across the pool threads, while the allocated bytes are measured
+ * for the calling thread only
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class ParallelTrainer {
+
+	/**
+	 * Minimum count of samples of a shard, smaller shards cost more in
+	 * coordination than they gain in parallelism
+	 */
+	private static final int MIN_SHARD_SAMPLES = 8;
+
+	/**
+	 * The trained network
+	 */
+	private final NeuralNetwork network;
+
+	/**
+	 * Pool running the shards
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Workspaces of the shards, reallocated only when a bigger batch is received
+	 */
+	private Workspace[] workspaces;
+
+	/**
+	 * Constructor that build a trainer running on the common pool
+	 * 
+	 * @param network
+	 *            the network to train
+	 */
+	public ParallelTrainer(final NeuralNetwork network) {
+		this(network, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor that build a trainer running on the received pool
+	 * 
+	 * @param network
+	 *            the network to train
+	 * @param pool
+	 *            pool running the shards
+	 */
+	public ParallelTrainer(final NeuralNetwork network, final ForkJoinPool pool) {
+		this.network = network;
+		this.pool = pool;
+		this.workspaces = new Workspace[0];
+	}
+
+	/**
+	 * Make the network learn from a batch of samples, split across the pool
+	 * 
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch is empty or inputs and expected outputs
+	 *             counts differ
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if a row count not equals to the network input or
+	 *             output neurons count
+	 */
+	public void trainBatch(final double[][] inputs, final double[][] expectedResults)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		network.checkBatch(inputs, expectedResults);
+
+		TrainingMetrics metrics = network.getMetrics();
+		boolean recording = metrics.isEnabled();
+		long allocatedBytes = recording ? TrainingMetrics.allocatedBytes() : 0;
+
+		int samplesCount = inputs.length;
+		int shardsCount = Math.max(1, Math.min(pool.getParallelism(), samplesCount / MIN_SHARD_SAMPLES));
+		int shardSize = (samplesCount + shardsCount - 1) / shardsCount;
+		shardsCount = (samplesCount + shardSize - 1) / shardSize;
+
+		if (workspaces.length < shardsCount || workspaces[0].capacity() < shardSize) {
+			workspaces = new Workspace[shardsCount];
+			for (int shardIndex = 0; shardIndex < shardsCount; shardIndex++) {
+				workspaces[shardIndex] = network.newWorkspace(shardSize);
+			}
+		}
+
+		double squaredNormsSum = pool.invoke(new ShardsTask(inputs, expectedResults, shardSize, 0, shardsCount));
+
+		network.applyBatchGradients(workspaces[0], samplesCount);
+		network.updateNetworkErrorCoefficient(squaredNormsSum, samplesCount);
+
+		if (recording) {
+			metrics.recordCycle(samplesCount, NeuralNetwork.allocatedDuring(allocatedBytes),
+					network.getNetworkErrorCoefficent());
+		}
+	}
+
+	/**
+	 * Task computing the gradients of a range of shards. The gradients of the
+	 * range end up in the workspace of its first shard
+	 */
+	private class ShardsTask extends RecursiveTask<Double> {
+
+		/**
+		 * Generated serial version uid
+		 */
+		private static final long serialVersionUID = -3519846125377140265L;
+
+		/**
+		 * Inputs of the whole batch
+		 */
+		private final double[][] inputs;
+
+		/**
+		 * Expected outputs of the whole batch
+		 */
+		private final double[][] expectedResults;
+
+		/**
+		 * Count of the samples of every shard but the last one
+		 */
+		private final int shardSize;
+
+		/**
+		 * First shard of the range, included
+		 */
+		private final int firstShard;
+
+		/**
+		 * Last shard of the range, excluded
+		 */
+		private final int lastShard;
+
+		ShardsTask(final double[][] inputs, final double[][] expectedResults, final int shardSize,
+				final int firstShard, final int lastShard) {
+			this.inputs = inputs;
+			this.expectedResults = expectedResults;
+			this.shardSize = shardSize;
+			this.firstShard = firstShard;
+			this.lastShard = lastShard;
+		}
+
+		/**
+		 * Compute a single shard, or split the range in two halves and merge the
+		 * second half gradients into the first one
+		 * 
+		 * @return the sum of the squared norms of the output errors of the range
+		 */
+		@Override
+		protected Double compute() {
+			if (lastShard - firstShard == 1) {
+				int firstSample = firstShard * shardSize;
+				int samplesCount = Math.min(shardSize, inputs.length - firstSample);
+				return network.computeBatchGradients(workspaces[firstShard], inputs, expectedResults, firstSample,
+						samplesCount);
+			}
+
+			int middleShard = (firstShard + lastShard) >>> 1;
+			ShardsTask left = new ShardsTask(inputs, expectedResults, shardSize, firstShard, middleShard);
+			ShardsTask right = new ShardsTask(inputs, expectedResults, shardSize, middleShard, lastShard);
+			left.fork();
+			double squaredNormsSum = right.compute();
+			squaredNormsSum += left.join();
+
+			workspaces[firstShard].addGradients(workspaces[middleShard]);
+			return squaredNormsSum;
+		}
+
+	}
+
+}
@@ -0,0 +1,457 @@
+package com.rebe.neuralNetwork;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.rebe.neuralNetwork.components.ConnectionLayers;
+import com.rebe.neuralNetwork.components.Workspace;
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
+import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+import com.rebe.neuralNetwork.utils.SpscQueue;
+
+/**
+ * Pipelined inference of a {@link NeuralNetwork} for offline scoring. The
+ * connection layers are split in stages of contiguous layers with about the
+ * same count of weights, each stage running on its own thread. The inputs are
+ * cut in micro-batches that flow from stage to stage through bounded single
+ * producer single consumer queues, so while a stage computes a micro-batch the
+ * previous stage already computes the next one and with a long enough stream
+ * every stage is busy at once.
+ * <p>
+ * Each micro-batch travels in a packet holding the values of every layer, and
+ * a fixed pool of packets circulates from the caller through the stages and
+ * back, so the scoring allocates nothing. The weights are only read: the
+ * pipeline must not run while the network is trained
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class Pipeline implements AutoCloseable {
+
+	/**
+	 * Count of the packets in flight for each stage, one computed and one
+	 * queued
+	 */
+	private static final int PACKETS_PER_STAGE = 2;
+
+	/**
+	 * Packet stopping the stages
+	 */
+	private static final Packet CLOSE = new Packet(null);
+
+	/**
+	 * Neurons count of each layer, from the input to the output layer
+	 */
+	private final int[] layersSizes;
+
+	/**
+	 * The connection layers of the network in order
+	 */
+	private final ConnectionLayers[] connectionLayers;
+
+	/**
+	 * Max count of samples of a micro-batch
+	 */
+	private final int microBatchSize;
+
+	/**
+	 * Index of the first connection layer of each stage, followed by the
+	 * connection layers count
+	 */
+	private final int[] stagesStarts;
+
+	/**
+	 * Queue feeding each stage, followed by the queue returning the packets to
+	 * the caller
+	 */
+	private final SpscQueue<Packet>[] queues;
+
+	/**
+	 * Packets not in flight, used by the caller only
+	 */
+	private final ArrayDeque<Packet> packets;
+
+	/**
+	 * Threads of the stages
+	 */
+	private final Thread[] stages;
+
+	/**
+	 * Lock letting a single caller feed the first queue
+	 */
+	private final ReentrantLock feederLock = new ReentrantLock();
+
+	/**
+	 * Indicates if the pipeline was closed
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor that split the network in stages and start their threads
+	 *
+	 * @param network
+	 *            the computed network
+	 * @param stagesCount
+	 *            count of the stages, at most one per connection layer
+	 * @param microBatchSize
+	 *            max count of samples of a micro-batch
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the micro-batch size is lower than 1
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public Pipeline(final NeuralNetwork network, final int stagesCount, final int microBatchSize)
+			throws IllegalBatchSizeException {
+		if (microBatchSize < 1) {
+			throw new IllegalBatchSizeException();
+		}
+		this.layersSizes = network.layersSizes().clone();
+		this.connectionLayers = network.connectionLayers();
+		this.microBatchSize = microBatchSize;
+		this.stagesStarts = split(layersSizes, Math.max(1, Math.min(stagesCount, connectionLayers.length)));
+
+		int stagesTotal = stagesStarts.length - 1;
+		int packetsCount = PACKETS_PER_STAGE * stagesTotal;
+		this.queues = new SpscQueue[stagesTotal + 1];
+		for (int queueIndex = 0; queueIndex <= stagesTotal; queueIndex++) {
+			queues[queueIndex] = new SpscQueue<>(packetsCount + 1);
+		}
+		this.packets = new ArrayDeque<>(packetsCount);
+		for (int packetIndex = 0; packetIndex < packetsCount; packetIndex++) {
+			packets.add(new Packet(new Workspace(layersSizes, microBatchSize, false)));
+		}
+
+		this.stages = new Thread[stagesTotal];
+		for (int stageIndex = 0; stageIndex < stagesTotal; stageIndex++) {
+			int stage = stageIndex;
+			stages[stageIndex] = new Thread(() -> runStage(stage), "pipeline-stage-" + stageIndex);
+			stages[stageIndex].setDaemon(true);
+			stages[stageIndex].start();
+		}
+	}
+
+	/**
+	 * Compute the outputs of every input through the pipeline. A single call
+	 * runs at a time, the others wait for it. The first exception or error
+	 * thrown by a stage is rethrown once every micro-batch came back. A stage
+	 * that threw an error, like an {@link OutOfMemoryError}, computes nothing
+	 * more and fails every following call, then rethrows the error from its
+	 * thread once the pipeline is closed
+	 *
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param outputs
+	 *            array where the outputs are written, one row per sample
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if inputs and outputs counts differ
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if an input count not equals to the input neurons count
+	 *             or an output count not equals to the output neurons count
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted, after the
+	 *             micro-batches already fed are drained
+	 */
+	public void predict(final double[][] inputs, final double[][] outputs)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException, InterruptedException {
+		if (inputs.length != outputs.length) {
+			throw new IllegalBatchSizeException();
+		}
+		int outputsCount = layersSizes[layersSizes.length - 1];
+		for (int sampleIndex = 0; sampleIndex < inputs.length; sampleIndex++) {
+			if (inputs[sampleIndex].length != layersSizes[0] || outputs[sampleIndex].length != outputsCount) {
+				throw new IllegalNeuronsCountException();
+			}
+		}
+
+		feederLock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("Pipeline closed");
+			}
+			int inFlight = 0;
+			Throwable failure = null;
+			try {
+				for (int firstSample = 0; firstSample < inputs.length; firstSample += microBatchSize) {
+					Packet packet = packets.poll();
+					if (packet == null) {
+						packet = queues[queues.length - 1].take();
+						inFlight--;
+						failure = failure != null ? failure : packet.failure;
+					}
+
+					packet.fill(inputs, outputs, firstSample,
+							Math.min(microBatchSize, inputs.length - firstSample), layersSizes[0]);
+					queues[0].put(packet);
+					inFlight++;
+				}
+			} finally {
+				failure = drain(inFlight, failure);
+			}
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			if (failure != null) {
+				throw (RuntimeException) failure;
+			}
+		} finally {
+			feederLock.unlock();
+		}
+	}
+
+	/**
+	 * Return the count of the stages
+	 *
+	 * @return the stages count
+	 */
+	public int getStagesCount() {
+		return stages.length;
+	}
+
+	/**
+	 * Return the count of the connection layers computed by a stage
+	 *
+	 * @param stageIndex
+	 *            index of the stage
+	 * @return the connection layers count of the stage
+	 */
+	public int getStageConnectionLayersCount(final int stageIndex) {
+		return stagesStarts[stageIndex + 1] - stagesStarts[stageIndex];
+	}
+
+	/**
+	 * Stop the threads of the stages
+	 */
+	@Override
+	public void close() {
+		feederLock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			queues[0].put(CLOSE);
+			for (Thread stage : stages) {
+				stage.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			feederLock.unlock();
+		}
+	}
+
+	/**
+	 * Wait for the packets in flight to come back, even if the caller is
+	 * interrupted, so that the next call finds every packet in the pool
+	 *
+	 * @param inFlight
+	 *            count of the packets in flight
+	 * @param failure
+	 *            first exception or error of a stage, or null
+	 * @return the first exception or error of a stage, or null
+	 */
+	private Throwable drain(final int inFlight, final Throwable failure) {
+		Throwable firstFailure = failure;
+		boolean interrupted = false;
+		for (int packetIndex = 0; packetIndex < inFlight;) {
+			try {
+				Packet packet = queues[queues.length - 1].take();
+				firstFailure = firstFailure != null ? firstFailure : packet.failure;
+				packets.add(packet);
+				packetIndex++;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return firstFailure;
+	}
+
+	/**
+	 * Compute the micro-batches of a stage until the pipeline is closed. After
+	 * an error the stage only hands the packets over, failed with that error,
+	 * and rethrows it once closed
+	 *
+	 * @param stageIndex
+	 *            index of the stage
+	 */
+	private void runStage(final int stageIndex) {
+		SpscQueue<Packet> input = queues[stageIndex];
+		SpscQueue<Packet> output = queues[stageIndex + 1];
+		boolean lastStage = stageIndex == stages.length - 1;
+		Error error = null;
+		try {
+			for (Packet packet = input.take(); packet != CLOSE; packet = input.take()) {
+				if (error != null) {
+					packet.failure = error;
+				} else if (packet.failure == null) {
+					try {
+						for (int connectionIndex = stagesStarts[stageIndex]; connectionIndex < stagesStarts[stageIndex
+								+ 1]; connectionIndex++) {
+							connectionLayers[connectionIndex].computeBatch(packet.workspace.values(connectionIndex),
+									packet.workspace.notActivatedValues(connectionIndex + 1),
+									packet.workspace.values(connectionIndex + 1), packet.samplesCount);
+						}
+						if (lastStage) {
+							packet.drainOutputs(layersSizes.length - 1, layersSizes[layersSizes.length - 1]);
+						}
+					} catch (RuntimeException e) {
+						// an exception must not stop the stage, or the packet
+						// would never come back to the caller waiting for it
+						packet.failure = e;
+					} catch (Error e) {
+						// the packet still goes back to the caller, which
+						// rethrows the error, but the stage cannot be trusted
+						// anymore
+						error = e;
+						packet.failure = e;
+					}
+				}
+				output.put(packet);
+			}
+			output.put(CLOSE);
+		} catch (InterruptedException e) {
+			// the pipeline is unusable without this stage
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Split the connection layers in contiguous stages, each with at least one
+	 * connection layer, minimizing the count of weights of the biggest stage
+	 * since it bounds the throughput of the pipeline
+	 *
+	 * @param layersSizes
+	 *            neurons count of each layer
+	 * @param stagesCount
+	 *            count of the stages, at most the connection layers count
+	 * @return index of the first connection layer of each stage, followed by the
+	 *         connection layers count
+	 */
+	private static int[] split(final int[] layersSizes, final int stagesCount) {
+		int connectionsCount = layersSizes.length - 1;
+		long[] prefixCosts = new long[connectionsCount + 1];
+		for (int connectionIndex = 0; connectionIndex < connectionsCount; connectionIndex++) {
+			prefixCosts[connectionIndex + 1] = prefixCosts[connectionIndex]
+					+ (long) layersSizes[connectionIndex] * layersSizes[connectionIndex + 1];
+		}
+
+		// bestCosts[s][i] is the lowest cost of the biggest stage when the first
+		// i connection layers are split in s stages, whose last one starts at
+		// lastStarts[s][i]
+		long[][] bestCosts = new long[stagesCount + 1][connectionsCount + 1];
+		int[][] lastStarts = new int[stagesCount + 1][connectionsCount + 1];
+		for (int end = 1; end <= connectionsCount; end++) {
+			bestCosts[1][end] = prefixCosts[end];
+		}
+		for (int stage = 2; stage <= stagesCount; stage++) {
+			for (int end = stage; end <= connectionsCount; end++) {
+				bestCosts[stage][end] = Long.MAX_VALUE;
+				for (int start = stage - 1; start < end; start++) {
+					long cost = Math.max(bestCosts[stage - 1][start], prefixCosts[end] - prefixCosts[start]);
+					if (cost < bestCosts[stage][end]) {
+						bestCosts[stage][end] = cost;
+						lastStarts[stage][end] = start;
+					}
+				}
+			}
+		}
+
+		int[] starts = new int[stagesCount + 1];
+		starts[stagesCount] = connectionsCount;
+		for (int stage = stagesCount; stage > 1; stage--) {
+			starts[stage - 1] = lastStarts[stage][starts[stage]];
+		}
+		return starts;
+	}
+
+	/**
+	 * Micro-batch travelling through the stages
+	 */
+	private static class Packet {
+
+		/**
+		 * Values of every layer of the micro-batch
+		 */
+		private final Workspace workspace;
+
+		/**
+		 * Count of the samples of the micro-batch
+		 */
+		private int samplesCount;
+
+		/**
+		 * Index of the first sample of the micro-batch
+		 */
+		private int firstSample;
+
+		/**
+		 * Array where the outputs are written
+		 */
+		private double[][] outputs;
+
+		/**
+		 * Exception or error thrown by a stage, or null
+		 */
+		private Throwable failure;
+
+		/**
+		 * Constructor that build a packet
+		 *
+		 * @param workspace
+		 *            values of every layer of the micro-batch
+		 */
+		private Packet(final Workspace workspace) {
+			this.workspace = workspace;
+		}
+
+		/**
+		 * Copy the inputs of a micro-batch in the packet
+		 *
+		 * @param inputs
+		 *            array of the inputs
+		 * @param outputs
+		 *            array where the outputs are written
+		 * @param firstSample
+		 *            index of the first sample of the micro-batch
+		 * @param samplesCount
+		 *            count of the samples of the micro-batch
+		 * @param inputsCount
+		 *            count of the inputs of a sample
+		 */
+		private void fill(final double[][] inputs, final double[][] outputs, final int firstSample,
+				final int samplesCount, final int inputsCount) {
+			this.outputs = outputs;
+			this.firstSample = firstSample;
+			this.samplesCount = samplesCount;
+			this.failure = null;
+			double[] values = workspace.values(0);
+			for (int sampleIndex = 0; sampleIndex < samplesCount; sampleIndex++) {
+				System.arraycopy(inputs[firstSample + sampleIndex], 0, values, sampleIndex * inputsCount,
+						inputsCount);
+			}
+		}
+
+		/**
+		 * Copy the outputs of the micro-batch in the outputs array
+		 *
+		 * @param outputLayerIndex
+		 *            index of the output layer
+		 * @param outputsCount
+		 *            count of the outputs of a sample
+		 */
+		private void drainOutputs(final int outputLayerIndex, final int outputsCount) {
+			double[] values = workspace.values(outputLayerIndex);
+			for (int sampleIndex = 0; sampleIndex < samplesCount; sampleIndex++) {
+				System.arraycopy(values, sampleIndex * outputsCount, outputs[firstSample + sampleIndex], 0,
+						outputsCount);
+			}
+			outputs = null;
+		}
+
+	}
+
+}
@@ -0,0 +1,242 @@
+package com.rebe.neuralNetwork;
+
+/**
+ * Speedup, memory savings and accuracy of a {@link SparseNeuralNetwork}
+ * against a dense network, measured on a set of inputs. The values of each
+ * connection layer are read by its index, from the input to the output one
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class PruningReport {
+
+	/**
+	 * Count of the compared samples
+	 */
+	private final int samplesCount;
+
+	/**
+	 * Ratio of the weights equal to 0 of each connection layer
+	 */
+	private final double[] sparsities;
+
+	/**
+	 * Indicates if each connection layer is compressed
+	 */
+	private final boolean[] compressed;
+
+	/**
+	 * Bytes of the stored weights of each connection layer
+	 */
+	private final long[] weightsBytes;
+
+	/**
+	 * Bytes of the dense weights of each connection layer
+	 */
+	private final long[] denseWeightsBytes;
+
+	/**
+	 * Mean nanoseconds per sample of each sparse connection layer
+	 */
+	private final double[] nanos;
+
+	/**
+	 * Mean nanoseconds per sample of each dense connection layer
+	 */
+	private final double[] denseNanos;
+
+	/**
+	 * Highest absolute difference between two outputs
+	 */
+	private final double maxAbsoluteError;
+
+	/**
+	 * Mean absolute difference between the outputs
+	 */
+	private final double meanAbsoluteError;
+
+	/**
+	 * Constructor that build the report
+	 *
+	 * @param samplesCount
+	 *            count of the compared samples
+	 * @param sparsities
+	 *            ratio of the weights equal to 0 of each connection layer
+	 * @param compressed
+	 *            indicates if each connection layer is compressed
+	 * @param weightsBytes
+	 *            bytes of the stored weights of each connection layer
+	 * @param denseWeightsBytes
+	 *            bytes of the dense weights of each connection layer
+	 * @param nanos
+	 *            mean nanoseconds per sample of each sparse connection layer
+	 * @param denseNanos
+	 *            mean nanoseconds per sample of each dense connection layer
+	 * @param maxAbsoluteError
+	 *            highest absolute difference between two outputs
+	 * @param meanAbsoluteError
+	 *            mean absolute difference between the outputs
+	 */
+	PruningReport(final int samplesCount, final double[] sparsities, final boolean[] compressed,
+			final long[] weightsBytes, final long[] denseWeightsBytes, final double[] nanos, final double[] denseNanos,
+			final double maxAbsoluteError, final double meanAbsoluteError) {
+		this.samplesCount = samplesCount;
+		this.sparsities = sparsities;
+		this.compressed = compressed;
+		this.weightsBytes = weightsBytes;
+		this.denseWeightsBytes = denseWeightsBytes;
+		this.nanos = nanos;
+		this.denseNanos = denseNanos;
+		this.maxAbsoluteError = maxAbsoluteError;
+		this.meanAbsoluteError = meanAbsoluteError;
+	}
+
+	/**
+	 * Return the count of the compared samples
+	 *
+	 * @return the samples count
+	 */
+	public int getSamplesCount() {
+		return samplesCount;
+	}
+
+	/**
+	 * Return the count of the connection layers
+	 *
+	 * @return the connection layers count
+	 */
+	public int getConnectionLayersCount() {
+		return sparsities.length;
+	}
+
+	/**
+	 * Return the ratio of the weights equal to 0 of a connection layer
+	 *
+	 * @param connectionIndex
+	 *            index of the connection layer
+	 * @return the sparsity
+	 */
+	public double getSparsity(final int connectionIndex) {
+		return sparsities[connectionIndex];
+	}
+
+	/**
+	 * Indicates if a connection layer is stored in the compressed format
+	 *
+	 * @param connectionIndex
+	 *            index of the connection layer
+	 * @return true if compressed
+	 */
+	public boolean isCompressed(final int connectionIndex) {
+		return compressed[connectionIndex];
+	}
+
+	/**
+	 * Return the bytes of the stored weights of a connection layer, with the
+	 * indexes of the compressed format
+	 *
+	 * @param connectionIndex
+	 *            index of the connection layer
+	 * @return the weights bytes
+	 */
+	public long getWeightsBytes(final int connectionIndex) {
+		return weightsBytes[connectionIndex];
+	}
+
+	/**
+	 * Return the bytes of the weights of a connection layer in the dense format
+	 *
+	 * @param connectionIndex
+	 *            index of the connection layer
+	 * @return the dense weights bytes
+	 */
+	public long getDenseWeightsBytes(final int connectionIndex) {
+		return denseWeightsBytes[connectionIndex];
+	}
+
+	/**
+	 * Return the mean nanoseconds of a sample in a connection layer of the
+	 * sparse network
+	 *
+	 * @param connectionIndex
+	 *            index of the connection layer
+	 * @return the mean nanoseconds
+	 */
+	public double getNanos(final int connectionIndex) {
+		return nanos[connectionIndex];
+	}
+
+	/**
+	 * Return the mean nanoseconds of a sample in a connection layer of the
+	 * dense network
+	 *
+	 * @param connectionIndex
+	 *            index of the connection layer
+	 * @return the mean dense nanoseconds
+	 */
+	public double getDenseNanos(final int connectionIndex) {
+		return denseNanos[connectionIndex];
+	}
+
+	/**
+	 * Return how many times a connection layer of the sparse network is faster
+	 * than the dense one
+	 *
+	 * @param connectionIndex
+	 *            index of the connection layer
+	 * @return the speedup
+	 */
+	public double getSpeedup(final int connectionIndex) {
+		return denseNanos[connectionIndex] / nanos[connectionIndex];
+	}
+
+	/**
+	 * Return the ratio of the dense weights bytes of a connection layer saved by
+	 * the sparse network, negative if the compressed format takes more memory
+	 *
+	 * @param connectionIndex
+	 *            index of the connection layer
+	 * @return the memory saving
+	 */
+	public double getMemorySaving(final int connectionIndex) {
+		return 1 - (double) weightsBytes[connectionIndex] / denseWeightsBytes[connectionIndex];
+	}
+
+	/**
+	 * Return the highest absolute difference between an output of the sparse
+	 * network and the same output of the dense network
+	 *
+	 * @return the max absolute error
+	 */
+	public double getMaxAbsoluteError() {
+		return maxAbsoluteError;
+	}
+
+	/**
+	 * Return the mean absolute difference between the outputs of the sparse
+	 * network and the ones of the dense network
+	 *
+	 * @return the mean absolute error
+	 */
+	public double getMeanAbsoluteError() {
+		return meanAbsoluteError;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Samples: ").append(samplesCount).append(" Max absolute error: ").append(maxAbsoluteError)
+				.append(" Mean absolute error: ").append(meanAbsoluteError);
+		for (int connectionIndex = 0; connectionIndex < sparsities.length; connectionIndex++) {
+			builder.append(System.lineSeparator()).append("Connection layer ").append(connectionIndex)
+					.append(compressed[connectionIndex] ? " (compressed)" : " (dense)").append(" Sparsity: ")
+					.append(String.format("%.3f", sparsities[connectionIndex])).append(" Weights bytes: ")
+					.append(weightsBytes[connectionIndex]).append('/').append(denseWeightsBytes[connectionIndex])
+					.append(" Time: ").append(String.format("%.0f/%.0f ns", nanos[connectionIndex],
+							denseNanos[connectionIndex]))
+					.append(" Speedup: ").append(String.format("%.2fx", getSpeedup(connectionIndex)));
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.rebe.neuralNetwork;
+
+/**
+ * Accuracy of a {@link QuantizedNeuralNetwork} against the double precision
+ * network it was quantized from, measured on a set of inputs
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class QuantizationReport {
+
+	/**
+	 * Count of the compared samples
+	 */
+	private final int samplesCount;
+
+	/**
+	 * Highest absolute difference between two outputs
+	 */
+	private final double maxAbsoluteError;
+
+	/**
+	 * Mean absolute difference between the outputs
+	 */
+	private final double meanAbsoluteError;
+
+	/**
+	 * Ratio of the samples whose highest output is the same neuron in both
+	 * networks
+	 */
+	private final double sameHighestOutputRatio;
+
+	/**
+	 * Constructor that build the report
+	 *
+	 * @param samplesCount
+	 *            count of the compared samples
+	 * @param maxAbsoluteError
+	 *            highest absolute difference between two outputs
+	 * @param meanAbsoluteError
+	 *            mean absolute difference between the outputs
+	 * @param sameHighestOutputRatio
+	 *            ratio of the samples whose highest output is the same neuron in
+	 *            both networks
+	 */
+	QuantizationReport(final int samplesCount, final double maxAbsoluteError, final double meanAbsoluteError,
+			final double sameHighestOutputRatio) {
+		this.samplesCount = samplesCount;
+		this.maxAbsoluteError = maxAbsoluteError;
+		this.meanAbsoluteError = meanAbsoluteError;
+		this.sameHighestOutputRatio = sameHighestOutputRatio;
+	}
+
+	/**
+	 * Return the count of the compared samples
+	 *
+	 * @return the samples count
+	 */
+	public int getSamplesCount() {
+		return samplesCount;
+	}
+
+	/**
+	 * Return the highest absolute difference between an output of the quantized
+	 * network and the same output of the double precision one
+	 *
+	 * @return the max absolute error
+	 */
+	public double getMaxAbsoluteError() {
+		return maxAbsoluteError;
+	}
+
+	/**
+	 * Return the mean absolute difference between the outputs of the quantized
+	 * network and the ones of the double precision network
+	 *
+	 * @return the mean absolute error
+	 */
+	public double getMeanAbsoluteError() {
+		return meanAbsoluteError;
+	}
+
+	/**
+	 * Return the ratio of the samples whose highest output is the same neuron in
+	 * both networks, the agreement of the two networks when used as classifiers
+	 *
+	 * @return the ratio, between 0 and 1
+	 */
+	public double getSameHighestOutputRatio() {
+		return sameHighestOutputRatio;
+	}
+
+	@Override
+	public String toString() {
+		return "Samples: " + samplesCount + " Max absolute error: " + maxAbsoluteError + " Mean absolute error: "
+				+ meanAbsoluteError + " Same highest output: " + sameHighestOutputRatio;
+	}
+
+}
@@ -0,0 +1,280 @@
+package com.rebe.neuralNetwork;
+
+import com.rebe.neuralNetwork.components.ConnectionLayers;
+import com.rebe.neuralNetwork.components.QuantizedConnectionLayers;
+import com.rebe.neuralNetwork.components.Workspace;
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
+import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+import com.rebe.neuralNetwork.utils.StripedPool;
+
+/**
+ * Inference only copy of a trained {@link NeuralNetwork} with 8 bits weights,
+ * built by {@link #quantize(NeuralNetwork, double[][])}. The weights take a
+ * quarter of the memory of single precision ones and the matrix-vector products
+ * run in integer arithmetic, see {@link QuantizedConnectionLayers}.
+ * <p>
+ * The quantized network never changes, so any count of threads can call
+ * {@link #predict(double[])} concurrently, each call borrowing its buffers
+ * from a pool shared by the threads
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class QuantizedNeuralNetwork {
+
+	/**
+	 * Count of the calibration samples computed at once
+	 */
+	private static final int CALIBRATION_BATCH = 256;
+
+	/**
+	 * Neurons count of each layer, from the input to the output layer
+	 */
+	private final int[] layersSizes;
+
+	/**
+	 * The quantized connection layers, in order
+	 */
+	private final QuantizedConnectionLayers[] network;
+
+	/**
+	 * Buffers of the threads calling {@link #predict(double[], double[])}
+	 */
+	private final StripedPool<Buffers> inferenceBuffers;
+
+	/**
+	 * Constructor that build the network from its quantized connection layers
+	 *
+	 * @param layersSizes
+	 *            neurons count of each layer
+	 * @param network
+	 *            the quantized connection layers
+	 */
+	private QuantizedNeuralNetwork(final int[] layersSizes, final QuantizedConnectionLayers[] network) {
+		this.layersSizes = layersSizes;
+		this.network = network;
+
+		int maxSize = 0;
+		for (int layerSize : layersSizes) {
+			maxSize = Math.max(maxSize, layerSize);
+		}
+		int maxLayerSize = maxSize;
+
+		this.inferenceBuffers = new StripedPool<>(() -> new Buffers(layersSizes, maxLayerSize));
+	}
+
+	/**
+	 * Quantize a trained network. The calibration inputs are computed by the
+	 * double precision network to find the range of the values of each layer,
+	 * so they should be a representative sample of the inputs the quantized
+	 * network will receive. The network must not be trained while it is
+	 * quantized
+	 *
+	 * @param network
+	 *            the trained network
+	 * @param calibrationInputs
+	 *            sample of inputs, one row per sample
+	 * @return the quantized network
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if there are no calibration inputs
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if an input count not equals to the input neurons count
+	 */
+	public static QuantizedNeuralNetwork quantize(final NeuralNetwork network, final double[][] calibrationInputs)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		int[] layersSizes = network.layersSizes().clone();
+		checkInputs(layersSizes, calibrationInputs);
+
+		double[] minimums = new double[layersSizes.length - 1];
+		double[] maximums = new double[layersSizes.length - 1];
+		Workspace workspace = new Workspace(layersSizes, Math.min(CALIBRATION_BATCH, calibrationInputs.length),
+				false);
+		for (int firstSample = 0; firstSample < calibrationInputs.length; firstSample += CALIBRATION_BATCH) {
+			int samplesCount = Math.min(CALIBRATION_BATCH, calibrationInputs.length - firstSample);
+			for (int sampleIndex = 0; sampleIndex < samplesCount; sampleIndex++) {
+				System.arraycopy(calibrationInputs[firstSample + sampleIndex], 0, workspace.values(0),
+						sampleIndex * layersSizes[0], layersSizes[0]);
+			}
+			network.forwardBatch(workspace, samplesCount);
+
+			for (int layerIndex = 0; layerIndex < layersSizes.length - 1; layerIndex++) {
+				double[] values = workspace.values(layerIndex);
+				for (int index = 0; index < samplesCount * layersSizes[layerIndex]; index++) {
+					minimums[layerIndex] = Math.min(minimums[layerIndex], values[index]);
+					maximums[layerIndex] = Math.max(maximums[layerIndex], values[index]);
+				}
+			}
+		}
+
+		QuantizedConnectionLayers[] quantizedNetwork = new QuantizedConnectionLayers[layersSizes.length - 1];
+		int connectionIndex = 0;
+		for (ConnectionLayers connectionLayer : network.connections()) {
+			quantizedNetwork[connectionIndex] = new QuantizedConnectionLayers(connectionLayer,
+					minimums[connectionIndex], maximums[connectionIndex]);
+			connectionIndex++;
+		}
+
+		return new QuantizedNeuralNetwork(layersSizes, quantizedNetwork);
+	}
+
+	/**
+	 * Compute the outputs using the received inputs
+	 *
+	 * @param inputs
+	 *            an array of values
+	 * @return the array of computed values
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to the input neurons count
+	 */
+	public double[] predict(final double[] inputs) throws IllegalNeuronsCountException {
+		double[] outputs = new double[layersSizes[layersSizes.length - 1]];
+		predict(inputs, outputs);
+		return outputs;
+	}
+
+	/**
+	 * Compute the outputs using the received inputs, like
+	 * {@link #predict(double[])}, writing them in the received array so that no
+	 * allocation is made
+	 *
+	 * @param inputs
+	 *            an array of values
+	 * @param outputs
+	 *            array where the computed values are written
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to the input neurons count or
+	 *             outputs count not equals to the output neurons count
+	 */
+	public void predict(final double[] inputs, final double[] outputs) throws IllegalNeuronsCountException {
+		if (inputs.length != layersSizes[0] || outputs.length != layersSizes[layersSizes.length - 1]) {
+			throw new IllegalNeuronsCountException();
+		}
+
+		Buffers buffers = inferenceBuffers.acquire();
+		try {
+			Workspace workspace = buffers.workspace;
+			System.arraycopy(inputs, 0, workspace.values(0), 0, inputs.length);
+			for (int connectionIndex = 0; connectionIndex < network.length; connectionIndex++) {
+				network[connectionIndex].compute(workspace.values(connectionIndex), buffers.quantizedValues,
+						buffers.accumulators, workspace.notActivatedValues(connectionIndex + 1),
+						workspace.values(connectionIndex + 1));
+			}
+			System.arraycopy(workspace.values(network.length), 0, outputs, 0, outputs.length);
+		} finally {
+			inferenceBuffers.release(buffers);
+		}
+	}
+
+	/**
+	 * Measure the accuracy of the quantized network against the double precision
+	 * network it was quantized from, comparing their outputs on the received
+	 * inputs
+	 *
+	 * @param reference
+	 *            the double precision network
+	 * @param inputs
+	 *            inputs of the comparison, one row per sample
+	 * @return the accuracy report
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if there are no inputs
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if an input count not equals to the input neurons count
+	 */
+	public QuantizationReport compare(final NeuralNetwork reference, final double[][] inputs)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		checkInputs(layersSizes, inputs);
+
+		int outputsCount = layersSizes[layersSizes.length - 1];
+		double[] expected = new double[outputsCount];
+		double[] actual = new double[outputsCount];
+		double maxAbsoluteError = 0;
+		double absoluteErrorsSum = 0;
+		int sameHighestOutputs = 0;
+		for (double[] input : inputs) {
+			reference.predict(input, expected);
+			predict(input, actual);
+
+			int expectedHighest = 0;
+			int actualHighest = 0;
+			for (int outputIndex = 0; outputIndex < outputsCount; outputIndex++) {
+				double error = Math.abs(expected[outputIndex] - actual[outputIndex]);
+				maxAbsoluteError = Math.max(maxAbsoluteError, error);
+				absoluteErrorsSum += error;
+				if (expected[outputIndex] > expected[expectedHighest]) {
+					expectedHighest = outputIndex;
+				}
+				if (actual[outputIndex] > actual[actualHighest]) {
+					actualHighest = outputIndex;
+				}
+			}
+			if (expectedHighest == actualHighest) {
+				sameHighestOutputs++;
+			}
+		}
+
+		return new QuantizationReport(inputs.length, maxAbsoluteError,
+				absoluteErrorsSum / ((double) inputs.length * outputsCount),
+				(double) sameHighestOutputs / inputs.length);
+	}
+
+	/**
+	 * Check the inputs received by the network
+	 *
+	 * @param layersSizes
+	 *            neurons count of each layer
+	 * @param inputs
+	 *            inputs to check, one row per sample
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if there are no inputs
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if an input count not equals to the input neurons count
+	 */
+	private static void checkInputs(final int[] layersSizes, final double[][] inputs)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		if (inputs.length == 0) {
+			throw new IllegalBatchSizeException();
+		}
+		for (double[] input : inputs) {
+			if (input.length != layersSizes[0]) {
+				throw new IllegalNeuronsCountException();
+			}
+		}
+	}
+
+	/**
+	 * Buffers used by a call of {@link QuantizedNeuralNetwork#predict(double[], double[])}
+	 */
+	private static class Buffers {
+
+		/**
+		 * Buffers of the layers values
+		 */
+		private final Workspace workspace;
+
+		/**
+		 * Quantized values of a layer
+		 */
+		private final byte[] quantizedValues;
+
+		/**
+		 * Integer accumulators of the products of a layer
+		 */
+		private final int[] accumulators;
+
+		/**
+		 * Constructor that allocate the buffers
+		 *
+		 * @param layersSizes
+		 *            neurons count of each layer
+		 * @param maxLayerSize
+		 *            neurons count of the biggest layer
+		 */
+		Buffers(final int[] layersSizes, final int maxLayerSize) {
+			this.workspace = new Workspace(layersSizes, 1, false);
+			this.quantizedValues = new byte[maxLayerSize];
+			this.accumulators = new int[maxLayerSize];
+		}
+
+	}
+
+}
@@ -0,0 +1,269 @@
+package com.rebe.neuralNetwork;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a {@link HyperParameterSearch}: the result of every candidate,
+ * ordered from the lowest to the highest loss, so that the first one holds the
+ * best configuration and its trained network
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class SearchReport {
+
+	/**
+	 * Reason why the training of a candidate stopped
+	 */
+	public enum Outcome {
+		/**
+		 * The measured loss went below the trainer threshold of the network
+		 */
+		CONVERGED,
+		/**
+		 * The measured loss did not improve for the patience count of epochs
+		 */
+		PATIENCE,
+		/**
+		 * Every epoch of the budget was run
+		 */
+		MAX_EPOCHS,
+		/**
+		 * The search stopped the candidate since its loss was worse than the
+		 * ones of the other candidates
+		 */
+		ELIMINATED
+	}
+
+	/**
+	 * Result of a candidate
+	 */
+	public static class Result {
+
+		/**
+		 * Configuration of the candidate
+		 */
+		private final HyperParameters hyperParameters;
+
+		/**
+		 * The trained network
+		 */
+		private final NeuralNetwork network;
+
+		/**
+		 * Why the training stopped
+		 */
+		private final Outcome outcome;
+
+		/**
+		 * Count of the epochs run
+		 */
+		private final int epochsCount;
+
+		/**
+		 * Count of the trained samples
+		 */
+		private final long cyclesCount;
+
+		/**
+		 * Lowest loss measured at the end of an epoch
+		 */
+		private final double bestLoss;
+
+		/**
+		 * Constructor that build the result
+		 *
+		 * @param hyperParameters
+		 *            configuration of the candidate
+		 * @param network
+		 *            the trained network
+		 * @param outcome
+		 *            why the training stopped
+		 * @param epochsCount
+		 *            count of the epochs run
+		 * @param cyclesCount
+		 *            count of the trained samples
+		 * @param bestLoss
+		 *            lowest loss measured at the end of an epoch
+		 */
+		Result(final HyperParameters hyperParameters, final NeuralNetwork network, final Outcome outcome,
+				final int epochsCount, final long cyclesCount, final double bestLoss) {
+			this.hyperParameters = hyperParameters;
+			this.network = network;
+			this.outcome = outcome;
+			this.epochsCount = epochsCount;
+			this.cyclesCount = cyclesCount;
+			this.bestLoss = bestLoss;
+		}
+
+		/**
+		 * Return the configuration of the candidate
+		 *
+		 * @return the hyper-parameters
+		 */
+		public HyperParameters getHyperParameters() {
+			return hyperParameters;
+		}
+
+		/**
+		 * Return the trained network, in the state of its last epoch
+		 *
+		 * @return the network
+		 */
+		public NeuralNetwork getNetwork() {
+			return network;
+		}
+
+		/**
+		 * Return why the training stopped
+		 *
+		 * @return the outcome
+		 */
+		public Outcome getOutcome() {
+			return outcome;
+		}
+
+		/**
+		 * Return the count of the epochs run
+		 *
+		 * @return the epochs count
+		 */
+		public int getEpochsCount() {
+			return epochsCount;
+		}
+
+		/**
+		 * Return the count of the trained samples
+		 *
+		 * @return the cycles count
+		 */
+		public long getCyclesCount() {
+			return cyclesCount;
+		}
+
+		/**
+		 * Return the lowest loss measured at the end of an epoch
+		 *
+		 * @return the best loss
+		 */
+		public double getBestLoss() {
+			return bestLoss;
+		}
+
+		@Override
+		public String toString() {
+			return hyperParameters + " Outcome: " + outcome + " Epochs: " + epochsCount + " Cycles: " + cyclesCount
+					+ " Best loss: " + bestLoss;
+		}
+
+	}
+
+	/**
+	 * Results of the candidates, from the lowest to the highest loss
+	 */
+	private final List<Result> results;
+
+	/**
+	 * Count of the samples of the epochs budget of every candidate that were
+	 * not trained
+	 */
+	private final long cyclesSaved;
+
+	/**
+	 * Nanoseconds spent by the search
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * Constructor that build the report
+	 *
+	 * @param results
+	 *            results of the candidates, from the lowest to the highest loss
+	 * @param cyclesSaved
+	 *            count of the samples of the epochs budget that were not trained
+	 * @param elapsedNanos
+	 *            nanoseconds spent by the search
+	 */
+	SearchReport(final List<Result> results, final long cyclesSaved, final long elapsedNanos) {
+		this.results = Collections.unmodifiableList(results);
+		this.cyclesSaved = cyclesSaved;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * Return the result with the lowest loss
+	 *
+	 * @return the best result
+	 */
+	public Result getBest() {
+		return results.get(0);
+	}
+
+	/**
+	 * Return the results of every candidate, from the lowest to the highest loss
+	 *
+	 * @return the results
+	 */
+	public List<Result> getResults() {
+		return results;
+	}
+
+	/**
+	 * Return the count of the candidates stopped by the search
+	 *
+	 * @return the eliminated candidates count
+	 */
+	public int getEliminatedCount() {
+		int count = 0;
+		for (Result result : results) {
+			if (result.outcome == Outcome.ELIMINATED) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Return the count of the samples trained by every candidate
+	 *
+	 * @return the cycles count
+	 */
+	public long getCyclesCount() {
+		long cyclesCount = 0;
+		for (Result result : results) {
+			cyclesCount += result.cyclesCount;
+		}
+		return cyclesCount;
+	}
+
+	/**
+	 * Return the count of the training cycles of the epochs budget of every
+	 * candidate that the early stops saved
+	 *
+	 * @return the saved cycles count
+	 */
+	public long getCyclesSaved() {
+		return cyclesSaved;
+	}
+
+	/**
+	 * Return the nanoseconds spent by the search
+	 *
+	 * @return the elapsed nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Candidates: ").append(results.size()).append(" Eliminated: ").append(getEliminatedCount())
+				.append(" Cycles: ").append(getCyclesCount()).append(" Cycles saved: ").append(cyclesSaved)
+				.append(" Elapsed: ").append(elapsedNanos / 1_000_000).append(" ms");
+		builder.append(System.lineSeparator()).append("Best: ").append(getBest());
+		return builder.toString();
+	}
+
+}
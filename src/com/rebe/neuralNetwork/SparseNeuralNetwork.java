@@ -0,0 +1,262 @@
+package com.rebe.neuralNetwork;
+
+import java.util.Arrays;
+
+import com.rebe.neuralNetwork.components.ConnectionLayers;
+import com.rebe.neuralNetwork.components.SparseConnectionLayers;
+import com.rebe.neuralNetwork.components.Workspace;
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
+import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+import com.rebe.neuralNetwork.exceptions.IllegalPruningArgumentException;
+import com.rebe.neuralNetwork.utils.StripedPool;
+
+/**
+ * Inference only copy of a pruned {@link NeuralNetwork}, built by
+ * {@link #compress(NeuralNetwork, double)}. The connection layers with enough
+ * weights equal to 0 store only the non-zero ones and skip the products of the
+ * pruned weights, see {@link SparseConnectionLayers}, while the others keep
+ * their dense weights matrix.
+ * <p>
+ * The sparse network never changes, so any count of threads can call
+ * {@link #predict(double[])} concurrently, each call borrowing its buffers
+ * from a pool shared by the threads
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class SparseNeuralNetwork {
+
+	/**
+	 * Neurons count of each layer, from the input to the output layer
+	 */
+	private final int[] layersSizes;
+
+	/**
+	 * The sparse connection layers, in order
+	 */
+	private final SparseConnectionLayers[] network;
+
+	/**
+	 * Buffers of the layers values of the threads calling
+	 * {@link #predict(double[], double[])}
+	 */
+	private final StripedPool<Workspace> inferenceWorkspaces;
+
+	/**
+	 * Constructor that build the network from its sparse connection layers
+	 *
+	 * @param layersSizes
+	 *            neurons count of each layer
+	 * @param network
+	 *            the sparse connection layers
+	 */
+	private SparseNeuralNetwork(final int[] layersSizes, final SparseConnectionLayers[] network) {
+		this.layersSizes = layersSizes;
+		this.network = network;
+		this.inferenceWorkspaces = new StripedPool<>(() -> new Workspace(layersSizes, 1, false));
+	}
+
+	/**
+	 * Compress a pruned network. Each connection layer whose ratio of weights
+	 * equal to 0 reaches the minimum sparsity is stored in the compressed
+	 * format. The network must not be trained while it is compressed
+	 *
+	 * @param network
+	 *            the pruned network
+	 * @param minSparsity
+	 *            lowest sparsity of a compressed connection layer, in [0, 1]
+	 * @return the sparse network
+	 * @throws IllegalPruningArgumentException
+	 *             Thrown if the minimum sparsity is not in [0, 1]
+	 */
+	public static SparseNeuralNetwork compress(final NeuralNetwork network, final double minSparsity)
+			throws IllegalPruningArgumentException {
+		if (!(minSparsity >= 0 && minSparsity <= 1)) {
+			throw new IllegalPruningArgumentException("minimum sparsity must be in [0, 1]");
+		}
+
+		int[] layersSizes = network.layersSizes().clone();
+		SparseConnectionLayers[] sparseNetwork = new SparseConnectionLayers[layersSizes.length - 1];
+		int connectionIndex = 0;
+		for (ConnectionLayers connectionLayer : network.connections()) {
+			sparseNetwork[connectionIndex++] = new SparseConnectionLayers(connectionLayer,
+					connectionLayer.getSparsity() >= minSparsity);
+		}
+
+		return new SparseNeuralNetwork(layersSizes, sparseNetwork);
+	}
+
+	/**
+	 * Compute the outputs using the received inputs
+	 *
+	 * @param inputs
+	 *            an array of values
+	 * @return the array of computed values
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to the input neurons count
+	 */
+	public double[] predict(final double[] inputs) throws IllegalNeuronsCountException {
+		double[] outputs = new double[layersSizes[layersSizes.length - 1]];
+		predict(inputs, outputs);
+		return outputs;
+	}
+
+	/**
+	 * Compute the outputs using the received inputs, like
+	 * {@link #predict(double[])}, writing them in the received array so that no
+	 * allocation is made
+	 *
+	 * @param inputs
+	 *            an array of values
+	 * @param outputs
+	 *            array where the computed values are written
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if inputs count not equals to the input neurons count or
+	 *             outputs count not equals to the output neurons count
+	 */
+	public void predict(final double[] inputs, final double[] outputs) throws IllegalNeuronsCountException {
+		if (inputs.length != layersSizes[0] || outputs.length != layersSizes[layersSizes.length - 1]) {
+			throw new IllegalNeuronsCountException();
+		}
+
+		Workspace workspace = inferenceWorkspaces.acquire();
+		try {
+			System.arraycopy(inputs, 0, workspace.values(0), 0, inputs.length);
+			for (int connectionIndex = 0; connectionIndex < network.length; connectionIndex++) {
+				network[connectionIndex].compute(workspace.values(connectionIndex),
+						workspace.notActivatedValues(connectionIndex + 1), workspace.values(connectionIndex + 1));
+			}
+			System.arraycopy(workspace.values(network.length), 0, outputs, 0, outputs.length);
+		} finally {
+			inferenceWorkspaces.release(workspace);
+		}
+	}
+
+	/**
+	 * Measure the sparse network against a dense network with the same layers,
+	 * usually the one it was pruned from: the time of each connection layer is
+	 * compared with the time of the dense weights matrix of the reference one on
+	 * the same values, and the outputs with the reference outputs. The layers
+	 * are timed after a warm up pass over the inputs, and the dense and the
+	 * sparse layer alternate which one runs first, so that neither of them
+	 * always finds the caches warmed by the other one
+	 *
+	 * @param reference
+	 *            the dense network
+	 * @param inputs
+	 *            inputs of the comparison, one row per sample
+	 * @return the pruning report
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if there are no inputs
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if the layers of the reference network differ or an
+	 *             input count not equals to the input neurons count
+	 */
+	public PruningReport compare(final NeuralNetwork reference, final double[][] inputs)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		if (!Arrays.equals(layersSizes, reference.layersSizes())) {
+			throw new IllegalNeuronsCountException();
+		}
+		if (inputs.length == 0) {
+			throw new IllegalBatchSizeException();
+		}
+
+		SparseConnectionLayers[] denseNetwork = new SparseConnectionLayers[network.length];
+		int connectionIndex = 0;
+		for (ConnectionLayers connectionLayer : reference.connections()) {
+			denseNetwork[connectionIndex++] = new SparseConnectionLayers(connectionLayer, false);
+		}
+
+		int outputsCount = layersSizes[layersSizes.length - 1];
+		double[] expected = new double[outputsCount];
+		double[] actual = new double[outputsCount];
+		Workspace workspace = new Workspace(layersSizes, 1, false);
+		Workspace denseWorkspace = new Workspace(layersSizes, 1, false);
+		long[] nanos = new long[network.length];
+		long[] denseNanos = new long[network.length];
+		double maxAbsoluteError = 0;
+		double absoluteErrorsSum = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			boolean measured = pass == 1;
+			for (int inputIndex = 0; inputIndex < inputs.length; inputIndex++) {
+				double[] input = inputs[inputIndex];
+				if (input.length != layersSizes[0]) {
+					throw new IllegalNeuronsCountException();
+				}
+
+				// both layers compute the same left values, so only their weights
+				// differ
+				System.arraycopy(input, 0, workspace.values(0), 0, input.length);
+				boolean denseFirst = (inputIndex & 1) == 0;
+				for (connectionIndex = 0; connectionIndex < network.length; connectionIndex++) {
+					double[] leftValues = workspace.values(connectionIndex);
+					long denseTime;
+					long time;
+					if (denseFirst) {
+						denseTime = timeCompute(denseNetwork[connectionIndex], leftValues, denseWorkspace,
+								connectionIndex + 1);
+						time = timeCompute(network[connectionIndex], leftValues, workspace, connectionIndex + 1);
+					} else {
+						time = timeCompute(network[connectionIndex], leftValues, workspace, connectionIndex + 1);
+						denseTime = timeCompute(denseNetwork[connectionIndex], leftValues, denseWorkspace,
+								connectionIndex + 1);
+					}
+					if (measured) {
+						denseNanos[connectionIndex] += denseTime;
+						nanos[connectionIndex] += time;
+					}
+				}
+				if (!measured) {
+					continue;
+				}
+				System.arraycopy(workspace.values(network.length), 0, actual, 0, outputsCount);
+
+				reference.predict(input, expected);
+				for (int outputIndex = 0; outputIndex < outputsCount; outputIndex++) {
+					double error = Math.abs(expected[outputIndex] - actual[outputIndex]);
+					maxAbsoluteError = Math.max(maxAbsoluteError, error);
+					absoluteErrorsSum += error;
+				}
+			}
+		}
+
+		double[] sparsities = new double[network.length];
+		boolean[] compressed = new boolean[network.length];
+		long[] weightsBytes = new long[network.length];
+		long[] denseWeightsBytes = new long[network.length];
+		double[] meanNanos = new double[network.length];
+		double[] meanDenseNanos = new double[network.length];
+		for (connectionIndex = 0; connectionIndex < network.length; connectionIndex++) {
+			sparsities[connectionIndex] = network[connectionIndex].getSparsity();
+			compressed[connectionIndex] = network[connectionIndex].isCompressed();
+			weightsBytes[connectionIndex] = network[connectionIndex].getWeightsBytes();
+			denseWeightsBytes[connectionIndex] = network[connectionIndex].getDenseWeightsBytes();
+			meanNanos[connectionIndex] = (double) nanos[connectionIndex] / inputs.length;
+			meanDenseNanos[connectionIndex] = (double) denseNanos[connectionIndex] / inputs.length;
+		}
+
+		return new PruningReport(inputs.length, sparsities, compressed, weightsBytes, denseWeightsBytes, meanNanos,
+				meanDenseNanos, maxAbsoluteError, absoluteErrorsSum / ((double) inputs.length * outputsCount));
+	}
+
+	/**
+	 * Compute the right values of a connection layer and return its time
+	 *
+	 * @param connectionLayer
+	 *            the timed connection layer
+	 * @param leftValues
+	 *            activated values of the left layer
+	 * @param workspace
+	 *            buffers where the right values are written
+	 * @param rightIndex
+	 *            index of the right layer
+	 * @return the nanoseconds of the computation
+	 */
+	private static long timeCompute(final SparseConnectionLayers connectionLayer, final double[] leftValues,
+			final Workspace workspace, final int rightIndex) {
+		long start = System.nanoTime();
+		connectionLayer.compute(leftValues, workspace.notActivatedValues(rightIndex), workspace.values(rightIndex));
+		return System.nanoTime() - start;
+	}
+
+}
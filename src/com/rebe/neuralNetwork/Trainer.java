@@ -0,0 +1,590 @@
+package com.rebe.neuralNetwork;
+
+import java.util.Random;
+
+import com.rebe.neuralNetwork.TrainingReport.StopReason;
+import com.rebe.neuralNetwork.data.Batch;
+import com.rebe.neuralNetwork.data.BatchReader;
+import com.rebe.neuralNetwork.data.Dataset;
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
+import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+import com.rebe.neuralNetwork.exceptions.IllegalTrainerArgumentException;
+import com.rebe.neuralNetwork.exceptions.NeuralNetworkException;
+
+/**
+ * Epoch based trainer of a {@link NeuralNetwork} with early stopping. Each
+ * epoch trains every training sample once in mini-batches, in a new random
+ * order unless shuffling is disabled, then measures the loss:
+ * <ul>
+ * <li>on the held-out samples, if a validation set or split is set, as the
+ * mean of the halved squared norms of the output errors</li>
+ * <li>otherwise on a window of the last trained batches, exponential or
+ * sliding, of the error coefficients of each batch alone</li>
+ * </ul>
+ * Unlike {@link NeuralNetwork#isTrained()}, whose error coefficient averages
+ * the whole history, the measured loss follows the current state of the
+ * network. The training stops as soon as the loss goes below the trainer
+ * threshold of the network, checked after every batch with the window loss,
+ * or when it did not improve by the minimum improvement for the patience
+ * count of epochs. The {@link TrainingReport} tells how many training cycles
+ * of the epochs budget were saved
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class Trainer {
+
+	/**
+	 * Kind of window of the training loss
+	 */
+	public enum Window {
+		/**
+		 * Exponential moving average, with a smoothing factor of 2 / (size + 1)
+		 */
+		EXPONENTIAL,
+		/**
+		 * Mean of the last size batches
+		 */
+		SLIDING
+	}
+
+	/**
+	 * Count of the consecutive samples of a dataset shuffled together
+	 */
+	private static final int SHUFFLE_BLOCK_SAMPLES = 1 << 16;
+
+	/**
+	 * The trained network
+	 */
+	private final NeuralNetwork network;
+
+	/**
+	 * Count of the samples of each batch
+	 */
+	private int batchSize = 32;
+
+	/**
+	 * Max count of epochs
+	 */
+	private int maxEpochs = 1000;
+
+	/**
+	 * Count of epochs without improvement that stops the training
+	 */
+	private int patience = 10;
+
+	/**
+	 * Minimum decrease of the loss counted as an improvement
+	 */
+	private double minImprovement = 0;
+
+	/**
+	 * Indicates if the training samples are shuffled at each epoch
+	 */
+	private boolean shuffle = true;
+
+	/**
+	 * Generator of the shuffled orders
+	 */
+	private Random random = new Random();
+
+	/**
+	 * Fraction of the samples, taken from the end, held out to measure the loss
+	 */
+	private double validationSplit = 0;
+
+	/**
+	 * Inputs of the validation set, null if not set
+	 */
+	private double[][] validationInputs;
+
+	/**
+	 * Expected outputs of the validation set, null if not set
+	 */
+	private double[][] validationExpectedResults;
+
+	/**
+	 * Kind of window of the training loss
+	 */
+	private Window window = Window.EXPONENTIAL;
+
+	/**
+	 * Count of batches of the training loss window
+	 */
+	private int windowSize = 100;
+
+	/**
+	 * Last error coefficients of the sliding window, circular
+	 */
+	private double[] windowValues;
+
+	/**
+	 * Sum of the values of the sliding window
+	 */
+	private double windowSum;
+
+	/**
+	 * Count of the values added to the window
+	 */
+	private long windowCount;
+
+	/**
+	 * Current training loss of the exponential window
+	 */
+	private double windowLoss;
+
+	/**
+	 * Count of the samples trained by the current run
+	 */
+	private long trainedSamples;
+
+	/**
+	 * Constructor that build a trainer with the default parameters: batches of
+	 * 32 samples, at most 1000 epochs, a patience of 10 epochs, shuffling, no
+	 * held-out samples and an exponential window of 100 batches
+	 *
+	 * @param network
+	 *            the trained network
+	 */
+	public Trainer(final NeuralNetwork network) {
+		this.network = network;
+	}
+
+	/**
+	 * Train the network on samples held in memory
+	 *
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @return the report of the training
+	 * @throws NeuralNetworkException
+	 *             Thrown if there are no training samples, inputs and expected
+	 *             outputs counts differ or a row does not fit the network
+	 */
+	public TrainingReport train(final double[][] inputs, final double[][] expectedResults)
+			throws NeuralNetworkException {
+		network.checkBatch(inputs, expectedResults);
+		int heldOutCount = validationInputs == null ? (int) (inputs.length * validationSplit) : 0;
+		int trainingCount = inputs.length - heldOutCount;
+		if (trainingCount == 0) {
+			throw new IllegalBatchSizeException();
+		}
+		if (validationInputs != null) {
+			network.checkBatch(validationInputs, validationExpectedResults);
+		}
+
+		int[] order = new int[trainingCount];
+		for (int index = 0; index < trainingCount; index++) {
+			order[index] = index;
+		}
+		double[][] batchInputs = new double[Math.min(batchSize, trainingCount)][];
+		double[][] batchExpectedResults = new double[batchInputs.length][];
+
+		return run(trainingCount, new Epochs<RuntimeException>() {
+
+			@Override
+			public boolean trainEpoch() throws NeuralNetworkException {
+				if (shuffle) {
+					shuffle(order);
+				}
+				for (int first = 0; first < trainingCount; first += batchInputs.length) {
+					int count = Math.min(batchInputs.length, trainingCount - first);
+					for (int sampleIndex = 0; sampleIndex < count; sampleIndex++) {
+						batchInputs[sampleIndex] = inputs[order[first + sampleIndex]];
+						batchExpectedResults[sampleIndex] = expectedResults[order[first + sampleIndex]];
+					}
+					if (trainBatch(batchInputs, batchExpectedResults, count)) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public double heldOutLoss() throws NeuralNetworkException {
+				if (validationInputs != null) {
+					return loss(validationInputs, validationExpectedResults, 0, validationInputs.length);
+				}
+				return loss(inputs, expectedResults, trainingCount, inputs.length);
+			}
+
+			@Override
+			public boolean hasHeldOut() {
+				return validationInputs != null || heldOutCount > 0;
+			}
+
+		});
+	}
+
+	/**
+	 * Train the network on a dataset streamed from its file. When shuffling,
+	 * each epoch reads the blocks of {@value #SHUFFLE_BLOCK_SAMPLES} consecutive
+	 * samples in a random order and the samples of each block in a random
+	 * order, see {@link Dataset#batches(int, long, long, int, long)}, so the
+	 * heap taken by the order does not grow with the dataset. Without shuffling
+	 * the samples are read in the file order, the fastest one for a dataset
+	 * bigger than the memory
+	 *
+	 * @param dataset
+	 *            the dataset
+	 * @return the report of the training
+	 * @throws NeuralNetworkException
+	 *             Thrown if there are no training samples or the dataset does
+	 *             not fit the network
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting for
+	 *             a batch
+	 */
+	public TrainingReport train(final Dataset dataset) throws NeuralNetworkException, InterruptedException {
+		if (dataset.getInputsCount() != network.layersSizes()[0]
+				|| dataset.getOutputsCount() != network.layersSizes()[network.layersSizes().length - 1]) {
+			throw new IllegalNeuronsCountException();
+		}
+		long samplesCount = dataset.getSamplesCount();
+		long heldOutCount = validationInputs == null ? (long) (samplesCount * validationSplit) : 0;
+		long trainingCount = samplesCount - heldOutCount;
+		if (trainingCount == 0) {
+			throw new IllegalBatchSizeException();
+		}
+		if (validationInputs != null) {
+			network.checkBatch(validationInputs, validationExpectedResults);
+		}
+
+		return run(trainingCount, new Epochs<InterruptedException>() {
+
+			@Override
+			public boolean trainEpoch() throws NeuralNetworkException, InterruptedException {
+				try (BatchReader reader = shuffle
+						? dataset.batches(batchSize, 0, trainingCount, SHUFFLE_BLOCK_SAMPLES, random.nextLong())
+						: dataset.batches(batchSize, 0, trainingCount)) {
+					for (Batch batch = reader.next(); batch != null; batch = reader.next()) {
+						if (trainBatch(batch.inputs(), batch.expectedOutputs(), batch.size())) {
+							return true;
+						}
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public double heldOutLoss() throws NeuralNetworkException, InterruptedException {
+				if (validationInputs != null) {
+					return loss(validationInputs, validationExpectedResults, 0, validationInputs.length);
+				}
+				double lossesSum = 0;
+				try (BatchReader reader = dataset.batches(batchSize, trainingCount, samplesCount)) {
+					for (Batch batch = reader.next(); batch != null; batch = reader.next()) {
+						lossesSum += loss(batch.inputs(), batch.expectedOutputs(), 0, batch.size()) * batch.size();
+					}
+				}
+				return lossesSum / heldOutCount;
+			}
+
+			@Override
+			public boolean hasHeldOut() {
+				return validationInputs != null || heldOutCount > 0;
+			}
+
+		});
+	}
+
+	/**
+	 * Run the epochs until a stop criterion is met
+	 *
+	 * @param trainingCount
+	 *            count of the training samples of each epoch
+	 * @param epochs
+	 *            the epochs of the training source
+	 * @return the report of the training
+	 * @throws NeuralNetworkException
+	 *             Thrown if a batch does not fit the network
+	 * @throws E
+	 *             Thrown by the training source
+	 */
+	private <E extends Exception> TrainingReport run(final long trainingCount, final Epochs<E> epochs)
+			throws NeuralNetworkException, E {
+		windowValues = window == Window.SLIDING ? new double[windowSize] : null;
+		windowSum = 0;
+		windowCount = 0;
+		windowLoss = 0;
+		trainedSamples = 0;
+
+		double bestLoss = Double.POSITIVE_INFINITY;
+		int bestEpoch = 0;
+		double loss = Double.NaN;
+		int epoch = 0;
+		StopReason stopReason = StopReason.MAX_EPOCHS;
+		while (epoch < maxEpochs) {
+			epoch++;
+			boolean converged = epochs.trainEpoch();
+			loss = epochs.hasHeldOut() && !converged ? epochs.heldOutLoss() : windowLoss();
+			if (loss < bestLoss - minImprovement) {
+				bestLoss = loss;
+				bestEpoch = epoch;
+			}
+			if (converged || loss < network.getTrainerThreshold()) {
+				stopReason = StopReason.CONVERGED;
+				break;
+			}
+			if (epoch - bestEpoch >= patience) {
+				stopReason = StopReason.PATIENCE;
+				break;
+			}
+		}
+
+		return new TrainingReport(stopReason, epoch, trainedSamples, maxEpochs * trainingCount - trainedSamples,
+				bestLoss, bestEpoch, loss);
+	}
+
+	/**
+	 * Train the first samples of a batch and add its error coefficient to the
+	 * window
+	 *
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @param samplesCount
+	 *            count of the trained samples, from the first row
+	 * @return true if the window loss went below the trainer threshold and no
+	 *         samples are held out, false otherwise
+	 * @throws NeuralNetworkException
+	 *             Thrown if the batch does not fit the network
+	 */
+	private boolean trainBatch(final double[][] inputs, final double[][] expectedResults, final int samplesCount)
+			throws NeuralNetworkException {
+		network.trainBatch(inputs, expectedResults, samplesCount);
+		trainedSamples += samplesCount;
+
+		double errorCoefficient = network.getLastErrorCoefficient();
+		if (window == Window.SLIDING) {
+			int index = (int) (windowCount % windowSize);
+			windowSum += errorCoefficient - windowValues[index];
+			windowValues[index] = errorCoefficient;
+		} else if (windowCount == 0) {
+			windowLoss = errorCoefficient;
+		} else {
+			windowLoss += 2.0 / (windowSize + 1) * (errorCoefficient - windowLoss);
+		}
+		windowCount++;
+
+		return validationInputs == null && validationSplit == 0 && windowCount >= windowSize
+				&& windowLoss() < network.getTrainerThreshold();
+	}
+
+	/**
+	 * Return the current training loss of the window
+	 *
+	 * @return the window loss
+	 */
+	private double windowLoss() {
+		if (window == Window.SLIDING) {
+			return windowSum / Math.min(windowCount, windowSize);
+		}
+		return windowLoss;
+	}
+
+	/**
+	 * Compute the mean of the halved squared norms of the output errors of a
+	 * slice of samples
+	 *
+	 * @param inputs
+	 *            array of the inputs, one row per sample
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @param firstSample
+	 *            index of the first sample of the slice
+	 * @param endSample
+	 *            index after the last sample of the slice
+	 * @return the loss
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if a row count not equals to the network input or
+	 *             output neurons count
+	 */
+	private double loss(final double[][] inputs, final double[][] expectedResults, final int firstSample,
+			final int endSample) throws IllegalNeuronsCountException {
+		double[] outputs = new double[expectedResults[firstSample].length];
+		double squaredNormsSum = 0;
+		for (int sampleIndex = firstSample; sampleIndex < endSample; sampleIndex++) {
+			network.predict(inputs[sampleIndex], outputs);
+			for (int index = 0; index < outputs.length; index++) {
+				double error = expectedResults[sampleIndex][index] - outputs[index];
+				squaredNormsSum += error * error;
+			}
+		}
+		return squaredNormsSum / (2 * (endSample - firstSample));
+	}
+
+	/**
+	 * Shuffle an order with the Fisher-Yates algorithm
+	 *
+	 * @param order
+	 *            the order to shuffle
+	 */
+	private void shuffle(final int[] order) {
+		for (int index = order.length - 1; index > 0; index--) {
+			int other = random.nextInt(index + 1);
+			int temp = order[index];
+			order[index] = order[other];
+			order[other] = temp;
+		}
+	}
+
+	/**
+	 * Set the count of the samples of each batch, 32 by default. A batch of 1
+	 * sample updates the network after every sample
+	 *
+	 * @param batchSize
+	 *            the batch size
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch size is lower than 1
+	 */
+	public void setBatchSize(final int batchSize) throws IllegalBatchSizeException {
+		if (batchSize < 1) {
+			throw new IllegalBatchSizeException();
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the max count of epochs, 1000 by default
+	 *
+	 * @param maxEpochs
+	 *            the epochs budget
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if the count is lower than 1
+	 */
+	public void setMaxEpochs(final int maxEpochs) throws IllegalTrainerArgumentException {
+		if (maxEpochs < 1) {
+			throw new IllegalTrainerArgumentException("max epochs must be greater than 0");
+		}
+		this.maxEpochs = maxEpochs;
+	}
+
+	/**
+	 * Set the count of epochs without improvement of the loss that stops the
+	 * training, 10 by default
+	 *
+	 * @param patience
+	 *            the patience
+	 * @param minImprovement
+	 *            minimum decrease of the loss counted as an improvement, 0 by
+	 *            default
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if the patience is lower than 1 or the minimum
+	 *             improvement is negative
+	 */
+	public void setPatience(final int patience, final double minImprovement) throws IllegalTrainerArgumentException {
+		if (patience < 1 || minImprovement < 0) {
+			throw new IllegalTrainerArgumentException("patience must be greater than 0 and min improvement positive");
+		}
+		this.patience = patience;
+		this.minImprovement = minImprovement;
+	}
+
+	/**
+	 * Enable or disable the shuffling of the training samples at each epoch,
+	 * enabled by default
+	 *
+	 * @param shuffle
+	 *            true to shuffle the samples
+	 * @param seed
+	 *            seed of the shuffled orders, so that a training can be repeated
+	 */
+	public void setShuffle(final boolean shuffle, final long seed) {
+		this.shuffle = shuffle;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Hold out a fraction of the samples, taken from the end, to measure the loss
+	 * at the end of each epoch. Ignored if a validation set is set
+	 *
+	 * @param validationSplit
+	 *            the held-out fraction, 0 by default
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if the fraction is not in [0, 1)
+	 */
+	public void setValidationSplit(final double validationSplit) throws IllegalTrainerArgumentException {
+		if (validationSplit < 0 || validationSplit >= 1) {
+			throw new IllegalTrainerArgumentException("validation split must be in [0, 1)");
+		}
+		this.validationSplit = validationSplit;
+	}
+
+	/**
+	 * Set the samples used to measure the loss at the end of each epoch
+	 *
+	 * @param inputs
+	 *            array of the inputs, one row per sample, or null to remove the
+	 *            validation set
+	 * @param expectedResults
+	 *            array of the expected outputs, one row per sample
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the set is empty or inputs and expected outputs
+	 *             counts differ
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if a row count not equals to the network input or
+	 *             output neurons count
+	 */
+	public void setValidationSet(final double[][] inputs, final double[][] expectedResults)
+			throws IllegalBatchSizeException, IllegalNeuronsCountException {
+		if (inputs != null) {
+			network.checkBatch(inputs, expectedResults);
+		}
+		this.validationInputs = inputs;
+		this.validationExpectedResults = inputs == null ? null : expectedResults;
+	}
+
+	/**
+	 * Set the window of the training loss, used when no samples are held out.
+	 * By default an exponential window of 100 batches
+	 *
+	 * @param window
+	 *            the kind of window
+	 * @param windowSize
+	 *            count of the batches of the window
+	 * @throws IllegalTrainerArgumentException
+	 *             Thrown if the size is lower than 1
+	 */
+	public void setWindow(final Window window, final int windowSize) throws IllegalTrainerArgumentException {
+		if (windowSize < 1) {
+			throw new IllegalTrainerArgumentException("window size must be greater than 0");
+		}
+		this.window = window;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Epochs of a training source
+	 *
+	 * @param <E>
+	 *            exception thrown by the source besides the network ones
+	 */
+	private interface Epochs<E extends Exception> {
+
+		/**
+		 * Train every training sample once
+		 *
+		 * @return true if the training converged before the end of the epoch
+		 */
+		boolean trainEpoch() throws NeuralNetworkException, E;
+
+		/**
+		 * Compute the loss on the held-out samples
+		 *
+		 * @return the held-out loss
+		 */
+		double heldOutLoss() throws NeuralNetworkException, E;
+
+		/**
+		 * Indicates if some samples are held out
+		 *
+		 * @return true if the loss is measured on held-out samples
+		 */
+		boolean hasHeldOut();
+
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.rebe.neuralNetwork;
+
+/**
+ * Outcome of a training run of a {@link Trainer}
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class TrainingReport {
+
+	/**
+	 * Reason why a training run stopped
+	 */
+	public enum StopReason {
+		/**
+		 * The measured loss went below the trainer threshold of the network
+		 */
+		CONVERGED,
+		/**
+		 * The measured loss did not improve for the patience count of epochs
+		 */
+		PATIENCE,
+		/**
+		 * Every epoch of the budget was run
+		 */
+		MAX_EPOCHS
+	}
+
+	/**
+	 * Why the training stopped
+	 */
+	private final StopReason stopReason;
+
+	/**
+	 * Count of the epochs run, the last one possibly interrupted
+	 */
+	private final int epochsCount;
+
+	/**
+	 * Count of the trained samples
+	 */
+	private final long cyclesCount;
+
+	/**
+	 * Count of the samples of the epochs budget that were not trained
+	 */
+	private final long cyclesSaved;
+
+	/**
+	 * Lowest loss measured at the end of an epoch
+	 */
+	private final double bestLoss;
+
+	/**
+	 * Epoch of the lowest loss
+	 */
+	private final int bestEpoch;
+
+	/**
+	 * Last measured loss
+	 */
+	private final double lastLoss;
+
+	/**
+	 * Constructor that build the report
+	 *
+	 * @param stopReason
+	 *            why the training stopped
+	 * @param epochsCount
+	 *            count of the epochs run
+	 * @param cyclesCount
+	 *            count of the trained samples
+	 * @param cyclesSaved
+	 *            count of the samples of the epochs budget that were not trained
+	 * @param bestLoss
+	 *            lowest loss measured at the end of an epoch
+	 * @param bestEpoch
+	 *            epoch of the lowest loss
+	 * @param lastLoss
+	 *            last measured loss
+	 */
+	TrainingReport(final StopReason stopReason, final int epochsCount, final long cyclesCount,
+			final long cyclesSaved, final double bestLoss, final int bestEpoch, final double lastLoss) {
+		this.stopReason = stopReason;
+		this.epochsCount = epochsCount;
+		this.cyclesCount = cyclesCount;
+		this.cyclesSaved = cyclesSaved;
+		this.bestLoss = bestLoss;
+		this.bestEpoch = bestEpoch;
+		this.lastLoss = lastLoss;
+	}
+
+	/**
+	 * Return why the training stopped
+	 *
+	 * @return the stop reason
+	 */
+	public StopReason getStopReason() {
+		return stopReason;
+	}
+
+	/**
+	 * Return the count of the epochs run, the last one possibly interrupted by
+	 * the convergence
+	 *
+	 * @return the epochs count
+	 */
+	public int getEpochsCount() {
+		return epochsCount;
+	}
+
+	/**
+	 * Return the count of the trained samples, each one a training cycle of the
+	 * network
+	 *
+	 * @return the cycles count
+	 */
+	public long getCyclesCount() {
+		return cyclesCount;
+	}
+
+	/**
+	 * Return the count of the training cycles of the epochs budget that the
+	 * early stop saved
+	 *
+	 * @return the saved cycles count
+	 */
+	public long getCyclesSaved() {
+		return cyclesSaved;
+	}
+
+	/**
+	 * Return the lowest loss measured at the end of an epoch
+	 *
+	 * @return the best loss
+	 */
+	public double getBestLoss() {
+		return bestLoss;
+	}
+
+	/**
+	 * Return the epoch of the lowest loss, starting from 1
+	 *
+	 * @return the best epoch
+	 */
+	public int getBestEpoch() {
+		return bestEpoch;
+	}
+
+	/**
+	 * Return the last measured loss
+	 *
+	 * @return the last loss
+	 */
+	public double getLastLoss() {
+		return lastLoss;
+	}
+
+	@Override
+	public String toString() {
+		return "Stop reason: " + stopReason + " Epochs: " + epochsCount + " Cycles: " + cyclesCount
+				+ " Cycles saved: " + cyclesSaved + " Best loss: " + bestLoss + " (epoch " + bestEpoch + ")"
+				+ " Last loss: " + lastLoss;
+	}
+
+}
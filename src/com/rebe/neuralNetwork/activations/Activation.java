@@ -0,0 +1,53 @@
+package com.rebe.neuralNetwork.activations;
+
+/**
+ * Activation function of the neurons of a layer. The functions work on whole
+ * arrays at a time, so the implementations can keep their loops tight and
+ * vectorizable
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public interface Activation {
+
+	/**
+	 * Apply the function to every not activated value
+	 * 
+	 * @param notActivatedValues
+	 *            values given to the function
+	 * @param values
+	 *            array where the activated values are written
+	 * @param length
+	 *            count of the values
+	 */
+	void forward(double[] notActivatedValues, double[] values, int length);
+
+	/**
+	 * Apply the function to every not activated value of the array
+	 * 
+	 * @param notActivatedValues
+	 *            values given to the function
+	 * @param values
+	 *            array where the activated values are written
+	 */
+	default void forward(double[] notActivatedValues, double[] values) {
+		forward(notActivatedValues, values, notActivatedValues.length);
+	}
+
+	/**
+	 * Multiply every gradient by the function derivate of the matching neuron.
+	 * Both the not activated and the activated values are received, so each
+	 * implementation can use the cheaper one
+	 * 
+	 * @param notActivatedValues
+	 *            values given to the function
+	 * @param values
+	 *            values computed by the function
+	 * @param gradients
+	 *            array multiplied in place
+	 * @param length
+	 *            count of the values
+	 */
+	void multiplyDerivate(double[] notActivatedValues, double[] values, double[] gradients, int length);
+
+}
@@ -0,0 +1,62 @@
+package com.rebe.neuralNetwork.activations;
+
+/**
+ * Leaky rectified linear unit, x for positive values and slope * x otherwise
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class LeakyReLU implements Activation {
+
+	/**
+	 * Slope used for the negative values, set by default at 0.01
+	 */
+	private final double slope;
+
+	/**
+	 * Constructor that build the function with the default slope of 0.01
+	 */
+	public LeakyReLU() {
+		this(0.01);
+	}
+
+	/**
+	 * Constructor that build the function with the received slope
+	 * 
+	 * @param slope
+	 *            slope used for the negative values
+	 */
+	public LeakyReLU(final double slope) {
+		this.slope = slope;
+	}
+
+	@Override
+	public void forward(final double[] notActivatedValues, final double[] values, final int length) {
+		for (int index = 0; index < length; index++) {
+			values[index] = notActivatedValues[index] > 0 ? notActivatedValues[index]
+					: slope * notActivatedValues[index];
+		}
+	}
+
+	/**
+	 * Keep the gradients of the positive neurons and scale the other ones by the
+	 * slope
+	 */
+	@Override
+	public void multiplyDerivate(final double[] notActivatedValues, final double[] values,
+			final double[] gradients, final int length) {
+		for (int index = 0; index < length; index++) {
+			gradients[index] *= notActivatedValues[index] > 0 ? 1 : slope;
+		}
+	}
+
+	/**
+	 * Return the slope used for the negative values
+	 * 
+	 * @return the slope
+	 */
+	public double getSlope() {
+		return slope;
+	}
+
+}
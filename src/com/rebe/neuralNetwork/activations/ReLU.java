@@ -0,0 +1,29 @@
+package com.rebe.neuralNetwork.activations;
+
+/**
+ * Rectified linear unit, max(0, x)
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class ReLU implements Activation {
+
+	@Override
+	public void forward(final double[] notActivatedValues, final double[] values, final int length) {
+		for (int index = 0; index < length; index++) {
+			values[index] = Math.max(0, notActivatedValues[index]);
+		}
+	}
+
+	/**
+	 * Keep the gradients of the positive neurons and clear the other ones
+	 */
+	@Override
+	public void multiplyDerivate(final double[] notActivatedValues, final double[] values,
+			final double[] gradients, final int length) {
+		for (int index = 0; index < length; index++) {
+			gradients[index] = notActivatedValues[index] > 0 ? gradients[index] : 0;
+		}
+	}
+
+}
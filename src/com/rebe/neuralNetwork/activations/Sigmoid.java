@@ -0,0 +1,35 @@
+package com.rebe.neuralNetwork.activations;
+
+import com.rebe.neuralNetwork.math.Backends;
+import com.rebe.neuralNetwork.math.Kernels;
+
+/**
+ * Sigmoid function, 1 / (1 + e^-x), the default activation of the network
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class Sigmoid implements Activation {
+
+	/**
+	 * Kernels used to compute the function
+	 */
+	private final Kernels kernels = Backends.kernels();
+
+	@Override
+	public void forward(final double[] notActivatedValues, final double[] values, final int length) {
+		kernels.sigmoid(notActivatedValues, values, length);
+	}
+
+	/**
+	 * Multiply every gradient by s * (1 - s), where s is the activated value
+	 */
+	@Override
+	public void multiplyDerivate(final double[] notActivatedValues, final double[] values,
+			final double[] gradients, final int length) {
+		for (int index = 0; index < length; index++) {
+			gradients[index] *= values[index] * (1 - values[index]);
+		}
+	}
+
+}
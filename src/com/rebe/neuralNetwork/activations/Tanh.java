@@ -0,0 +1,29 @@
+package com.rebe.neuralNetwork.activations;
+
+/**
+ * Hyperbolic tangent function
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class Tanh implements Activation {
+
+	@Override
+	public void forward(final double[] notActivatedValues, final double[] values, final int length) {
+		for (int index = 0; index < length; index++) {
+			values[index] = Math.tanh(notActivatedValues[index]);
+		}
+	}
+
+	/**
+	 * Multiply every gradient by 1 - t^2, where t is the activated value
+	 */
+	@Override
+	public void multiplyDerivate(final double[] notActivatedValues, final double[] values,
+			final double[] gradients, final int length) {
+		for (int index = 0; index < length; index++) {
+			gradients[index] *= 1 - values[index] * values[index];
+		}
+	}
+
+}
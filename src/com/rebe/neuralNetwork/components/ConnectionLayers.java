@@ -1,18 +1,68 @@
 package com.rebe.neuralNetwork.components;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
 import com.rebe.neuralNetwork.exceptions.EmptyLayerException;
+import com.rebe.neuralNetwork.exceptions.IllegalPrecisionException;
 import com.rebe.neuralNetwork.exceptions.IllegalRandomizerArgumentException;
+import com.rebe.neuralNetwork.exceptions.IllegalWeightsCountException;
+import com.rebe.neuralNetwork.exceptions.LearningRateOutOfRangeException;
+import com.rebe.neuralNetwork.exceptions.MomentumOutOfRangeException;
+import com.rebe.neuralNetwork.math.LinearAlgebra;
+import com.rebe.neuralNetwork.math.Precision;
+import com.rebe.neuralNetwork.math.Storage;
+import com.rebe.neuralNetwork.optimizers.Optimizer;
+import com.rebe.neuralNetwork.optimizers.Sgd;
 import com.rebe.neuralNetwork.utils.Utils;
 import com.rebe.neuralNetwork.utils.WeightRandomizer;
 
 /**
- * Represents the connection between two layer
+ * Represents the connection between two layer. The weights matrix and its
+ * optimizer state are kept by a {@link WeightsMatrix} of the requested
+ * precision and storage, so every operation is a single call whatever they
+ * are. With {@link Storage#OFF_HEAP} they are kept in direct buffers, split in
+ * chunks of whole rows, so the matrix can exceed the size of a Java array
  * 
  * @author Mattia Rebesan
  *
  */
 public class ConnectionLayers implements Comparable<ConnectionLayers> {
 
+	/**
+	 * Default lowest count of weights of a connection layer partitioned by
+	 * {@link #setParallelism(ForkJoinPool, int)}
+	 */
+	public static final int DEFAULT_MIN_PARALLEL_WEIGHTS = 1 << 18;
+
+	/**
+	 * Minimum count of right neurons of a range computed by its own task,
+	 * narrower ranges cost more in coordination than they gain in parallelism
+	 */
+	private static final int MIN_RANGE_NEURONS = 256;
+
+	/**
+	 * Alignment of the ranges bounds, a cache line of doubles, so that two tasks
+	 * never write the same cache line
+	 */
+	private static final int RANGE_ALIGNMENT = 8;
+
+	/**
+	 * Count of the bits of a digit of the magnitudes selected by
+	 * {@link #pruneToSparsity(double)}
+	 */
+	private static final int DIGIT_BITS = 8;
+
+	/**
+	 * Highest count of bytes of a chunk of an off heap weights matrix
+	 */
+	public static final long MAX_CHUNK_BYTES = 1L << 30;
+
 	/**
 	 * Identifier for the comparisons
 	 */
@@ -29,26 +79,45 @@ public class ConnectionLayers implements Comparable<ConnectionLayers> {
 	private final Layer rightLayer;
 
 	/**
-	 * Weights matrix of the connection layers, used to compute the right layer
-	 * neurons values
+	 * Weights matrix of the connection layers and its optimizer state, used to
+	 * compute the right layer neurons values. The matrix is stored flat in
+	 * row-major order: the row of a left neuron holds the weights towards every
+	 * right neuron, so the weight from the left neuron i to the right neuron j
+	 * is at index {@code i * rightLayer.size() + j}
+	 */
+	private final WeightsMatrix weightsMatrix;
+
+	/**
+	 * Storage precision of the weights and optimizer state matrices
+	 */
+	private final Precision precision;
+
+	/**
+	 * Storage of the weights and optimizer state matrices
+	 */
+	private final Storage storage;
+
+	/**
+	 * Update rule of the weights and biases
 	 */
-	private double[][] weightsMatrix;
+	private Optimizer optimizer;
 
 	/**
-	 * Delta matrix, used to compute new weight, associated with the momentum
+	 * Optimizer state arrays of the biases
 	 */
-	private double[][] previousDeltaMatrix;
+	private double[][] biasesState;
 
 	/**
-	 * Value used to avoid to be stuck in local minimal, higher value means higher
-	 * variation. Common to all network connection layer
+	 * Count of the updates made with the current optimizer
 	 */
-	private final double momentum;
+	private long step;
 
 	/**
-	 * Value used to control the network learning speed
+	 * Flat indexes of the pruned weights in increasing order, kept at 0 by every
+	 * update, or null if the connection layer was never pruned. They are stored
+	 * once, so that an update clears them without walking the whole matrix
 	 */
-	private final double learningRate;
+	private int[] prunedIndexes;
 
 	/**
 	 * Biases array of the connection layers, used to compute the right layer
@@ -61,6 +130,34 @@ public class ConnectionLayers implements Comparable<ConnectionLayers> {
 	 */
 	private double[] errors;
 
+	/**
+	 * Pool computing the ranges of a partitioned connection layer
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * Count of the ranges computed concurrently, 1 if the connection layer is
+	 * computed by the calling thread only
+	 */
+	private int rangesCount = 1;
+
+	/**
+	 * Squared norm of the weights steps of each range, summed after the
+	 * partitioned update
+	 */
+	private double[] rangesSquaredNorms = new double[1];
+
+	/**
+	 * Tasks of the ranges allocated by {@link #setParallelism(ForkJoinPool, int)}
+	 * and reused by every partitioned pass, or null while a pass uses them
+	 */
+	private final AtomicReference<RangesJob> idleRangesJob = new AtomicReference<>();
+
+	/**
+	 * Squared euclidean norm of the steps of the last weights update
+	 */
+	private double weightsUpdateSquaredNorm;
+
 	/**
 	 * Constructor that initialize the weights matrix based on the received layers
 	 * 
@@ -80,71 +177,574 @@ public class ConnectionLayers implements Comparable<ConnectionLayers> {
 	 *             Thrown in case of left or right null layer
 	 * @throws IllegalRandomizerArgumentException
 	 *             Throw in case left layer size less than 1
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown in case the learning rate is not in ]0, 1]
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown in case the momentum is not in [0, 1[
 	 */
 	public ConnectionLayers(final Layer leftLayer, final Layer rightLayer, final double momentum,
-			final double learningRate) throws EmptyLayerException, IllegalRandomizerArgumentException {
+			final double learningRate) throws EmptyLayerException, IllegalRandomizerArgumentException,
+			LearningRateOutOfRangeException, MomentumOutOfRangeException {
+		this(leftLayer, rightLayer, momentum, learningRate, Precision.DOUBLE);
+	}
 
-		if (leftLayer == null || rightLayer == null) {
-			throw new EmptyLayerException();
-		}
+	/**
+	 * Constructor that initialize the weights matrix based on the received
+	 * layers, storing it with the received precision
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param momentum
+	 *            value of the momentum, to avoid to be stuck in local minimal,
+	 *            higher value means higher variation
+	 * @param learningRate
+	 *            value used to control the network learning speed, lower values
+	 *            mean lower speed learning
+	 * @param precision
+	 *            storage precision of the weights and optimizer state matrices
+	 * @throws EmptyLayerException
+	 *             Thrown in case of left or right null layer
+	 * @throws IllegalRandomizerArgumentException
+	 *             Throw in case left layer size less than 1
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown in case the learning rate is not in ]0, 1]
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown in case the momentum is not in [0, 1[
+	 */
+	public ConnectionLayers(final Layer leftLayer, final Layer rightLayer, final double momentum,
+			final double learningRate, final Precision precision) throws EmptyLayerException,
+			IllegalRandomizerArgumentException, LearningRateOutOfRangeException, MomentumOutOfRangeException {
+		this(leftLayer, rightLayer, randomWeights(leftLayer, rightLayer, precision, Storage.HEAP), null, precision,
+				Storage.HEAP, new Sgd(learningRate, momentum));
+	}
+
+	/**
+	 * Constructor that initialize the weights matrix based on the received
+	 * layers, storing it with the received precision and storage. The off heap
+	 * storage holds double precision values only
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param momentum
+	 *            value of the momentum, to avoid to be stuck in local minimal,
+	 *            higher value means higher variation
+	 * @param learningRate
+	 *            value used to control the network learning speed, lower values
+	 *            mean lower speed learning
+	 * @param precision
+	 *            storage precision of the weights and optimizer state matrices
+	 * @param storage
+	 *            storage of the weights and optimizer state matrices
+	 * @throws EmptyLayerException
+	 *             Thrown in case of left or right null layer
+	 * @throws IllegalRandomizerArgumentException
+	 *             Throw in case left layer size less than 1
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown in case the learning rate is not in ]0, 1]
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown in case the momentum is not in [0, 1[
+	 * @throws IllegalPrecisionException
+	 *             Thrown in case of single precision off heap weights
+	 */
+	public ConnectionLayers(final Layer leftLayer, final Layer rightLayer, final double momentum,
+			final double learningRate, final Precision precision, final Storage storage) throws EmptyLayerException,
+			IllegalRandomizerArgumentException, LearningRateOutOfRangeException, MomentumOutOfRangeException,
+			IllegalPrecisionException {
+		this(leftLayer, rightLayer, randomWeights(leftLayer, rightLayer, precision, checkPrecision(precision, storage)),
+				null, precision, storage, new Sgd(learningRate, momentum));
+	}
+
+	/**
+	 * Constructor that use the received weights matrix and biases instead of
+	 * random ones. The arrays are not copied, the connection layer takes
+	 * ownership of them
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param momentum
+	 *            value of the momentum, to avoid to be stuck in local minimal,
+	 *            higher value means higher variation
+	 * @param learningRate
+	 *            value used to control the network learning speed, lower values
+	 *            mean lower speed learning
+	 * @param weightsMatrix
+	 *            weights matrix, with the layout described by
+	 *            {@link #getWeights()}
+	 * @param biases
+	 *            biases array, one per right layer neuron
+	 * @throws EmptyLayerException
+	 *             Thrown in case of left or right null layer
+	 * @throws IllegalWeightsCountException
+	 *             Thrown in case weights or biases count do not match the layers
+	 *             sizes
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown in case the learning rate is not in ]0, 1]
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown in case the momentum is not in [0, 1[
+	 */
+	public ConnectionLayers(final Layer leftLayer, final Layer rightLayer, final double momentum,
+			final double learningRate, final double[] weightsMatrix, final double[] biases) throws EmptyLayerException,
+			IllegalWeightsCountException, LearningRateOutOfRangeException, MomentumOutOfRangeException {
+		this(leftLayer, rightLayer, momentum, learningRate, weightsMatrix, biases, Precision.DOUBLE);
+	}
+
+	/**
+	 * Constructor that use the received weights matrix and biases instead of
+	 * random ones, like
+	 * {@link #ConnectionLayers(Layer, Layer, double, double, double[], double[])}.
+	 * In single precision the weights matrix is rounded in a new array
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param momentum
+	 *            value of the momentum, to avoid to be stuck in local minimal,
+	 *            higher value means higher variation
+	 * @param learningRate
+	 *            value used to control the network learning speed, lower values
+	 *            mean lower speed learning
+	 * @param weightsMatrix
+	 *            weights matrix, with the layout described by
+	 *            {@link #getWeights()}
+	 * @param biases
+	 *            biases array, one per right layer neuron
+	 * @param precision
+	 *            storage precision of the weights and optimizer state matrices
+	 * @throws EmptyLayerException
+	 *             Thrown in case of left or right null layer
+	 * @throws IllegalWeightsCountException
+	 *             Thrown in case weights or biases count do not match the layers
+	 *             sizes
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown in case the learning rate is not in ]0, 1]
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown in case the momentum is not in [0, 1[
+	 */
+	public ConnectionLayers(final Layer leftLayer, final Layer rightLayer, final double momentum,
+			final double learningRate, final double[] weightsMatrix, final double[] biases,
+			final Precision precision) throws EmptyLayerException, IllegalWeightsCountException,
+			LearningRateOutOfRangeException, MomentumOutOfRangeException {
+		this(leftLayer, rightLayer,
+				receivedWeights(leftLayer, rightLayer, weightsMatrix, biases, precision, Storage.HEAP), biases,
+				precision, Storage.HEAP, new Sgd(learningRate, momentum));
+	}
+
+	/**
+	 * Constructor that use the received weights matrix and biases instead of
+	 * random ones, like
+	 * {@link #ConnectionLayers(Layer, Layer, double, double, double[], double[], Precision)},
+	 * storing the weights with the received storage. Off the heap the weights
+	 * matrix is copied in direct buffers
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param momentum
+	 *            value of the momentum, to avoid to be stuck in local minimal,
+	 *            higher value means higher variation
+	 * @param learningRate
+	 *            value used to control the network learning speed, lower values
+	 *            mean lower speed learning
+	 * @param weightsMatrix
+	 *            weights matrix, with the layout described by
+	 *            {@link #getWeights()}
+	 * @param biases
+	 *            biases array, one per right layer neuron
+	 * @param precision
+	 *            storage precision of the weights and optimizer state matrices
+	 * @param storage
+	 *            storage of the weights and optimizer state matrices
+	 * @throws EmptyLayerException
+	 *             Thrown in case of left or right null layer
+	 * @throws IllegalWeightsCountException
+	 *             Thrown in case weights or biases count do not match the layers
+	 *             sizes
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown in case the learning rate is not in ]0, 1]
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown in case the momentum is not in [0, 1[
+	 * @throws IllegalPrecisionException
+	 *             Thrown in case of single precision off heap weights
+	 */
+	public ConnectionLayers(final Layer leftLayer, final Layer rightLayer, final double momentum,
+			final double learningRate, final double[] weightsMatrix, final double[] biases,
+			final Precision precision, final Storage storage) throws EmptyLayerException,
+			IllegalWeightsCountException, LearningRateOutOfRangeException, MomentumOutOfRangeException,
+			IllegalPrecisionException {
+		this(leftLayer, rightLayer, receivedWeights(leftLayer, rightLayer, weightsMatrix, biases, precision,
+				checkPrecision(precision, storage)), biases, precision, storage, new Sgd(learningRate, momentum));
+	}
+
+	/**
+	 * Constructor that use a weights matrix already stored in byte buffers, for
+	 * example mapped from a model file, without copying it. The matrix is split
+	 * in chunks of whole rows with the layout described by
+	 * {@link #getWeights()}, each one with {@link #chunkRows(int)} rows but the
+	 * last one. The weights are stored off the heap in double precision, and if
+	 * the buffers are read only the connection layer can compute but not be
+	 * optimized
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param momentum
+	 *            value of the momentum, to avoid to be stuck in local minimal,
+	 *            higher value means higher variation
+	 * @param learningRate
+	 *            value used to control the network learning speed, lower values
+	 *            mean lower speed learning
+	 * @param weightsChunks
+	 *            chunks of the weights matrix, with their byte order set, not
+	 *            modified while the connection layer is used
+	 * @param biases
+	 *            biases array, one per right layer neuron, not copied
+	 * @throws EmptyLayerException
+	 *             Thrown in case of left or right null layer
+	 * @throws IllegalWeightsCountException
+	 *             Thrown in case the chunks or the biases count do not match the
+	 *             layers sizes
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown in case the learning rate is not in ]0, 1]
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown in case the momentum is not in [0, 1[
+	 */
+	public ConnectionLayers(final Layer leftLayer, final Layer rightLayer, final double momentum,
+			final double learningRate, final ByteBuffer[] weightsChunks, final double[] biases)
+			throws EmptyLayerException, IllegalWeightsCountException, LearningRateOutOfRangeException,
+			MomentumOutOfRangeException {
+		this(leftLayer, rightLayer, chunkedWeights(leftLayer, rightLayer, weightsChunks, biases), biases,
+				Precision.DOUBLE, Storage.OFF_HEAP, new Sgd(learningRate, momentum));
+	}
+
+	/**
+	 * Constructor that copy the weights and biases of a connection layer in
+	 * double precision with the received storage. The copy shares the layers
+	 * and the optimizer of the copied connection layer, so it is meant for the
+	 * passes that do not use the layers values, like
+	 * {@link #computeBatch(double[], double[], double[], int)}, and its optimizer
+	 * state starts from zero
+	 * 
+	 * @param connectionLayer
+	 *            the copied connection layer
+	 * @param storage
+	 *            storage of the weights and optimizer state matrices
+	 */
+	public ConnectionLayers(final ConnectionLayers connectionLayer, final Storage storage) {
+		this(connectionLayer.leftLayer, connectionLayer.rightLayer, copiedWeights(connectionLayer, storage),
+				connectionLayer.biases.clone(), Precision.DOUBLE, storage, connectionLayer.optimizer);
+	}
+
+	/**
+	 * Constructor that build the connection layer around its weights matrix
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param weightsMatrix
+	 *            the weights matrix
+	 * @param biases
+	 *            biases array, or null for biases at 0
+	 * @param precision
+	 *            storage precision of the weights matrix
+	 * @param storage
+	 *            storage of the weights matrix
+	 * @param optimizer
+	 *            update rule of the weights and biases
+	 */
+	private ConnectionLayers(final Layer leftLayer, final Layer rightLayer, final WeightsMatrix weightsMatrix,
+			final double[] biases, final Precision precision, final Storage storage, final Optimizer optimizer) {
 
 		this.id = Utils.getConnectionLayerId();
 		this.leftLayer = leftLayer;
 		this.rightLayer = rightLayer;
-		this.momentum = momentum;
-		this.learningRate = learningRate;
-		initializeWeights();
-		initializeBiases();
+		this.precision = precision;
+		this.storage = storage;
+		this.weightsMatrix = weightsMatrix;
+		if (biases == null) {
+			initializeBiases();
+		} else {
+			this.biases = biases;
+		}
 		initializeErrors();
+		setOptimizer(optimizer);
 
 	}
 
 	/**
-	 * Method that initialize the weights matrix with random values
+	 * Check that a storage can hold weights in a precision
+	 * 
+	 * @param precision
+	 *            storage precision of the weights
+	 * @param storage
+	 *            storage of the weights
+	 * @return the storage
+	 * @throws IllegalPrecisionException
+	 *             Thrown in case of single precision off heap weights
 	 */
-	private void initializeWeights() throws IllegalRandomizerArgumentException {
+	private static Storage checkPrecision(final Precision precision, final Storage storage)
+			throws IllegalPrecisionException {
+		if (storage == Storage.OFF_HEAP && precision == Precision.FLOAT) {
+			throw new IllegalPrecisionException();
+		}
+		return storage;
+	}
 
-		weightsMatrix = new double[leftLayer.size()][rightLayer.size()];
+	/**
+	 * Method that initialize the weights matrix with random values
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param precision
+	 *            storage precision of the weights
+	 * @param storage
+	 *            storage of the weights
+	 * @return the weights matrix
+	 * @throws EmptyLayerException
+	 *             Thrown in case of left or right null layer
+	 * @throws IllegalRandomizerArgumentException
+	 *             Throw in case left layer size less than 1
+	 */
+	private static WeightsMatrix randomWeights(final Layer leftLayer, final Layer rightLayer,
+			final Precision precision, final Storage storage)
+			throws EmptyLayerException, IllegalRandomizerArgumentException {
+		if (leftLayer == null || rightLayer == null) {
+			throw new EmptyLayerException();
+		}
 
 		WeightRandomizer randomizer = new WeightRandomizer(leftLayer.size());
 
+		int columnsCount = rightLayer.size();
+		WeightsMatrix weightsMatrix = WeightsMatrix.allocate(leftLayer.size(), columnsCount, precision, storage);
+		double[] row = new double[columnsCount];
 		for (int rowIndex = 0; rowIndex < leftLayer.size(); rowIndex++) {
-			for (int columnIndex = 0; columnIndex < rightLayer.size(); columnIndex++) {
-				weightsMatrix[rowIndex][columnIndex] = randomizer.randWeight();
+			for (int columnIndex = 0; columnIndex < columnsCount; columnIndex++) {
+				row[columnIndex] = randomizer.randWeight();
 			}
+			weightsMatrix.put((long) rowIndex * columnsCount, row, 0, columnsCount);
 		}
+		return weightsMatrix;
+	}
+
+	/**
+	 * Check the received weights matrix and biases and store the weights with a
+	 * precision and a storage
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param weightsMatrix
+	 *            weights matrix, with the layout described by
+	 *            {@link #getWeights()}
+	 * @param biases
+	 *            biases array, one per right layer neuron
+	 * @param precision
+	 *            storage precision of the weights
+	 * @param storage
+	 *            storage of the weights
+	 * @return the weights matrix
+	 * @throws EmptyLayerException
+	 *             Thrown in case of left or right null layer
+	 * @throws IllegalWeightsCountException
+	 *             Thrown in case weights or biases count do not match the layers
+	 *             sizes
+	 */
+	private static WeightsMatrix receivedWeights(final Layer leftLayer, final Layer rightLayer,
+			final double[] weightsMatrix, final double[] biases, final Precision precision, final Storage storage)
+			throws EmptyLayerException, IllegalWeightsCountException {
+		if (leftLayer == null || rightLayer == null) {
+			throw new EmptyLayerException();
+		}
+		if (weightsMatrix.length != (long) leftLayer.size() * rightLayer.size()
+				|| biases.length != rightLayer.size()) {
+			throw new IllegalWeightsCountException();
+		}
+		return WeightsMatrix.wrap(leftLayer.size(), rightLayer.size(), weightsMatrix, precision, storage);
+	}
+
+	/**
+	 * Check the received chunks of a weights matrix and biases and wrap the
+	 * chunks in an off heap matrix
+	 * 
+	 * @param leftLayer
+	 *            left layer of the connection layer
+	 * @param rightLayer
+	 *            right layer of the connection layer
+	 * @param weightsChunks
+	 *            chunks of the weights matrix
+	 * @param biases
+	 *            biases array, one per right layer neuron
+	 * @return the weights matrix
+	 * @throws EmptyLayerException
+	 *             Thrown in case of left or right null layer
+	 * @throws IllegalWeightsCountException
+	 *             Thrown in case the chunks or the biases count do not match the
+	 *             layers sizes
+	 */
+	private static WeightsMatrix chunkedWeights(final Layer leftLayer, final Layer rightLayer,
+			final ByteBuffer[] weightsChunks, final double[] biases)
+			throws EmptyLayerException, IllegalWeightsCountException {
+		if (leftLayer == null || rightLayer == null) {
+			throw new EmptyLayerException();
+		}
+		int rowsCount = leftLayer.size();
+		int columnsCount = rightLayer.size();
+		int chunkRows = chunkRows(columnsCount);
+		if (weightsChunks.length != chunksCount(rowsCount, columnsCount) || biases.length != columnsCount) {
+			throw new IllegalWeightsCountException();
+		}
+		for (int chunkIndex = 0; chunkIndex < weightsChunks.length; chunkIndex++) {
+			long bytes = (long) Math.min(chunkRows, rowsCount - chunkIndex * chunkRows) * columnsCount * Double.BYTES;
+			if (weightsChunks[chunkIndex].capacity() != bytes) {
+				throw new IllegalWeightsCountException();
+			}
+		}
+		return new OffHeapWeightsMatrix(rowsCount, columnsCount,
+				new OffHeapMatrix(rowsCount, columnsCount, weightsChunks));
+	}
+
+	/**
+	 * Copy the weights matrix of a connection layer in double precision
+	 * 
+	 * @param connectionLayer
+	 *            the copied connection layer
+	 * @param storage
+	 *            storage of the copy
+	 * @return the weights matrix
+	 */
+	private static WeightsMatrix copiedWeights(final ConnectionLayers connectionLayer, final Storage storage) {
+		WeightsMatrix weightsMatrix = WeightsMatrix.allocate(connectionLayer.leftLayer.size(),
+				connectionLayer.rightLayer.size(), Precision.DOUBLE, storage);
+		double[] weights = connectionLayer.getWeights();
+		weightsMatrix.put(0, weights, 0, weights.length);
+		return weightsMatrix;
+	}
+
+	/**
+	 * Return the count of the rows of every chunk of an off heap weights matrix
+	 * but the last one, as many as fit in {@value #MAX_CHUNK_BYTES} bytes and a
+	 * multiple of four, so that the chunks do not change the order of the
+	 * products
+	 * 
+	 * @param rightSize
+	 *            neurons count of the right layer
+	 * @return the rows count of a chunk
+	 */
+	public static int chunkRows(final int rightSize) {
+		long rows = MAX_CHUNK_BYTES / ((long) rightSize * Double.BYTES);
+		return (int) Math.max(1, rows >= 4 ? rows & ~3 : rows);
+	}
 
-		previousDeltaMatrix = new double[leftLayer.size()][rightLayer.size()];
+	/**
+	 * Return the count of the chunks of an off heap weights matrix
+	 * 
+	 * @param leftSize
+	 *            neurons count of the left layer
+	 * @param rightSize
+	 *            neurons count of the right layer
+	 * @return the chunks count
+	 */
+	public static int chunksCount(final int leftSize, final int rightSize) {
+		int rows = chunkRows(rightSize);
+		return (leftSize + rows - 1) / rows;
 	}
 
 	/**
 	 * Method that initialize the errors array with 0
 	 */
 	private void initializeErrors() {
-		biases = new double[rightLayer.size()];
+		errors = new double[leftLayer.size()];
 	}
 
+	/**
+	 * Method that initialize the biases array with 0
+	 */
 	private void initializeBiases() {
-		errors = new double[leftLayer.size()];
+		biases = new double[rightLayer.size()];
 	}
 
 	/**
-	 * Compute the right layer values using left layer, weights matrix and biases
+	 * Compute the right layer values using left layer, weights matrix and biases.
+	 * The result is accumulated straight into the not activated values of the
+	 * right layer, without any allocation
 	 */
 	public void compute() {
-		double[] inputs = leftLayer.values();
-		double[] result = new double[rightLayer.size()];
-
-		double sum;
-		for (int columnIndex = 0; columnIndex < rightLayer.size(); columnIndex++) {
-			sum = 0;
-			for (int rowIndex = 0; rowIndex < leftLayer.size(); rowIndex++) {
-				sum += inputs[rowIndex] * weightsMatrix[rowIndex][columnIndex];
-			}
-			sum += biases[columnIndex];
-			result[columnIndex] = sum;
+		computeColumns(leftLayer.values(), rightLayer.notActivatedValues());
+		rightLayer.activeNeurons();
+	}
+
+	/**
+	 * Compute the not activated right values of a single sample, one range of
+	 * right neurons per task if the connection layer is partitioned
+	 * 
+	 * @param leftValues
+	 *            activated values of the left layer
+	 * @param result
+	 *            buffer for the not activated values of the right layer
+	 */
+	private void computeColumns(final double[] leftValues, final double[] result) {
+		int columnsCount = rightLayer.size();
+		if (rangesCount > 1) {
+			forEachRange(RangeWork.COMPUTE_COLUMNS, leftValues, result);
+		} else {
+			computeColumns(leftValues, result, 0, columnsCount);
 		}
-		rightLayer.setValues(result);
+	}
+
+	/**
+	 * Compute the not activated values of a range of right neurons of a single
+	 * sample
+	 * 
+	 * @param leftValues
+	 *            activated values of the left layer
+	 * @param result
+	 *            buffer for the not activated values of the right layer
+	 * @param fromColumn
+	 *            first right neuron of the range, included
+	 * @param toColumn
+	 *            last right neuron of the range, excluded
+	 */
+	private void computeColumns(final double[] leftValues, final double[] result, final int fromColumn,
+			final int toColumn) {
+		System.arraycopy(biases, fromColumn, result, fromColumn, toColumn - fromColumn);
+		weightsMatrix.gemvTransposed(leftValues, result, fromColumn, toColumn);
+	}
+
+	/**
+	 * Compute the right layer values from sparse left layer values, like
+	 * {@link #compute()}. Only the weights rows of the non-zero left values are
+	 * read, so the cost is proportional to their count and not to the left layer
+	 * size
+	 * 
+	 * @param indices
+	 *            indexes of the non-zero left values, distinct and lower than the
+	 *            left layer size
+	 * @param values
+	 *            the non-zero left values, in the order of their indexes
+	 * @param count
+	 *            count of the non-zero left values
+	 */
+	public void computeSparse(final int[] indices, final double[] values, final int count) {
+		double[] result = rightLayer.notActivatedValues();
+		int columnsCount = rightLayer.size();
+
+		System.arraycopy(biases, 0, result, 0, columnsCount);
+		for (int valueIndex = 0; valueIndex < count; valueIndex++) {
+			weightsMatrix.axpy(values[valueIndex], indices[valueIndex], result);
+		}
+
 		rightLayer.activeNeurons();
 	}
 
@@ -157,50 +757,785 @@ public class ConnectionLayers implements Comparable<ConnectionLayers> {
 	public void optimize(final double[] rightLayerErrors) {
 		computeCurrentLeftLayerError(rightLayerErrors);
 
-		// optimize weights
+		step++;
 		double[] leftLayerValues = leftLayer.values();
-		double delta;
-		for (int columnIndex = 0; columnIndex < rightLayer.size(); columnIndex++) {
-			for (int rowIndex = 0; rowIndex < leftLayer.size(); rowIndex++) {
-				delta = learningRate * leftLayerValues[rowIndex] * rightLayerErrors[columnIndex];
-				weightsMatrix[rowIndex][columnIndex] += delta + momentum * previousDeltaMatrix[rowIndex][columnIndex];
-				previousDeltaMatrix[rowIndex][columnIndex] = delta;
+		int columnsCount = rightLayer.size();
+		if (rangesCount > 1) {
+			forEachRange(RangeWork.OPTIMIZE_COLUMNS, rightLayerErrors, leftLayerValues);
+			double squaredNorm = 0;
+			for (int rangeIndex = 0; rangeIndex < rangesCount; rangeIndex++) {
+				squaredNorm += rangesSquaredNorms[rangeIndex];
 			}
+			weightsUpdateSquaredNorm = squaredNorm;
+		} else {
+			weightsUpdateSquaredNorm = optimizeColumns(rightLayerErrors, leftLayerValues, 0, columnsCount);
+		}
+		clearPrunedWeights();
+	}
+
+	/**
+	 * Update the weights and biases of a range of right neurons
+	 * 
+	 * @param rightLayerErrors
+	 *            errors array of the right layer
+	 * @param leftLayerValues
+	 *            activated values of the left layer
+	 * @param fromColumn
+	 *            first right neuron of the range, included
+	 * @param toColumn
+	 *            last right neuron of the range, excluded
+	 * @return the squared norm of the steps of the weights of the range
+	 */
+	private double optimizeColumns(final double[] rightLayerErrors, final double[] leftLayerValues,
+			final int fromColumn, final int toColumn) {
+		// optimize weights, one row at a time
+		int columnsCount = rightLayer.size();
+		int length = toColumn - fromColumn;
+		double squaredNorm = 0;
+		for (int rowIndex = 0; rowIndex < leftLayer.size(); rowIndex++) {
+			long offset = (long) rowIndex * columnsCount + fromColumn;
+			squaredNorm += weightsMatrix.update(optimizer, offset, rightLayerErrors, fromColumn,
+					leftLayerValues[rowIndex], step, length);
 		}
 
 		// optimize biases
-		for (int index = 0; index < biases.length; index++) {
-			biases[index] += rightLayerErrors[index];
+		optimizer.update(biases, biasesState, fromColumn, rightLayerErrors, fromColumn, 1, step, length);
+		return squaredNorm;
+	}
+
+	/**
+	 * Optimize the connection layer after a {@link #computeSparse} pass. Only the
+	 * weights rows of the non-zero left values are updated, the other rows would
+	 * receive a zero gradient. Their optimizer state is updated lazily too: it is
+	 * left untouched instead of being decayed, so with a momentum or an adaptive
+	 * optimizer a row follows its own history, which is the usual trade-off of
+	 * sparse updates. The errors of the left layer are not computed, since a
+	 * sparse left layer is the input one
+	 * 
+	 * @param rightLayerErrors
+	 *            errors array of the right layer
+	 * @param indices
+	 *            indexes of the non-zero left values, distinct and lower than the
+	 *            left layer size
+	 * @param values
+	 *            the non-zero left values, in the order of their indexes
+	 * @param count
+	 *            count of the non-zero left values
+	 */
+	public void optimizeSparse(final double[] rightLayerErrors, final int[] indices, final double[] values,
+			final int count) {
+		step++;
+		int columnsCount = rightLayer.size();
+		double squaredNorm = 0;
+		for (int valueIndex = 0; valueIndex < count; valueIndex++) {
+			long offset = (long) indices[valueIndex] * columnsCount;
+			squaredNorm += weightsMatrix.update(optimizer, offset, rightLayerErrors, 0, values[valueIndex], step,
+					columnsCount);
 		}
+		weightsUpdateSquaredNorm = squaredNorm;
+		clearPrunedWeights();
+
+		optimizer.update(biases, biasesState, 0, rightLayerErrors, 0, 1, step, biases.length);
 	}
 
 	/**
-	 * Compute the errors array of the left layer in the connection layer
+	 * Compute the errors array of the left layer in the connection layer. Each
+	 * left neuron gradient is the product between its weights row and the right
+	 * layer errors, so no transposed matrix is needed. A partitioned connection
+	 * layer splits the left neurons instead of the right ones, since each
+	 * gradient reads a whole row
 	 * 
 	 * @param rightLayerErrors
 	 *            errors array of the right layer
 	 */
 	private void computeCurrentLeftLayerError(final double[] rightLayerErrors) {
-		double[][] weightsMatrixTransposed = Utils.transposeMatrix(weightsMatrix);
+		int rowsCount = leftLayer.size();
+		if (rangesCount > 1) {
+			forEachRange(RangeWork.COMPUTE_LEFT_ERROR_ROWS, rightLayerErrors, null);
+		} else {
+			computeLeftErrorRows(rightLayerErrors, 0, rowsCount);
+		}
 
-		double[] functionGradient = new double[leftLayer.size()];
-		double sum;
-		for (int rowIndex = 0; rowIndex < leftLayer.size(); rowIndex++) {
-			sum = 0;
-			for (int columnIndex = 0; columnIndex < rightLayer.size(); columnIndex++) {
-				sum += weightsMatrixTransposed[columnIndex][rowIndex] * rightLayerErrors[columnIndex];
+		leftLayer.activation().multiplyDerivate(leftLayer.notActivatedValues(), leftLayer.values(), errors,
+				errors.length);
+
+	}
+
+	/**
+	 * Compute the errors of a range of left neurons, before their activation
+	 * derivative
+	 * 
+	 * @param rightLayerErrors
+	 *            errors array of the right layer
+	 * @param fromRow
+	 *            first left neuron of the range, included
+	 * @param toRow
+	 *            last left neuron of the range, excluded
+	 */
+	private void computeLeftErrorRows(final double[] rightLayerErrors, final int fromRow, final int toRow) {
+		Arrays.fill(errors, fromRow, toRow, 0);
+		weightsMatrix.gemv(rightLayerErrors, errors, fromRow, toRow);
+	}
+
+	/**
+	 * Compute the right layer values of a batch of samples using the weights
+	 * matrix and biases, as a single matrix-matrix product. A single sample of a
+	 * partitioned connection layer is computed one range of right neurons per
+	 * task, like {@link #compute()}
+	 * 
+	 * @param leftValues
+	 *            activated values of the left layer, one row per sample
+	 * @param rightNotActivatedValues
+	 *            buffer for the not activated values of the right layer, one row
+	 *            per sample
+	 * @param rightValues
+	 *            buffer for the activated values of the right layer, one row per
+	 *            sample
+	 * @param samplesCount
+	 *            count of the samples in the batch
+	 */
+	public void computeBatch(final double[] leftValues, final double[] rightNotActivatedValues,
+			final double[] rightValues, final int samplesCount) {
+		int columnsCount = rightLayer.size();
+
+		if (samplesCount == 1 && rangesCount > 1) {
+			computeColumns(leftValues, rightNotActivatedValues);
+			rightLayer.activation().forward(rightNotActivatedValues, rightValues, columnsCount);
+			return;
+		}
+
+		for (int sampleIndex = 0; sampleIndex < samplesCount; sampleIndex++) {
+			System.arraycopy(biases, 0, rightNotActivatedValues, sampleIndex * columnsCount, columnsCount);
+		}
+
+		weightsMatrix.gemm(samplesCount, leftValues, rightNotActivatedValues);
+
+		rightLayer.activation().forward(rightNotActivatedValues, rightValues, samplesCount * columnsCount);
+	}
+
+	/**
+	 * Compute the errors of the left layer for a batch of samples, multiplying
+	 * the right layer errors by the transposed weights matrix without building it
+	 * 
+	 * @param rightErrors
+	 *            errors of the right layer, one row per sample
+	 * @param leftNotActivatedValues
+	 *            not activated values of the left layer, one row per sample
+	 * @param leftValues
+	 *            activated values of the left layer, one row per sample
+	 * @param leftErrors
+	 *            buffer for the errors of the left layer, one row per sample
+	 * @param samplesCount
+	 *            count of the samples in the batch
+	 */
+	public void backPropagateBatch(final double[] rightErrors, final double[] leftNotActivatedValues,
+			final double[] leftValues, final double[] leftErrors, final int samplesCount) {
+		int length = samplesCount * leftLayer.size();
+
+		Arrays.fill(leftErrors, 0, length, 0);
+		weightsMatrix.gemmTransposedRight(samplesCount, rightErrors, leftErrors);
+
+		leftLayer.activation().multiplyDerivate(leftNotActivatedValues, leftValues, leftErrors, length);
+	}
+
+	/**
+	 * Add the weights and biases gradients of a batch of samples to the received
+	 * buffers
+	 * 
+	 * @param leftValues
+	 *            activated values of the left layer, one row per sample
+	 * @param rightErrors
+	 *            errors of the right layer, one row per sample
+	 * @param samplesCount
+	 *            count of the samples in the batch
+	 * @param weightsGradient
+	 *            buffer where the weights gradient is accumulated, same layout
+	 *            of the weights matrix
+	 * @param biasesGradient
+	 *            buffer where the biases gradient is accumulated
+	 */
+	public void accumulateGradients(final double[] leftValues, final double[] rightErrors, final int samplesCount,
+			final double[] weightsGradient, final double[] biasesGradient) {
+		int columnsCount = rightLayer.size();
+
+		LinearAlgebra.gemmTransposedLeft(leftLayer.size(), columnsCount, samplesCount, leftValues, rightErrors,
+				weightsGradient);
+
+		for (int sampleIndex = 0; sampleIndex < samplesCount; sampleIndex++) {
+			LinearAlgebra.axpy(1, rightErrors, sampleIndex * columnsCount, biasesGradient, 0, columnsCount);
+		}
+	}
+
+	/**
+	 * Update weights and biases with the mean of the accumulated gradients,
+	 * following the same rule of {@link #optimize(double[])}
+	 * 
+	 * @param weightsGradient
+	 *            accumulated weights gradient, same layout of the weights matrix
+	 * @param biasesGradient
+	 *            accumulated biases gradient
+	 * @param samplesCount
+	 *            count of the samples the gradients are accumulated over
+	 */
+	public void applyGradients(final double[] weightsGradient, final double[] biasesGradient,
+			final int samplesCount) {
+		step++;
+		weightsUpdateSquaredNorm = weightsMatrix.update(optimizer, 0, weightsGradient, 0, 1.0 / samplesCount, step,
+				weightsGradient.length);
+		clearPrunedWeights();
+		optimizer.update(biases, biasesState, 0, biasesGradient, 0, 1.0 / samplesCount, step, biases.length);
+	}
+
+	/**
+	 * Prune the weights whose magnitude is lower than a threshold: they are set
+	 * to 0 and every following update keeps them at 0, so the network can be
+	 * fine-tuned after the pruning. The weights pruned before stay pruned. The
+	 * indexes of the pruned weights are ints, so the pruned weights matrix must
+	 * hold less than 2^31 weights
+	 * 
+	 * @param threshold
+	 *            the lowest magnitude of the weights kept
+	 */
+	public void prune(final double threshold) {
+		int[] previousIndexes = prunedIndexes == null ? new int[0] : prunedIndexes;
+		int[] indexes = new int[selectPruned(threshold, previousIndexes, null)];
+		selectPruned(threshold, previousIndexes, indexes);
+		prunedIndexes = indexes;
+
+		// the optimizer state of a pruned weight would only push it back
+		for (int index : indexes) {
+			weightsMatrix.clearState(index);
+		}
+		clearPrunedWeights();
+	}
+
+	/**
+	 * Merge the weights pruned before with the ones whose magnitude is lower
+	 * than a threshold, in increasing order
+	 * 
+	 * @param threshold
+	 *            the lowest magnitude of the weights kept
+	 * @param previousIndexes
+	 *            indexes of the weights pruned before, in increasing order
+	 * @param indexes
+	 *            array where the merged indexes are written, or null to count
+	 *            them only
+	 * @return the count of the merged indexes
+	 */
+	private int selectPruned(final double threshold, final int[] previousIndexes, final int[] indexes) {
+		int weightsCount = Math.toIntExact(weightsMatrix.length());
+		int count = 0;
+		int previousIndex = 0;
+		for (int index = 0; index < weightsCount; index++) {
+			boolean pruned = previousIndex < previousIndexes.length && previousIndexes[previousIndex] == index;
+			if (pruned) {
+				previousIndex++;
+			}
+			if (pruned || Math.abs(weightsMatrix.get(index)) < threshold) {
+				if (indexes != null) {
+					indexes[count] = index;
+				}
+				count++;
 			}
-			functionGradient[rowIndex] = sum;
 		}
+		return count;
+	}
 
-		double[] leftLayerValues = leftLayer.values();
-		double[] leftLayerNotActivatedValues = leftLayer.notActivatedValues();
+	/**
+	 * Prune the weights with the lowest magnitude until the ratio of the pruned
+	 * weights reaches the target sparsity, like {@link #prune(double)}
+	 * 
+	 * @param sparsity
+	 *            ratio of the weights to prune, in [0, 1[
+	 */
+	public void pruneToSparsity(final double sparsity) {
+		long weightsCount = weightsMatrix.length();
+		long prunedCount = (long) (sparsity * weightsCount);
+		if (prunedCount == 0) {
+			return;
+		}
+
+		// the bits of the non negative doubles are ordered like their values, so
+		// the magnitude of rank prunedCount is selected a digit at a time, from
+		// the most significant one, counting the digits of the magnitudes that
+		// share the digits already selected in a pass over the weights
+		long[] digitsCounts = new long[1 << DIGIT_BITS];
+		long selectedBits = 0;
+		long rank = prunedCount - 1;
+		for (int shift = Long.SIZE - DIGIT_BITS; shift >= 0; shift -= DIGIT_BITS) {
+			long selectedMask = shift == Long.SIZE - DIGIT_BITS ? 0 : -1L << (shift + DIGIT_BITS);
+			Arrays.fill(digitsCounts, 0);
+			for (long index = 0; index < weightsCount; index++) {
+				long bits = Double.doubleToRawLongBits(Math.abs(weightsMatrix.get(index)));
+				if ((bits & selectedMask) == selectedBits) {
+					digitsCounts[(int) (bits >>> shift) & (digitsCounts.length - 1)]++;
+				}
+			}
+			int digit = 0;
+			while (rank >= digitsCounts[digit]) {
+				rank -= digitsCounts[digit];
+				digit++;
+			}
+			selectedBits |= (long) digit << shift;
+		}
+		prune(Math.nextUp(Double.longBitsToDouble(selectedBits)));
+	}
+
+	/**
+	 * Return the ratio of the weights equal to 0, pruned or not
+	 * 
+	 * @return the sparsity of the weights matrix
+	 */
+	public double getSparsity() {
+		long weightsCount = weightsMatrix.length();
+		long zerosCount = 0;
+		for (long index = 0; index < weightsCount; index++) {
+			if (weightsMatrix.get(index) == 0) {
+				zerosCount++;
+			}
+		}
+		return (double) zerosCount / weightsCount;
+	}
+
+	/**
+	 * Allocate a state matching the sizes, the precision, the storage and the
+	 * optimizer of the connection layer, to be filled by {@link #saveState}
+	 * 
+	 * @return the new state
+	 */
+	public ConnectionLayersState newState() {
+		return new ConnectionLayersState(weightsMatrix.allocate(), rightLayer.size(), optimizer.stateSize());
+	}
+
+	/**
+	 * Copy the training state of the connection layer in a state allocated by
+	 * {@link #newState()}. Only arrays are copied, so it is as fast as the
+	 * memory allows
+	 * 
+	 * @param state
+	 *            the state to fill
+	 */
+	public void saveState(final ConnectionLayersState state) {
+		state.weightsMatrix.copyFrom(weightsMatrix);
+		System.arraycopy(biases, 0, state.biases, 0, biases.length);
+		for (int stateIndex = 0; stateIndex < biasesState.length; stateIndex++) {
+			System.arraycopy(biasesState[stateIndex], 0, state.biasesState[stateIndex], 0, biases.length);
+		}
+		state.step = step;
+
+		state.pruned = prunedIndexes != null;
+		Arrays.fill(state.prunedWords, 0);
+		if (state.pruned) {
+			for (int index : prunedIndexes) {
+				state.prunedWords[index >>> 6] |= 1L << index;
+			}
+		}
+	}
+
+	/**
+	 * Replace the training state of the connection layer with a saved one. The
+	 * state must have been allocated by {@link #newState()} of a connection
+	 * layer with the same sizes, precision, storage and optimizer state size
+	 * 
+	 * @param state
+	 *            the saved state
+	 */
+	public void restoreState(final ConnectionLayersState state) {
+		weightsMatrix.copyFrom(state.weightsMatrix);
+		System.arraycopy(state.biases, 0, biases, 0, biases.length);
+		for (int stateIndex = 0; stateIndex < biasesState.length; stateIndex++) {
+			System.arraycopy(state.biasesState[stateIndex], 0, biasesState[stateIndex], 0, biases.length);
+		}
+		step = state.step;
+		prunedIndexes = state.pruned ? prunedIndexes(state.prunedWords) : null;
+	}
+
+	/**
+	 * Return the indexes of the bits set in the words of a saved state
+	 * 
+	 * @param words
+	 *            words of the pruned weights set, one bit per weight
+	 * @return the indexes of the pruned weights, in increasing order
+	 */
+	private static int[] prunedIndexes(final long[] words) {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		int[] indexes = new int[count];
+		count = 0;
+		for (int wordIndex = 0; wordIndex < words.length; wordIndex++) {
+			for (long word = words[wordIndex]; word != 0; word &= word - 1) {
+				indexes[count++] = wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * Set the pruned weights back to 0 after an update
+	 */
+	private void clearPrunedWeights() {
+		if (prunedIndexes == null) {
+			return;
+		}
+		for (int index : prunedIndexes) {
+			weightsMatrix.set(index, 0);
+		}
+	}
+
+	/**
+	 * Partition the connection layer across a pool. When it has at least the
+	 * received count of weights, its right neurons are split in contiguous
+	 * ranges, one per pool thread and each at least {@value #MIN_RANGE_NEURONS}
+	 * neurons wide, and the forward pass of a single sample, the weights update
+	 * and the errors of the left layer are computed one range per task. Smaller
+	 * connection layers stay serial, since forking would cost more than the
+	 * products they save. The results do not depend on the partitioning
+	 * 
+	 * @param pool
+	 *            pool computing the ranges, or null to compute serially
+	 * @param minWeights
+	 *            lowest count of weights of a partitioned connection layer
+	 */
+	public void setParallelism(final ForkJoinPool pool, final int minWeights) {
+		int columnsCount = rightLayer.size();
+		if (pool == null || (long) leftLayer.size() * columnsCount < minWeights) {
+			this.rangesCount = 1;
+		} else {
+			this.rangesCount = Math.max(1, Math.min(pool.getParallelism(), columnsCount / MIN_RANGE_NEURONS));
+		}
+		this.pool = rangesCount > 1 ? pool : null;
+		if (rangesSquaredNorms.length < rangesCount) {
+			rangesSquaredNorms = new double[rangesCount];
+		}
+		idleRangesJob.set(rangesCount > 1 ? new RangesJob(this, rangesCount) : null);
+	}
+
+	/**
+	 * Return the count of the ranges computed concurrently
+	 * 
+	 * @return the ranges count, 1 if the connection layer is not partitioned
+	 */
+	public int getRangesCount() {
+		return rangesCount;
+	}
 
-		for (int index = 0; index < leftLayerValues.length; index++) {
-			errors[index] = functionGradient[index]
-					* Utils.activationFunctionDerivate(leftLayerNotActivatedValues[index]);
+	/**
+	 * Return the bound of a range of a partitioned dimension, aligned to
+	 * {@value #RANGE_ALIGNMENT}
+	 * 
+	 * @param rangeIndex
+	 *            index of the range, the ranges count for the end of the last one
+	 * @param length
+	 *            size of the partitioned dimension
+	 * @return the first index of the range
+	 */
+	private int rangeBound(final int rangeIndex, final int length) {
+		if (rangeIndex == rangesCount) {
+			return length;
 		}
+		return (int) ((long) length * rangeIndex / rangesCount) & -RANGE_ALIGNMENT;
+	}
 
+	/**
+	 * Run a work on every range of the partitioned connection layer and wait for
+	 * all of them. The tasks allocated by
+	 * {@link #setParallelism(ForkJoinPool, int)} are reinitialized and reused, so
+	 * a pass allocates nothing, while a pass running concurrently with another
+	 * one, like two single sample forward passes of different threads, builds
+	 * its own tasks. From a thread of the pool the tasks are forked in place, so
+	 * a partitioned connection layer can be used by the pool tasks too, while
+	 * another thread parks until the root task signals its end, since joining
+	 * the task from outside of the pool would allocate a waiting node at every
+	 * pass
+	 * 
+	 * @param work
+	 *            the work made on each range
+	 * @param first
+	 *            first array of the work
+	 * @param second
+	 *            second array of the work, or null if not used
+	 */
+	private void forEachRange(final RangeWork work, final double[] first, final double[] second) {
+		RangesJob job = idleRangesJob.getAndSet(null);
+		if (job == null || job.rangesCount != rangesCount) {
+			job = new RangesJob(this, rangesCount);
+		}
+		job.work = work;
+		job.first = first;
+		job.second = second;
+		try {
+			job.root.reinitialize();
+			if (ForkJoinTask.getPool() == pool) {
+				job.root.invoke();
+			} else {
+				job.waiter = Thread.currentThread();
+				job.done = false;
+				pool.execute(job.root);
+				while (!job.done) {
+					LockSupport.park(job);
+				}
+				// the task completes right after signaling, before it can be reused
+				while (!job.root.isDone()) {
+					Thread.onSpinWait();
+				}
+				job.waiter = null;
+				Throwable failure = job.failure;
+				if (failure != null) {
+					job.failure = null;
+					if (failure instanceof Error) {
+						throw (Error) failure;
+					}
+					throw (RuntimeException) failure;
+				}
+			}
+		} finally {
+			job.first = null;
+			job.second = null;
+			idleRangesJob.compareAndSet(null, job);
+		}
+	}
+
+	/**
+	 * Compute a range of the partitioned connection layer
+	 * 
+	 * @param job
+	 *            the pass the range belongs to
+	 * @param rangeIndex
+	 *            index of the range
+	 */
+	private void computeRange(final RangesJob job, final int rangeIndex) {
+		switch (job.work) {
+		case COMPUTE_COLUMNS:
+			computeColumns(job.first, job.second, rangeBound(rangeIndex, rightLayer.size()),
+					rangeBound(rangeIndex + 1, rightLayer.size()));
+			break;
+		case OPTIMIZE_COLUMNS:
+			rangesSquaredNorms[rangeIndex] = optimizeColumns(job.first, job.second,
+					rangeBound(rangeIndex, rightLayer.size()), rangeBound(rangeIndex + 1, rightLayer.size()));
+			break;
+		default:
+			computeLeftErrorRows(job.first, rangeBound(rangeIndex, leftLayer.size()),
+					rangeBound(rangeIndex + 1, leftLayer.size()));
+			break;
+		}
+	}
+
+	/**
+	 * Work made on each range of a partitioned connection layer
+	 */
+	private enum RangeWork {
+
+		/**
+		 * Not activated values of a range of right neurons, from the left values
+		 * in the first array to the results in the second one
+		 */
+		COMPUTE_COLUMNS,
+
+		/**
+		 * Update of the weights and biases of a range of right neurons, with the
+		 * right errors in the first array and the left values in the second one
+		 */
+		OPTIMIZE_COLUMNS,
+
+		/**
+		 * Errors of a range of left neurons, from the right errors in the first
+		 * array
+		 */
+		COMPUTE_LEFT_ERROR_ROWS
+
+	}
+
+	/**
+	 * Pass over the ranges of a partitioned connection layer: the tree of its
+	 * tasks, allocated once, and the work they make, set before each pass
+	 */
+	private static class RangesJob {
+
+		/**
+		 * The partitioned connection layer
+		 */
+		private final ConnectionLayers connectionLayer;
+
+		/**
+		 * Count of the ranges
+		 */
+		private final int rangesCount;
+
+		/**
+		 * Task of all the ranges, root of the tree
+		 */
+		private final RangesTask root;
+
+		/**
+		 * Work made on each range
+		 */
+		private RangeWork work;
+
+		/**
+		 * First array of the work
+		 */
+		private double[] first;
+
+		/**
+		 * Second array of the work, or null if not used
+		 */
+		private double[] second;
+
+		/**
+		 * Thread waiting for the end of the pass from outside of the pool, or
+		 * null if the pass is invoked by a thread of the pool
+		 */
+		private Thread waiter;
+
+		/**
+		 * Indicates if the root task ended the pass of the waiting thread
+		 */
+		private volatile boolean done;
+
+		/**
+		 * Exception or error thrown by the pass of the waiting thread, or null
+		 */
+		private Throwable failure;
+
+		/**
+		 * Constructor that allocate the tasks of the ranges
+		 * 
+		 * @param connectionLayer
+		 *            the partitioned connection layer
+		 * @param rangesCount
+		 *            count of the ranges
+		 */
+		RangesJob(final ConnectionLayers connectionLayer, final int rangesCount) {
+			this.connectionLayer = connectionLayer;
+			this.rangesCount = rangesCount;
+			this.root = new RangesTask(this, 0, rangesCount);
+		}
+
+	}
+
+	/**
+	 * Task computing an interval of ranges, split in halves until each task holds
+	 * a single range. The halves are allocated with the task and reinitialized
+	 * before every fork
+	 */
+	private static class RangesTask extends RecursiveAction {
+
+		/**
+		 * Generated serial version uid
+		 */
+		private static final long serialVersionUID = 4629310558720493150L;
+
+		/**
+		 * Pass the task belongs to
+		 */
+		private final transient RangesJob job;
+
+		/**
+		 * First range of the interval, included
+		 */
+		private final int firstRange;
+
+		/**
+		 * Task of the first half of the interval, null for a single range
+		 */
+		private final RangesTask firstHalf;
+
+		/**
+		 * Task of the second half of the interval, null for a single range
+		 */
+		private final RangesTask secondHalf;
+
+		/**
+		 * Constructor that build a task over an interval of ranges together with
+		 * the tasks of its halves
+		 * 
+		 * @param job
+		 *            pass the task belongs to
+		 * @param firstRange
+		 *            first range of the interval, included
+		 * @param lastRange
+		 *            last range of the interval, excluded
+		 */
+		RangesTask(final RangesJob job, final int firstRange, final int lastRange) {
+			this.job = job;
+			this.firstRange = firstRange;
+			if (lastRange - firstRange == 1) {
+				this.firstHalf = null;
+				this.secondHalf = null;
+			} else {
+				int middleRange = (firstRange + lastRange) >>> 1;
+				this.firstHalf = new RangesTask(job, firstRange, middleRange);
+				this.secondHalf = new RangesTask(job, middleRange, lastRange);
+			}
+		}
+
+		@Override
+		protected void compute() {
+			Thread waiter = this == job.root ? job.waiter : null;
+			if (waiter == null) {
+				computeRanges();
+				return;
+			}
+			try {
+				computeRanges();
+			} catch (RuntimeException | Error e) {
+				job.failure = e;
+			} finally {
+				job.done = true;
+				LockSupport.unpark(waiter);
+			}
+		}
+
+		/**
+		 * Compute the ranges of the interval, forking the second half
+		 */
+		private void computeRanges() {
+			if (firstHalf == null) {
+				job.connectionLayer.computeRange(job, firstRange);
+				return;
+			}
+			firstHalf.reinitialize();
+			secondHalf.reinitialize();
+			invokeAll(firstHalf, secondHalf);
+		}
+
+	}
+
+	/**
+	 * Return the euclidean norm of the steps added to the weights matrix by the
+	 * last update, whatever the optimizer, measured by the optimizer while it
+	 * updates the weights. The steps of the pruned weights are counted even if
+	 * the weights are set back to 0
+	 * 
+	 * @return the norm of the last weights update, 0 before the first update
+	 */
+	public double getWeightsUpdateNorm() {
+		return Math.sqrt(weightsUpdateSquaredNorm);
+	}
+
+	/**
+	 * Replace the update rule of the weights and biases. The state of the
+	 * previous optimizer is discarded and the new one starts from zero
+	 * 
+	 * @param optimizer
+	 *            the new optimizer
+	 */
+	public void setOptimizer(final Optimizer optimizer) {
+		weightsMatrix.resetState(optimizer.stateSize());
+		biasesState = new double[optimizer.stateSize()][rightLayer.size()];
+		step = 0;
+		this.optimizer = optimizer;
+	}
+
+	/**
+	 * Getter of the update rule of the weights and biases
+	 * 
+	 * @return the optimizer
+	 */
+	public Optimizer getOptimizer() {
+		return optimizer;
 	}
 
 	/**
@@ -212,6 +1547,65 @@ public class ConnectionLayers implements Comparable<ConnectionLayers> {
 		return errors;
 	}
 
+	/**
+	 * Getter of the weights matrix, stored flat in row-major order with the
+	 * weight from the left neuron i to the right neuron j at index
+	 * {@code i * rightSize + j}. In double precision the returned array is the one
+	 * used by the connection layer, in single precision it is a widened copy and
+	 * off the heap a copy
+	 * 
+	 * @return the weights matrix
+	 */
+	public double[] getWeights() {
+		return weightsMatrix.toArray();
+	}
+
+	/**
+	 * Getter of the storage precision of the weights and optimizer state matrices
+	 * 
+	 * @return the precision
+	 */
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * Getter of the storage of the weights and optimizer state matrices
+	 * 
+	 * @return the storage
+	 */
+	public Storage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Getter of the biases array. The returned array is the one used by the
+	 * connection layer
+	 * 
+	 * @return the biases array
+	 */
+	public double[] getBiases() {
+		return biases;
+	}
+
+	/**
+	 * Getter of the left layer
+	 * 
+	 * @return the left layer
+	 */
+	Layer leftLayer() {
+		return leftLayer;
+	}
+
+	/**
+	 * Getter of the right layer
+	 * 
+	 * @return the right layer
+	 */
+	Layer rightLayer() {
+		return rightLayer;
+	}
+
 	/**
 	 * Getter for the identifier
 	 */
@@ -224,7 +1618,7 @@ public class ConnectionLayers implements Comparable<ConnectionLayers> {
 	 */
 	@Override
 	public int compareTo(ConnectionLayers o) {
-		return id - o.getId();
+		return Integer.compare(id, o.getId());
 	}
 
 }
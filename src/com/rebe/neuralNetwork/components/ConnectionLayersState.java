@@ -0,0 +1,367 @@
+package com.rebe.neuralNetwork.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Copy of the whole training state of a {@link ConnectionLayers}: weights and
+ * biases, optimizer state, update step and pruned weights, each one with its
+ * exact bits. A state is filled by {@link ConnectionLayers#saveState} with
+ * array copies only, so it can be taken between two training cycles and
+ * streamed to a channel by another thread while the training goes on. The
+ * state of an off heap connection layer is off the heap too, and it is written
+ * like a double precision one
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class ConnectionLayersState {
+
+	/**
+	 * Weights matrix and its optimizer state, with the precision and the
+	 * storage of the connection layer ones
+	 */
+	final WeightsMatrix weightsMatrix;
+
+	/**
+	 * Biases array
+	 */
+	final double[] biases;
+
+	/**
+	 * Optimizer state of the biases
+	 */
+	final double[][] biasesState;
+
+	/**
+	 * Words of the pruned weights set, one bit per weight
+	 */
+	final long[] prunedWords;
+
+	/**
+	 * Count of the updates made with the optimizer
+	 */
+	long step;
+
+	/**
+	 * Indicates if the connection layer was pruned
+	 */
+	boolean pruned;
+
+	/**
+	 * Constructor that allocate a state for a connection layer
+	 *
+	 * @param weightsMatrix
+	 *            matrix holding the weights, allocated by the connection layer
+	 * @param biasesCount
+	 *            count of the biases, one per neuron of the right layer
+	 * @param stateSize
+	 *            count of the optimizer state arrays
+	 */
+	ConnectionLayersState(final WeightsMatrix weightsMatrix, final int biasesCount, final int stateSize) {
+		this.weightsMatrix = weightsMatrix;
+		weightsMatrix.resetState(stateSize);
+		biases = new double[biasesCount];
+		biasesState = new double[stateSize][biasesCount];
+		prunedWords = new long[Math.toIntExact((weightsMatrix.length() + Long.SIZE - 1) / Long.SIZE)];
+	}
+
+	/**
+	 * Return the count of the optimizer state arrays
+	 *
+	 * @return the optimizer state size
+	 */
+	public int getStateSize() {
+		return biasesState.length;
+	}
+
+	/**
+	 * Stream the state to a channel through a buffer
+	 *
+	 * @param channel
+	 *            the written channel
+	 * @param buffer
+	 *            buffer used to stage the values, at least 8 bytes long
+	 * @throws IOException
+	 *             Thrown if the channel can not be written
+	 */
+	public void write(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.clear();
+		buffer.putLong(step);
+		buffer.putLong(pruned ? 1 : 0);
+		flush(channel, buffer);
+
+		weightsMatrix.write(channel, buffer);
+		writeDoubles(channel, buffer, biases);
+		for (double[] state : biasesState) {
+			writeDoubles(channel, buffer, state);
+		}
+		if (pruned) {
+			writeLongs(channel, buffer, prunedWords);
+		}
+	}
+
+	/**
+	 * Read a state written by {@link #write} with the same layers sizes,
+	 * precision and optimizer state size
+	 *
+	 * @param channel
+	 *            the read channel
+	 * @param buffer
+	 *            buffer used to stage the values, at least 8 bytes long
+	 * @throws IOException
+	 *             Thrown if the channel can not be read or ends too early
+	 */
+	public void read(final ReadableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		fill(channel, buffer, 2 * Long.BYTES);
+		step = buffer.getLong();
+		pruned = buffer.getLong() != 0;
+
+		weightsMatrix.read(channel, buffer);
+		readDoubles(channel, buffer, biases);
+		for (double[] state : biasesState) {
+			readDoubles(channel, buffer, state);
+		}
+		if (pruned) {
+			readLongs(channel, buffer, prunedWords);
+		} else {
+			Arrays.fill(prunedWords, 0);
+		}
+	}
+
+	/**
+	 * Write an array of doubles, a buffer at a time
+	 *
+	 * @param channel
+	 *            the written channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @param values
+	 *            the written values
+	 * @throws IOException
+	 *             Thrown if the channel can not be written
+	 */
+	static void writeDoubles(final WritableByteChannel channel, final ByteBuffer buffer, final double[] values)
+			throws IOException {
+		for (int written = 0; written < values.length;) {
+			buffer.clear();
+			int count = Math.min(values.length - written, buffer.capacity() / Double.BYTES);
+			buffer.asDoubleBuffer().put(values, written, count);
+			buffer.position(count * Double.BYTES);
+			flush(channel, buffer);
+			written += count;
+		}
+	}
+
+	/**
+	 * Write an off heap matrix of doubles, a buffer at a time
+	 *
+	 * @param channel
+	 *            the written channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @param values
+	 *            the written values
+	 * @throws IOException
+	 *             Thrown if the channel can not be written
+	 */
+	static void writeDoubles(final WritableByteChannel channel, final ByteBuffer buffer,
+			final OffHeapMatrix values) throws IOException {
+		for (int chunkIndex = 0; chunkIndex < values.chunksCount(); chunkIndex++) {
+			DoubleBuffer chunk = values.doubles(chunkIndex);
+			for (int written = 0; written < chunk.capacity();) {
+				buffer.clear();
+				int count = Math.min(chunk.capacity() - written, buffer.capacity() / Double.BYTES);
+				buffer.asDoubleBuffer().put(chunk.slice(written, count));
+				buffer.position(count * Double.BYTES);
+				flush(channel, buffer);
+				written += count;
+			}
+		}
+	}
+
+	/**
+	 * Write an array of floats, a buffer at a time
+	 *
+	 * @param channel
+	 *            the written channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @param values
+	 *            the written values
+	 * @throws IOException
+	 *             Thrown if the channel can not be written
+	 */
+	static void writeFloats(final WritableByteChannel channel, final ByteBuffer buffer, final float[] values)
+			throws IOException {
+		for (int written = 0; written < values.length;) {
+			buffer.clear();
+			int count = Math.min(values.length - written, buffer.capacity() / Float.BYTES);
+			buffer.asFloatBuffer().put(values, written, count);
+			buffer.position(count * Float.BYTES);
+			flush(channel, buffer);
+			written += count;
+		}
+	}
+
+	/**
+	 * Write an array of longs, a buffer at a time
+	 *
+	 * @param channel
+	 *            the written channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @param values
+	 *            the written values
+	 * @throws IOException
+	 *             Thrown if the channel can not be written
+	 */
+	private static void writeLongs(final WritableByteChannel channel, final ByteBuffer buffer, final long[] values)
+			throws IOException {
+		for (int written = 0; written < values.length;) {
+			buffer.clear();
+			int count = Math.min(values.length - written, buffer.capacity() / Long.BYTES);
+			buffer.asLongBuffer().put(values, written, count);
+			buffer.position(count * Long.BYTES);
+			flush(channel, buffer);
+			written += count;
+		}
+	}
+
+	/**
+	 * Read an array of doubles, a buffer at a time
+	 *
+	 * @param channel
+	 *            the read channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @param values
+	 *            the read values
+	 * @throws IOException
+	 *             Thrown if the channel can not be read or ends too early
+	 */
+	static void readDoubles(final ReadableByteChannel channel, final ByteBuffer buffer, final double[] values)
+			throws IOException {
+		for (int read = 0; read < values.length;) {
+			int count = Math.min(values.length - read, buffer.capacity() / Double.BYTES);
+			fill(channel, buffer, count * Double.BYTES);
+			buffer.asDoubleBuffer().get(values, read, count);
+			read += count;
+		}
+	}
+
+	/**
+	 * Read an off heap matrix of doubles, a buffer at a time
+	 *
+	 * @param channel
+	 *            the read channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @param values
+	 *            the read values
+	 * @throws IOException
+	 *             Thrown if the channel can not be read or ends too early
+	 */
+	static void readDoubles(final ReadableByteChannel channel, final ByteBuffer buffer,
+			final OffHeapMatrix values) throws IOException {
+		for (int chunkIndex = 0; chunkIndex < values.chunksCount(); chunkIndex++) {
+			DoubleBuffer chunk = values.doubles(chunkIndex);
+			for (int read = 0; read < chunk.capacity();) {
+				int count = Math.min(chunk.capacity() - read, buffer.capacity() / Double.BYTES);
+				fill(channel, buffer, count * Double.BYTES);
+				chunk.slice(read, count).put(buffer.asDoubleBuffer());
+				read += count;
+			}
+		}
+	}
+
+	/**
+	 * Read an array of floats, a buffer at a time
+	 *
+	 * @param channel
+	 *            the read channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @param values
+	 *            the read values
+	 * @throws IOException
+	 *             Thrown if the channel can not be read or ends too early
+	 */
+	static void readFloats(final ReadableByteChannel channel, final ByteBuffer buffer, final float[] values)
+			throws IOException {
+		for (int read = 0; read < values.length;) {
+			int count = Math.min(values.length - read, buffer.capacity() / Float.BYTES);
+			fill(channel, buffer, count * Float.BYTES);
+			buffer.asFloatBuffer().get(values, read, count);
+			read += count;
+		}
+	}
+
+	/**
+	 * Read an array of longs, a buffer at a time
+	 *
+	 * @param channel
+	 *            the read channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @param values
+	 *            the read values
+	 * @throws IOException
+	 *             Thrown if the channel can not be read or ends too early
+	 */
+	private static void readLongs(final ReadableByteChannel channel, final ByteBuffer buffer, final long[] values)
+			throws IOException {
+		for (int read = 0; read < values.length;) {
+			int count = Math.min(values.length - read, buffer.capacity() / Long.BYTES);
+			fill(channel, buffer, count * Long.BYTES);
+			buffer.asLongBuffer().get(values, read, count);
+			read += count;
+		}
+	}
+
+	/**
+	 * Write the staged bytes of a buffer, from its start to its position
+	 *
+	 * @param channel
+	 *            the written channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @throws IOException
+	 *             Thrown if the channel can not be written
+	 */
+	public static void flush(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Read a count of bytes in a buffer, leaving them between its start and its
+	 * limit
+	 *
+	 * @param channel
+	 *            the read channel
+	 * @param buffer
+	 *            the staging buffer
+	 * @param length
+	 *            count of bytes to read, not greater than the buffer capacity
+	 * @throws IOException
+	 *             Thrown if the channel can not be read or ends too early
+	 */
+	public static void fill(final ReadableByteChannel channel, final ByteBuffer buffer, final int length)
+			throws IOException {
+		buffer.clear().limit(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Unexpected end of the checkpoint");
+			}
+		}
+		buffer.flip();
+	}
+
+}
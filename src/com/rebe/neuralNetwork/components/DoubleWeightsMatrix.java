@@ -0,0 +1,168 @@
+package com.rebe.neuralNetwork.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.rebe.neuralNetwork.math.LinearAlgebra;
+import com.rebe.neuralNetwork.optimizers.Optimizer;
+
+/**
+ * Weights matrix stored in a double precision array on the heap
+ *
+ * @author Mattia Rebesan
+ *
+ */
+class DoubleWeightsMatrix implements WeightsMatrix {
+
+	/**
+	 * Count of the rows
+	 */
+	private final int rows;
+
+	/**
+	 * Count of the columns
+	 */
+	private final int columns;
+
+	/**
+	 * The weights, flat in row-major order
+	 */
+	private final double[] weights;
+
+	/**
+	 * Optimizer state matrices, same layout of the weights
+	 */
+	private double[][] state = new double[0][];
+
+	/**
+	 * Constructor that allocate a matrix of zeros
+	 *
+	 * @param rows
+	 *            count of the rows
+	 * @param columns
+	 *            count of the columns
+	 */
+	DoubleWeightsMatrix(final int rows, final int columns) {
+		this(rows, columns, new double[rows * columns]);
+	}
+
+	/**
+	 * Constructor that use the received array without copying it
+	 *
+	 * @param rows
+	 *            count of the rows
+	 * @param columns
+	 *            count of the columns
+	 * @param weights
+	 *            the weights, flat in row-major order
+	 */
+	DoubleWeightsMatrix(final int rows, final int columns, final double[] weights) {
+		this.rows = rows;
+		this.columns = columns;
+		this.weights = weights;
+	}
+
+	@Override
+	public WeightsMatrix allocate() {
+		return new DoubleWeightsMatrix(rows, columns);
+	}
+
+	@Override
+	public void gemvTransposed(final double[] x, final double[] y, final int fromColumn, final int toColumn) {
+		LinearAlgebra.gemvTransposed(rows, columns, weights, x, y, fromColumn, toColumn);
+	}
+
+	@Override
+	public void gemv(final double[] x, final double[] y, final int fromRow, final int toRow) {
+		LinearAlgebra.gemv(rows, columns, weights, x, y, fromRow, toRow);
+	}
+
+	@Override
+	public void axpy(final double alpha, final int row, final double[] y) {
+		LinearAlgebra.axpy(alpha, weights, row * columns, y, 0, columns);
+	}
+
+	@Override
+	public void gemm(final int samplesCount, final double[] a, final double[] c) {
+		LinearAlgebra.gemm(samplesCount, columns, rows, a, weights, c);
+	}
+
+	@Override
+	public void gemmTransposedRight(final int samplesCount, final double[] a, final double[] c) {
+		LinearAlgebra.gemmTransposedRight(samplesCount, rows, columns, a, weights, c);
+	}
+
+	@Override
+	public double update(final Optimizer optimizer, final long offset, final double[] directions,
+			final int directionsOffset, final double scale, final long step, final int length) {
+		return optimizer.update(weights, state, (int) offset, directions, directionsOffset, scale, step, length);
+	}
+
+	@Override
+	public double get(final long index) {
+		return weights[(int) index];
+	}
+
+	@Override
+	public void set(final long index, final double value) {
+		weights[(int) index] = value;
+	}
+
+	@Override
+	public void put(final long index, final double[] source, final int offset, final int length) {
+		System.arraycopy(source, offset, weights, (int) index, length);
+	}
+
+	@Override
+	public void clearState(final long index) {
+		for (double[] matrix : state) {
+			matrix[(int) index] = 0;
+		}
+	}
+
+	@Override
+	public void resetState(final int stateSize) {
+		state = new double[stateSize][weights.length];
+	}
+
+	@Override
+	public long length() {
+		return weights.length;
+	}
+
+	/**
+	 * Return the array used by the matrix
+	 */
+	@Override
+	public double[] toArray() {
+		return weights;
+	}
+
+	@Override
+	public void copyFrom(final WeightsMatrix source) {
+		DoubleWeightsMatrix matrix = (DoubleWeightsMatrix) source;
+		System.arraycopy(matrix.weights, 0, weights, 0, weights.length);
+		for (int stateIndex = 0; stateIndex < state.length; stateIndex++) {
+			System.arraycopy(matrix.state[stateIndex], 0, state[stateIndex], 0, weights.length);
+		}
+	}
+
+	@Override
+	public void write(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		ConnectionLayersState.writeDoubles(channel, buffer, weights);
+		for (double[] matrix : state) {
+			ConnectionLayersState.writeDoubles(channel, buffer, matrix);
+		}
+	}
+
+	@Override
+	public void read(final ReadableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		ConnectionLayersState.readDoubles(channel, buffer, weights);
+		for (double[] matrix : state) {
+			ConnectionLayersState.readDoubles(channel, buffer, matrix);
+		}
+	}
+
+}
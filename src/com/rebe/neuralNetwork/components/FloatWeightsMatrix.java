@@ -0,0 +1,162 @@
+package com.rebe.neuralNetwork.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.rebe.neuralNetwork.math.LinearAlgebra;
+import com.rebe.neuralNetwork.optimizers.Optimizer;
+
+/**
+ * Weights matrix stored in a single precision array on the heap. The values
+ * are rounded when they are written and widened when they are read, while the
+ * products accumulate in double precision
+ *
+ * @author Mattia Rebesan
+ *
+ */
+class FloatWeightsMatrix implements WeightsMatrix {
+
+	/**
+	 * Count of the rows
+	 */
+	private final int rows;
+
+	/**
+	 * Count of the columns
+	 */
+	private final int columns;
+
+	/**
+	 * The weights, flat in row-major order
+	 */
+	private final float[] weights;
+
+	/**
+	 * Optimizer state matrices, same layout of the weights
+	 */
+	private float[][] state = new float[0][];
+
+	/**
+	 * Constructor that allocate a matrix of zeros
+	 *
+	 * @param rows
+	 *            count of the rows
+	 * @param columns
+	 *            count of the columns
+	 */
+	FloatWeightsMatrix(final int rows, final int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.weights = new float[rows * columns];
+	}
+
+	@Override
+	public WeightsMatrix allocate() {
+		return new FloatWeightsMatrix(rows, columns);
+	}
+
+	@Override
+	public void gemvTransposed(final double[] x, final double[] y, final int fromColumn, final int toColumn) {
+		LinearAlgebra.gemvTransposed(rows, columns, weights, x, y, fromColumn, toColumn);
+	}
+
+	@Override
+	public void gemv(final double[] x, final double[] y, final int fromRow, final int toRow) {
+		LinearAlgebra.gemv(rows, columns, weights, x, y, fromRow, toRow);
+	}
+
+	@Override
+	public void axpy(final double alpha, final int row, final double[] y) {
+		LinearAlgebra.axpy(alpha, weights, row * columns, y, 0, columns);
+	}
+
+	@Override
+	public void gemm(final int samplesCount, final double[] a, final double[] c) {
+		LinearAlgebra.gemm(samplesCount, columns, rows, a, weights, c);
+	}
+
+	@Override
+	public void gemmTransposedRight(final int samplesCount, final double[] a, final double[] c) {
+		LinearAlgebra.gemmTransposedRight(samplesCount, rows, columns, a, weights, c);
+	}
+
+	@Override
+	public double update(final Optimizer optimizer, final long offset, final double[] directions,
+			final int directionsOffset, final double scale, final long step, final int length) {
+		return optimizer.update(weights, state, (int) offset, directions, directionsOffset, scale, step, length);
+	}
+
+	@Override
+	public double get(final long index) {
+		return weights[(int) index];
+	}
+
+	@Override
+	public void set(final long index, final double value) {
+		weights[(int) index] = (float) value;
+	}
+
+	@Override
+	public void put(final long index, final double[] source, final int offset, final int length) {
+		for (int valueIndex = 0; valueIndex < length; valueIndex++) {
+			weights[(int) index + valueIndex] = (float) source[offset + valueIndex];
+		}
+	}
+
+	@Override
+	public void clearState(final long index) {
+		for (float[] matrix : state) {
+			matrix[(int) index] = 0;
+		}
+	}
+
+	@Override
+	public void resetState(final int stateSize) {
+		state = new float[stateSize][weights.length];
+	}
+
+	@Override
+	public long length() {
+		return weights.length;
+	}
+
+	/**
+	 * Return a widened copy of the weights
+	 */
+	@Override
+	public double[] toArray() {
+		double[] values = new double[weights.length];
+		for (int index = 0; index < weights.length; index++) {
+			values[index] = weights[index];
+		}
+		return values;
+	}
+
+	@Override
+	public void copyFrom(final WeightsMatrix source) {
+		FloatWeightsMatrix matrix = (FloatWeightsMatrix) source;
+		System.arraycopy(matrix.weights, 0, weights, 0, weights.length);
+		for (int stateIndex = 0; stateIndex < state.length; stateIndex++) {
+			System.arraycopy(matrix.state[stateIndex], 0, state[stateIndex], 0, weights.length);
+		}
+	}
+
+	@Override
+	public void write(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		ConnectionLayersState.writeFloats(channel, buffer, weights);
+		for (float[] matrix : state) {
+			ConnectionLayersState.writeFloats(channel, buffer, matrix);
+		}
+	}
+
+	@Override
+	public void read(final ReadableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		ConnectionLayersState.readFloats(channel, buffer, weights);
+		for (float[] matrix : state) {
+			ConnectionLayersState.readFloats(channel, buffer, matrix);
+		}
+	}
+
+}
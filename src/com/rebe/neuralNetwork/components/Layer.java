@@ -1,12 +1,13 @@
 package com.rebe.neuralNetwork.components;
 
-import java.util.Iterator;
-import java.util.TreeSet;
-
+import com.rebe.neuralNetwork.activations.Activation;
+import com.rebe.neuralNetwork.activations.Sigmoid;
 import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
 
 /**
- * Represents a layer of the network
+ * Represents a layer of the network. The neurons are stored as two primitive
+ * arrays, one for the activated values and one for the not activated values,
+ * both indexed by neuron position
  * 
  * @author Mattia Rebesan
  *
@@ -14,40 +15,63 @@ import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
 public class Layer {
 
 	/**
-	 * List of {@link Neuron} of the layer
+	 * Activated values of the neurons of the layer
 	 */
-	private TreeSet<Neuron> neurons;
+	private final double[] values;
 
 	/**
-	 * Count of the {@link Neuron} that compose the layer
+	 * Not activated values of the neurons of the layer
+	 */
+	private final double[] notActivatedValues;
+
+	/**
+	 * Count of the neurons that compose the layer
 	 */
 	private final int neuronsCount;
 
 	/**
-	 * Constructor that initialize the list of the neuron of the layer
+	 * Activation function of the neurons of the layer
+	 */
+	private final Activation activation;
+
+	/**
+	 * Constructor that initialize the values arrays of the layer, whose neurons
+	 * are activated by the sigmoid function
 	 * 
 	 * @param neuronsCount
-	 *            count of the {@link Neuron} that compose the layer
+	 *            count of the neurons that compose the layer
 	 * @throws IllegalNeuronsCountException
 	 *             Thrown if the neurons count inserted is less than 1
 	 */
 	public Layer(final int neuronsCount) throws IllegalNeuronsCountException {
+		this(neuronsCount, new Sigmoid());
+	}
+
+	/**
+	 * Constructor that initialize the values arrays of the layer, whose neurons
+	 * are activated by the received function
+	 * 
+	 * @param neuronsCount
+	 *            count of the neurons that compose the layer
+	 * @param activation
+	 *            activation function of the neurons
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if the neurons count inserted is less than 1
+	 */
+	public Layer(final int neuronsCount, final Activation activation) throws IllegalNeuronsCountException {
 		if (neuronsCount < 1) {
 			throw new IllegalNeuronsCountException();
 		}
 
 		this.neuronsCount = neuronsCount;
+		this.activation = activation;
 
-		neurons = new TreeSet<Neuron>();
-
-		// initializing the list with neuronsCount neuron
-		for (int i = 0; i < neuronsCount; i++) {
-			neurons.add(new Neuron());
-		}
+		values = new double[neuronsCount];
+		notActivatedValues = new double[neuronsCount];
 	}
 
 	/**
-	 * Return the count of the {@link Neuron} of this layer
+	 * Return the count of the neurons of this layer
 	 * 
 	 * @return
 	 */
@@ -55,54 +79,55 @@ public class Layer {
 		return neuronsCount;
 	}
 
+	/**
+	 * Set the values of the neurons, both activated and not activated values are
+	 * set to the received ones
+	 * 
+	 * @param values
+	 *            the new values, must be at least as long as the layer
+	 */
 	public void setValues(double[] values) {
-		int index = 0;
-		Iterator<Neuron> it = neurons.iterator();
-		while (it.hasNext()) {
-			it.next().setValue(values[index++]);
-		}
-
+		System.arraycopy(values, 0, this.values, 0, neuronsCount);
+		System.arraycopy(values, 0, this.notActivatedValues, 0, neuronsCount);
 	}
 
 	/**
-	 * Method that return the values in an array form
+	 * Method that return the values in an array form. The returned array is the
+	 * layer buffer itself, no copy is made, so it must be treated as read-only
+	 * and it changes on every computation
 	 * 
 	 * @return the array of values
 	 */
 	public double[] values() {
-		double[] result = new double[size()];
-
-		int index = 0;
-		Iterator<Neuron> it = neurons.iterator();
-		while (it.hasNext()) {
-			result[index++] = it.next().getValue();
-		}
-
-		return result;
+		return values;
 	}
 
 	/**
 	 * Method that compute the activation value for the neurons of the layer
+	 * starting from the not activated values
 	 */
 	public void activeNeurons() {
-		neurons.forEach(neuron -> neuron.activation());
+		activation.forward(notActivatedValues, values, neuronsCount);
 	}
 
 	/**
-	 * Method that return the non activated values array
+	 * Return the activation function of the neurons of this layer
+	 * 
+	 * @return the activation function
+	 */
+	public Activation activation() {
+		return activation;
+	}
+
+	/**
+	 * Method that return the non activated values array. The returned array is the
+	 * layer buffer itself, no copy is made, so it must be treated as read-only
+	 * outside of the components package
 	 * 
 	 * @return the array of non activated values
 	 */
 	public double[] notActivatedValues() {
-		double[] result = new double[size()];
-
-		int index = 0;
-		Iterator<Neuron> it = neurons.iterator();
-		while (it.hasNext()) {
-			result[index++] = it.next().getNotActivatedValue();
-		}
-
-		return result;
+		return notActivatedValues;
 	}
 
 }
@@ -0,0 +1,271 @@
+package com.rebe.neuralNetwork.components;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * Matrix of doubles stored outside of the heap, flat in row-major order like
+ * {@link ConnectionLayers#getWeights()}. A byte buffer can not exceed 2 GB, so
+ * the rows are split in chunks of {@link ConnectionLayers#chunkRows(int)} whole
+ * rows, each one in its own buffer, and the values are addressed by long flat
+ * indexes, so the matrix can hold more values than an array. Every access is
+ * absolute, so disjoint parts of the matrix can be read and written
+ * concurrently
+ *
+ * @author Mattia Rebesan
+ *
+ */
+class OffHeapMatrix {
+
+	/**
+	 * Count of the rows
+	 */
+	private final int rows;
+
+	/**
+	 * Count of the columns
+	 */
+	private final int columns;
+
+	/**
+	 * Count of the rows of every chunk but the last one
+	 */
+	private final int chunkRows;
+
+	/**
+	 * Count of the values of every chunk but the last one
+	 */
+	private final int chunkLength;
+
+	/**
+	 * Chunks of the matrix, in order
+	 */
+	private final ByteBuffer[] chunks;
+
+	/**
+	 * Views of the chunks as doubles
+	 */
+	private final DoubleBuffer[] doubleChunks;
+
+	/**
+	 * Constructor that allocate a matrix of zeros in direct buffers, in the
+	 * native byte order
+	 *
+	 * @param rows
+	 *            count of the rows
+	 * @param columns
+	 *            count of the columns
+	 */
+	OffHeapMatrix(final int rows, final int columns) {
+		this(rows, columns, allocateChunks(rows, columns));
+	}
+
+	/**
+	 * Constructor that use buffers already holding the values, for example
+	 * mapped from a file, without copying them. A read only buffer makes the
+	 * matrix read only
+	 *
+	 * @param rows
+	 *            count of the rows
+	 * @param columns
+	 *            count of the columns
+	 * @param chunks
+	 *            the chunks, each one with {@link ConnectionLayers#chunkRows(int)}
+	 *            rows but the last one and with its byte order set
+	 */
+	OffHeapMatrix(final int rows, final int columns, final ByteBuffer[] chunks) {
+		this.rows = rows;
+		this.columns = columns;
+		this.chunkRows = ConnectionLayers.chunkRows(columns);
+		this.chunkLength = chunkRows * columns;
+		this.chunks = chunks;
+		this.doubleChunks = new DoubleBuffer[chunks.length];
+		for (int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++) {
+			doubleChunks[chunkIndex] = chunks[chunkIndex].asDoubleBuffer();
+		}
+	}
+
+	/**
+	 * Allocate the direct buffers of a matrix of zeros
+	 *
+	 * @param rows
+	 *            count of the rows
+	 * @param columns
+	 *            count of the columns
+	 * @return the chunks, in order
+	 */
+	private static ByteBuffer[] allocateChunks(final int rows, final int columns) {
+		int chunkRows = ConnectionLayers.chunkRows(columns);
+		ByteBuffer[] chunks = new ByteBuffer[ConnectionLayers.chunksCount(rows, columns)];
+		for (int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++) {
+			int chunkRowsCount = Math.min(chunkRows, rows - chunkIndex * chunkRows);
+			chunks[chunkIndex] = ByteBuffer.allocateDirect(chunkRowsCount * columns * Double.BYTES)
+					.order(ByteOrder.nativeOrder());
+		}
+		return chunks;
+	}
+
+	/**
+	 * Return the count of the chunks
+	 *
+	 * @return the chunks count
+	 */
+	int chunksCount() {
+		return chunks.length;
+	}
+
+	/**
+	 * Return the count of the rows of every chunk but the last one
+	 *
+	 * @return the rows count of a chunk
+	 */
+	int chunkRows() {
+		return chunkRows;
+	}
+
+	/**
+	 * Return the chunks of the matrix, to be read with absolute reads only
+	 *
+	 * @return the buffers of the chunks, in order
+	 */
+	ByteBuffer[] chunks() {
+		return chunks;
+	}
+
+	/**
+	 * Return a chunk of the matrix, to be read with absolute reads only
+	 *
+	 * @param chunkIndex
+	 *            index of the chunk
+	 * @return the buffer of the chunk
+	 */
+	ByteBuffer chunk(final int chunkIndex) {
+		return chunks[chunkIndex];
+	}
+
+	/**
+	 * Return a chunk of the matrix as doubles, to be accessed with absolute
+	 * reads and writes only
+	 *
+	 * @param chunkIndex
+	 *            index of the chunk
+	 * @return the view of the chunk
+	 */
+	DoubleBuffer doubles(final int chunkIndex) {
+		return doubleChunks[chunkIndex];
+	}
+
+	/**
+	 * Return the index of the first row of a chunk
+	 *
+	 * @param chunkIndex
+	 *            index of the chunk
+	 * @return the first row
+	 */
+	int firstRow(final int chunkIndex) {
+		return chunkIndex * chunkRows;
+	}
+
+	/**
+	 * Return the count of the rows of a chunk
+	 *
+	 * @param chunkIndex
+	 *            index of the chunk
+	 * @return the rows count
+	 */
+	int rowsCount(final int chunkIndex) {
+		return Math.min(chunkRows, rows - chunkIndex * chunkRows);
+	}
+
+	/**
+	 * Return a value
+	 *
+	 * @param index
+	 *            flat index of the value
+	 * @return the value
+	 */
+	double get(final long index) {
+		int chunkIndex = (int) (index / chunkLength);
+		return doubleChunks[chunkIndex].get((int) (index - (long) chunkIndex * chunkLength));
+	}
+
+	/**
+	 * Replace a value
+	 *
+	 * @param index
+	 *            flat index of the value
+	 * @param value
+	 *            the new value
+	 */
+	void set(final long index, final double value) {
+		int chunkIndex = (int) (index / chunkLength);
+		doubleChunks[chunkIndex].put((int) (index - (long) chunkIndex * chunkLength), value);
+	}
+
+	/**
+	 * Copy consecutive values in an array
+	 *
+	 * @param index
+	 *            flat index of the first value
+	 * @param destination
+	 *            the array receiving the values
+	 * @param offset
+	 *            index of the array receiving the first value
+	 * @param length
+	 *            count of the values
+	 */
+	void get(final long index, final double[] destination, final int offset, final int length) {
+		for (int copied = 0; copied < length;) {
+			int chunkIndex = (int) ((index + copied) / chunkLength);
+			int chunkOffset = (int) (index + copied - (long) chunkIndex * chunkLength);
+			int count = Math.min(length - copied, chunkLength - chunkOffset);
+			doubleChunks[chunkIndex].get(chunkOffset, destination, offset + copied, count);
+			copied += count;
+		}
+	}
+
+	/**
+	 * Replace consecutive values with the ones of an array
+	 *
+	 * @param index
+	 *            flat index of the first value
+	 * @param source
+	 *            the array holding the values
+	 * @param offset
+	 *            index of the first value of the array
+	 * @param length
+	 *            count of the values
+	 */
+	void put(final long index, final double[] source, final int offset, final int length) {
+		for (int copied = 0; copied < length;) {
+			int chunkIndex = (int) ((index + copied) / chunkLength);
+			int chunkOffset = (int) (index + copied - (long) chunkIndex * chunkLength);
+			int count = Math.min(length - copied, chunkLength - chunkOffset);
+			doubleChunks[chunkIndex].put(chunkOffset, source, offset + copied, count);
+			copied += count;
+		}
+	}
+
+	/**
+	 * Replace every value with the one of a matrix with the same sizes
+	 *
+	 * @param source
+	 *            the copied matrix
+	 */
+	void copyFrom(final OffHeapMatrix source) {
+		for (int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++) {
+			chunks[chunkIndex].put(0, source.chunks[chunkIndex], 0, chunks[chunkIndex].capacity());
+		}
+	}
+
+	/**
+	 * Return the count of the values
+	 *
+	 * @return the values count
+	 */
+	long length() {
+		return (long) rows * columns;
+	}
+
+}
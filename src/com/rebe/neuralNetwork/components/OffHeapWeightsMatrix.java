@@ -0,0 +1,306 @@
+package com.rebe.neuralNetwork.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import com.rebe.neuralNetwork.math.LinearAlgebra;
+import com.rebe.neuralNetwork.optimizers.Optimizer;
+
+/**
+ * Weights matrix stored as doubles in an {@link OffHeapMatrix}, with its
+ * optimizer state in matrices of the same kind. The forward passes read the
+ * buffers in place, while the updates and the products by rows stage a few
+ * rows at a time in arrays of the calling thread, whose size depends on the
+ * columns count only. The blocks of staged rows start at a multiple of four
+ * rows, so they keep the rows tiles of the heap kernels and their results.
+ * <p>
+ * The optimizer state is allocated at the first update, so a matrix that is
+ * never trained, like the one of an inference only network, takes the memory
+ * of its weights only
+ *
+ * @author Mattia Rebesan
+ *
+ */
+class OffHeapWeightsMatrix implements WeightsMatrix {
+
+	/**
+	 * Count of the values staged at a time
+	 */
+	private static final int STAGED_VALUES = 1 << 13;
+
+	/**
+	 * Count of the rows
+	 */
+	private final int rows;
+
+	/**
+	 * Count of the columns
+	 */
+	private final int columns;
+
+	/**
+	 * The weights
+	 */
+	private final OffHeapMatrix weights;
+
+	/**
+	 * Count of the optimizer state matrices
+	 */
+	private int stateSize;
+
+	/**
+	 * Optimizer state matrices, or null until the first update
+	 */
+	private volatile OffHeapMatrix[] state;
+
+	/**
+	 * Arrays of each thread staging the rows
+	 */
+	private ThreadLocal<StagedRows> stagedRows;
+
+	/**
+	 * Constructor that allocate a matrix of zeros in direct buffers
+	 *
+	 * @param rows
+	 *            count of the rows
+	 * @param columns
+	 *            count of the columns
+	 */
+	OffHeapWeightsMatrix(final int rows, final int columns) {
+		this(rows, columns, new OffHeapMatrix(rows, columns));
+	}
+
+	/**
+	 * Constructor that use the received weights without copying them
+	 *
+	 * @param rows
+	 *            count of the rows
+	 * @param columns
+	 *            count of the columns
+	 * @param weights
+	 *            the weights
+	 */
+	OffHeapWeightsMatrix(final int rows, final int columns, final OffHeapMatrix weights) {
+		this.rows = rows;
+		this.columns = columns;
+		this.weights = weights;
+		resetState(0);
+	}
+
+	@Override
+	public WeightsMatrix allocate() {
+		return new OffHeapWeightsMatrix(rows, columns);
+	}
+
+	@Override
+	public void gemvTransposed(final double[] x, final double[] y, final int fromColumn, final int toColumn) {
+		for (int chunkIndex = 0; chunkIndex < weights.chunksCount(); chunkIndex++) {
+			LinearAlgebra.gemvTransposed(weights.rowsCount(chunkIndex), columns, weights.chunk(chunkIndex), x,
+					weights.firstRow(chunkIndex), y, fromColumn, toColumn);
+		}
+	}
+
+	@Override
+	public void gemv(final double[] x, final double[] y, final int fromRow, final int toRow) {
+		StagedRows staged = stagedRows.get();
+		for (int blockRow = fromRow; blockRow < toRow; blockRow += staged.products.length) {
+			int rowsCount = Math.min(staged.products.length, toRow - blockRow);
+			weights.get((long) blockRow * columns, staged.weights, 0, rowsCount * columns);
+			Arrays.fill(staged.products, 0, rowsCount, 0);
+			LinearAlgebra.gemv(rowsCount, columns, staged.weights, x, staged.products, 0, rowsCount);
+			for (int rowIndex = 0; rowIndex < rowsCount; rowIndex++) {
+				y[blockRow + rowIndex] += staged.products[rowIndex];
+			}
+		}
+	}
+
+	@Override
+	public void axpy(final double alpha, final int row, final double[] y) {
+		double[] staged = stagedRows.get().weights;
+		weights.get((long) row * columns, staged, 0, columns);
+		LinearAlgebra.axpy(alpha, staged, 0, y, 0, columns);
+	}
+
+	@Override
+	public void gemm(final int samplesCount, final double[] a, final double[] c) {
+		LinearAlgebra.gemm(samplesCount, columns, rows, a, weights.chunks(), weights.chunkRows(), c);
+	}
+
+	@Override
+	public void gemmTransposedRight(final int samplesCount, final double[] a, final double[] c) {
+		if (samplesCount == 1) {
+			// a single sample, the product of the heap matrix is a matrix-vector one
+			gemv(a, c, 0, rows);
+		} else {
+			LinearAlgebra.gemmTransposedRight(samplesCount, rows, columns, a, weights.chunks(), weights.chunkRows(),
+					c);
+		}
+	}
+
+	@Override
+	public double update(final Optimizer optimizer, final long offset, final double[] directions,
+			final int directionsOffset, final double scale, final long step, final int length) {
+		OffHeapMatrix[] matrices = state();
+		StagedRows staged = stagedRows.get();
+		double squaredNorm = 0;
+		for (int updated = 0; updated < length;) {
+			int count = Math.min(length - updated, staged.weights.length);
+			weights.get(offset + updated, staged.weights, 0, count);
+			for (int stateIndex = 0; stateIndex < matrices.length; stateIndex++) {
+				matrices[stateIndex].get(offset + updated, staged.state[stateIndex], 0, count);
+			}
+			squaredNorm += optimizer.update(staged.weights, staged.state, 0, directions, directionsOffset + updated,
+					scale, step, count);
+			weights.put(offset + updated, staged.weights, 0, count);
+			for (int stateIndex = 0; stateIndex < matrices.length; stateIndex++) {
+				matrices[stateIndex].put(offset + updated, staged.state[stateIndex], 0, count);
+			}
+			updated += count;
+		}
+		return squaredNorm;
+	}
+
+	@Override
+	public double get(final long index) {
+		return weights.get(index);
+	}
+
+	@Override
+	public void set(final long index, final double value) {
+		weights.set(index, value);
+	}
+
+	@Override
+	public void put(final long index, final double[] source, final int offset, final int length) {
+		weights.put(index, source, offset, length);
+	}
+
+	@Override
+	public void clearState(final long index) {
+		OffHeapMatrix[] matrices = state;
+		for (int stateIndex = 0; matrices != null && stateIndex < matrices.length; stateIndex++) {
+			matrices[stateIndex].set(index, 0);
+		}
+	}
+
+	@Override
+	public void resetState(final int stateSize) {
+		this.stateSize = stateSize;
+		this.state = null;
+		this.stagedRows = ThreadLocal.withInitial(() -> new StagedRows(columns, stateSize));
+	}
+
+	@Override
+	public long length() {
+		return weights.length();
+	}
+
+	/**
+	 * Return a copy of the weights
+	 */
+	@Override
+	public double[] toArray() {
+		double[] values = new double[Math.toIntExact(weights.length())];
+		weights.get(0, values, 0, values.length);
+		return values;
+	}
+
+	@Override
+	public void copyFrom(final WeightsMatrix source) {
+		OffHeapWeightsMatrix matrix = (OffHeapWeightsMatrix) source;
+		weights.copyFrom(matrix.weights);
+		OffHeapMatrix[] sourceState = matrix.state;
+		if (sourceState == null) {
+			// a state never allocated is made of zeros
+			state = null;
+			return;
+		}
+		OffHeapMatrix[] matrices = state();
+		for (int stateIndex = 0; stateIndex < matrices.length; stateIndex++) {
+			matrices[stateIndex].copyFrom(sourceState[stateIndex]);
+		}
+	}
+
+	@Override
+	public void write(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		ConnectionLayersState.writeDoubles(channel, buffer, weights);
+		for (OffHeapMatrix matrix : state()) {
+			ConnectionLayersState.writeDoubles(channel, buffer, matrix);
+		}
+	}
+
+	@Override
+	public void read(final ReadableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		ConnectionLayersState.readDoubles(channel, buffer, weights);
+		for (OffHeapMatrix matrix : state()) {
+			ConnectionLayersState.readDoubles(channel, buffer, matrix);
+		}
+	}
+
+	/**
+	 * Return the optimizer state matrices, allocating them the first time. The
+	 * update of disjoint parts of the matrix can run concurrently, so the
+	 * allocation is made by a single thread
+	 *
+	 * @return the optimizer state matrices
+	 */
+	private OffHeapMatrix[] state() {
+		OffHeapMatrix[] matrices = state;
+		if (matrices == null) {
+			synchronized (this) {
+				matrices = state;
+				if (matrices == null) {
+					matrices = new OffHeapMatrix[stateSize];
+					for (int stateIndex = 0; stateIndex < stateSize; stateIndex++) {
+						matrices[stateIndex] = new OffHeapMatrix(rows, columns);
+					}
+					state = matrices;
+				}
+			}
+		}
+		return matrices;
+	}
+
+	/**
+	 * Arrays of a thread staging the rows
+	 */
+	private static class StagedRows {
+
+		/**
+		 * Staged rows of the weights matrix, a multiple of four rows so that the
+		 * products keep the rows tiles of the heap kernels
+		 */
+		private final double[] weights;
+
+		/**
+		 * Staged values of each optimizer state matrix, as many as the staged
+		 * weights
+		 */
+		private final double[][] state;
+
+		/**
+		 * Products of the staged rows, one per row
+		 */
+		private final double[] products;
+
+		/**
+		 * Constructor that allocate the arrays
+		 *
+		 * @param columnsCount
+		 *            count of the columns of the weights matrix
+		 * @param stateSize
+		 *            count of the optimizer state matrices
+		 */
+		StagedRows(final int columnsCount, final int stateSize) {
+			int rowsCount = Math.max(4, STAGED_VALUES / columnsCount & ~3);
+			this.weights = new double[rowsCount * columnsCount];
+			this.state = new double[stateSize][weights.length];
+			this.products = new double[rowsCount];
+		}
+
+	}
+
+}
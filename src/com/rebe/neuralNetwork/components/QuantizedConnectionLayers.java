@@ -0,0 +1,260 @@
+package com.rebe.neuralNetwork.components;
+
+import java.util.Arrays;
+
+import com.rebe.neuralNetwork.activations.Activation;
+import com.rebe.neuralNetwork.math.LinearAlgebra;
+
+/**
+ * Inference only copy of a {@link ConnectionLayers} with 8 bits weights. Each
+ * column of the weights matrix, the weights towards a right neuron, has its own
+ * scale and zero point, while the left layer values are quantized with a single
+ * scale and zero point calibrated on sample inputs. A real value v is
+ * represented by the integer q such that v = scale * (q - zeroPoint).
+ * <p>
+ * The matrix-vector product runs in integer arithmetic, the zero points are
+ * removed from the accumulators with precomputed sums and the result is
+ * dequantized only to add the biases and apply the activation function. The
+ * 32 bits accumulators sum blocks of rows short enough not to overflow, whose
+ * results are then added in double precision, exact for every integer the
+ * product can reach
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class QuantizedConnectionLayers {
+
+	/**
+	 * Lowest quantized value
+	 */
+	private static final int MIN_QUANTIZED = Byte.MIN_VALUE;
+
+	/**
+	 * Highest quantized value
+	 */
+	private static final int MAX_QUANTIZED = Byte.MAX_VALUE;
+
+	/**
+	 * Max count of rows summed in the 32 bits accumulators, each product being
+	 * at most 2^14 in magnitude
+	 */
+	private static final int BLOCK_ROWS = Integer.MAX_VALUE / (MIN_QUANTIZED * MIN_QUANTIZED);
+
+	/**
+	 * Neurons count of the left layer
+	 */
+	private final int leftSize;
+
+	/**
+	 * Neurons count of the right layer
+	 */
+	private final int rightSize;
+
+	/**
+	 * Quantized weights matrix, with the layout of
+	 * {@link ConnectionLayers#getWeights()}
+	 */
+	private final byte[] weightsMatrix;
+
+	/**
+	 * Zero point of each column of the weights matrix
+	 */
+	private final int[] weightsZeroPoints;
+
+	/**
+	 * Product between the left values scale and the scale of each column of the
+	 * weights matrix, used to dequantize the accumulators
+	 */
+	private final double[] columnsScales;
+
+	/**
+	 * Constant part of the zero points correction of each column
+	 */
+	private final long[] columnsOffsets;
+
+	/**
+	 * Biases array, kept in double precision
+	 */
+	private final double[] biases;
+
+	/**
+	 * Scale of the left layer values
+	 */
+	private final double valuesScale;
+
+	/**
+	 * Inverse of the scale of the left layer values, so that the values are
+	 * quantized with a multiplication
+	 */
+	private final double valuesInverseScale;
+
+	/**
+	 * Zero point of the left layer values
+	 */
+	private final int valuesZeroPoint;
+
+	/**
+	 * Activation function of the right layer
+	 */
+	private final Activation activation;
+
+	/**
+	 * Constructor that quantize the weights of a connection layer
+	 *
+	 * @param connectionLayer
+	 *            the connection layer to quantize
+	 * @param valuesMinimum
+	 *            lowest left layer value seen during the calibration
+	 * @param valuesMaximum
+	 *            highest left layer value seen during the calibration
+	 */
+	public QuantizedConnectionLayers(final ConnectionLayers connectionLayer, final double valuesMinimum,
+			final double valuesMaximum) {
+		this.leftSize = connectionLayer.leftLayer().size();
+		this.rightSize = connectionLayer.rightLayer().size();
+		this.activation = connectionLayer.rightLayer().activation();
+		this.biases = connectionLayer.getBiases().clone();
+
+		double minimum = Math.min(valuesMinimum, 0);
+		double maximum = Math.max(valuesMaximum, 0);
+		this.valuesScale = scale(minimum, maximum);
+		this.valuesInverseScale = 1 / valuesScale;
+		this.valuesZeroPoint = zeroPoint(minimum, valuesScale);
+
+		double[] weights = connectionLayer.getWeights();
+		double[] minimums = new double[rightSize];
+		double[] maximums = new double[rightSize];
+		for (int rowIndex = 0; rowIndex < leftSize; rowIndex++) {
+			for (int columnIndex = 0; columnIndex < rightSize; columnIndex++) {
+				minimums[columnIndex] = Math.min(minimums[columnIndex], weights[rowIndex * rightSize + columnIndex]);
+				maximums[columnIndex] = Math.max(maximums[columnIndex], weights[rowIndex * rightSize + columnIndex]);
+			}
+		}
+
+		double[] weightsScales = new double[rightSize];
+		weightsZeroPoints = new int[rightSize];
+		for (int columnIndex = 0; columnIndex < rightSize; columnIndex++) {
+			weightsScales[columnIndex] = scale(minimums[columnIndex], maximums[columnIndex]);
+			weightsZeroPoints[columnIndex] = zeroPoint(minimums[columnIndex], weightsScales[columnIndex]);
+		}
+
+		weightsMatrix = new byte[leftSize * rightSize];
+		long[] columnsSums = new long[rightSize];
+		for (int rowIndex = 0; rowIndex < leftSize; rowIndex++) {
+			for (int columnIndex = 0; columnIndex < rightSize; columnIndex++) {
+				int index = rowIndex * rightSize + columnIndex;
+				weightsMatrix[index] = quantize(weights[index], 1 / weightsScales[columnIndex],
+						weightsZeroPoints[columnIndex]);
+				columnsSums[columnIndex] += weightsMatrix[index];
+			}
+		}
+
+		columnsScales = new double[rightSize];
+		columnsOffsets = new long[rightSize];
+		for (int columnIndex = 0; columnIndex < rightSize; columnIndex++) {
+			columnsScales[columnIndex] = valuesScale * weightsScales[columnIndex];
+			columnsOffsets[columnIndex] = (long) leftSize * valuesZeroPoint * weightsZeroPoints[columnIndex]
+					- valuesZeroPoint * columnsSums[columnIndex];
+		}
+	}
+
+	/**
+	 * Compute the right layer values from the left layer ones. Every buffer is
+	 * received by the caller, so the method allocates nothing and can run
+	 * concurrently on different buffers
+	 *
+	 * @param leftValues
+	 *            activated values of the left layer
+	 * @param quantizedValues
+	 *            buffer for the quantized left layer values, at least as long as
+	 *            the left layer
+	 * @param accumulators
+	 *            buffer for the integer products, at least as long as the right
+	 *            layer
+	 * @param rightNotActivatedValues
+	 *            buffer for the not activated values of the right layer
+	 * @param rightValues
+	 *            buffer for the activated values of the right layer
+	 */
+	public void compute(final double[] leftValues, final byte[] quantizedValues, final int[] accumulators,
+			final double[] rightNotActivatedValues, final double[] rightValues) {
+		long valuesSum = 0;
+		for (int rowIndex = 0; rowIndex < leftSize; rowIndex++) {
+			quantizedValues[rowIndex] = quantize(leftValues[rowIndex], valuesInverseScale, valuesZeroPoint);
+			valuesSum += quantizedValues[rowIndex];
+		}
+
+		// the integer products are gathered in the not activated values
+		Arrays.fill(rightNotActivatedValues, 0, rightSize, 0);
+		for (int fromRow = 0, toRow; fromRow < leftSize; fromRow = toRow) {
+			toRow = fromRow + Math.min(leftSize - fromRow, BLOCK_ROWS);
+			Arrays.fill(accumulators, 0, rightSize, 0);
+			LinearAlgebra.gemvTransposed(leftSize, rightSize, weightsMatrix, quantizedValues, accumulators, fromRow,
+					toRow);
+			for (int columnIndex = 0; columnIndex < rightSize; columnIndex++) {
+				rightNotActivatedValues[columnIndex] += accumulators[columnIndex];
+			}
+		}
+
+		for (int columnIndex = 0; columnIndex < rightSize; columnIndex++) {
+			long product = (long) rightNotActivatedValues[columnIndex] - weightsZeroPoints[columnIndex] * valuesSum
+					+ columnsOffsets[columnIndex];
+			rightNotActivatedValues[columnIndex] = biases[columnIndex] + columnsScales[columnIndex] * product;
+		}
+
+		activation.forward(rightNotActivatedValues, rightValues, rightSize);
+	}
+
+	/**
+	 * Getter of the quantized weights matrix
+	 *
+	 * @return the weights matrix
+	 */
+	public byte[] getWeights() {
+		return weightsMatrix;
+	}
+
+	/**
+	 * Compute the scale that maps a range of values on the quantized range
+	 *
+	 * @param minimum
+	 *            lowest value of the range, not greater than 0
+	 * @param maximum
+	 *            highest value of the range, not less than 0
+	 * @return the scale
+	 */
+	private static double scale(final double minimum, final double maximum) {
+		double scale = (maximum - minimum) / (MAX_QUANTIZED - MIN_QUANTIZED);
+		return scale > 0 ? scale : 1;
+	}
+
+	/**
+	 * Compute the zero point of a range, the quantized value of 0
+	 *
+	 * @param minimum
+	 *            lowest value of the range, not greater than 0
+	 * @param scale
+	 *            scale of the range
+	 * @return the zero point
+	 */
+	private static int zeroPoint(final double minimum, final double scale) {
+		return (int) Math.max(MIN_QUANTIZED, Math.min(MAX_QUANTIZED, Math.round(MIN_QUANTIZED - minimum / scale)));
+	}
+
+	/**
+	 * Quantize a value, saturating it to the quantized range
+	 *
+	 * @param value
+	 *            the value
+	 * @param inverseScale
+	 *            inverse of the scale of the range
+	 * @param zeroPoint
+	 *            zero point of the range
+	 * @return the quantized value
+	 */
+	private static byte quantize(final double value, final double inverseScale, final int zeroPoint) {
+		double quantized = Math.floor(value * inverseScale + 0.5) + zeroPoint;
+		return (byte) Math.max(MIN_QUANTIZED, Math.min(MAX_QUANTIZED, quantized));
+	}
+
+}
@@ -0,0 +1,253 @@
+package com.rebe.neuralNetwork.components;
+
+import com.rebe.neuralNetwork.activations.Activation;
+import com.rebe.neuralNetwork.math.LinearAlgebra;
+import com.rebe.neuralNetwork.math.Precision;
+
+/**
+ * Inference only copy of a pruned {@link ConnectionLayers}. A compressed copy
+ * stores only the non-zero weights, in compressed sparse row format over the
+ * right neurons: the weights towards each right neuron are kept with the
+ * indexes of their left neurons, so each right value is a dot product over
+ * its own non-zero weights and the products of the pruned weights are never
+ * computed. A copy that is not compressed keeps the dense weights matrix, for
+ * the connection layers not pruned enough to gain from the sparse format.
+ * <p>
+ * The weights keep the storage precision of the copied connection layer
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class SparseConnectionLayers {
+
+	/**
+	 * Bytes of a column index of the compressed format
+	 */
+	private static final int INDEX_BYTES = Integer.BYTES;
+
+	/**
+	 * Neurons count of the left layer
+	 */
+	private final int leftSize;
+
+	/**
+	 * Neurons count of the right layer
+	 */
+	private final int rightSize;
+
+	/**
+	 * Storage precision of the weights
+	 */
+	private final Precision precision;
+
+	/**
+	 * Indicates if the weights are stored in the compressed format
+	 */
+	private final boolean compressed;
+
+	/**
+	 * Count of the non-zero weights
+	 */
+	private final int nonZeroCount;
+
+	/**
+	 * Dense weights matrix, with the layout of
+	 * {@link ConnectionLayers#getWeights()}, if not compressed and in double
+	 * precision
+	 */
+	private double[] weightsMatrix;
+
+	/**
+	 * Dense weights matrix, if not compressed and in single precision
+	 */
+	private float[] floatWeightsMatrix;
+
+	/**
+	 * Position of the first non-zero weight of each right neuron, followed by
+	 * the count of the non-zero weights, if compressed
+	 */
+	private int[] rowPointers;
+
+	/**
+	 * Left neuron of each non-zero weight, if compressed
+	 */
+	private int[] columnIndexes;
+
+	/**
+	 * Non-zero weights grouped by right neuron, if compressed and in double
+	 * precision
+	 */
+	private double[] values;
+
+	/**
+	 * Non-zero weights grouped by right neuron, if compressed and in single
+	 * precision
+	 */
+	private float[] floatValues;
+
+	/**
+	 * Biases array
+	 */
+	private final double[] biases;
+
+	/**
+	 * Activation function of the right layer
+	 */
+	private final Activation activation;
+
+	/**
+	 * Constructor that copy the weights of a connection layer
+	 *
+	 * @param connectionLayer
+	 *            the connection layer to copy
+	 * @param compressed
+	 *            true to store only the non-zero weights
+	 */
+	public SparseConnectionLayers(final ConnectionLayers connectionLayer, final boolean compressed) {
+		this.leftSize = connectionLayer.leftLayer().size();
+		this.rightSize = connectionLayer.rightLayer().size();
+		this.precision = connectionLayer.getPrecision();
+		this.compressed = compressed;
+		this.activation = connectionLayer.rightLayer().activation();
+		this.biases = connectionLayer.getBiases().clone();
+
+		double[] weights = connectionLayer.getWeights();
+		int nonZeros = 0;
+		for (double weight : weights) {
+			if (weight != 0) {
+				nonZeros++;
+			}
+		}
+		this.nonZeroCount = nonZeros;
+
+		if (!compressed) {
+			if (precision == Precision.FLOAT) {
+				floatWeightsMatrix = new float[weights.length];
+				for (int index = 0; index < weights.length; index++) {
+					floatWeightsMatrix[index] = (float) weights[index];
+				}
+			} else {
+				weightsMatrix = weights.clone();
+			}
+			return;
+		}
+
+		// count the non-zero weights of each right neuron, then fill them in
+		// left neuron order
+		rowPointers = new int[rightSize + 1];
+		for (int rowIndex = 0; rowIndex < leftSize; rowIndex++) {
+			for (int columnIndex = 0; columnIndex < rightSize; columnIndex++) {
+				if (weights[rowIndex * rightSize + columnIndex] != 0) {
+					rowPointers[columnIndex + 1]++;
+				}
+			}
+		}
+		for (int columnIndex = 0; columnIndex < rightSize; columnIndex++) {
+			rowPointers[columnIndex + 1] += rowPointers[columnIndex];
+		}
+
+		columnIndexes = new int[nonZeroCount];
+		if (precision == Precision.FLOAT) {
+			floatValues = new float[nonZeroCount];
+		} else {
+			values = new double[nonZeroCount];
+		}
+		int[] positions = new int[rightSize];
+		System.arraycopy(rowPointers, 0, positions, 0, rightSize);
+		for (int rowIndex = 0; rowIndex < leftSize; rowIndex++) {
+			for (int columnIndex = 0; columnIndex < rightSize; columnIndex++) {
+				double weight = weights[rowIndex * rightSize + columnIndex];
+				if (weight != 0) {
+					int position = positions[columnIndex]++;
+					columnIndexes[position] = rowIndex;
+					if (precision == Precision.FLOAT) {
+						floatValues[position] = (float) weight;
+					} else {
+						values[position] = weight;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compute the right layer values from the left layer ones. Every buffer is
+	 * received by the caller, so the method allocates nothing and can run
+	 * concurrently on different buffers
+	 *
+	 * @param leftValues
+	 *            activated values of the left layer
+	 * @param rightNotActivatedValues
+	 *            buffer for the not activated values of the right layer
+	 * @param rightValues
+	 *            buffer for the activated values of the right layer
+	 */
+	public void compute(final double[] leftValues, final double[] rightNotActivatedValues,
+			final double[] rightValues) {
+		System.arraycopy(biases, 0, rightNotActivatedValues, 0, rightSize);
+		if (compressed) {
+			if (precision == Precision.FLOAT) {
+				LinearAlgebra.spmv(rightSize, rowPointers, columnIndexes, floatValues, leftValues,
+						rightNotActivatedValues);
+			} else {
+				LinearAlgebra.spmv(rightSize, rowPointers, columnIndexes, values, leftValues, rightNotActivatedValues);
+			}
+		} else if (precision == Precision.FLOAT) {
+			LinearAlgebra.gemvTransposed(leftSize, rightSize, floatWeightsMatrix, leftValues, rightNotActivatedValues);
+		} else {
+			LinearAlgebra.gemvTransposed(leftSize, rightSize, weightsMatrix, leftValues, rightNotActivatedValues);
+		}
+
+		activation.forward(rightNotActivatedValues, rightValues, rightSize);
+	}
+
+	/**
+	 * Indicates if the weights are stored in the compressed format
+	 *
+	 * @return true if compressed
+	 */
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+	/**
+	 * Return the ratio of the weights equal to 0
+	 *
+	 * @return the sparsity of the weights matrix
+	 */
+	public double getSparsity() {
+		return 1 - (double) nonZeroCount / ((long) leftSize * rightSize);
+	}
+
+	/**
+	 * Return the bytes taken by the weights in the dense format
+	 *
+	 * @return the dense weights bytes
+	 */
+	public long getDenseWeightsBytes() {
+		return (long) leftSize * rightSize * valueBytes();
+	}
+
+	/**
+	 * Return the bytes taken by the stored weights, with the indexes of the
+	 * compressed format
+	 *
+	 * @return the weights bytes
+	 */
+	public long getWeightsBytes() {
+		if (!compressed) {
+			return getDenseWeightsBytes();
+		}
+		return (long) nonZeroCount * (valueBytes() + INDEX_BYTES) + (long) (rightSize + 1) * INDEX_BYTES;
+	}
+
+	/**
+	 * Return the bytes of a weight in the storage precision
+	 *
+	 * @return the weight bytes
+	 */
+	private int valueBytes() {
+		return precision == Precision.FLOAT ? Float.BYTES : Double.BYTES;
+	}
+
+}
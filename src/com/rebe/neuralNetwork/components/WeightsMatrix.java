@@ -0,0 +1,280 @@
+package com.rebe.neuralNetwork.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.rebe.neuralNetwork.math.Precision;
+import com.rebe.neuralNetwork.math.Storage;
+import com.rebe.neuralNetwork.optimizers.Optimizer;
+
+/**
+ * Weights matrix of a {@link ConnectionLayers} together with its optimizer
+ * state, stored flat in row-major order like
+ * {@link ConnectionLayers#getWeights()}. Each implementation keeps the values
+ * with its own precision and storage, so the connection layer calls a single
+ * method per operation whatever they are. The products read the matrix only,
+ * so they can run concurrently, while the updates of disjoint parts of the
+ * matrix can run concurrently with each other
+ *
+ * @author Mattia Rebesan
+ *
+ */
+interface WeightsMatrix {
+
+	/**
+	 * Allocate a matrix of zeros, with no optimizer state
+	 *
+	 * @param rows
+	 *            count of the rows, one per left neuron
+	 * @param columns
+	 *            count of the columns, one per right neuron
+	 * @param precision
+	 *            storage precision of the values
+	 * @param storage
+	 *            storage of the values
+	 * @return the new matrix
+	 */
+	static WeightsMatrix allocate(final int rows, final int columns, final Precision precision,
+			final Storage storage) {
+		if (storage == Storage.OFF_HEAP) {
+			return new OffHeapWeightsMatrix(rows, columns);
+		}
+		if (precision == Precision.FLOAT) {
+			return new FloatWeightsMatrix(rows, columns);
+		}
+		return new DoubleWeightsMatrix(rows, columns);
+	}
+
+	/**
+	 * Build a matrix holding the values of an array, with no optimizer state. A
+	 * double precision heap matrix uses the array without copying it, the other
+	 * ones copy its values
+	 *
+	 * @param rows
+	 *            count of the rows, one per left neuron
+	 * @param columns
+	 *            count of the columns, one per right neuron
+	 * @param weights
+	 *            the weights, flat in row-major order
+	 * @param precision
+	 *            storage precision of the values
+	 * @param storage
+	 *            storage of the values
+	 * @return the new matrix
+	 */
+	static WeightsMatrix wrap(final int rows, final int columns, final double[] weights, final Precision precision,
+			final Storage storage) {
+		if (storage == Storage.HEAP && precision == Precision.DOUBLE) {
+			return new DoubleWeightsMatrix(rows, columns, weights);
+		}
+		WeightsMatrix matrix = allocate(rows, columns, precision, storage);
+		matrix.put(0, weights, 0, weights.length);
+		return matrix;
+	}
+
+	/**
+	 * Allocate a matrix of zeros with the same sizes, precision and storage,
+	 * with no optimizer state
+	 *
+	 * @return the new matrix
+	 */
+	WeightsMatrix allocate();
+
+	/**
+	 * Transposed matrix-vector product restricted to a range of columns,
+	 * y[fromColumn, toColumn) += W[:, fromColumn, toColumn)^T * x
+	 *
+	 * @param x
+	 *            vector of the left layer values
+	 * @param y
+	 *            vector of the right layer values where the result is
+	 *            accumulated
+	 * @param fromColumn
+	 *            first column of the range, included
+	 * @param toColumn
+	 *            last column of the range, excluded
+	 */
+	void gemvTransposed(double[] x, double[] y, int fromColumn, int toColumn);
+
+	/**
+	 * Matrix-vector product restricted to a range of rows,
+	 * y[fromRow, toRow) += W[fromRow, toRow) * x
+	 *
+	 * @param x
+	 *            vector of the right layer values
+	 * @param y
+	 *            vector of the left layer values where the result is accumulated
+	 * @param fromRow
+	 *            first row of the range, included
+	 * @param toRow
+	 *            last row of the range, excluded
+	 */
+	void gemv(double[] x, double[] y, int fromRow, int toRow);
+
+	/**
+	 * Accumulate a scaled row, y += alpha * W[row]
+	 *
+	 * @param alpha
+	 *            factor of the row
+	 * @param row
+	 *            index of the row
+	 * @param y
+	 *            vector of the right layer values where the result is
+	 *            accumulated
+	 */
+	void axpy(double alpha, int row, double[] y);
+
+	/**
+	 * Matrix-matrix product, C += A * W
+	 *
+	 * @param samplesCount
+	 *            count of the rows of A and C
+	 * @param a
+	 *            the left layer values, one row per sample
+	 * @param c
+	 *            the right layer values where the result is accumulated, one row
+	 *            per sample
+	 */
+	void gemm(int samplesCount, double[] a, double[] c);
+
+	/**
+	 * Matrix-matrix product with the transposed matrix, C += A * W^T, computed
+	 * without transposing it
+	 *
+	 * @param samplesCount
+	 *            count of the rows of A and C
+	 * @param a
+	 *            the right layer values, one row per sample
+	 * @param c
+	 *            the left layer values where the result is accumulated, one row
+	 *            per sample
+	 */
+	void gemmTransposedRight(int samplesCount, double[] a, double[] c);
+
+	/**
+	 * Update consecutive weights with an optimizer, see
+	 * {@link Optimizer#update(double[], double[][], int, double[], int, double, long, int)}
+	 *
+	 * @param optimizer
+	 *            the update rule, whose state size was set by
+	 *            {@link #resetState(int)}
+	 * @param offset
+	 *            flat index of the first weight
+	 * @param directions
+	 *            array containing the descent directions
+	 * @param directionsOffset
+	 *            index of the direction of the first weight
+	 * @param scale
+	 *            factor of the directions
+	 * @param step
+	 *            count of the updates made with the optimizer, this one included
+	 * @param length
+	 *            count of the weights
+	 * @return the squared norm of the steps added to the weights
+	 */
+	double update(Optimizer optimizer, long offset, double[] directions, int directionsOffset, double scale,
+			long step, int length);
+
+	/**
+	 * Return a weight
+	 *
+	 * @param index
+	 *            flat index of the weight
+	 * @return the weight
+	 */
+	double get(long index);
+
+	/**
+	 * Replace a weight, leaving its optimizer state untouched
+	 *
+	 * @param index
+	 *            flat index of the weight
+	 * @param value
+	 *            the new weight
+	 */
+	void set(long index, double value);
+
+	/**
+	 * Replace consecutive weights with the values of an array, rounded to the
+	 * precision of the matrix
+	 *
+	 * @param index
+	 *            flat index of the first weight
+	 * @param source
+	 *            the array holding the values
+	 * @param offset
+	 *            index of the first value of the array
+	 * @param length
+	 *            count of the values
+	 */
+	void put(long index, double[] source, int offset, int length);
+
+	/**
+	 * Set the optimizer state of a weight to 0
+	 *
+	 * @param index
+	 *            flat index of the weight
+	 */
+	void clearState(long index);
+
+	/**
+	 * Discard the optimizer state and start a new one of zeros
+	 *
+	 * @param stateSize
+	 *            count of the optimizer state matrices
+	 */
+	void resetState(int stateSize);
+
+	/**
+	 * Return the count of the weights
+	 *
+	 * @return the weights count
+	 */
+	long length();
+
+	/**
+	 * Return the weights in an array, with the semantics of
+	 * {@link ConnectionLayers#getWeights()}
+	 *
+	 * @return the weights
+	 */
+	double[] toArray();
+
+	/**
+	 * Replace the weights and the optimizer state with the ones of a matrix
+	 * allocated by {@link #allocate()} of this one
+	 *
+	 * @param source
+	 *            the copied matrix
+	 */
+	void copyFrom(WeightsMatrix source);
+
+	/**
+	 * Stream the weights followed by each optimizer state matrix to a channel
+	 * through a buffer
+	 *
+	 * @param channel
+	 *            the written channel
+	 * @param buffer
+	 *            buffer used to stage the values
+	 * @throws IOException
+	 *             Thrown if the channel can not be written
+	 */
+	void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException;
+
+	/**
+	 * Read the values written by {@link #write} of a matrix with the same sizes,
+	 * precision and optimizer state size
+	 *
+	 * @param channel
+	 *            the read channel
+	 * @param buffer
+	 *            buffer used to stage the values
+	 * @throws IOException
+	 *             Thrown if the channel can not be read or ends too early
+	 */
+	void read(ReadableByteChannel channel, ByteBuffer buffer) throws IOException;
+
+}
@@ -0,0 +1,178 @@
+package com.rebe.neuralNetwork.components;
+
+import com.rebe.neuralNetwork.math.LinearAlgebra;
+
+/**
+ * Collection of the buffers used to run the network on a batch of samples. For
+ * each layer it holds the activated values, the not activated values and the
+ * errors of every sample, stored flat in row-major order (the values of the
+ * sample s for a layer of n neurons start at index {@code s * n}). For each
+ * connection layer it holds the accumulated weights and biases gradients,
+ * unless it is an inference only workspace
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class Workspace {
+
+	/**
+	 * Count of the samples that the buffers can hold
+	 */
+	private final int capacity;
+
+	/**
+	 * Activated values of each layer
+	 */
+	private final double[][] values;
+
+	/**
+	 * Not activated values of each layer
+	 */
+	private final double[][] notActivatedValues;
+
+	/**
+	 * Errors of each layer
+	 */
+	private final double[][] errors;
+
+	/**
+	 * Accumulated weights gradients of each connection layer, same layout of the
+	 * connection weights matrix
+	 */
+	private final double[][] weightsGradients;
+
+	/**
+	 * Accumulated biases gradients of each connection layer
+	 */
+	private final double[][] biasesGradients;
+
+	/**
+	 * Constructor that allocate the buffers for the received layers
+	 * 
+	 * @param layersSizes
+	 *            neurons count of each layer, from the input to the output layer
+	 * @param capacity
+	 *            count of the samples that the buffers can hold
+	 */
+	public Workspace(final int[] layersSizes, final int capacity) {
+		this(layersSizes, capacity, true);
+	}
+
+	/**
+	 * Constructor that allocate the buffers for the received layers. An inference
+	 * only workspace holds just the values buffers, its errors and gradients
+	 * buffers are empty
+	 * 
+	 * @param layersSizes
+	 *            neurons count of each layer, from the input to the output layer
+	 * @param capacity
+	 *            count of the samples that the buffers can hold
+	 * @param training
+	 *            true to allocate the errors and gradients buffers, false for an
+	 *            inference only workspace
+	 */
+	public Workspace(final int[] layersSizes, final int capacity, final boolean training) {
+		this.capacity = capacity;
+
+		values = new double[layersSizes.length][];
+		notActivatedValues = new double[layersSizes.length][];
+		errors = new double[layersSizes.length][];
+		for (int layerIndex = 0; layerIndex < layersSizes.length; layerIndex++) {
+			values[layerIndex] = new double[capacity * layersSizes[layerIndex]];
+			notActivatedValues[layerIndex] = new double[capacity * layersSizes[layerIndex]];
+			errors[layerIndex] = new double[training ? capacity * layersSizes[layerIndex] : 0];
+		}
+
+		weightsGradients = new double[layersSizes.length - 1][];
+		biasesGradients = new double[layersSizes.length - 1][];
+		for (int connectionIndex = 0; connectionIndex < layersSizes.length - 1; connectionIndex++) {
+			int rowsCount = training ? layersSizes[connectionIndex] : 0;
+			int columnsCount = training ? layersSizes[connectionIndex + 1] : 0;
+			weightsGradients[connectionIndex] = new double[rowsCount * columnsCount];
+			biasesGradients[connectionIndex] = new double[columnsCount];
+		}
+	}
+
+	/**
+	 * Return the count of the samples that the buffers can hold
+	 * 
+	 * @return the capacity of the workspace
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Return the activated values buffer of a layer
+	 * 
+	 * @param layerIndex
+	 *            position of the layer, 0 is the input layer
+	 * @return the activated values buffer
+	 */
+	public double[] values(int layerIndex) {
+		return values[layerIndex];
+	}
+
+	/**
+	 * Return the not activated values buffer of a layer
+	 * 
+	 * @param layerIndex
+	 *            position of the layer, 0 is the input layer
+	 * @return the not activated values buffer
+	 */
+	public double[] notActivatedValues(int layerIndex) {
+		return notActivatedValues[layerIndex];
+	}
+
+	/**
+	 * Return the errors buffer of a layer
+	 * 
+	 * @param layerIndex
+	 *            position of the layer, 0 is the input layer
+	 * @return the errors buffer
+	 */
+	public double[] errors(int layerIndex) {
+		return errors[layerIndex];
+	}
+
+	/**
+	 * Return the weights gradient buffer of a connection layer
+	 * 
+	 * @param connectionIndex
+	 *            position of the connection layer, 0 is the one after the input
+	 *            layer
+	 * @return the weights gradient buffer
+	 */
+	public double[] weightsGradient(int connectionIndex) {
+		return weightsGradients[connectionIndex];
+	}
+
+	/**
+	 * Return the biases gradient buffer of a connection layer
+	 * 
+	 * @param connectionIndex
+	 *            position of the connection layer, 0 is the one after the input
+	 *            layer
+	 * @return the biases gradient buffer
+	 */
+	public double[] biasesGradient(int connectionIndex) {
+		return biasesGradients[connectionIndex];
+	}
+
+	/**
+	 * Add the gradients accumulated in another workspace of the same network to
+	 * the gradients of this workspace
+	 * 
+	 * @param other
+	 *            workspace holding the gradients to add
+	 */
+	public void addGradients(final Workspace other) {
+		for (int connectionIndex = 0; connectionIndex < weightsGradients.length; connectionIndex++) {
+			LinearAlgebra.axpy(1, other.weightsGradients[connectionIndex], 0, weightsGradients[connectionIndex], 0,
+					weightsGradients[connectionIndex].length);
+			LinearAlgebra.axpy(1, other.biasesGradients[connectionIndex], 0, biasesGradients[connectionIndex], 0,
+					biasesGradients[connectionIndex].length);
+		}
+	}
+
+}
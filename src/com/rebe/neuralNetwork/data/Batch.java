@@ -0,0 +1,99 @@
+package com.rebe.neuralNetwork.data;
+
+/**
+ * Batch of samples decoded by a {@link BatchReader}. Its arrays are reused by
+ * the reader, so a batch is valid only until the next call of
+ * {@link BatchReader#next()}
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class Batch {
+
+	/**
+	 * Inputs of the samples, one row per sample up to the capacity
+	 */
+	private final double[][] inputs;
+
+	/**
+	 * Expected outputs of the samples, one row per sample up to the capacity
+	 */
+	private final double[][] expectedOutputs;
+
+	/**
+	 * Count of the samples in the batch
+	 */
+	private int size;
+
+	/**
+	 * Constructor that build an empty batch
+	 *
+	 * @param capacity
+	 *            max count of samples of the batch
+	 * @param inputsCount
+	 *            count of the inputs of each sample
+	 * @param outputsCount
+	 *            count of the expected outputs of each sample
+	 */
+	Batch(final int capacity, final int inputsCount, final int outputsCount) {
+		this.inputs = new double[capacity][inputsCount];
+		this.expectedOutputs = new double[capacity][outputsCount];
+	}
+
+	/**
+	 * Return the inputs of the samples, one row per sample. The array length is
+	 * the capacity of the batch, only its first {@link #size()} rows belong to
+	 * the batch, so a partial batch is trained with
+	 * {@link com.rebe.neuralNetwork.NeuralNetwork#trainBatch(double[][], double[][], int)}
+	 *
+	 * @return the inputs
+	 */
+	public double[][] inputs() {
+		return inputs;
+	}
+
+	/**
+	 * Return the expected outputs of the samples, one row per sample. The array
+	 * length is the capacity of the batch, only its first {@link #size()} rows
+	 * belong to the batch
+	 *
+	 * @return the expected outputs
+	 */
+	public double[][] expectedOutputs() {
+		return expectedOutputs;
+	}
+
+	/**
+	 * Return the count of the samples in the batch
+	 *
+	 * @return the batch size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Fill the batch with samples of a dataset
+	 *
+	 * @param dataset
+	 *            the dataset
+	 * @param samples
+	 *            indexes of the samples in reading order, or null to read them
+	 *            in the file order
+	 * @param first
+	 *            position of the first sample to read, in the samples array or
+	 *            in the file
+	 * @param count
+	 *            count of the samples to read
+	 * @param floats
+	 *            buffer used to copy single precision records, or null
+	 */
+	void fill(final Dataset dataset, final long[] samples, final long first, final int count, final float[] floats) {
+		for (int sampleIndex = 0; sampleIndex < count; sampleIndex++) {
+			long sample = samples == null ? first + sampleIndex : samples[(int) first + sampleIndex];
+			dataset.read(sample, inputs[sampleIndex], expectedOutputs[sampleIndex], floats);
+		}
+		size = count;
+	}
+
+}
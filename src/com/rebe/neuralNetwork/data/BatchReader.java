@@ -0,0 +1,313 @@
+package com.rebe.neuralNetwork.data;
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
+import com.rebe.neuralNetwork.math.Precision;
+
+/**
+ * Reader of the samples of a {@link Dataset} in batches. A background thread
+ * decodes the next batches, touching the mapped pages and widening single
+ * precision values, while the caller trains on the current one:
+ *
+ * <pre>
+ * try (BatchReader reader = dataset.batches(64)) {
+ * 	for (Batch batch = reader.next(); batch != null; batch = reader.next()) {
+ * 		network.trainBatch(batch.inputs(), batch.expectedOutputs(), batch.size());
+ * 	}
+ * }
+ * </pre>
+ *
+ * The batches are recycled, so after the first ones the reader allocates
+ * nothing. A reader must be used by a single thread
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class BatchReader implements AutoCloseable {
+
+	/**
+	 * Batch marking the end of the samples
+	 */
+	private static final Batch END = new Batch(0, 0, 0);
+
+	/**
+	 * The read dataset
+	 */
+	private final Dataset dataset;
+
+	/**
+	 * Count of the samples of each batch
+	 */
+	private final int batchSize;
+
+	/**
+	 * Indexes of the samples in reading order, or null for the file order
+	 */
+	private final long[] samples;
+
+	/**
+	 * Position of the first sample, in the samples array or in the file
+	 */
+	private final long firstSample;
+
+	/**
+	 * Position after the last sample, in the samples array or in the file
+	 */
+	private final long endSample;
+
+	/**
+	 * Count of the samples of a shuffled block, 0 if the blocks are not
+	 * shuffled
+	 */
+	private final int blockSize;
+
+	/**
+	 * Indexes of the blocks in reading order, null if the blocks are not
+	 * shuffled
+	 */
+	private final int[] blocks;
+
+	/**
+	 * Generator of the shuffled orders, used by the decoder thread after the
+	 * constructor
+	 */
+	private final Random random;
+
+	/**
+	 * Batches ready to be decoded
+	 */
+	private final BlockingQueue<Batch> free;
+
+	/**
+	 * Decoded batches, in reading order
+	 */
+	private final BlockingQueue<Batch> decoded;
+
+	/**
+	 * Background thread decoding the batches
+	 */
+	private final Thread decoder;
+
+	/**
+	 * Error thrown by the decoder, reported by {@link #next()}
+	 */
+	private volatile RuntimeException failure;
+
+	/**
+	 * Batch returned by the last call of {@link #next()}
+	 */
+	private Batch current;
+
+	/**
+	 * Indicates if the last batch was returned
+	 */
+	private boolean finished;
+
+	/**
+	 * Constructor that start the decoder thread
+	 *
+	 * @param dataset
+	 *            the read dataset
+	 * @param batchSize
+	 *            count of the samples of each batch
+	 * @param prefetchedBatches
+	 *            count of the batches decoded in advance
+	 * @param samples
+	 *            indexes of the samples in reading order, or null for the file
+	 *            order
+	 * @param firstSample
+	 *            position of the first sample, in the samples array or in the
+	 *            file
+	 * @param endSample
+	 *            position after the last sample, in the samples array or in the
+	 *            file
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch size is lower than 1
+	 */
+	BatchReader(final Dataset dataset, final int batchSize, final int prefetchedBatches, final long[] samples,
+			final long firstSample, final long endSample) throws IllegalBatchSizeException {
+		this(dataset, batchSize, prefetchedBatches, samples, firstSample, endSample, 0, 0);
+	}
+
+	/**
+	 * Constructor that start the decoder thread, reading a range of samples in
+	 * a block-shuffled order if a block size is received: the range is split in
+	 * blocks of consecutive samples, the blocks are read in a random order and
+	 * the samples of each block in a random order too
+	 *
+	 * @param dataset
+	 *            the read dataset
+	 * @param batchSize
+	 *            count of the samples of each batch
+	 * @param prefetchedBatches
+	 *            count of the batches decoded in advance
+	 * @param samples
+	 *            indexes of the samples in reading order, or null for the file
+	 *            order
+	 * @param firstSample
+	 *            position of the first sample, in the samples array or in the
+	 *            file
+	 * @param endSample
+	 *            position after the last sample, in the samples array or in the
+	 *            file
+	 * @param blockSize
+	 *            count of the samples of a shuffled block, 0 to keep the order.
+	 *            The dataset checked that it splits the range in an array of
+	 *            blocks
+	 * @param seed
+	 *            seed of the shuffled orders
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch size is lower than 1
+	 */
+	BatchReader(final Dataset dataset, final int batchSize, final int prefetchedBatches, final long[] samples,
+			final long firstSample, final long endSample, final int blockSize, final long seed)
+			throws IllegalBatchSizeException {
+		if (batchSize < 1) {
+			throw new IllegalBatchSizeException();
+		}
+		this.dataset = dataset;
+		this.batchSize = batchSize;
+		this.samples = samples;
+		this.firstSample = firstSample;
+		this.endSample = endSample;
+		this.blockSize = blockSize;
+		if (blockSize > 0) {
+			long blocksCount = (endSample - firstSample + blockSize - 1) / blockSize;
+			this.random = new Random(seed);
+			this.blocks = new int[(int) blocksCount];
+			for (int index = 0; index < blocks.length; index++) {
+				blocks[index] = index;
+			}
+			for (int index = blocks.length - 1; index > 0; index--) {
+				int other = random.nextInt(index + 1);
+				int temp = blocks[index];
+				blocks[index] = blocks[other];
+				blocks[other] = temp;
+			}
+		} else {
+			this.random = null;
+			this.blocks = null;
+		}
+
+		// the caller holds one batch while the others are decoded
+		int batchesCount = (int) Math.min(prefetchedBatches + 1, (endSample - firstSample + batchSize - 1) / batchSize);
+		this.free = new ArrayBlockingQueue<>(batchesCount + 1);
+		this.decoded = new ArrayBlockingQueue<>(batchesCount + 1);
+		for (int batchIndex = 0; batchIndex < batchesCount; batchIndex++) {
+			int capacity = (int) Math.min(batchSize, endSample - firstSample);
+			free.add(new Batch(capacity, dataset.getInputsCount(), dataset.getOutputsCount()));
+		}
+
+		this.decoder = new Thread(this::decode, "dataset-prefetch");
+		this.decoder.setDaemon(true);
+		this.decoder.start();
+	}
+
+	/**
+	 * Return the next batch, waiting for the decoder if it is not ready. The
+	 * previous batch is recycled and must no longer be used
+	 *
+	 * @return the next batch, or null if every sample was read
+	 * @throws InterruptedException
+	 *             Thrown if the calling thread is interrupted while waiting
+	 */
+	public Batch next() throws InterruptedException {
+		if (current != null) {
+			free.add(current);
+			current = null;
+		}
+		if (finished) {
+			return null;
+		}
+
+		Batch batch = decoded.take();
+		if (batch == END) {
+			finished = true;
+			if (failure != null) {
+				throw failure;
+			}
+			return null;
+		}
+		current = batch;
+		return batch;
+	}
+
+	/**
+	 * Stop the decoder thread
+	 */
+	@Override
+	public void close() {
+		decoder.interrupt();
+	}
+
+	/**
+	 * Decode every batch in reading order, then put the end marker
+	 */
+	private void decode() {
+		float[] floats = dataset.getPrecision() == Precision.FLOAT
+				? new float[dataset.getInputsCount() + dataset.getOutputsCount()]
+				: null;
+		try {
+			try {
+				if (blocks != null) {
+					decodeShuffled(floats);
+				} else {
+					for (long first = firstSample; first < endSample; first += batchSize) {
+						Batch batch = free.take();
+						batch.fill(dataset, samples, first, (int) Math.min(batchSize, endSample - first), floats);
+						decoded.put(batch);
+					}
+				}
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+			decoded.put(END);
+		} catch (InterruptedException e) {
+			// closed by the reader
+		}
+	}
+
+	/**
+	 * Decode every batch in the block-shuffled order. Only the order of the
+	 * current block is held in memory, and its samples are close in the file
+	 *
+	 * @param floats
+	 *            buffer used to copy single precision records, or null
+	 * @throws InterruptedException
+	 *             Thrown if the reader is closed
+	 */
+	private void decodeShuffled(final float[] floats) throws InterruptedException {
+		long[] blockOrder = new long[(int) Math.min(blockSize, endSample - firstSample)];
+		long[] batchSamples = new long[batchSize];
+		int blockIndex = 0;
+		int blockLength = 0;
+		int blockPosition = 0;
+		for (long first = firstSample; first < endSample; first += batchSize) {
+			int count = (int) Math.min(batchSize, endSample - first);
+			for (int sampleIndex = 0; sampleIndex < count; sampleIndex++) {
+				if (blockPosition == blockLength) {
+					long blockFirst = firstSample + (long) blocks[blockIndex++] * blockSize;
+					blockLength = (int) Math.min(blockSize, endSample - blockFirst);
+					for (int index = 0; index < blockLength; index++) {
+						blockOrder[index] = blockFirst + index;
+					}
+					for (int index = blockLength - 1; index > 0; index--) {
+						int other = random.nextInt(index + 1);
+						long temp = blockOrder[index];
+						blockOrder[index] = blockOrder[other];
+						blockOrder[other] = temp;
+					}
+					blockPosition = 0;
+				}
+				batchSamples[sampleIndex] = blockOrder[blockPosition++];
+			}
+			Batch batch = free.take();
+			batch.fill(dataset, batchSamples, 0, count, floats);
+			decoded.put(batch);
+		}
+	}
+
+}
@@ -0,0 +1,475 @@
+package com.rebe.neuralNetwork.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.rebe.neuralNetwork.exceptions.IllegalBatchSizeException;
+import com.rebe.neuralNetwork.exceptions.IllegalBlockSizeException;
+import com.rebe.neuralNetwork.exceptions.IllegalDatasetFormatException;
+import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+import com.rebe.neuralNetwork.exceptions.IllegalSampleRangeException;
+import com.rebe.neuralNetwork.math.Precision;
+
+/**
+ * Dataset stored in a binary file of fixed-width records and mapped in memory,
+ * so that its size is bounded by the disk and not by the heap. All the values
+ * are little endian and the file is laid out as follow:
+ * <ul>
+ * <li>int magic number and int format version</li>
+ * <li>int inputs count, int expected outputs count and int precision of the
+ * values, 0 for doubles and 1 for floats, padded to 8 bytes</li>
+ * <li>long samples count</li>
+ * <li>one record per sample, its inputs followed by its expected outputs</li>
+ * </ul>
+ * Datasets are written with {@link DatasetWriter} and read one sample at a
+ * time with {@link #read(long, double[], double[])} or in batches with a
+ * {@link BatchReader}, which decodes the next batches in background. Reads
+ * never change the dataset, so any count of threads can read it concurrently
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class Dataset implements Closeable {
+
+	/**
+	 * Magic number at the beginning of every dataset file, "RNND"
+	 */
+	static final int MAGIC = 0x524E4E44;
+
+	/**
+	 * Version of the format
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Size of the header, the records start right after it
+	 */
+	static final int HEADER_SIZE = 32;
+
+	/**
+	 * Position of the samples count in the header
+	 */
+	static final int SAMPLES_COUNT_POSITION = 24;
+
+	/**
+	 * Max count of blocks of a block-shuffled read, bounded by the max length of
+	 * the array of their order
+	 */
+	private static final long MAX_BLOCKS = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Max count of bytes mapped at once, a single mapping can not exceed 2 GB
+	 */
+	private static final long MAX_MAPPED_BYTES = 1L << 30;
+
+	/**
+	 * Default count of batches decoded in advance by a {@link BatchReader}
+	 */
+	private static final int DEFAULT_PREFETCHED_BATCHES = 2;
+
+	/**
+	 * Channel of the dataset file
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Count of the inputs of each sample
+	 */
+	private final int inputsCount;
+
+	/**
+	 * Count of the expected outputs of each sample
+	 */
+	private final int outputsCount;
+
+	/**
+	 * Storage precision of the values
+	 */
+	private final Precision precision;
+
+	/**
+	 * Count of the samples
+	 */
+	private final long samplesCount;
+
+	/**
+	 * Count of the records of each mapped chunk, no record crosses two chunks
+	 */
+	private final long recordsPerChunk;
+
+	/**
+	 * Mapped chunks of the records in double precision, null in single precision
+	 */
+	private final DoubleBuffer[] doubleChunks;
+
+	/**
+	 * Mapped chunks of the records in single precision, null in double precision
+	 */
+	private final FloatBuffer[] floatChunks;
+
+	/**
+	 * Constructor that map an opened dataset file
+	 *
+	 * @param channel
+	 *            channel of the dataset file
+	 * @throws IOException
+	 *             Thrown if the file can not be read
+	 * @throws IllegalDatasetFormatException
+	 *             Thrown if the file is not a valid dataset file
+	 */
+	private Dataset(final FileChannel channel) throws IOException, IllegalDatasetFormatException {
+		this.channel = channel;
+
+		long fileSize = channel.size();
+		if (fileSize < HEADER_SIZE) {
+			throw new IllegalDatasetFormatException("file too short");
+		}
+		ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		if (header.getInt() != MAGIC) {
+			throw new IllegalDatasetFormatException("wrong magic number");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IllegalDatasetFormatException("unsupported version " + version);
+		}
+		inputsCount = header.getInt();
+		outputsCount = header.getInt();
+		if (inputsCount < 1 || outputsCount < 1) {
+			throw new IllegalDatasetFormatException("wrong record size " + inputsCount + " + " + outputsCount);
+		}
+		precision = precision(header.getInt());
+		header.getInt();
+		samplesCount = header.getLong();
+
+		long recordSize = recordSize(inputsCount, outputsCount, precision);
+		long recordsBytes;
+		try {
+			recordsBytes = Math.multiplyExact(samplesCount, recordSize);
+		} catch (ArithmeticException e) {
+			throw new IllegalDatasetFormatException("samples count " + samplesCount + " overflows the file size");
+		}
+		if (samplesCount < 0 || recordsBytes != fileSize - HEADER_SIZE) {
+			throw new IllegalDatasetFormatException("wrong file size " + fileSize + " for " + samplesCount
+					+ " samples");
+		}
+
+		recordsPerChunk = Math.max(1, MAX_MAPPED_BYTES / recordSize);
+		int chunksCount = (int) ((samplesCount + recordsPerChunk - 1) / recordsPerChunk);
+		doubleChunks = precision == Precision.DOUBLE ? new DoubleBuffer[chunksCount] : null;
+		floatChunks = precision == Precision.FLOAT ? new FloatBuffer[chunksCount] : null;
+		for (int chunkIndex = 0; chunkIndex < chunksCount; chunkIndex++) {
+			long firstRecord = chunkIndex * recordsPerChunk;
+			long records = Math.min(recordsPerChunk, samplesCount - firstRecord);
+			ByteBuffer chunk = channel.map(MapMode.READ_ONLY, HEADER_SIZE + firstRecord * recordSize,
+					records * recordSize).order(ByteOrder.LITTLE_ENDIAN);
+			if (precision == Precision.DOUBLE) {
+				doubleChunks[chunkIndex] = chunk.asDoubleBuffer();
+			} else {
+				floatChunks[chunkIndex] = chunk.asFloatBuffer();
+			}
+		}
+	}
+
+	/**
+	 * Open and map a dataset file
+	 *
+	 * @param path
+	 *            path of the dataset file
+	 * @return the opened dataset
+	 * @throws IOException
+	 *             Thrown if the file can not be read
+	 * @throws IllegalDatasetFormatException
+	 *             Thrown if the file is not a valid dataset file
+	 */
+	public static Dataset open(final Path path) throws IOException, IllegalDatasetFormatException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new Dataset(channel);
+		} catch (IOException | IllegalDatasetFormatException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read the inputs and the expected outputs of a sample
+	 *
+	 * @param sample
+	 *            index of the sample
+	 * @param inputs
+	 *            array receiving the inputs
+	 * @param expectedOutputs
+	 *            array receiving the expected outputs
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if the arrays lengths differ from the inputs and
+	 *             outputs counts
+	 * @throws IllegalSampleRangeException
+	 *             Thrown if the sample index is out of the samples
+	 */
+	public void read(final long sample, final double[] inputs, final double[] expectedOutputs)
+			throws IllegalNeuronsCountException, IllegalSampleRangeException {
+		if (inputs.length != inputsCount || expectedOutputs.length != outputsCount) {
+			throw new IllegalNeuronsCountException();
+		}
+		if (sample < 0 || sample >= samplesCount) {
+			throw new IllegalSampleRangeException("sample " + sample + " out of " + samplesCount);
+		}
+		read(sample, inputs, expectedOutputs, null);
+	}
+
+	/**
+	 * Create a reader of every sample in the file order
+	 *
+	 * @param batchSize
+	 *            count of the samples of each batch, the last one can be smaller
+	 * @return the started reader, to be closed
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch size is lower than 1
+	 */
+	public BatchReader batches(final int batchSize) throws IllegalBatchSizeException {
+		return new BatchReader(this, batchSize, DEFAULT_PREFETCHED_BATCHES, null, 0, samplesCount);
+	}
+
+	/**
+	 * Create a reader of a range of samples in the file order
+	 *
+	 * @param batchSize
+	 *            count of the samples of each batch, the last one can be smaller
+	 * @param firstSample
+	 *            index of the first sample of the range
+	 * @param endSample
+	 *            index after the last sample of the range
+	 * @return the started reader, to be closed
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch size is lower than 1
+	 * @throws IllegalSampleRangeException
+	 *             Thrown if the range is out of the samples
+	 */
+	public BatchReader batches(final int batchSize, final long firstSample, final long endSample)
+			throws IllegalBatchSizeException, IllegalSampleRangeException {
+		checkRange(firstSample, endSample);
+		return new BatchReader(this, batchSize, DEFAULT_PREFETCHED_BATCHES, null, firstSample, endSample);
+	}
+
+	/**
+	 * Create a reader of the samples in the received order, for example a
+	 * shuffled one. The samples are read by random access, so a dataset bigger
+	 * than the memory is read faster in the file order
+	 *
+	 * @param batchSize
+	 *            count of the samples of each batch, the last one can be smaller
+	 * @param samples
+	 *            indexes of the samples to read, in reading order. The array must
+	 *            not be changed while the reader is open
+	 * @return the started reader, to be closed
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch size is lower than 1
+	 * @throws IllegalSampleRangeException
+	 *             Thrown if a sample index is out of the samples
+	 */
+	public BatchReader batches(final int batchSize, final long[] samples)
+			throws IllegalBatchSizeException, IllegalSampleRangeException {
+		for (long sample : samples) {
+			if (sample < 0 || sample >= samplesCount) {
+				throw new IllegalSampleRangeException("sample " + sample + " out of " + samplesCount);
+			}
+		}
+		return new BatchReader(this, batchSize, DEFAULT_PREFETCHED_BATCHES, samples, 0, samples.length);
+	}
+
+	/**
+	 * Create a reader of a range of samples in a block-shuffled order: the
+	 * range is split in blocks of consecutive samples, read in a random order,
+	 * and the samples of each block are read in a random order too. Unlike
+	 * {@link #batches(int, long[])} the memory taken by the order is bounded by
+	 * one block instead of growing with the samples count, and the reads of a
+	 * block stay close in the file
+	 *
+	 * @param batchSize
+	 *            count of the samples of each batch, the last one can be smaller
+	 * @param firstSample
+	 *            index of the first sample of the range
+	 * @param endSample
+	 *            index after the last sample of the range
+	 * @param blockSize
+	 *            count of the samples of a block
+	 * @param seed
+	 *            seed of the shuffled orders
+	 * @return the started reader, to be closed
+	 * @throws IllegalBatchSizeException
+	 *             Thrown if the batch size is lower than 1
+	 * @throws IllegalSampleRangeException
+	 *             Thrown if the range is out of the samples
+	 * @throws IllegalBlockSizeException
+	 *             Thrown if the block size is lower than 1 or splits the range
+	 *             in more than Integer.MAX_VALUE - 8 blocks
+	 */
+	public BatchReader batches(final int batchSize, final long firstSample, final long endSample,
+			final int blockSize, final long seed)
+			throws IllegalBatchSizeException, IllegalSampleRangeException, IllegalBlockSizeException {
+		checkRange(firstSample, endSample);
+		if (blockSize < 1) {
+			throw new IllegalBlockSizeException(blockSize + " lower than 1");
+		}
+		if ((endSample - firstSample + blockSize - 1) / blockSize > MAX_BLOCKS) {
+			throw new IllegalBlockSizeException(blockSize + " splits " + (endSample - firstSample)
+					+ " samples in more than " + MAX_BLOCKS + " blocks");
+		}
+		return new BatchReader(this, batchSize, DEFAULT_PREFETCHED_BATCHES, null, firstSample, endSample, blockSize,
+				seed);
+	}
+
+	/**
+	 * Check that a range of samples is inside the dataset
+	 *
+	 * @param firstSample
+	 *            index of the first sample of the range
+	 * @param endSample
+	 *            index after the last sample of the range
+	 * @throws IllegalSampleRangeException
+	 *             Thrown if the range is out of the samples
+	 */
+	private void checkRange(final long firstSample, final long endSample) throws IllegalSampleRangeException {
+		if (firstSample < 0 || endSample > samplesCount || firstSample > endSample) {
+			throw new IllegalSampleRangeException("range " + firstSample + "-" + endSample + " out of "
+					+ samplesCount + " samples");
+		}
+	}
+
+	/**
+	 * Read a sample without checking the arrays lengths and the sample index,
+	 * which must be one of the samples
+	 *
+	 * @param sample
+	 *            index of the sample
+	 * @param inputs
+	 *            array receiving the inputs
+	 * @param expectedOutputs
+	 *            array receiving the expected outputs
+	 * @param floats
+	 *            buffer of inputsCount + outputsCount floats used to copy a
+	 *            single precision record in bulk, or null
+	 */
+	void read(final long sample, final double[] inputs, final double[] expectedOutputs, final float[] floats) {
+		int chunkIndex = (int) (sample / recordsPerChunk);
+		int index = (int) (sample % recordsPerChunk) * (inputsCount + outputsCount);
+		if (precision == Precision.DOUBLE) {
+			doubleChunks[chunkIndex].get(index, inputs, 0, inputsCount);
+			doubleChunks[chunkIndex].get(index + inputsCount, expectedOutputs, 0, outputsCount);
+		} else if (floats != null) {
+			floatChunks[chunkIndex].get(index, floats, 0, inputsCount + outputsCount);
+			for (int valueIndex = 0; valueIndex < inputsCount; valueIndex++) {
+				inputs[valueIndex] = floats[valueIndex];
+			}
+			for (int valueIndex = 0; valueIndex < outputsCount; valueIndex++) {
+				expectedOutputs[valueIndex] = floats[inputsCount + valueIndex];
+			}
+		} else {
+			for (int valueIndex = 0; valueIndex < inputsCount; valueIndex++) {
+				inputs[valueIndex] = floatChunks[chunkIndex].get(index + valueIndex);
+			}
+			for (int valueIndex = 0; valueIndex < outputsCount; valueIndex++) {
+				expectedOutputs[valueIndex] = floatChunks[chunkIndex].get(index + inputsCount + valueIndex);
+			}
+		}
+	}
+
+	/**
+	 * Return the count of the inputs of each sample
+	 *
+	 * @return the inputs count
+	 */
+	public int getInputsCount() {
+		return inputsCount;
+	}
+
+	/**
+	 * Return the count of the expected outputs of each sample
+	 *
+	 * @return the outputs count
+	 */
+	public int getOutputsCount() {
+		return outputsCount;
+	}
+
+	/**
+	 * Return the storage precision of the values
+	 *
+	 * @return the precision
+	 */
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * Return the count of the samples
+	 *
+	 * @return the samples count
+	 */
+	public long getSamplesCount() {
+		return samplesCount;
+	}
+
+	/**
+	 * Close the dataset file. The mappings are released by the garbage
+	 * collector once the dataset and its readers are no longer referenced
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Compute the size of a record
+	 *
+	 * @param inputsCount
+	 *            count of the inputs of each sample
+	 * @param outputsCount
+	 *            count of the expected outputs of each sample
+	 * @param precision
+	 *            storage precision of the values
+	 * @return the record size in bytes
+	 */
+	static long recordSize(final int inputsCount, final int outputsCount, final Precision precision) {
+		return ((long) inputsCount + outputsCount) * (precision == Precision.DOUBLE ? 8 : 4);
+	}
+
+	/**
+	 * Return the identifier of a precision
+	 *
+	 * @param precision
+	 *            the precision
+	 * @return the identifier
+	 */
+	static int precisionId(final Precision precision) {
+		return precision == Precision.DOUBLE ? 0 : 1;
+	}
+
+	/**
+	 * Return the precision of an identifier
+	 *
+	 * @param id
+	 *            the identifier
+	 * @return the precision
+	 * @throws IllegalDatasetFormatException
+	 *             Thrown if the identifier is unknown
+	 */
+	private static Precision precision(final int id) throws IllegalDatasetFormatException {
+		if (id == 0) {
+			return Precision.DOUBLE;
+		}
+		if (id == 1) {
+			return Precision.FLOAT;
+		}
+		throw new IllegalDatasetFormatException("unknown precision " + id);
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.rebe.neuralNetwork.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.rebe.neuralNetwork.exceptions.IllegalNeuronsCountException;
+import com.rebe.neuralNetwork.math.Precision;
+
+/**
+ * Writer of a {@link Dataset} file. The samples are appended one at a time
+ * through a buffer and the samples count is written in the header on close,
+ * so a dataset can be written without holding it in memory
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class DatasetWriter implements Closeable {
+
+	/**
+	 * Size of the write buffer
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Channel of the dataset file
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Buffer of the records not yet written
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Count of the inputs of each sample
+	 */
+	private final int inputsCount;
+
+	/**
+	 * Count of the expected outputs of each sample
+	 */
+	private final int outputsCount;
+
+	/**
+	 * Storage precision of the values
+	 */
+	private final Precision precision;
+
+	/**
+	 * Count of the appended samples
+	 */
+	private long samplesCount;
+
+	/**
+	 * Constructor that create the dataset file, replacing it if it exists
+	 *
+	 * @param path
+	 *            path of the dataset file
+	 * @param inputsCount
+	 *            count of the inputs of each sample
+	 * @param outputsCount
+	 *            count of the expected outputs of each sample
+	 * @param precision
+	 *            storage precision of the values, floats halve the file size
+	 * @throws IOException
+	 *             Thrown if the file can not be created
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if a count is lower than 1
+	 */
+	public DatasetWriter(final Path path, final int inputsCount, final int outputsCount, final Precision precision)
+			throws IOException, IllegalNeuronsCountException {
+		if (inputsCount < 1 || outputsCount < 1) {
+			throw new IllegalNeuronsCountException();
+		}
+		this.inputsCount = inputsCount;
+		this.outputsCount = outputsCount;
+		this.precision = precision;
+		this.buffer = ByteBuffer
+				.allocateDirect((int) Math.max(BUFFER_SIZE, Dataset.recordSize(inputsCount, outputsCount, precision)))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		buffer.putInt(Dataset.MAGIC);
+		buffer.putInt(Dataset.VERSION);
+		buffer.putInt(inputsCount);
+		buffer.putInt(outputsCount);
+		buffer.putInt(Dataset.precisionId(precision));
+		buffer.putInt(0);
+		buffer.putLong(0);
+	}
+
+	/**
+	 * Append a sample to the dataset
+	 *
+	 * @param inputs
+	 *            inputs of the sample
+	 * @param expectedOutputs
+	 *            expected outputs of the sample
+	 * @throws IOException
+	 *             Thrown if the file can not be written
+	 * @throws IllegalNeuronsCountException
+	 *             Thrown if the arrays lengths differ from the inputs and
+	 *             outputs counts
+	 */
+	public void append(final double[] inputs, final double[] expectedOutputs)
+			throws IOException, IllegalNeuronsCountException {
+		if (inputs.length != inputsCount || expectedOutputs.length != outputsCount) {
+			throw new IllegalNeuronsCountException();
+		}
+		if (buffer.remaining() < Dataset.recordSize(inputsCount, outputsCount, precision)) {
+			flush();
+		}
+		put(inputs);
+		put(expectedOutputs);
+		samplesCount++;
+	}
+
+	/**
+	 * Return the count of the appended samples
+	 *
+	 * @return the samples count
+	 */
+	public long getSamplesCount() {
+		return samplesCount;
+	}
+
+	/**
+	 * Write the buffered samples and the samples count, then close the file
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+			ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, samplesCount);
+			while (count.hasRemaining()) {
+				channel.write(count, Dataset.SAMPLES_COUNT_POSITION + count.position());
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Put values in the buffer with the storage precision
+	 *
+	 * @param values
+	 *            the values
+	 */
+	private void put(final double[] values) {
+		if (precision == Precision.DOUBLE) {
+			for (double value : values) {
+				buffer.putDouble(value);
+			}
+		} else {
+			for (double value : values) {
+				buffer.putFloat((float) value);
+			}
+		}
+	}
+
+	/**
+	 * Write the buffer content at the end of the file
+	 *
+	 * @throws IOException
+	 *             Thrown if the file can not be written
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when a batch is empty or its inputs and expected
+ * outputs counts differ
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class IllegalBatchSizeException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = 4925036818840137071L;
+
+	/**
+	 * Constructor that throw a new {@link IllegalBatchSizeException}
+	 */
+	public IllegalBatchSizeException() {
+		super("Batch must contain the same count, greater than 0, of inputs and expected outputs");
+	}
+
+}
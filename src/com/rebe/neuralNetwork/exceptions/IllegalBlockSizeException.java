@@ -0,0 +1,27 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when the block size of a block-shuffled read is out
+ * of its range
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class IllegalBlockSizeException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = 3409187286719045263L;
+
+	/**
+	 * Constructor that throw a new {@link IllegalBlockSizeException}
+	 * 
+	 * @param reason
+	 *            description of the invalid block size
+	 */
+	public IllegalBlockSizeException(String reason) {
+		super("Invalid block size: " + reason);
+	}
+
+}
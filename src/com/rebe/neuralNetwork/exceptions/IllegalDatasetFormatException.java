@@ -0,0 +1,26 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when a dataset file is not a valid dataset
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class IllegalDatasetFormatException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = -2318460915283061527L;
+
+	/**
+	 * Constructor that throw a new {@link IllegalDatasetFormatException}
+	 * 
+	 * @param reason
+	 *            description of the invalid content
+	 */
+	public IllegalDatasetFormatException(String reason) {
+		super("Invalid dataset file: " + reason);
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when a model file is not a valid network model
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class IllegalModelFormatException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = 7853120467313975242L;
+
+	/**
+	 * Constructor that throw a new {@link IllegalModelFormatException}
+	 * 
+	 * @param reason
+	 *            description of the invalid content
+	 */
+	public IllegalModelFormatException(String reason) {
+		super("Invalid model file: " + reason);
+	}
+
+}
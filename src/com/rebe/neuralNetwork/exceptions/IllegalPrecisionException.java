@@ -0,0 +1,25 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when a storage can not hold weights in the requested
+ * precision, like the off heap storage that holds double precision weights
+ * only
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class IllegalPrecisionException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = 3318650927419475066L;
+
+	/**
+	 * Constructor that throw a new {@link IllegalPrecisionException}
+	 */
+	public IllegalPrecisionException() {
+		super("Off heap weights are stored in double precision");
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when a pruning parameter is out of its range
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class IllegalPruningArgumentException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = -3318064527185069264L;
+
+	/**
+	 * Constructor that throw a new {@link IllegalPruningArgumentException}
+	 * 
+	 * @param reason
+	 *            description of the invalid parameter
+	 */
+	public IllegalPruningArgumentException(String reason) {
+		super("Invalid pruning parameter: " + reason);
+	}
+
+}
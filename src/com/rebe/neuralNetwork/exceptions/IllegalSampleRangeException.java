@@ -0,0 +1,27 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when a sample index or a range of samples is out of
+ * the samples of a dataset
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class IllegalSampleRangeException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = -6074411830593265378L;
+
+	/**
+	 * Constructor that throw a new {@link IllegalSampleRangeException}
+	 * 
+	 * @param reason
+	 *            description of the invalid samples
+	 */
+	public IllegalSampleRangeException(String reason) {
+		super("Invalid samples: " + reason);
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when a training parameter is out of its range
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class IllegalTrainerArgumentException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = 5190736412840938121L;
+
+	/**
+	 * Constructor that throw a new {@link IllegalTrainerArgumentException}
+	 * 
+	 * @param reason
+	 *            description of the invalid parameter
+	 */
+	public IllegalTrainerArgumentException(String reason) {
+		super("Invalid training parameter: " + reason);
+	}
+
+}
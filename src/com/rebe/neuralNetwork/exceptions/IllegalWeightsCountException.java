@@ -0,0 +1,24 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when the weights or biases received for a connection
+ * layer do not match its layers sizes
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class IllegalWeightsCountException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = -5120914628466212395L;
+
+	/**
+	 * Constructor that throw a new {@link IllegalWeightsCountException}
+	 */
+	public IllegalWeightsCountException() {
+		super("Weights and biases count must match the connected layers sizes");
+	}
+
+}
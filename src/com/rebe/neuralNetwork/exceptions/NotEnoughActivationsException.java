@@ -0,0 +1,24 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when the activation functions are less than the
+ * count of the hidden layers plus the output layer
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class NotEnoughActivationsException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = 2608517464936125873L;
+
+	/**
+	 * Constructor that throw a new {@link NotEnoughActivationsException}
+	 */
+	public NotEnoughActivationsException() {
+		super("Not enough activation functions to fill every hidden and output layer");
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.rebe.neuralNetwork.exceptions;
+
+/**
+ * Simple exception thrown when a network using a custom activation function is
+ * saved
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class UnsupportedActivationException extends NeuralNetworkException {
+
+	/**
+	 * Generated serial version uid
+	 */
+	private static final long serialVersionUID = -1447001368437729584L;
+
+	/**
+	 * Constructor that throw a new {@link UnsupportedActivationException}
+	 * 
+	 * @param activationClass
+	 *            class of the unsupported activation function
+	 */
+	public UnsupportedActivationException(Class<?> activationClass) {
+		super("Activation function not supported by the model file: " + activationClass.getName());
+	}
+
+}
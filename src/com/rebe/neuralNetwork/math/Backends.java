@@ -0,0 +1,64 @@
+package com.rebe.neuralNetwork.math;
+
+/**
+ * Selector of the {@link Kernels} used by the whole library. The vectorized
+ * backend, built on the incubating Vector API, is used when the
+ * {@code jdk.incubator.vector} module is available (run with
+ * {@code --add-modules jdk.incubator.vector}), otherwise the scalar backend is
+ * used. Setting the system property {@value #BACKEND_PROPERTY} to
+ * {@code scalar} forces the scalar backend
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class Backends {
+
+	/**
+	 * System property used to force the scalar backend
+	 */
+	public static final String BACKEND_PROPERTY = "com.rebe.neuralNetwork.backend";
+
+	/**
+	 * Name of the module required by the vectorized backend
+	 */
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+	/**
+	 * Class name of the vectorized backend, loaded by reflection so that this
+	 * class never links against the Vector API
+	 */
+	private static final String VECTOR_KERNELS = "com.rebe.neuralNetwork.math.VectorKernels";
+
+	/**
+	 * The selected kernels
+	 */
+	private static final Kernels KERNELS = load();
+
+	/**
+	 * Return the kernels selected for this JVM
+	 * 
+	 * @return the selected kernels
+	 */
+	public static Kernels kernels() {
+		return KERNELS;
+	}
+
+	/**
+	 * Select the kernels, falling back to the scalar ones when the vectorized
+	 * backend is disabled or can not be loaded
+	 * 
+	 * @return the selected kernels
+	 */
+	private static Kernels load() {
+		if (!"scalar".equals(System.getProperty(BACKEND_PROPERTY))
+				&& ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+			try {
+				return (Kernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// the scalar backend is always available
+			}
+		}
+		return new ScalarKernels();
+	}
+
+}
@@ -0,0 +1,396 @@
+package com.rebe.neuralNetwork.math;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Element-wise and matrix-vector kernels that can be implemented by different
+ * execution backends. Matrices follow the layout of {@link LinearAlgebra}, and
+ * the kernels that produce a result accumulate it in the output array unless
+ * stated otherwise
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public interface Kernels {
+
+	/**
+	 * Dot product between two slices of the same length
+	 * 
+	 * @param x
+	 *            array containing the first slice
+	 * @param xOffset
+	 *            index of the first value of the first slice
+	 * @param y
+	 *            array containing the second slice
+	 * @param yOffset
+	 *            index of the first value of the second slice
+	 * @param length
+	 *            count of the values of the slices
+	 * @return the dot product
+	 */
+	double dot(double[] x, int xOffset, double[] y, int yOffset, int length);
+
+	/**
+	 * Scaled slice addition, y += alpha * x
+	 * 
+	 * @param alpha
+	 *            scale of x
+	 * @param x
+	 *            array containing the slice to add
+	 * @param xOffset
+	 *            index of the first value of the slice to add
+	 * @param y
+	 *            array containing the slice where the result is accumulated
+	 * @param yOffset
+	 *            index of the first value of the result slice
+	 * @param length
+	 *            count of the values of the slices
+	 */
+	void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+	/**
+	 * Scaled slice addition of single precision values, y += alpha * x. The
+	 * values of x are widened, so the result is accumulated in double precision
+	 * 
+	 * @param alpha
+	 *            scale of x
+	 * @param x
+	 *            array containing the slice to add
+	 * @param xOffset
+	 *            index of the first value of the slice to add
+	 * @param y
+	 *            array containing the slice where the result is accumulated
+	 * @param yOffset
+	 *            index of the first value of the result slice
+	 * @param length
+	 *            count of the values of the slices
+	 */
+	void axpy(double alpha, float[] x, int xOffset, double[] y, int yOffset, int length);
+
+	/**
+	 * Matrix-vector product, y += A * x
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 */
+	default void gemv(int rows, int columns, double[] a, double[] x, double[] y) {
+		gemv(rows, columns, a, x, y, 0, rows);
+	}
+
+	/**
+	 * Matrix-vector product restricted to a range of rows,
+	 * y[fromRow, toRow) += A[fromRow, toRow) * x. The other values of y are not
+	 * touched, so disjoint ranges can be computed concurrently
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 * @param fromRow
+	 *            first row of the range, included
+	 * @param toRow
+	 *            last row of the range, excluded
+	 */
+	void gemv(int rows, int columns, double[] a, double[] x, double[] y, int fromRow, int toRow);
+
+	/**
+	 * Transposed matrix-vector product, y += A^T * x, computed without
+	 * transposing A
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 */
+	default void gemvTransposed(int rows, int columns, double[] a, double[] x, double[] y) {
+		gemvTransposed(rows, columns, a, x, y, 0, columns);
+	}
+
+	/**
+	 * Transposed matrix-vector product restricted to a range of
+	 * columns, y[fromColumn, toColumn) += A[:, fromColumn, toColumn)^T * x. The
+	 * other values of y are not touched, so disjoint ranges can be computed
+	 * concurrently
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 * @param fromColumn
+	 *            first column of the range, included
+	 * @param toColumn
+	 *            last column of the range, excluded
+	 */
+	void gemvTransposed(int rows, int columns, double[] a, double[] x, double[] y, int fromColumn,
+			int toColumn);
+
+	/**
+	 * Matrix-vector product with a single precision matrix, y += A * x. The
+	 * products are accumulated in double precision
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 */
+	default void gemv(int rows, int columns, float[] a, double[] x, double[] y) {
+		gemv(rows, columns, a, x, y, 0, rows);
+	}
+
+	/**
+	 * Matrix-vector product with a single precision matrix restricted to a range of rows,
+	 * y[fromRow, toRow) += A[fromRow, toRow) * x. The other values of y are not
+	 * touched, so disjoint ranges can be computed concurrently
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 * @param fromRow
+	 *            first row of the range, included
+	 * @param toRow
+	 *            last row of the range, excluded
+	 */
+	void gemv(int rows, int columns, float[] a, double[] x, double[] y, int fromRow, int toRow);
+
+	/**
+	 * Transposed matrix-vector product with a single precision matrix, y += A^T *
+	 * x. The products are accumulated in double precision
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 */
+	default void gemvTransposed(int rows, int columns, float[] a, double[] x, double[] y) {
+		gemvTransposed(rows, columns, a, x, y, 0, columns);
+	}
+
+	/**
+	 * Transposed matrix-vector product with a single precision matrix restricted to a range of
+	 * columns, y[fromColumn, toColumn) += A[:, fromColumn, toColumn)^T * x. The
+	 * other values of y are not touched, so disjoint ranges can be computed
+	 * concurrently
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 * @param fromColumn
+	 *            first column of the range, included
+	 * @param toColumn
+	 *            last column of the range, excluded
+	 */
+	void gemvTransposed(int rows, int columns, float[] a, double[] x, double[] y, int fromColumn,
+			int toColumn);
+
+	/**
+	 * Transposed matrix-vector product with a matrix of doubles stored in a byte
+	 * buffer, y += A^T * x[xOffset, xOffset + rows). The matrix starts at the
+	 * first byte of the buffer and is read in the buffer byte order with
+	 * absolute reads, so the buffer is never modified and can be read
+	 * concurrently. The products are accumulated in the same order of
+	 * {@link #gemvTransposed(int, int, double[], double[], double[])}
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            buffer holding the matrix A, at most 2 GB
+	 * @param x
+	 *            array containing the vector of rows values
+	 * @param xOffset
+	 *            index of the value of the first row
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 */
+	default void gemvTransposed(int rows, int columns, ByteBuffer a, double[] x, int xOffset, double[] y) {
+		gemvTransposed(rows, columns, a, x, xOffset, y, 0, columns);
+	}
+
+	/**
+	 * Transposed matrix-vector product with a matrix of doubles stored in a byte
+	 * buffer restricted to a range of columns, y[fromColumn, toColumn) +=
+	 * A[:, fromColumn, toColumn)^T * x[xOffset, xOffset + rows). The other values
+	 * of y are not touched, so disjoint ranges can be computed concurrently
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            buffer holding the matrix A, at most 2 GB
+	 * @param x
+	 *            array containing the vector of rows values
+	 * @param xOffset
+	 *            index of the value of the first row
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 * @param fromColumn
+	 *            first column of the range, included
+	 * @param toColumn
+	 *            last column of the range, excluded
+	 */
+	void gemvTransposed(int rows, int columns, ByteBuffer a, double[] x, int xOffset, double[] y, int fromColumn,
+			int toColumn);
+
+	/**
+	 * Transposed matrix-vector product in integer arithmetic, y += A^T * x, with
+	 * an 8 bits matrix and vector and 32 bits accumulators
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 */
+	default void gemvTransposed(int rows, int columns, byte[] a, byte[] x, int[] y) {
+		gemvTransposed(rows, columns, a, x, y, 0, rows);
+	}
+
+	/**
+	 * Transposed matrix-vector product in integer arithmetic restricted to a
+	 * range of rows, y += A[fromRow, toRow)^T * x[fromRow, toRow). A product of
+	 * two 8 bits values is at most 2^14 in magnitude, so the 32 bits accumulators
+	 * cannot overflow on ranges of at most Integer.MAX_VALUE / 2^14 rows
+	 * 
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 * @param fromRow
+	 *            first row of the range, included
+	 * @param toRow
+	 *            last row of the range, excluded
+	 */
+	void gemvTransposed(int rows, int columns, byte[] a, byte[] x, int[] y, int fromRow, int toRow);
+
+	/**
+	 * Sigmoid function applied to every value, the result overwrites the output
+	 * array
+	 * 
+	 * @param values
+	 *            values given to the function
+	 * @param result
+	 *            array where the computed values are written
+	 * @param length
+	 *            count of the values
+	 */
+	void sigmoid(double[] values, double[] result, int length);
+
+	/**
+	 * Momentum update of a slice of weights. For each weight the delta is rate *
+	 * direction, the weight is increased by the delta plus momentum times the
+	 * previous delta, and the delta is stored as the new previous delta
+	 * 
+	 * @param weights
+	 *            array containing the weights slice
+	 * @param previousDeltas
+	 *            array containing the previous deltas, same layout of weights
+	 * @param offset
+	 *            index of the first weight of the slice
+	 * @param rate
+	 *            scale of the directions
+	 * @param directions
+	 *            array containing the update directions
+	 * @param directionsOffset
+	 *            index of the first direction
+	 * @param momentum
+	 *            scale of the previous deltas
+	 * @param length
+	 *            count of the weights of the slice
+	 * @return the squared euclidean norm of the steps added to the weights
+	 */
+	double momentumUpdate(double[] weights, double[] previousDeltas, int offset, double rate, double[] directions,
+			int directionsOffset, double momentum, int length);
+
+	/**
+	 * Momentum update of a slice of single precision weights, following the rule
+	 * of {@link #momentumUpdate(double[], double[], int, double, double[], int, double, int)}.
+	 * The update is computed in double precision and rounded when stored
+	 * 
+	 * @param weights
+	 *            array containing the weights slice
+	 * @param previousDeltas
+	 *            array containing the previous deltas, same layout of weights
+	 * @param offset
+	 *            index of the first weight of the slice
+	 * @param rate
+	 *            scale of the directions
+	 * @param directions
+	 *            array containing the update directions
+	 * @param directionsOffset
+	 *            index of the first direction
+	 * @param momentum
+	 *            scale of the previous deltas
+	 * @param length
+	 *            count of the weights of the slice
+	 * @return the squared euclidean norm of the steps added to the weights,
+	 *         before their rounding
+	 */
+	double momentumUpdate(float[] weights, float[] previousDeltas, int offset, double rate, double[] directions,
+			int directionsOffset, double momentum, int length);
+
+}
@@ -0,0 +1,1050 @@
+package com.rebe.neuralNetwork.math;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Collection of the matrix-vector and matrix-matrix kernels used by the
+ * network. Every matrix is stored flat in row-major order, so the element at
+ * row i and column j of a matrix with n columns is at index {@code i * n + j}.
+ * Every kernel accumulates its result into the output array, callers have to
+ * clear it (or fill it with the biases) before the call.
+ * <p>
+ * The matrix-matrix kernels work on 4x4 register tiles, so every loaded value
+ * is used by four multiply-adds, and split the shared dimension in blocks that
+ * fit in the cache. The matrix-vector and vector kernels are delegated to the
+ * {@link Kernels} selected by {@link Backends}.
+ * <p>
+ * The weights operands can also be single precision matrices: the
+ * matrix-matrix kernels widen them block by block in the packing buffer, so
+ * the products are always computed in double precision
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class LinearAlgebra {
+
+	/**
+	 * Size of the register tile, in rows and in columns
+	 */
+	private static final int TILE = 4;
+
+	/**
+	 * Kernels of the selected backend
+	 */
+	private static final Kernels KERNELS = Backends.kernels();
+
+	/**
+	 * Count of the shared dimension values processed by a block of the
+	 * matrix-matrix kernels
+	 */
+	private static final int DEPTH_BLOCK = 256;
+
+	/**
+	 * Count of the columns of the right operand packed by a block of
+	 * {@link #gemm}
+	 */
+	private static final int COLUMNS_BLOCK = 1024;
+
+	/**
+	 * Buffer used to pack a block of the right operand of {@link #gemm} or of
+	 * {@link #gemmTransposedRight}, one per thread since the kernels can be called
+	 * concurrently
+	 */
+	private static final ThreadLocal<double[]> PACKING_BUFFER = ThreadLocal
+			.withInitial(() -> new double[DEPTH_BLOCK * COLUMNS_BLOCK]);
+
+	/**
+	 * Matrix-vector product, y += A * x
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 */
+	public static void gemv(final int rows, final int columns, final double[] a, final double[] x,
+			final double[] y) {
+		KERNELS.gemv(rows, columns, a, x, y);
+	}
+
+	/**
+	 * Transposed matrix-vector product, y += A^T * x, computed without
+	 * transposing A
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 */
+	public static void gemvTransposed(final int rows, final int columns, final double[] a, final double[] x,
+			final double[] y) {
+		KERNELS.gemvTransposed(rows, columns, a, x, y);
+	}
+
+	/**
+	 * Matrix-vector product restricted to a range of rows,
+	 * y[fromRow, toRow) += A[fromRow, toRow) * x. Disjoint ranges can be
+	 * computed concurrently
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 * @param fromRow
+	 *            first row of the range, included
+	 * @param toRow
+	 *            last row of the range, excluded
+	 */
+	public static void gemv(final int rows, final int columns, final double[] a, final double[] x,
+			final double[] y, final int fromRow, final int toRow) {
+		KERNELS.gemv(rows, columns, a, x, y, fromRow, toRow);
+	}
+
+	/**
+	 * Transposed matrix-vector product restricted to a range of
+	 * columns, y[fromColumn, toColumn) += A[:, fromColumn, toColumn)^T * x.
+	 * Disjoint ranges can be computed concurrently
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 * @param fromColumn
+	 *            first column of the range, included
+	 * @param toColumn
+	 *            last column of the range, excluded
+	 */
+	public static void gemvTransposed(final int rows, final int columns, final double[] a, final double[] x,
+			final double[] y, final int fromColumn, final int toColumn) {
+		KERNELS.gemvTransposed(rows, columns, a, x, y, fromColumn, toColumn);
+	}
+
+	/**
+	 * Sparse matrix-vector product, y += A * x, with A stored in compressed
+	 * sparse row format: the non-zero values of row i and their column indexes
+	 * are at the positions from {@code rowPointers[i]} to
+	 * {@code rowPointers[i + 1]} of the values and column indexes arrays
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param rowPointers
+	 *            position of the first non-zero value of each row, followed by
+	 *            the count of the non-zero values
+	 * @param columnIndexes
+	 *            column of each non-zero value
+	 * @param values
+	 *            the non-zero values, row by row
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 */
+	public static void spmv(final int rows, final int[] rowPointers, final int[] columnIndexes, final double[] values,
+			final double[] x, final double[] y) {
+		for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+			int end = rowPointers[rowIndex + 1];
+			int position = rowPointers[rowIndex];
+			double sum0 = 0;
+			double sum1 = 0;
+			for (; position + 1 < end; position += 2) {
+				sum0 += values[position] * x[columnIndexes[position]];
+				sum1 += values[position + 1] * x[columnIndexes[position + 1]];
+			}
+			if (position < end) {
+				sum0 += values[position] * x[columnIndexes[position]];
+			}
+			y[rowIndex] += sum0 + sum1;
+		}
+	}
+
+	/**
+	 * Sparse matrix-vector product with single precision values, following
+	 * {@link #spmv(int, int[], int[], double[], double[], double[])}
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param rowPointers
+	 *            position of the first non-zero value of each row, followed by
+	 *            the count of the non-zero values
+	 * @param columnIndexes
+	 *            column of each non-zero value
+	 * @param values
+	 *            the non-zero values, row by row
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 */
+	public static void spmv(final int rows, final int[] rowPointers, final int[] columnIndexes, final float[] values,
+			final double[] x, final double[] y) {
+		for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+			int end = rowPointers[rowIndex + 1];
+			int position = rowPointers[rowIndex];
+			double sum0 = 0;
+			double sum1 = 0;
+			for (; position + 1 < end; position += 2) {
+				sum0 += values[position] * x[columnIndexes[position]];
+				sum1 += values[position + 1] * x[columnIndexes[position + 1]];
+			}
+			if (position < end) {
+				sum0 += values[position] * x[columnIndexes[position]];
+			}
+			y[rowIndex] += sum0 + sum1;
+		}
+	}
+
+	/**
+	 * Matrix-vector product with a single precision matrix, y += A * x
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 */
+	public static void gemv(final int rows, final int columns, final float[] a, final double[] x,
+			final double[] y) {
+		KERNELS.gemv(rows, columns, a, x, y);
+	}
+
+	/**
+	 * Transposed matrix-vector product with a single precision matrix, y += A^T *
+	 * x, computed without transposing A
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 */
+	public static void gemvTransposed(final int rows, final int columns, final float[] a, final double[] x,
+			final double[] y) {
+		KERNELS.gemvTransposed(rows, columns, a, x, y);
+	}
+
+	/**
+	 * Matrix-vector product with a single precision matrix restricted to a range of rows,
+	 * y[fromRow, toRow) += A[fromRow, toRow) * x. Disjoint ranges can be
+	 * computed concurrently
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of columns values
+	 * @param y
+	 *            vector of rows values where the result is accumulated
+	 * @param fromRow
+	 *            first row of the range, included
+	 * @param toRow
+	 *            last row of the range, excluded
+	 */
+	public static void gemv(final int rows, final int columns, final float[] a, final double[] x,
+			final double[] y, final int fromRow, final int toRow) {
+		KERNELS.gemv(rows, columns, a, x, y, fromRow, toRow);
+	}
+
+	/**
+	 * Transposed matrix-vector product with a single precision matrix restricted to a range of
+	 * columns, y[fromColumn, toColumn) += A[:, fromColumn, toColumn)^T * x.
+	 * Disjoint ranges can be computed concurrently
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 * @param fromColumn
+	 *            first column of the range, included
+	 * @param toColumn
+	 *            last column of the range, excluded
+	 */
+	public static void gemvTransposed(final int rows, final int columns, final float[] a, final double[] x,
+			final double[] y, final int fromColumn, final int toColumn) {
+		KERNELS.gemvTransposed(rows, columns, a, x, y, fromColumn, toColumn);
+	}
+
+	/**
+	 * Transposed matrix-vector product with a matrix of doubles stored in a byte
+	 * buffer, y += A^T * x[xOffset, xOffset + rows), reading the buffer from its
+	 * first byte in its byte order without modifying it
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            buffer holding the matrix A, at most 2 GB
+	 * @param x
+	 *            array containing the vector of rows values
+	 * @param xOffset
+	 *            index of the value of the first row
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 */
+	public static void gemvTransposed(final int rows, final int columns, final ByteBuffer a, final double[] x,
+			final int xOffset, final double[] y) {
+		KERNELS.gemvTransposed(rows, columns, a, x, xOffset, y);
+	}
+
+	/**
+	 * Transposed matrix-vector product with a matrix of doubles stored in a byte
+	 * buffer restricted to a range of columns, y[fromColumn, toColumn) +=
+	 * A[:, fromColumn, toColumn)^T * x[xOffset, xOffset + rows)
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            buffer holding the matrix A, at most 2 GB
+	 * @param x
+	 *            array containing the vector of rows values
+	 * @param xOffset
+	 *            index of the value of the first row
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 * @param fromColumn
+	 *            first column of the range, included
+	 * @param toColumn
+	 *            last column of the range, excluded
+	 */
+	public static void gemvTransposed(final int rows, final int columns, final ByteBuffer a, final double[] x,
+			final int xOffset, final double[] y, final int fromColumn, final int toColumn) {
+		KERNELS.gemvTransposed(rows, columns, a, x, xOffset, y, fromColumn, toColumn);
+	}
+
+	/**
+	 * Transposed matrix-vector product in integer arithmetic, y += A^T * x, with
+	 * an 8 bits matrix and vector and 32 bits accumulators
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 */
+	public static void gemvTransposed(final int rows, final int columns, final byte[] a, final byte[] x,
+			final int[] y) {
+		KERNELS.gemvTransposed(rows, columns, a, x, y);
+	}
+
+	/**
+	 * Transposed matrix-vector product in integer arithmetic restricted to a
+	 * range of rows, y += A[fromRow, toRow)^T * x[fromRow, toRow), with an 8 bits
+	 * matrix and vector and 32 bits accumulators
+	 *
+	 * @param rows
+	 *            count of the rows of A
+	 * @param columns
+	 *            count of the columns of A
+	 * @param a
+	 *            the matrix A
+	 * @param x
+	 *            vector of rows values
+	 * @param y
+	 *            vector of columns values where the result is accumulated
+	 * @param fromRow
+	 *            first row of the range, included
+	 * @param toRow
+	 *            last row of the range, excluded
+	 */
+	public static void gemvTransposed(final int rows, final int columns, final byte[] a, final byte[] x,
+			final int[] y, final int fromRow, final int toRow) {
+		KERNELS.gemvTransposed(rows, columns, a, x, y, fromRow, toRow);
+	}
+
+	/**
+	 * Matrix-matrix product, C += A * B. The rows of B are packed block by block
+	 * in strips of four columns, so the inner kernel reads them sequentially
+	 *
+	 * @param m
+	 *            count of the rows of A and C
+	 * @param n
+	 *            count of the columns of B and C
+	 * @param k
+	 *            count of the columns of A and of the rows of B
+	 * @param a
+	 *            the matrix A, m x k
+	 * @param b
+	 *            the matrix B, k x n
+	 * @param c
+	 *            the matrix C, m x n, where the result is accumulated
+	 */
+	public static void gemm(final int m, final int n, final int k, final double[] a, final double[] b,
+			final double[] c) {
+		if (m == 1) {
+			// a single row of A, packing B would cost more than the product
+			KERNELS.gemvTransposed(k, n, b, a, c);
+			return;
+		}
+
+		double[] packed = PACKING_BUFFER.get();
+		for (int depthStart = 0; depthStart < k; depthStart += DEPTH_BLOCK) {
+			int depth = Math.min(DEPTH_BLOCK, k - depthStart);
+			for (int columnStart = 0; columnStart < n; columnStart += COLUMNS_BLOCK) {
+				int width = Math.min(COLUMNS_BLOCK, n - columnStart);
+				pack(b, n, depthStart, depth, columnStart, width, packed);
+				multiplyPacked(m, n, k, a, depthStart, depth, columnStart, width, packed, c);
+			}
+		}
+	}
+
+	/**
+	 * Matrix-matrix product with a single precision right operand, C += A * B.
+	 * The rows of B are widened while they are packed, like in
+	 * {@link #gemm(int, int, int, double[], double[], double[])}
+	 *
+	 * @param m
+	 *            count of the rows of A and C
+	 * @param n
+	 *            count of the columns of B and C
+	 * @param k
+	 *            count of the columns of A and of the rows of B
+	 * @param a
+	 *            the matrix A, m x k
+	 * @param b
+	 *            the matrix B, k x n
+	 * @param c
+	 *            the matrix C, m x n, where the result is accumulated
+	 */
+	public static void gemm(final int m, final int n, final int k, final double[] a, final float[] b,
+			final double[] c) {
+		if (m == 1) {
+			KERNELS.gemvTransposed(k, n, b, a, c);
+			return;
+		}
+
+		double[] packed = PACKING_BUFFER.get();
+		for (int depthStart = 0; depthStart < k; depthStart += DEPTH_BLOCK) {
+			int depth = Math.min(DEPTH_BLOCK, k - depthStart);
+			for (int columnStart = 0; columnStart < n; columnStart += COLUMNS_BLOCK) {
+				int width = Math.min(COLUMNS_BLOCK, n - columnStart);
+				pack(b, n, depthStart, depth, columnStart, width, packed);
+				multiplyPacked(m, n, k, a, depthStart, depth, columnStart, width, packed, c);
+			}
+		}
+	}
+
+	/**
+	 * Matrix-matrix product with a right operand stored outside of the heap, C +=
+	 * A * B. B is split in direct buffers in the native byte order, each one
+	 * holding chunkRows whole rows but the last one, and its blocks are packed
+	 * like in {@link #gemm(int, int, int, double[], double[], double[])}, so the
+	 * products are the same of a B on the heap
+	 *
+	 * @param m
+	 *            count of the rows of A and C
+	 * @param n
+	 *            count of the columns of B and C
+	 * @param k
+	 *            count of the columns of A and of the rows of B
+	 * @param a
+	 *            the matrix A, m x k
+	 * @param b
+	 *            the chunks of the matrix B, k x n
+	 * @param chunkRows
+	 *            count of the rows of every chunk but the last one, a multiple of
+	 *            four
+	 * @param c
+	 *            the matrix C, m x n, where the result is accumulated
+	 */
+	public static void gemm(final int m, final int n, final int k, final double[] a, final ByteBuffer[] b,
+			final int chunkRows, final double[] c) {
+		if (m == 1) {
+			for (int chunkIndex = 0; chunkIndex < b.length; chunkIndex++) {
+				int firstRow = chunkIndex * chunkRows;
+				KERNELS.gemvTransposed(Math.min(chunkRows, k - firstRow), n, b[chunkIndex], a, firstRow, c, 0, n);
+			}
+			return;
+		}
+
+		double[] packed = PACKING_BUFFER.get();
+		for (int depthStart = 0; depthStart < k; depthStart += DEPTH_BLOCK) {
+			int depth = Math.min(DEPTH_BLOCK, k - depthStart);
+			for (int columnStart = 0; columnStart < n; columnStart += COLUMNS_BLOCK) {
+				int width = Math.min(COLUMNS_BLOCK, n - columnStart);
+				pack(b, chunkRows, n, depthStart, depth, columnStart, width, packed);
+				multiplyPacked(m, n, k, a, depthStart, depth, columnStart, width, packed, c);
+			}
+		}
+	}
+
+	/**
+	 * Matrix-matrix product with the right operand transposed, C += A * B^T,
+	 * computed without transposing B. Every element of C is the dot product of a
+	 * row of A with a row of B
+	 *
+	 * @param m
+	 *            count of the rows of A and C
+	 * @param n
+	 *            count of the rows of B and of the columns of C
+	 * @param k
+	 *            count of the columns of A and B
+	 * @param a
+	 *            the matrix A, m x k
+	 * @param b
+	 *            the matrix B, n x k
+	 * @param c
+	 *            the matrix C, m x n, where the result is accumulated
+	 */
+	public static void gemmTransposedRight(final int m, final int n, final int k, final double[] a,
+			final double[] b, final double[] c) {
+		if (m == 1) {
+			KERNELS.gemv(n, k, b, a, c);
+			return;
+		}
+
+		for (int depthStart = 0; depthStart < k; depthStart += DEPTH_BLOCK) {
+			multiplyTransposed(m, n, k, a, depthStart, Math.min(depthStart + DEPTH_BLOCK, k), b, 0, k, 0, n, c);
+		}
+	}
+
+	/**
+	 * Matrix-matrix product with a single precision right operand transposed, C
+	 * += A * B^T. Blocks of the rows of B are widened in the packing buffer before
+	 * the product
+	 *
+	 * @param m
+	 *            count of the rows of A and C
+	 * @param n
+	 *            count of the rows of B and of the columns of C
+	 * @param k
+	 *            count of the columns of A and B
+	 * @param a
+	 *            the matrix A, m x k
+	 * @param b
+	 *            the matrix B, n x k
+	 * @param c
+	 *            the matrix C, m x n, where the result is accumulated
+	 */
+	public static void gemmTransposedRight(final int m, final int n, final int k, final double[] a,
+			final float[] b, final double[] c) {
+		if (m == 1) {
+			KERNELS.gemv(n, k, b, a, c);
+			return;
+		}
+
+		double[] packed = PACKING_BUFFER.get();
+		for (int depthStart = 0; depthStart < k; depthStart += DEPTH_BLOCK) {
+			int depth = Math.min(DEPTH_BLOCK, k - depthStart);
+			for (int columnStart = 0; columnStart < n; columnStart += COLUMNS_BLOCK) {
+				int width = Math.min(COLUMNS_BLOCK, n - columnStart);
+				int index = 0;
+				for (int row = columnStart; row < columnStart + width; row++) {
+					for (int p = depthStart; p < depthStart + depth; p++) {
+						packed[index++] = b[row * k + p];
+					}
+				}
+				multiplyTransposed(m, n, k, a, depthStart, depthStart + depth, packed, -depthStart, depth,
+						columnStart, columnStart + width, c);
+			}
+		}
+	}
+
+	/**
+	 * Matrix-matrix product with a right operand stored outside of the heap
+	 * transposed, C += A * B^T. B is split in chunks like in
+	 * {@link #gemm(int, int, int, double[], ByteBuffer[], int, double[])}, and
+	 * blocks of its rows are copied in the packing buffer before the product, so
+	 * the products are the same of a B on the heap when m is greater than one
+	 *
+	 * @param m
+	 *            count of the rows of A and C
+	 * @param n
+	 *            count of the rows of B and of the columns of C
+	 * @param k
+	 *            count of the columns of A and B
+	 * @param a
+	 *            the matrix A, m x k
+	 * @param b
+	 *            the chunks of the matrix B, n x k
+	 * @param chunkRows
+	 *            count of the rows of every chunk but the last one
+	 * @param c
+	 *            the matrix C, m x n, where the result is accumulated
+	 */
+	public static void gemmTransposedRight(final int m, final int n, final int k, final double[] a,
+			final ByteBuffer[] b, final int chunkRows, final double[] c) {
+		double[] packed = PACKING_BUFFER.get();
+		for (int depthStart = 0; depthStart < k; depthStart += DEPTH_BLOCK) {
+			int depth = Math.min(DEPTH_BLOCK, k - depthStart);
+			for (int columnStart = 0; columnStart < n; columnStart += COLUMNS_BLOCK) {
+				int width = Math.min(COLUMNS_BLOCK, n - columnStart);
+				int index = 0;
+				for (int row = columnStart; row < columnStart + width; row++) {
+					ByteBuffer chunk = b[row / chunkRows];
+					int source = ((row % chunkRows) * k + depthStart) * Double.BYTES;
+					for (int p = 0; p < depth; p++) {
+						packed[index++] = chunk.getDouble(source + p * Double.BYTES);
+					}
+				}
+				multiplyTransposed(m, n, k, a, depthStart, depthStart + depth, packed, -depthStart, depth,
+						columnStart, columnStart + width, c);
+			}
+		}
+	}
+
+	/**
+	 * Matrix-matrix product with the left operand transposed, C += A^T * B,
+	 * computed without transposing A. Every row of A and B contributes an outer
+	 * product to C
+	 *
+	 * @param m
+	 *            count of the columns of A and of the rows of C
+	 * @param n
+	 *            count of the columns of B and C
+	 * @param k
+	 *            count of the rows of A and B
+	 * @param a
+	 *            the matrix A, k x m
+	 * @param b
+	 *            the matrix B, k x n
+	 * @param c
+	 *            the matrix C, m x n, where the result is accumulated
+	 */
+	public static void gemmTransposedLeft(final int m, final int n, final int k, final double[] a,
+			final double[] b, final double[] c) {
+		for (int depthStart = 0; depthStart < k; depthStart += DEPTH_BLOCK) {
+			int depthEnd = Math.min(depthStart + DEPTH_BLOCK, k);
+			int rowIndex = 0;
+			for (; rowIndex + TILE <= m; rowIndex += TILE) {
+				int columnIndex = 0;
+				for (; columnIndex + TILE <= n; columnIndex += TILE) {
+					double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+					double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+					double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+					double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+					double x0, x1, x2, x3, y0, y1, y2, y3;
+					int aIndex;
+					int bIndex;
+					for (int p = depthStart; p < depthEnd; p++) {
+						aIndex = p * m + rowIndex;
+						bIndex = p * n + columnIndex;
+						x0 = a[aIndex];
+						x1 = a[aIndex + 1];
+						x2 = a[aIndex + 2];
+						x3 = a[aIndex + 3];
+						y0 = b[bIndex];
+						y1 = b[bIndex + 1];
+						y2 = b[bIndex + 2];
+						y3 = b[bIndex + 3];
+						c00 += x0 * y0;
+						c01 += x0 * y1;
+						c02 += x0 * y2;
+						c03 += x0 * y3;
+						c10 += x1 * y0;
+						c11 += x1 * y1;
+						c12 += x1 * y2;
+						c13 += x1 * y3;
+						c20 += x2 * y0;
+						c21 += x2 * y1;
+						c22 += x2 * y2;
+						c23 += x2 * y3;
+						c30 += x3 * y0;
+						c31 += x3 * y1;
+						c32 += x3 * y2;
+						c33 += x3 * y3;
+					}
+					int c0 = rowIndex * n + columnIndex;
+					int c1 = c0 + n;
+					int c2 = c1 + n;
+					int c3 = c2 + n;
+					c[c0] += c00;
+					c[c0 + 1] += c01;
+					c[c0 + 2] += c02;
+					c[c0 + 3] += c03;
+					c[c1] += c10;
+					c[c1 + 1] += c11;
+					c[c1 + 2] += c12;
+					c[c1 + 3] += c13;
+					c[c2] += c20;
+					c[c2 + 1] += c21;
+					c[c2 + 2] += c22;
+					c[c2 + 3] += c23;
+					c[c3] += c30;
+					c[c3 + 1] += c31;
+					c[c3 + 2] += c32;
+					c[c3 + 3] += c33;
+				}
+				if (columnIndex < n) {
+					for (int p = depthStart; p < depthEnd; p++) {
+						for (int row = rowIndex; row < rowIndex + TILE; row++) {
+							axpy(a[p * m + row], b, p * n + columnIndex, c, row * n + columnIndex, n - columnIndex);
+						}
+					}
+				}
+			}
+			for (int p = depthStart; p < depthEnd; p++) {
+				for (int row = rowIndex; row < m; row++) {
+					axpy(a[p * m + row], b, p * n, c, row * n, n);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Dot product between two slices of the same length
+	 *
+	 * @param x
+	 *            array containing the first slice
+	 * @param xOffset
+	 *            index of the first value of the first slice
+	 * @param y
+	 *            array containing the second slice
+	 * @param yOffset
+	 *            index of the first value of the second slice
+	 * @param length
+	 *            count of the values of the slices
+	 * @return the dot product
+	 */
+	public static double dot(final double[] x, final int xOffset, final double[] y, final int yOffset,
+			final int length) {
+		return KERNELS.dot(x, xOffset, y, yOffset, length);
+	}
+
+	/**
+	 * Scaled slice addition, y += alpha * x
+	 *
+	 * @param alpha
+	 *            scale of x
+	 * @param x
+	 *            array containing the slice to add
+	 * @param xOffset
+	 *            index of the first value of the slice to add
+	 * @param y
+	 *            array containing the slice where the result is accumulated
+	 * @param yOffset
+	 *            index of the first value of the result slice
+	 * @param length
+	 *            count of the values of the slices
+	 */
+	public static void axpy(final double alpha, final double[] x, final int xOffset, final double[] y,
+			final int yOffset, final int length) {
+		KERNELS.axpy(alpha, x, xOffset, y, yOffset, length);
+	}
+
+	/**
+	 * Scaled slice addition of single precision values, y += alpha * x
+	 *
+	 * @param alpha
+	 *            scale of x
+	 * @param x
+	 *            array containing the slice to add
+	 * @param xOffset
+	 *            index of the first value of the slice to add
+	 * @param y
+	 *            array containing the slice where the result is accumulated
+	 * @param yOffset
+	 *            index of the first value of the result slice
+	 * @param length
+	 *            count of the values of the slices
+	 */
+	public static void axpy(final double alpha, final float[] x, final int xOffset, final double[] y,
+			final int yOffset, final int length) {
+		KERNELS.axpy(alpha, x, xOffset, y, yOffset, length);
+	}
+
+	/**
+	 * Block of {@link #gemmTransposedRight}, accumulate the columns of C from
+	 * columnStart to columnEnd over the shared dimension from depthStart to
+	 * depthEnd. The value of B at row j and column p, with j between columnStart
+	 * and columnEnd, is read at {@code bOffset + (j - columnStart) * bStride + p}
+	 */
+	private static void multiplyTransposed(final int m, final int n, final int k, final double[] a,
+			final int depthStart, final int depthEnd, final double[] b, final int bOffset, final int bStride,
+			final int columnStart, final int columnEnd, final double[] c) {
+		int rowIndex = 0;
+		for (; rowIndex + TILE <= m; rowIndex += TILE) {
+			int a0 = rowIndex * k;
+			int a1 = a0 + k;
+			int a2 = a1 + k;
+			int a3 = a2 + k;
+			int columnIndex = columnStart;
+			for (; columnIndex + TILE <= columnEnd; columnIndex += TILE) {
+				int b0 = bOffset + (columnIndex - columnStart) * bStride;
+				int b1 = b0 + bStride;
+				int b2 = b1 + bStride;
+				int b3 = b2 + bStride;
+				double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+				double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+				double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+				double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+				double x0, x1, x2, x3, y0, y1, y2, y3;
+				for (int p = depthStart; p < depthEnd; p++) {
+					x0 = a[a0 + p];
+					x1 = a[a1 + p];
+					x2 = a[a2 + p];
+					x3 = a[a3 + p];
+					y0 = b[b0 + p];
+					y1 = b[b1 + p];
+					y2 = b[b2 + p];
+					y3 = b[b3 + p];
+					c00 += x0 * y0;
+					c01 += x0 * y1;
+					c02 += x0 * y2;
+					c03 += x0 * y3;
+					c10 += x1 * y0;
+					c11 += x1 * y1;
+					c12 += x1 * y2;
+					c13 += x1 * y3;
+					c20 += x2 * y0;
+					c21 += x2 * y1;
+					c22 += x2 * y2;
+					c23 += x2 * y3;
+					c30 += x3 * y0;
+					c31 += x3 * y1;
+					c32 += x3 * y2;
+					c33 += x3 * y3;
+				}
+				int c0 = rowIndex * n + columnIndex;
+				int c1 = c0 + n;
+				int c2 = c1 + n;
+				int c3 = c2 + n;
+				c[c0] += c00;
+				c[c0 + 1] += c01;
+				c[c0 + 2] += c02;
+				c[c0 + 3] += c03;
+				c[c1] += c10;
+				c[c1 + 1] += c11;
+				c[c1 + 2] += c12;
+				c[c1 + 3] += c13;
+				c[c2] += c20;
+				c[c2 + 1] += c21;
+				c[c2 + 2] += c22;
+				c[c2 + 3] += c23;
+				c[c3] += c30;
+				c[c3 + 1] += c31;
+				c[c3 + 2] += c32;
+				c[c3 + 3] += c33;
+			}
+			for (; columnIndex < columnEnd; columnIndex++) {
+				for (int row = rowIndex; row < rowIndex + TILE; row++) {
+					c[row * n + columnIndex] += dot(a, row * k + depthStart, b,
+							bOffset + (columnIndex - columnStart) * bStride + depthStart, depthEnd - depthStart);
+				}
+			}
+		}
+		for (; rowIndex < m; rowIndex++) {
+			for (int columnIndex = columnStart; columnIndex < columnEnd; columnIndex++) {
+				c[rowIndex * n + columnIndex] += dot(a, rowIndex * k + depthStart, b,
+						bOffset + (columnIndex - columnStart) * bStride + depthStart, depthEnd - depthStart);
+			}
+		}
+	}
+
+	/**
+	 * Accumulate the block of C computed from a packed block of B, with the 4x4
+	 * register tiles and the edges
+	 */
+	private static void multiplyPacked(final int m, final int n, final int k, final double[] a,
+			final int depthStart, final int depth, final int columnStart, final int width, final double[] packed,
+			final double[] c) {
+		int rowIndex = 0;
+		for (; rowIndex + TILE <= m; rowIndex += TILE) {
+			int strip = 0;
+			for (; strip + TILE <= width; strip += TILE) {
+				tile(a, k, rowIndex, depthStart, depth, packed, strip * depth, c, n, columnStart + strip);
+			}
+			if (strip < width) {
+				edge(a, k, rowIndex, TILE, depthStart, depth, packed, strip * depth, c, n, columnStart + strip,
+						width - strip);
+			}
+		}
+		if (rowIndex < m) {
+			for (int strip = 0; strip < width; strip += TILE) {
+				edge(a, k, rowIndex, m - rowIndex, depthStart, depth, packed, strip * depth, c, n,
+						columnStart + strip, Math.min(TILE, width - strip));
+			}
+		}
+	}
+
+	/**
+	 * Copy a block of B in the packing buffer, as consecutive strips of four
+	 * columns. Each strip holds the rows of the block one after the other, the
+	 * last strip is padded with zeros
+	 */
+	private static void pack(final double[] b, final int n, final int depthStart, final int depth,
+			final int columnStart, final int width, final double[] packed) {
+		int index = 0;
+		for (int strip = 0; strip < width; strip += TILE) {
+			int stripWidth = Math.min(TILE, width - strip);
+			for (int p = 0; p < depth; p++) {
+				int source = (depthStart + p) * n + columnStart + strip;
+				for (int column = 0; column < TILE; column++) {
+					packed[index++] = column < stripWidth ? b[source + column] : 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy a block of a single precision B in the packing buffer, widening it,
+	 * with the layout of {@link #pack(double[], int, int, int, int, int, double[])}
+	 */
+	private static void pack(final float[] b, final int n, final int depthStart, final int depth,
+			final int columnStart, final int width, final double[] packed) {
+		int index = 0;
+		for (int strip = 0; strip < width; strip += TILE) {
+			int stripWidth = Math.min(TILE, width - strip);
+			for (int p = 0; p < depth; p++) {
+				int source = (depthStart + p) * n + columnStart + strip;
+				for (int column = 0; column < TILE; column++) {
+					packed[index++] = column < stripWidth ? b[source + column] : 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy a block of a B stored in direct buffers in the packing buffer, with
+	 * the layout of {@link #pack(double[], int, int, int, int, int, double[])}
+	 */
+	private static void pack(final ByteBuffer[] b, final int chunkRows, final int n, final int depthStart,
+			final int depth, final int columnStart, final int width, final double[] packed) {
+		int index = 0;
+		for (int strip = 0; strip < width; strip += TILE) {
+			int stripWidth = Math.min(TILE, width - strip);
+			for (int p = 0; p < depth; p++) {
+				int row = depthStart + p;
+				ByteBuffer chunk = b[row / chunkRows];
+				int source = (row % chunkRows) * n + columnStart + strip;
+				for (int column = 0; column < TILE; column++) {
+					packed[index++] = column < stripWidth ? chunk.getDouble((source + column) * Double.BYTES) : 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Register tile of {@link #gemm}, accumulate a 4x4 block of C from four rows
+	 * of A and a packed strip of B
+	 */
+	private static void tile(final double[] a, final int k, final int rowIndex, final int depthStart,
+			final int depth, final double[] packed, final int stripOffset, final double[] c, final int n,
+			final int columnIndex) {
+		int a0 = rowIndex * k + depthStart;
+		int a1 = a0 + k;
+		int a2 = a1 + k;
+		int a3 = a2 + k;
+		double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+		double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+		double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+		double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+		double x0, x1, x2, x3, y0, y1, y2, y3;
+		int bIndex = stripOffset;
+		for (int p = 0; p < depth; p++, bIndex += TILE) {
+			x0 = a[a0 + p];
+			x1 = a[a1 + p];
+			x2 = a[a2 + p];
+			x3 = a[a3 + p];
+			y0 = packed[bIndex];
+			y1 = packed[bIndex + 1];
+			y2 = packed[bIndex + 2];
+			y3 = packed[bIndex + 3];
+			c00 += x0 * y0;
+			c01 += x0 * y1;
+			c02 += x0 * y2;
+			c03 += x0 * y3;
+			c10 += x1 * y0;
+			c11 += x1 * y1;
+			c12 += x1 * y2;
+			c13 += x1 * y3;
+			c20 += x2 * y0;
+			c21 += x2 * y1;
+			c22 += x2 * y2;
+			c23 += x2 * y3;
+			c30 += x3 * y0;
+			c31 += x3 * y1;
+			c32 += x3 * y2;
+			c33 += x3 * y3;
+		}
+		int c0 = rowIndex * n + columnIndex;
+		int c1 = c0 + n;
+		int c2 = c1 + n;
+		int c3 = c2 + n;
+		c[c0] += c00;
+		c[c0 + 1] += c01;
+		c[c0 + 2] += c02;
+		c[c0 + 3] += c03;
+		c[c1] += c10;
+		c[c1 + 1] += c11;
+		c[c1 + 2] += c12;
+		c[c1 + 3] += c13;
+		c[c2] += c20;
+		c[c2 + 1] += c21;
+		c[c2 + 2] += c22;
+		c[c2 + 3] += c23;
+		c[c3] += c30;
+		c[c3 + 1] += c31;
+		c[c3 + 2] += c32;
+		c[c3 + 3] += c33;
+	}
+
+	/**
+	 * Edge of {@link #gemm}, accumulate a block of C smaller than the register
+	 * tile
+	 */
+	private static void edge(final double[] a, final int k, final int rowIndex, final int rows,
+			final int depthStart, final int depth, final double[] packed, final int stripOffset, final double[] c,
+			final int n, final int columnIndex, final int columns) {
+		for (int row = 0; row < rows; row++) {
+			int aRow = (rowIndex + row) * k + depthStart;
+			int cRow = (rowIndex + row) * n + columnIndex;
+			for (int column = 0; column < columns; column++) {
+				double sum = 0;
+				for (int p = 0; p < depth; p++) {
+					sum += a[aRow + p] * packed[stripOffset + p * TILE + column];
+				}
+				c[cRow + column] += sum;
+			}
+		}
+	}
+
+}
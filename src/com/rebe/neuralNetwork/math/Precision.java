@@ -0,0 +1,24 @@
+package com.rebe.neuralNetwork.math;
+
+/**
+ * Storage precision of the weights matrices and of the momentum deltas of a
+ * network. The products are always accumulated in double precision, so the
+ * single precision only trades the accuracy of the stored values for half of
+ * their memory and memory bandwidth
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public enum Precision {
+
+	/**
+	 * Values stored as 64 bits doubles
+	 */
+	DOUBLE,
+
+	/**
+	 * Values stored as 32 bits floats
+	 */
+	FLOAT
+
+}
@@ -0,0 +1,314 @@
+package com.rebe.neuralNetwork.math;
+
+import java.nio.ByteBuffer;
+
+import com.rebe.neuralNetwork.utils.Utils;
+
+/**
+ * Plain Java implementation of the {@link Kernels}, always available. The
+ * loops are unrolled on four independent accumulators so the JIT can overlap
+ * the multiply-adds
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+class ScalarKernels implements Kernels {
+
+	/**
+	 * Unroll factor of the loops and rows count of the register tiles
+	 */
+	private static final int TILE = 4;
+
+	/**
+	 * Count of the columns processed by a block of
+	 * {@link #gemvTransposed(int, int, double[], double[], double[])}, so that
+	 * the block of the result stays in the first level cache
+	 */
+	private static final int COLUMNS_BLOCK = 1024;
+
+	@Override
+	public double dot(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length) {
+		double sum0 = 0;
+		double sum1 = 0;
+		double sum2 = 0;
+		double sum3 = 0;
+		int index = 0;
+		for (; index + TILE <= length; index += TILE) {
+			sum0 += x[xOffset + index] * y[yOffset + index];
+			sum1 += x[xOffset + index + 1] * y[yOffset + index + 1];
+			sum2 += x[xOffset + index + 2] * y[yOffset + index + 2];
+			sum3 += x[xOffset + index + 3] * y[yOffset + index + 3];
+		}
+		for (; index < length; index++) {
+			sum0 += x[xOffset + index] * y[yOffset + index];
+		}
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+
+	@Override
+	public void axpy(final double alpha, final double[] x, final int xOffset, final double[] y, final int yOffset,
+			final int length) {
+		for (int index = 0; index < length; index++) {
+			y[yOffset + index] += alpha * x[xOffset + index];
+		}
+	}
+
+	@Override
+	public void gemv(final int rows, final int columns, final double[] a, final double[] x, final double[] y,
+			final int fromRow, final int toRow) {
+		int rowIndex = fromRow;
+		for (; rowIndex + TILE <= toRow; rowIndex += TILE) {
+			int row0 = rowIndex * columns;
+			int row1 = row0 + columns;
+			int row2 = row1 + columns;
+			int row3 = row2 + columns;
+			double sum0 = 0;
+			double sum1 = 0;
+			double sum2 = 0;
+			double sum3 = 0;
+			double value;
+			for (int columnIndex = 0; columnIndex < columns; columnIndex++) {
+				value = x[columnIndex];
+				sum0 += a[row0 + columnIndex] * value;
+				sum1 += a[row1 + columnIndex] * value;
+				sum2 += a[row2 + columnIndex] * value;
+				sum3 += a[row3 + columnIndex] * value;
+			}
+			y[rowIndex] += sum0;
+			y[rowIndex + 1] += sum1;
+			y[rowIndex + 2] += sum2;
+			y[rowIndex + 3] += sum3;
+		}
+		for (; rowIndex < toRow; rowIndex++) {
+			y[rowIndex] += dot(a, rowIndex * columns, x, 0, columns);
+		}
+	}
+
+	@Override
+	public void gemvTransposed(final int rows, final int columns, final double[] a, final double[] x,
+			final double[] y, final int fromColumn, final int toColumn) {
+		for (int columnStart = fromColumn; columnStart < toColumn; columnStart += COLUMNS_BLOCK) {
+			int columnEnd = Math.min(columnStart + COLUMNS_BLOCK, toColumn);
+			int rowIndex = 0;
+			for (; rowIndex + TILE <= rows; rowIndex += TILE) {
+				int row0 = rowIndex * columns;
+				int row1 = row0 + columns;
+				int row2 = row1 + columns;
+				int row3 = row2 + columns;
+				double x0 = x[rowIndex];
+				double x1 = x[rowIndex + 1];
+				double x2 = x[rowIndex + 2];
+				double x3 = x[rowIndex + 3];
+				for (int columnIndex = columnStart; columnIndex < columnEnd; columnIndex++) {
+					y[columnIndex] += x0 * a[row0 + columnIndex] + x1 * a[row1 + columnIndex]
+							+ x2 * a[row2 + columnIndex] + x3 * a[row3 + columnIndex];
+				}
+			}
+			for (; rowIndex < rows; rowIndex++) {
+				axpy(x[rowIndex], a, rowIndex * columns + columnStart, y, columnStart, columnEnd - columnStart);
+			}
+		}
+	}
+
+	@Override
+	public void gemv(final int rows, final int columns, final float[] a, final double[] x, final double[] y,
+			final int fromRow, final int toRow) {
+		int rowIndex = fromRow;
+		for (; rowIndex + TILE <= toRow; rowIndex += TILE) {
+			int row0 = rowIndex * columns;
+			int row1 = row0 + columns;
+			int row2 = row1 + columns;
+			int row3 = row2 + columns;
+			double sum0 = 0;
+			double sum1 = 0;
+			double sum2 = 0;
+			double sum3 = 0;
+			double value;
+			for (int columnIndex = 0; columnIndex < columns; columnIndex++) {
+				value = x[columnIndex];
+				sum0 += a[row0 + columnIndex] * value;
+				sum1 += a[row1 + columnIndex] * value;
+				sum2 += a[row2 + columnIndex] * value;
+				sum3 += a[row3 + columnIndex] * value;
+			}
+			y[rowIndex] += sum0;
+			y[rowIndex + 1] += sum1;
+			y[rowIndex + 2] += sum2;
+			y[rowIndex + 3] += sum3;
+		}
+		for (; rowIndex < toRow; rowIndex++) {
+			y[rowIndex] += dot(a, rowIndex * columns, x, 0, columns);
+		}
+	}
+
+	@Override
+	public void gemvTransposed(final int rows, final int columns, final float[] a, final double[] x,
+			final double[] y, final int fromColumn, final int toColumn) {
+		for (int columnStart = fromColumn; columnStart < toColumn; columnStart += COLUMNS_BLOCK) {
+			int columnEnd = Math.min(columnStart + COLUMNS_BLOCK, toColumn);
+			int rowIndex = 0;
+			for (; rowIndex + TILE <= rows; rowIndex += TILE) {
+				int row0 = rowIndex * columns;
+				int row1 = row0 + columns;
+				int row2 = row1 + columns;
+				int row3 = row2 + columns;
+				double x0 = x[rowIndex];
+				double x1 = x[rowIndex + 1];
+				double x2 = x[rowIndex + 2];
+				double x3 = x[rowIndex + 3];
+				for (int columnIndex = columnStart; columnIndex < columnEnd; columnIndex++) {
+					y[columnIndex] += x0 * a[row0 + columnIndex] + x1 * a[row1 + columnIndex]
+							+ x2 * a[row2 + columnIndex] + x3 * a[row3 + columnIndex];
+				}
+			}
+			for (; rowIndex < rows; rowIndex++) {
+				axpy(x[rowIndex], a, rowIndex * columns + columnStart, y, columnStart, columnEnd - columnStart);
+			}
+		}
+	}
+
+	@Override
+	public void gemvTransposed(final int rows, final int columns, final ByteBuffer a, final double[] x,
+			final int xOffset, final double[] y, final int fromColumn, final int toColumn) {
+		for (int columnStart = fromColumn; columnStart < toColumn; columnStart += COLUMNS_BLOCK) {
+			int columnEnd = Math.min(columnStart + COLUMNS_BLOCK, toColumn);
+			int rowIndex = 0;
+			for (; rowIndex + TILE <= rows; rowIndex += TILE) {
+				int row0 = rowIndex * columns * Double.BYTES;
+				int row1 = row0 + columns * Double.BYTES;
+				int row2 = row1 + columns * Double.BYTES;
+				int row3 = row2 + columns * Double.BYTES;
+				double x0 = x[xOffset + rowIndex];
+				double x1 = x[xOffset + rowIndex + 1];
+				double x2 = x[xOffset + rowIndex + 2];
+				double x3 = x[xOffset + rowIndex + 3];
+				for (int columnIndex = columnStart; columnIndex < columnEnd; columnIndex++) {
+					int column = columnIndex * Double.BYTES;
+					y[columnIndex] += x0 * a.getDouble(row0 + column) + x1 * a.getDouble(row1 + column)
+							+ x2 * a.getDouble(row2 + column) + x3 * a.getDouble(row3 + column);
+				}
+			}
+			for (; rowIndex < rows; rowIndex++) {
+				int row = rowIndex * columns * Double.BYTES;
+				double value = x[xOffset + rowIndex];
+				for (int columnIndex = columnStart; columnIndex < columnEnd; columnIndex++) {
+					y[columnIndex] += value * a.getDouble(row + columnIndex * Double.BYTES);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void gemvTransposed(final int rows, final int columns, final byte[] a, final byte[] x, final int[] y,
+			final int fromRow, final int toRow) {
+		for (int columnStart = 0; columnStart < columns; columnStart += COLUMNS_BLOCK) {
+			int columnEnd = Math.min(columnStart + COLUMNS_BLOCK, columns);
+			int rowIndex = fromRow;
+			for (; rowIndex + TILE <= toRow; rowIndex += TILE) {
+				int row0 = rowIndex * columns;
+				int row1 = row0 + columns;
+				int row2 = row1 + columns;
+				int row3 = row2 + columns;
+				int x0 = x[rowIndex];
+				int x1 = x[rowIndex + 1];
+				int x2 = x[rowIndex + 2];
+				int x3 = x[rowIndex + 3];
+				for (int columnIndex = columnStart; columnIndex < columnEnd; columnIndex++) {
+					y[columnIndex] += x0 * a[row0 + columnIndex] + x1 * a[row1 + columnIndex]
+							+ x2 * a[row2 + columnIndex] + x3 * a[row3 + columnIndex];
+				}
+			}
+			for (; rowIndex < toRow; rowIndex++) {
+				int value = x[rowIndex];
+				int row = rowIndex * columns;
+				for (int columnIndex = columnStart; columnIndex < columnEnd; columnIndex++) {
+					y[columnIndex] += value * a[row + columnIndex];
+				}
+			}
+		}
+	}
+
+	@Override
+	public void sigmoid(final double[] values, final double[] result, final int length) {
+		for (int index = 0; index < length; index++) {
+			result[index] = Utils.activationFunction(values[index]);
+		}
+	}
+
+	@Override
+	public double momentumUpdate(final double[] weights, final double[] previousDeltas, final int offset,
+			final double rate, final double[] directions, final int directionsOffset, final double momentum,
+			final int length) {
+		double squaredNorm = 0;
+		double delta;
+		double step;
+		for (int index = 0; index < length; index++) {
+			delta = rate * directions[directionsOffset + index];
+			step = delta + momentum * previousDeltas[offset + index];
+			weights[offset + index] += step;
+			previousDeltas[offset + index] = delta;
+			squaredNorm += step * step;
+		}
+		return squaredNorm;
+	}
+
+	@Override
+	public double momentumUpdate(final float[] weights, final float[] previousDeltas, final int offset,
+			final double rate, final double[] directions, final int directionsOffset, final double momentum,
+			final int length) {
+		double squaredNorm = 0;
+		double delta;
+		double step;
+		for (int index = 0; index < length; index++) {
+			delta = rate * directions[directionsOffset + index];
+			step = delta + momentum * previousDeltas[offset + index];
+			weights[offset + index] += step;
+			previousDeltas[offset + index] = (float) delta;
+			squaredNorm += step * step;
+		}
+		return squaredNorm;
+	}
+
+	/**
+	 * Dot product between a slice of single precision values and a slice of
+	 * double precision values of the same length
+	 * 
+	 * @param x
+	 *            array containing the first slice
+	 * @param xOffset
+	 *            index of the first value of the first slice
+	 * @param y
+	 *            array containing the second slice
+	 * @param yOffset
+	 *            index of the first value of the second slice
+	 * @param length
+	 *            count of the values of the slices
+	 * @return the dot product
+	 */
+	double dot(final float[] x, final int xOffset, final double[] y, final int yOffset, final int length) {
+		double sum0 = 0;
+		double sum1 = 0;
+		double sum2 = 0;
+		double sum3 = 0;
+		int index = 0;
+		for (; index + TILE <= length; index += TILE) {
+			sum0 += x[xOffset + index] * y[yOffset + index];
+			sum1 += x[xOffset + index + 1] * y[yOffset + index + 1];
+			sum2 += x[xOffset + index + 2] * y[yOffset + index + 2];
+			sum3 += x[xOffset + index + 3] * y[yOffset + index + 3];
+		}
+		for (; index < length; index++) {
+			sum0 += x[xOffset + index] * y[yOffset + index];
+		}
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+
+	@Override
+	public void axpy(final double alpha, final float[] x, final int xOffset, final double[] y, final int yOffset,
+			final int length) {
+		for (int index = 0; index < length; index++) {
+			y[yOffset + index] += alpha * x[xOffset + index];
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.rebe.neuralNetwork.math;
+
+/**
+ * Storage of the weights matrices and of their optimizer state, like the
+ * momentum deltas, of a network. Off the heap the garbage collector never
+ * marks nor copies them, so the heap size and the collection pauses do not
+ * depend on the count of weights
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public enum Storage {
+
+	/**
+	 * Values stored in arrays on the heap
+	 */
+	HEAP,
+
+	/**
+	 * Values stored as 64 bits doubles in direct buffers outside of the heap,
+	 * released when the network is garbage collected
+	 */
+	OFF_HEAP
+
+}
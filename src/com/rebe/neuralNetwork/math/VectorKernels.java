@@ -0,0 +1,480 @@
+package com.rebe.neuralNetwork.math;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import com.rebe.neuralNetwork.utils.Utils;
+
+/**
+ * Implementation of the {@link Kernels} built on the incubating Vector API.
+ * The species is the widest one preferred by the running CPU, so the same code
+ * uses 2 lanes on SSE, 4 on AVX2 and 8 on AVX-512 hosts. Single precision
+ * matrices are loaded at half of that width and widened, so they are read with
+ * half of the memory traffic and multiplied in double precision, while 8 bits
+ * matrices are loaded at a quarter of the width and widened to 32 bits
+ * integers. The tail of every loop is completed by the scalar kernels. This class is only loaded by
+ * {@link Backends} when the {@code jdk.incubator.vector} module is available
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+class VectorKernels implements Kernels {
+
+	/**
+	 * Species used for the double precision kernels
+	 */
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * Species used to load single precision values, with the lanes count of
+	 * {@link #DOUBLES}
+	 */
+	private static final VectorSpecies<Float> FLOATS = VectorSpecies.of(float.class,
+			VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+	/**
+	 * Species used for the integer accumulators
+	 */
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	/**
+	 * Species used to load 8 bits values, a quarter of the width of
+	 * {@link #INTS} so that they are widened in a single step, but at least 64
+	 * bits wide
+	 */
+	private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class,
+			VectorShape.forBitSize(Math.max(64, INTS.vectorBitSize() / 4)));
+
+	/**
+	 * Count of the {@link #INTS} vectors widened from a {@link #BYTES} vector
+	 */
+	private static final int PARTS = BYTES.length() / INTS.length();
+
+	/**
+	 * Rows count of the register tiles
+	 */
+	private static final int TILE = 4;
+
+	/**
+	 * Kernels used for the loops tails
+	 */
+	private final ScalarKernels scalar = new ScalarKernels();
+
+	@Override
+	public double dot(final double[] x, final int xOffset, final double[] y, final int yOffset, final int length) {
+		DoubleVector sum = DoubleVector.zero(DOUBLES);
+		int bound = DOUBLES.loopBound(length);
+		int index = 0;
+		for (; index < bound; index += DOUBLES.length()) {
+			sum = DoubleVector.fromArray(DOUBLES, x, xOffset + index)
+					.fma(DoubleVector.fromArray(DOUBLES, y, yOffset + index), sum);
+		}
+		return sum.reduceLanes(VectorOperators.ADD)
+				+ scalar.dot(x, xOffset + index, y, yOffset + index, length - index);
+	}
+
+	@Override
+	public void axpy(final double alpha, final double[] x, final int xOffset, final double[] y, final int yOffset,
+			final int length) {
+		DoubleVector scale = DoubleVector.broadcast(DOUBLES, alpha);
+		int bound = DOUBLES.loopBound(length);
+		int index = 0;
+		for (; index < bound; index += DOUBLES.length()) {
+			DoubleVector.fromArray(DOUBLES, x, xOffset + index)
+					.fma(scale, DoubleVector.fromArray(DOUBLES, y, yOffset + index))
+					.intoArray(y, yOffset + index);
+		}
+		scalar.axpy(alpha, x, xOffset + index, y, yOffset + index, length - index);
+	}
+
+	@Override
+	public void axpy(final double alpha, final float[] x, final int xOffset, final double[] y, final int yOffset,
+			final int length) {
+		DoubleVector scale = DoubleVector.broadcast(DOUBLES, alpha);
+		int bound = DOUBLES.loopBound(length);
+		int index = 0;
+		for (; index < bound; index += DOUBLES.length()) {
+			widen(x, xOffset + index).fma(scale, DoubleVector.fromArray(DOUBLES, y, yOffset + index))
+					.intoArray(y, yOffset + index);
+		}
+		scalar.axpy(alpha, x, xOffset + index, y, yOffset + index, length - index);
+	}
+
+	@Override
+	public void gemv(final int rows, final int columns, final double[] a, final double[] x, final double[] y,
+			final int fromRow, final int toRow) {
+		int bound = DOUBLES.loopBound(columns);
+		int rowIndex = fromRow;
+		for (; rowIndex + TILE <= toRow; rowIndex += TILE) {
+			int row0 = rowIndex * columns;
+			int row1 = row0 + columns;
+			int row2 = row1 + columns;
+			int row3 = row2 + columns;
+			DoubleVector sum0 = DoubleVector.zero(DOUBLES);
+			DoubleVector sum1 = DoubleVector.zero(DOUBLES);
+			DoubleVector sum2 = DoubleVector.zero(DOUBLES);
+			DoubleVector sum3 = DoubleVector.zero(DOUBLES);
+			int columnIndex = 0;
+			for (; columnIndex < bound; columnIndex += DOUBLES.length()) {
+				DoubleVector value = DoubleVector.fromArray(DOUBLES, x, columnIndex);
+				sum0 = DoubleVector.fromArray(DOUBLES, a, row0 + columnIndex).fma(value, sum0);
+				sum1 = DoubleVector.fromArray(DOUBLES, a, row1 + columnIndex).fma(value, sum1);
+				sum2 = DoubleVector.fromArray(DOUBLES, a, row2 + columnIndex).fma(value, sum2);
+				sum3 = DoubleVector.fromArray(DOUBLES, a, row3 + columnIndex).fma(value, sum3);
+			}
+			int tail = columns - columnIndex;
+			y[rowIndex] += sum0.reduceLanes(VectorOperators.ADD)
+					+ scalar.dot(a, row0 + columnIndex, x, columnIndex, tail);
+			y[rowIndex + 1] += sum1.reduceLanes(VectorOperators.ADD)
+					+ scalar.dot(a, row1 + columnIndex, x, columnIndex, tail);
+			y[rowIndex + 2] += sum2.reduceLanes(VectorOperators.ADD)
+					+ scalar.dot(a, row2 + columnIndex, x, columnIndex, tail);
+			y[rowIndex + 3] += sum3.reduceLanes(VectorOperators.ADD)
+					+ scalar.dot(a, row3 + columnIndex, x, columnIndex, tail);
+		}
+		for (; rowIndex < toRow; rowIndex++) {
+			y[rowIndex] += dot(a, rowIndex * columns, x, 0, columns);
+		}
+	}
+
+	@Override
+	public void gemvTransposed(final int rows, final int columns, final double[] a, final double[] x,
+			final double[] y, final int fromColumn, final int toColumn) {
+		int bound = fromColumn + DOUBLES.loopBound(toColumn - fromColumn);
+		int rowIndex = 0;
+		for (; rowIndex + TILE <= rows; rowIndex += TILE) {
+			int row0 = rowIndex * columns;
+			int row1 = row0 + columns;
+			int row2 = row1 + columns;
+			int row3 = row2 + columns;
+			double x0 = x[rowIndex];
+			double x1 = x[rowIndex + 1];
+			double x2 = x[rowIndex + 2];
+			double x3 = x[rowIndex + 3];
+			DoubleVector scale0 = DoubleVector.broadcast(DOUBLES, x0);
+			DoubleVector scale1 = DoubleVector.broadcast(DOUBLES, x1);
+			DoubleVector scale2 = DoubleVector.broadcast(DOUBLES, x2);
+			DoubleVector scale3 = DoubleVector.broadcast(DOUBLES, x3);
+			int columnIndex = fromColumn;
+			for (; columnIndex < bound; columnIndex += DOUBLES.length()) {
+				DoubleVector.fromArray(DOUBLES, a, row0 + columnIndex)
+						.fma(scale0, DoubleVector.fromArray(DOUBLES, y, columnIndex))
+						.add(DoubleVector.fromArray(DOUBLES, a, row1 + columnIndex).mul(scale1))
+						.add(DoubleVector.fromArray(DOUBLES, a, row2 + columnIndex).fma(scale2,
+								DoubleVector.fromArray(DOUBLES, a, row3 + columnIndex).mul(scale3)))
+						.intoArray(y, columnIndex);
+			}
+			for (; columnIndex < toColumn; columnIndex++) {
+				y[columnIndex] += x0 * a[row0 + columnIndex] + x1 * a[row1 + columnIndex]
+						+ x2 * a[row2 + columnIndex] + x3 * a[row3 + columnIndex];
+			}
+		}
+		for (; rowIndex < rows; rowIndex++) {
+			axpy(x[rowIndex], a, rowIndex * columns + fromColumn, y, fromColumn, toColumn - fromColumn);
+		}
+	}
+
+	@Override
+	public void gemv(final int rows, final int columns, final float[] a, final double[] x, final double[] y,
+			final int fromRow, final int toRow) {
+		int bound = DOUBLES.loopBound(columns);
+		int rowIndex = fromRow;
+		for (; rowIndex + TILE <= toRow; rowIndex += TILE) {
+			int row0 = rowIndex * columns;
+			int row1 = row0 + columns;
+			int row2 = row1 + columns;
+			int row3 = row2 + columns;
+			DoubleVector sum0 = DoubleVector.zero(DOUBLES);
+			DoubleVector sum1 = DoubleVector.zero(DOUBLES);
+			DoubleVector sum2 = DoubleVector.zero(DOUBLES);
+			DoubleVector sum3 = DoubleVector.zero(DOUBLES);
+			int columnIndex = 0;
+			for (; columnIndex < bound; columnIndex += DOUBLES.length()) {
+				DoubleVector value = DoubleVector.fromArray(DOUBLES, x, columnIndex);
+				sum0 = widen(a, row0 + columnIndex).fma(value, sum0);
+				sum1 = widen(a, row1 + columnIndex).fma(value, sum1);
+				sum2 = widen(a, row2 + columnIndex).fma(value, sum2);
+				sum3 = widen(a, row3 + columnIndex).fma(value, sum3);
+			}
+			int tail = columns - columnIndex;
+			y[rowIndex] += sum0.reduceLanes(VectorOperators.ADD)
+					+ scalar.dot(a, row0 + columnIndex, x, columnIndex, tail);
+			y[rowIndex + 1] += sum1.reduceLanes(VectorOperators.ADD)
+					+ scalar.dot(a, row1 + columnIndex, x, columnIndex, tail);
+			y[rowIndex + 2] += sum2.reduceLanes(VectorOperators.ADD)
+					+ scalar.dot(a, row2 + columnIndex, x, columnIndex, tail);
+			y[rowIndex + 3] += sum3.reduceLanes(VectorOperators.ADD)
+					+ scalar.dot(a, row3 + columnIndex, x, columnIndex, tail);
+		}
+		for (; rowIndex < toRow; rowIndex++) {
+			DoubleVector sum = DoubleVector.zero(DOUBLES);
+			int row = rowIndex * columns;
+			int columnIndex = 0;
+			for (; columnIndex < bound; columnIndex += DOUBLES.length()) {
+				sum = widen(a, row + columnIndex).fma(DoubleVector.fromArray(DOUBLES, x, columnIndex), sum);
+			}
+			y[rowIndex] += sum.reduceLanes(VectorOperators.ADD)
+					+ scalar.dot(a, row + columnIndex, x, columnIndex, columns - columnIndex);
+		}
+	}
+
+	@Override
+	public void gemvTransposed(final int rows, final int columns, final float[] a, final double[] x,
+			final double[] y, final int fromColumn, final int toColumn) {
+		int bound = fromColumn + DOUBLES.loopBound(toColumn - fromColumn);
+		int rowIndex = 0;
+		for (; rowIndex + TILE <= rows; rowIndex += TILE) {
+			int row0 = rowIndex * columns;
+			int row1 = row0 + columns;
+			int row2 = row1 + columns;
+			int row3 = row2 + columns;
+			double x0 = x[rowIndex];
+			double x1 = x[rowIndex + 1];
+			double x2 = x[rowIndex + 2];
+			double x3 = x[rowIndex + 3];
+			DoubleVector scale0 = DoubleVector.broadcast(DOUBLES, x0);
+			DoubleVector scale1 = DoubleVector.broadcast(DOUBLES, x1);
+			DoubleVector scale2 = DoubleVector.broadcast(DOUBLES, x2);
+			DoubleVector scale3 = DoubleVector.broadcast(DOUBLES, x3);
+			int columnIndex = fromColumn;
+			for (; columnIndex < bound; columnIndex += DOUBLES.length()) {
+				widen(a, row0 + columnIndex).fma(scale0, DoubleVector.fromArray(DOUBLES, y, columnIndex))
+						.add(widen(a, row1 + columnIndex).mul(scale1))
+						.add(widen(a, row2 + columnIndex).fma(scale2, widen(a, row3 + columnIndex).mul(scale3)))
+						.intoArray(y, columnIndex);
+			}
+			for (; columnIndex < toColumn; columnIndex++) {
+				y[columnIndex] += x0 * a[row0 + columnIndex] + x1 * a[row1 + columnIndex]
+						+ x2 * a[row2 + columnIndex] + x3 * a[row3 + columnIndex];
+			}
+		}
+		for (; rowIndex < rows; rowIndex++) {
+			int row = rowIndex * columns;
+			DoubleVector scale = DoubleVector.broadcast(DOUBLES, x[rowIndex]);
+			int columnIndex = fromColumn;
+			for (; columnIndex < bound; columnIndex += DOUBLES.length()) {
+				widen(a, row + columnIndex).fma(scale, DoubleVector.fromArray(DOUBLES, y, columnIndex))
+						.intoArray(y, columnIndex);
+			}
+			scalar.axpy(x[rowIndex], a, row + columnIndex, y, columnIndex, toColumn - columnIndex);
+		}
+	}
+
+	@Override
+	public void gemvTransposed(final int rows, final int columns, final ByteBuffer a, final double[] x,
+			final int xOffset, final double[] y, final int fromColumn, final int toColumn) {
+		ByteOrder order = a.order();
+		int rowBytes = columns * Double.BYTES;
+		int bound = fromColumn + DOUBLES.loopBound(toColumn - fromColumn);
+		int rowIndex = 0;
+		for (; rowIndex + TILE <= rows; rowIndex += TILE) {
+			int row0 = rowIndex * rowBytes;
+			int row1 = row0 + rowBytes;
+			int row2 = row1 + rowBytes;
+			int row3 = row2 + rowBytes;
+			double x0 = x[xOffset + rowIndex];
+			double x1 = x[xOffset + rowIndex + 1];
+			double x2 = x[xOffset + rowIndex + 2];
+			double x3 = x[xOffset + rowIndex + 3];
+			DoubleVector scale0 = DoubleVector.broadcast(DOUBLES, x0);
+			DoubleVector scale1 = DoubleVector.broadcast(DOUBLES, x1);
+			DoubleVector scale2 = DoubleVector.broadcast(DOUBLES, x2);
+			DoubleVector scale3 = DoubleVector.broadcast(DOUBLES, x3);
+			int columnIndex = fromColumn;
+			for (; columnIndex < bound; columnIndex += DOUBLES.length()) {
+				int column = columnIndex * Double.BYTES;
+				DoubleVector.fromByteBuffer(DOUBLES, a, row0 + column, order)
+						.fma(scale0, DoubleVector.fromArray(DOUBLES, y, columnIndex))
+						.add(DoubleVector.fromByteBuffer(DOUBLES, a, row1 + column, order).mul(scale1))
+						.add(DoubleVector.fromByteBuffer(DOUBLES, a, row2 + column, order).fma(scale2,
+								DoubleVector.fromByteBuffer(DOUBLES, a, row3 + column, order).mul(scale3)))
+						.intoArray(y, columnIndex);
+			}
+			for (; columnIndex < toColumn; columnIndex++) {
+				int column = columnIndex * Double.BYTES;
+				y[columnIndex] += x0 * a.getDouble(row0 + column) + x1 * a.getDouble(row1 + column)
+						+ x2 * a.getDouble(row2 + column) + x3 * a.getDouble(row3 + column);
+			}
+		}
+		for (; rowIndex < rows; rowIndex++) {
+			int row = rowIndex * rowBytes;
+			double value = x[xOffset + rowIndex];
+			DoubleVector scale = DoubleVector.broadcast(DOUBLES, value);
+			int columnIndex = fromColumn;
+			for (; columnIndex < bound; columnIndex += DOUBLES.length()) {
+				DoubleVector.fromByteBuffer(DOUBLES, a, row + columnIndex * Double.BYTES, order)
+						.fma(scale, DoubleVector.fromArray(DOUBLES, y, columnIndex)).intoArray(y, columnIndex);
+			}
+			for (; columnIndex < toColumn; columnIndex++) {
+				y[columnIndex] += value * a.getDouble(row + columnIndex * Double.BYTES);
+			}
+		}
+	}
+
+	@Override
+	public void gemvTransposed(final int rows, final int columns, final byte[] a, final byte[] x, final int[] y,
+			final int fromRow, final int toRow) {
+		int bound = BYTES.loopBound(columns);
+		int partLength = INTS.length();
+		int rowIndex = fromRow;
+		for (; rowIndex + TILE <= toRow; rowIndex += TILE) {
+			int row0 = rowIndex * columns;
+			int row1 = row0 + columns;
+			int row2 = row1 + columns;
+			int row3 = row2 + columns;
+			int x0 = x[rowIndex];
+			int x1 = x[rowIndex + 1];
+			int x2 = x[rowIndex + 2];
+			int x3 = x[rowIndex + 3];
+			IntVector scale0 = IntVector.broadcast(INTS, x0);
+			IntVector scale1 = IntVector.broadcast(INTS, x1);
+			IntVector scale2 = IntVector.broadcast(INTS, x2);
+			IntVector scale3 = IntVector.broadcast(INTS, x3);
+			int columnIndex = 0;
+			for (; columnIndex < bound; columnIndex += BYTES.length()) {
+				ByteVector values0 = ByteVector.fromArray(BYTES, a, row0 + columnIndex);
+				ByteVector values1 = ByteVector.fromArray(BYTES, a, row1 + columnIndex);
+				ByteVector values2 = ByteVector.fromArray(BYTES, a, row2 + columnIndex);
+				ByteVector values3 = ByteVector.fromArray(BYTES, a, row3 + columnIndex);
+				for (int part = 0; part < PARTS; part++) {
+					int index = columnIndex + part * partLength;
+					IntVector.fromArray(INTS, y, index).add(widen(values0, part).mul(scale0))
+							.add(widen(values1, part).mul(scale1)).add(widen(values2, part).mul(scale2))
+							.add(widen(values3, part).mul(scale3)).intoArray(y, index);
+				}
+			}
+			for (; columnIndex < columns; columnIndex++) {
+				y[columnIndex] += x0 * a[row0 + columnIndex] + x1 * a[row1 + columnIndex]
+						+ x2 * a[row2 + columnIndex] + x3 * a[row3 + columnIndex];
+			}
+		}
+		for (; rowIndex < toRow; rowIndex++) {
+			int row = rowIndex * columns;
+			IntVector scale = IntVector.broadcast(INTS, x[rowIndex]);
+			int columnIndex = 0;
+			for (; columnIndex < bound; columnIndex += BYTES.length()) {
+				ByteVector values = ByteVector.fromArray(BYTES, a, row + columnIndex);
+				for (int part = 0; part < PARTS; part++) {
+					int index = columnIndex + part * partLength;
+					IntVector.fromArray(INTS, y, index).add(widen(values, part).mul(scale)).intoArray(y, index);
+				}
+			}
+			int value = x[rowIndex];
+			for (; columnIndex < columns; columnIndex++) {
+				y[columnIndex] += value * a[row + columnIndex];
+			}
+		}
+	}
+
+	@Override
+	public void sigmoid(final double[] values, final double[] result, final int length) {
+		int bound = DOUBLES.loopBound(length);
+		int index = 0;
+		for (; index < bound; index += DOUBLES.length()) {
+			sigmoid(DoubleVector.fromArray(DOUBLES, values, index)).intoArray(result, index);
+		}
+		for (; index < length; index++) {
+			result[index] = Utils.activationFunction(values[index]);
+		}
+	}
+
+	@Override
+	public double momentumUpdate(final double[] weights, final double[] previousDeltas, final int offset,
+			final double rate, final double[] directions, final int directionsOffset, final double momentum,
+			final int length) {
+		DoubleVector rates = DoubleVector.broadcast(DOUBLES, rate);
+		DoubleVector momentums = DoubleVector.broadcast(DOUBLES, momentum);
+		DoubleVector squaredNorms = DoubleVector.zero(DOUBLES);
+		int bound = DOUBLES.loopBound(length);
+		int index = 0;
+		for (; index < bound; index += DOUBLES.length()) {
+			DoubleVector delta = DoubleVector.fromArray(DOUBLES, directions, directionsOffset + index).mul(rates);
+			DoubleVector previous = DoubleVector.fromArray(DOUBLES, previousDeltas, offset + index);
+			DoubleVector step = previous.fma(momentums, delta);
+			DoubleVector.fromArray(DOUBLES, weights, offset + index).add(step).intoArray(weights, offset + index);
+			delta.intoArray(previousDeltas, offset + index);
+			squaredNorms = step.fma(step, squaredNorms);
+		}
+		return squaredNorms.reduceLanes(VectorOperators.ADD) + scalar.momentumUpdate(weights, previousDeltas,
+				offset + index, rate, directions, directionsOffset + index, momentum, length - index);
+	}
+
+	@Override
+	public double momentumUpdate(final float[] weights, final float[] previousDeltas, final int offset,
+			final double rate, final double[] directions, final int directionsOffset, final double momentum,
+			final int length) {
+		DoubleVector rates = DoubleVector.broadcast(DOUBLES, rate);
+		DoubleVector momentums = DoubleVector.broadcast(DOUBLES, momentum);
+		DoubleVector squaredNorms = DoubleVector.zero(DOUBLES);
+		int bound = DOUBLES.loopBound(length);
+		int index = 0;
+		for (; index < bound; index += DOUBLES.length()) {
+			DoubleVector delta = DoubleVector.fromArray(DOUBLES, directions, directionsOffset + index).mul(rates);
+			DoubleVector previous = widen(previousDeltas, offset + index);
+			DoubleVector step = previous.fma(momentums, delta);
+			narrow(widen(weights, offset + index).add(step)).intoArray(weights, offset + index);
+			narrow(delta).intoArray(previousDeltas, offset + index);
+			squaredNorms = step.fma(step, squaredNorms);
+		}
+		return squaredNorms.reduceLanes(VectorOperators.ADD) + scalar.momentumUpdate(weights, previousDeltas,
+				offset + index, rate, directions, directionsOffset + index, momentum, length - index);
+	}
+
+	/**
+	 * Load single precision values and widen them to double precision lanes
+	 * 
+	 * @param values
+	 *            array containing the values
+	 * @param index
+	 *            index of the first value
+	 * @return the widened values
+	 */
+	private static DoubleVector widen(final float[] values, final int index) {
+		return (DoubleVector) FloatVector.fromArray(FLOATS, values, index).convertShape(VectorOperators.F2D,
+				DOUBLES, 0);
+	}
+
+	/**
+	 * Widen a part of the lanes of 8 bits values to 32 bits lanes
+	 * 
+	 * @param values
+	 *            the 8 bits values
+	 * @param part
+	 *            index of the part, lower than {@link #PARTS}
+	 * @return the widened values
+	 */
+	private static IntVector widen(final ByteVector values, final int part) {
+		return (IntVector) values.convertShape(VectorOperators.B2I, INTS, part);
+	}
+
+	/**
+	 * Round double precision lanes to single precision
+	 * 
+	 * @param values
+	 *            values to round
+	 * @return the rounded values
+	 */
+	private static FloatVector narrow(final DoubleVector values) {
+		return (FloatVector) values.convertShape(VectorOperators.D2F, FLOATS, 0);
+	}
+
+	/**
+	 * Sigmoid function applied to every lane
+	 * 
+	 * @param values
+	 *            values given to the function
+	 * @return computed values
+	 */
+	private static DoubleVector sigmoid(final DoubleVector values) {
+		return DoubleVector.broadcast(DOUBLES, 1).div(values.neg().lanewise(VectorOperators.EXP).add(1));
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.rebe.neuralNetwork.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event of a forward or backward pass of a connection layer
+ * that lasted more than the stall threshold of the {@link TrainingMetrics}
+ *
+ * @author Mattia Rebesan
+ *
+ */
+@Name("com.rebe.neuralNetwork.ConnectionLayerStall")
+@Label("Connection Layer Stall")
+@Category({ "Neural Network", "Training" })
+@Description("Forward or backward pass of a connection layer slower than the stall threshold")
+class ConnectionLayerEvent extends jdk.jfr.Event {
+
+	/**
+	 * Index of the connection layer, from the input to the output layer
+	 */
+	@Label("Connection Layer")
+	@Description("Index of the connection layer, from the input to the output layer")
+	int connectionLayer;
+
+	/**
+	 * Indicates if the pass is the backward one, with the weights update
+	 */
+	@Label("Backward")
+	@Description("True for the backward pass and the weights update, false for the forward pass")
+	boolean backward;
+
+	/**
+	 * Count of the samples of the pass
+	 */
+	@Label("Samples")
+	@Description("Count of the samples of the pass")
+	int samplesCount;
+
+	/**
+	 * Duration of the pass, in nanoseconds
+	 */
+	@Label("Pass Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long passDuration;
+
+}
@@ -0,0 +1,44 @@
+package com.rebe.neuralNetwork.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of a training step, a single sample or a batch
+ *
+ * @author Mattia Rebesan
+ *
+ */
+@Name("com.rebe.neuralNetwork.TrainingCycle")
+@Label("Training Cycle")
+@Category({ "Neural Network", "Training" })
+@Description("Training step of a single sample or of a batch")
+class TrainingCycleEvent extends jdk.jfr.Event {
+
+	/**
+	 * Count of the samples of the step
+	 */
+	@Label("Samples")
+	@Description("Count of the samples of the step")
+	int samplesCount;
+
+	/**
+	 * Bytes allocated by the training thread during the step, -1 if not
+	 * measured
+	 */
+	@Label("Allocated")
+	@Description("Bytes allocated by the training thread during the step, -1 if not measured")
+	@DataAmount
+	long allocatedBytes;
+
+	/**
+	 * Error coefficient of the network after the step
+	 */
+	@Label("Error Coefficient")
+	@Description("Error coefficient of the network after the step")
+	double errorCoefficient;
+
+}
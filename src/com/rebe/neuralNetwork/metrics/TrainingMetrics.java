@@ -0,0 +1,332 @@
+package com.rebe.neuralNetwork.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Training metrics of a network, disabled by default and toggled at runtime.
+ * While disabled the network only reads a volatile flag per pass, while enabled
+ * it records per connection layer the nanoseconds of the forward and backward
+ * passes and the norm of the weights updates, and per training step the count
+ * of samples and the bytes allocated by the training thread.
+ * <p>
+ * The metrics are exposed through JMX, see {@link #register(String)}, and as
+ * Flight Recorder events: a {@code com.rebe.neuralNetwork.TrainingCycle} event
+ * for each training step and a {@code com.rebe.neuralNetwork.ConnectionLayerStall}
+ * event for each pass slower than the stall threshold. Every method can be
+ * called concurrently, so the shards of a {@code ParallelTrainer} record in the
+ * same metrics
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public class TrainingMetrics implements TrainingMetricsMBean {
+
+	/**
+	 * Domain of the JMX names
+	 */
+	private static final String DOMAIN = "com.rebe.neuralNetwork";
+
+	/**
+	 * Default stall threshold, 1 ms
+	 */
+	private static final long DEFAULT_STALL_THRESHOLD_NANOS = 1_000_000;
+
+	/**
+	 * Thread bean able to measure the allocated bytes, null if the JVM does not
+	 * support it
+	 */
+	private static final com.sun.management.ThreadMXBean THREADS = allocationsBean();
+
+	/**
+	 * Indicates if the metrics are recorded
+	 */
+	private volatile boolean enabled;
+
+	/**
+	 * Minimum duration of a pass recorded as a stall event
+	 */
+	private volatile long stallThresholdNanos = DEFAULT_STALL_THRESHOLD_NANOS;
+
+	/**
+	 * Nanoseconds of the forward passes of each connection layer
+	 */
+	private final AtomicLongArray forwardNanos;
+
+	/**
+	 * Nanoseconds of the backward passes of each connection layer
+	 */
+	private final AtomicLongArray backwardNanos;
+
+	/**
+	 * Bits of the last weights update norm of each connection layer
+	 */
+	private final AtomicLongArray weightsUpdateNorms;
+
+	/**
+	 * Count of the trained samples
+	 */
+	private final LongAdder samplesCount = new LongAdder();
+
+	/**
+	 * Bytes allocated by the training steps whose allocations were measured
+	 */
+	private final LongAdder allocatedBytes = new LongAdder();
+
+	/**
+	 * Count of the samples of the training steps whose allocations were measured
+	 */
+	private final LongAdder allocationSamplesCount = new LongAdder();
+
+	/**
+	 * Nanoseconds spent enabled before the last time the metrics were enabled
+	 */
+	private long enabledNanos;
+
+	/**
+	 * Time of the last enabling
+	 */
+	private long enabledSince;
+
+	/**
+	 * Constructor that build disabled metrics
+	 *
+	 * @param connectionLayersCount
+	 *            count of the connection layers of the network
+	 */
+	public TrainingMetrics(final int connectionLayersCount) {
+		this.forwardNanos = new AtomicLongArray(connectionLayersCount);
+		this.backwardNanos = new AtomicLongArray(connectionLayersCount);
+		this.weightsUpdateNorms = new AtomicLongArray(connectionLayersCount);
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public synchronized void setEnabled(final boolean enabled) {
+		if (enabled && !this.enabled) {
+			enabledSince = System.nanoTime();
+		} else if (!enabled && this.enabled) {
+			enabledNanos += System.nanoTime() - enabledSince;
+		}
+		this.enabled = enabled;
+	}
+
+	@Override
+	public synchronized void reset() {
+		for (int index = 0; index < forwardNanos.length(); index++) {
+			forwardNanos.set(index, 0);
+			backwardNanos.set(index, 0);
+			weightsUpdateNorms.set(index, 0);
+		}
+		samplesCount.reset();
+		allocatedBytes.reset();
+		allocationSamplesCount.reset();
+		enabledNanos = 0;
+		enabledSince = System.nanoTime();
+	}
+
+	/**
+	 * Return the minimum duration of a pass recorded as a stall event
+	 *
+	 * @return the stall threshold in nanoseconds
+	 */
+	public long getStallThresholdNanos() {
+		return stallThresholdNanos;
+	}
+
+	/**
+	 * Set the minimum duration of a pass recorded as a stall event, 1 ms by
+	 * default
+	 *
+	 * @param stallThresholdNanos
+	 *            the stall threshold in nanoseconds
+	 */
+	public void setStallThresholdNanos(final long stallThresholdNanos) {
+		this.stallThresholdNanos = stallThresholdNanos;
+	}
+
+	@Override
+	public long getSamplesCount() {
+		return samplesCount.sum();
+	}
+
+	@Override
+	public synchronized double getSamplesPerSecond() {
+		long nanos = enabledNanos + (enabled ? System.nanoTime() - enabledSince : 0);
+		return nanos > 0 ? samplesCount.sum() * 1e9 / nanos : 0;
+	}
+
+	@Override
+	public double getAllocatedBytesPerCycle() {
+		long samples = allocationSamplesCount.sum();
+		return THREADS == null ? -1 : samples > 0 ? (double) allocatedBytes.sum() / samples : 0;
+	}
+
+	@Override
+	public long[] getForwardNanos() {
+		return toArray(forwardNanos);
+	}
+
+	@Override
+	public long[] getBackwardNanos() {
+		return toArray(backwardNanos);
+	}
+
+	@Override
+	public double[] getWeightsUpdateNorms() {
+		double[] norms = new double[weightsUpdateNorms.length()];
+		for (int index = 0; index < norms.length; index++) {
+			norms[index] = Double.longBitsToDouble(weightsUpdateNorms.get(index));
+		}
+		return norms;
+	}
+
+	@Override
+	public int getSlowestConnectionLayer() {
+		int slowest = 0;
+		long slowestNanos = -1;
+		for (int index = 0; index < forwardNanos.length(); index++) {
+			long nanos = forwardNanos.get(index) + backwardNanos.get(index);
+			if (nanos > slowestNanos) {
+				slowest = index;
+				slowestNanos = nanos;
+			}
+		}
+		return slowest;
+	}
+
+	/**
+	 * Record a forward or backward pass of a connection layer
+	 *
+	 * @param connectionLayer
+	 *            index of the connection layer
+	 * @param backward
+	 *            true for the backward pass and the weights update, false for the
+	 *            forward pass
+	 * @param passSamplesCount
+	 *            count of the samples of the pass
+	 * @param nanos
+	 *            duration of the pass
+	 */
+	public void recordPass(final int connectionLayer, final boolean backward, final int passSamplesCount,
+			final long nanos) {
+		(backward ? backwardNanos : forwardNanos).addAndGet(connectionLayer, nanos);
+
+		if (nanos >= stallThresholdNanos) {
+			ConnectionLayerEvent event = new ConnectionLayerEvent();
+			if (event.isEnabled()) {
+				event.connectionLayer = connectionLayer;
+				event.backward = backward;
+				event.samplesCount = passSamplesCount;
+				event.passDuration = nanos;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Record the norm of the last weights update of a connection layer
+	 *
+	 * @param connectionLayer
+	 *            index of the connection layer
+	 * @param norm
+	 *            euclidean norm of the update
+	 */
+	public void recordWeightsUpdate(final int connectionLayer, final double norm) {
+		weightsUpdateNorms.set(connectionLayer, Double.doubleToRawLongBits(norm));
+	}
+
+	/**
+	 * Record a training step
+	 *
+	 * @param stepSamplesCount
+	 *            count of the samples of the step
+	 * @param stepAllocatedBytes
+	 *            bytes allocated by the training thread during the step, -1 if
+	 *            not measured
+	 * @param errorCoefficient
+	 *            error coefficient of the network after the step
+	 */
+	public void recordCycle(final int stepSamplesCount, final long stepAllocatedBytes,
+			final double errorCoefficient) {
+		samplesCount.add(stepSamplesCount);
+		if (stepAllocatedBytes >= 0) {
+			allocatedBytes.add(stepAllocatedBytes);
+			allocationSamplesCount.add(stepSamplesCount);
+		}
+
+		TrainingCycleEvent event = new TrainingCycleEvent();
+		if (event.isEnabled()) {
+			event.samplesCount = stepSamplesCount;
+			event.allocatedBytes = stepAllocatedBytes;
+			event.errorCoefficient = errorCoefficient;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Return the count of bytes allocated so far by the calling thread, to be
+	 * subtracted from a later value
+	 *
+	 * @return the allocated bytes, -1 if the JVM can not measure them
+	 */
+	public static long allocatedBytes() {
+		return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Register the metrics in the platform MBean server, with the name
+	 * {@code com.rebe.neuralNetwork:type=TrainingMetrics,name=<name>}
+	 *
+	 * @param name
+	 *            name of the network
+	 * @return the name of the registered MBean, used to unregister it
+	 * @throws JMException
+	 *             Thrown if the name is not valid or already registered
+	 */
+	public ObjectName register(final String name) throws JMException {
+		ObjectName objectName = new ObjectName(DOMAIN + ":type=TrainingMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/**
+	 * Copy the values of an atomic array
+	 *
+	 * @param array
+	 *            the atomic array
+	 * @return the copied values
+	 */
+	private static long[] toArray(final AtomicLongArray array) {
+		long[] values = new long[array.length()];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = array.get(index);
+		}
+		return values;
+	}
+
+	/**
+	 * Return the thread bean if it can measure the allocated bytes
+	 *
+	 * @return the thread bean, null if allocations can not be measured
+	 */
+	private static com.sun.management.ThreadMXBean allocationsBean() {
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+					.getThreadMXBean();
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+				return threads;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.rebe.neuralNetwork.metrics;
+
+/**
+ * Management interface of the {@link TrainingMetrics}, exposed through JMX.
+ * Every array attribute holds a value per connection layer, from the input to
+ * the output layer
+ *
+ * @author Mattia Rebesan
+ *
+ */
+public interface TrainingMetricsMBean {
+
+	/**
+	 * Indicates if the metrics are recorded
+	 *
+	 * @return true if the metrics are recorded, false otherwise
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Start or stop recording the metrics
+	 *
+	 * @param enabled
+	 *            true to record the metrics, false to stop
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Clear every recorded value
+	 */
+	void reset();
+
+	/**
+	 * Return the count of the samples trained while recording
+	 *
+	 * @return the samples count
+	 */
+	long getSamplesCount();
+
+	/**
+	 * Return the mean count of samples trained per second, since the metrics
+	 * were enabled or reset
+	 *
+	 * @return the samples per second
+	 */
+	double getSamplesPerSecond();
+
+	/**
+	 * Return the mean count of bytes allocated by the training thread per
+	 * training cycle, or -1 if the JVM can not measure it
+	 *
+	 * @return the bytes allocated per cycle
+	 */
+	double getAllocatedBytesPerCycle();
+
+	/**
+	 * Return the nanoseconds spent in the forward pass of each connection layer
+	 *
+	 * @return the forward nanoseconds
+	 */
+	long[] getForwardNanos();
+
+	/**
+	 * Return the nanoseconds spent in the backward pass and in the weights update
+	 * of each connection layer
+	 *
+	 * @return the backward nanoseconds
+	 */
+	long[] getBackwardNanos();
+
+	/**
+	 * Return the euclidean norm of the steps of the last weights update of each
+	 * connection layer, measured by its optimizer
+	 *
+	 * @return the weights update norms
+	 */
+	double[] getWeightsUpdateNorms();
+
+	/**
+	 * Return the index of the connection layer that spent the most time in the
+	 * forward and backward passes
+	 *
+	 * @return the connection layer index
+	 */
+	int getSlowestConnectionLayer();
+
+}
@@ -0,0 +1,184 @@
+package com.rebe.neuralNetwork.optimizers;
+
+import com.rebe.neuralNetwork.exceptions.LearningRateOutOfRangeException;
+import com.rebe.neuralNetwork.exceptions.MomentumOutOfRangeException;
+
+/**
+ * Adam, which keeps moving averages of the gradients and of the squared
+ * gradients, corrected for their zero initialization: the parameter is
+ * increased by learningRate * m / (1 - beta1^step) / (sqrt(v / (1 -
+ * beta2^step)) + epsilon)
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class Adam implements Optimizer {
+
+	/**
+	 * Value used to control the network learning speed
+	 */
+	private final double learningRate;
+
+	/**
+	 * Decay of the moving average of the gradients
+	 */
+	private final double beta1;
+
+	/**
+	 * Decay of the moving average of the squared gradients
+	 */
+	private final double beta2;
+
+	/**
+	 * Value added to the root of the squared gradients average, to avoid
+	 * divisions by zero
+	 */
+	private final double epsilon;
+
+	/**
+	 * Constructor that build the optimizer with the usual decays of 0.9 and
+	 * 0.999 and an epsilon of 1e-8
+	 * 
+	 * @param learningRate
+	 *            value used to control the network learning speed, in ]0, 1],
+	 *            usually 0.001
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown if the learning rate is out of range
+	 */
+	public Adam(final double learningRate) throws LearningRateOutOfRangeException {
+		this.learningRate = checkLearningRate(learningRate);
+		this.beta1 = 0.9;
+		this.beta2 = 0.999;
+		this.epsilon = 1e-8;
+	}
+
+	/**
+	 * Constructor that build the optimizer
+	 * 
+	 * @param learningRate
+	 *            value used to control the network learning speed, in ]0, 1]
+	 * @param beta1
+	 *            decay of the moving average of the gradients, in [0, 1[
+	 * @param beta2
+	 *            decay of the moving average of the squared gradients, in [0,
+	 *            1[
+	 * @param epsilon
+	 *            value added to the root of the squared gradients average
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown if the learning rate is out of range
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown if a decay is out of range
+	 */
+	public Adam(final double learningRate, final double beta1, final double beta2, final double epsilon)
+			throws LearningRateOutOfRangeException, MomentumOutOfRangeException {
+		if (beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1) {
+			throw new MomentumOutOfRangeException();
+		}
+		this.learningRate = checkLearningRate(learningRate);
+		this.beta1 = beta1;
+		this.beta2 = beta2;
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * Check that the learning rate is in range
+	 * 
+	 * @param learningRate
+	 *            the learning rate
+	 * @return the learning rate
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown if the learning rate is out of range
+	 */
+	private static double checkLearningRate(final double learningRate) throws LearningRateOutOfRangeException {
+		if (learningRate <= 0 || learningRate > 1) {
+			throw new LearningRateOutOfRangeException();
+		}
+		return learningRate;
+	}
+
+	@Override
+	public int stateSize() {
+		return 2;
+	}
+
+	@Override
+	public double[] hyperParameters() {
+		return new double[] { learningRate, beta1, beta2, epsilon };
+	}
+
+	@Override
+	public double update(final double[] parameters, final double[][] state, final int offset,
+			final double[] directions, final int directionsOffset, final double scale, final long step,
+			final int length) {
+		double[] means = state[0];
+		double[] squaredMeans = state[1];
+		double rate = learningRate / (1 - Math.pow(beta1, step));
+		double squaredCorrection = 1 / (1 - Math.pow(beta2, step));
+		double squaredNorm = 0;
+		double direction;
+		double applied;
+		for (int index = 0; index < length; index++) {
+			direction = scale * directions[directionsOffset + index];
+			means[offset + index] = beta1 * means[offset + index] + (1 - beta1) * direction;
+			squaredMeans[offset + index] = beta2 * squaredMeans[offset + index] + (1 - beta2) * direction * direction;
+			applied = rate * means[offset + index]
+					/ (Math.sqrt(squaredMeans[offset + index] * squaredCorrection) + epsilon);
+			parameters[offset + index] += applied;
+			squaredNorm += applied * applied;
+		}
+		return squaredNorm;
+	}
+
+	@Override
+	public double update(final float[] parameters, final float[][] state, final int offset, final double[] directions,
+			final int directionsOffset, final double scale, final long step, final int length) {
+		float[] means = state[0];
+		float[] squaredMeans = state[1];
+		double rate = learningRate / (1 - Math.pow(beta1, step));
+		double squaredCorrection = 1 / (1 - Math.pow(beta2, step));
+		double squaredNorm = 0;
+		double direction;
+		double mean;
+		double squaredMean;
+		double applied;
+		for (int index = 0; index < length; index++) {
+			direction = scale * directions[directionsOffset + index];
+			mean = beta1 * means[offset + index] + (1 - beta1) * direction;
+			squaredMean = beta2 * squaredMeans[offset + index] + (1 - beta2) * direction * direction;
+			means[offset + index] = (float) mean;
+			squaredMeans[offset + index] = (float) squaredMean;
+			applied = rate * mean / (Math.sqrt(squaredMean * squaredCorrection) + epsilon);
+			parameters[offset + index] = (float) (parameters[offset + index] + applied);
+			squaredNorm += applied * applied;
+		}
+		return squaredNorm;
+	}
+
+	/**
+	 * Return the learning rate
+	 * 
+	 * @return the learning rate
+	 */
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	/**
+	 * Return the decay of the moving average of the gradients
+	 * 
+	 * @return the first decay
+	 */
+	public double getBeta1() {
+		return beta1;
+	}
+
+	/**
+	 * Return the decay of the moving average of the squared gradients
+	 * 
+	 * @return the second decay
+	 */
+	public double getBeta2() {
+		return beta2;
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.rebe.neuralNetwork.optimizers;
+
+import com.rebe.neuralNetwork.exceptions.LearningRateOutOfRangeException;
+import com.rebe.neuralNetwork.exceptions.MomentumOutOfRangeException;
+
+/**
+ * Stochastic gradient descent with Nesterov momentum, in the form that needs
+ * only the gradient at the current parameters: the velocity becomes momentum *
+ * velocity + learningRate * direction and the parameter is increased by
+ * momentum * velocity + learningRate * direction
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class Nesterov implements Optimizer {
+
+	/**
+	 * Value used to control the network learning speed
+	 */
+	private final double learningRate;
+
+	/**
+	 * Scale of the velocity
+	 */
+	private final double momentum;
+
+	/**
+	 * Constructor that build the optimizer
+	 * 
+	 * @param learningRate
+	 *            value used to control the network learning speed, in ]0, 1]
+	 * @param momentum
+	 *            scale of the velocity, in [0, 1[
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown if the learning rate is out of range
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown if the momentum is out of range
+	 */
+	public Nesterov(final double learningRate, final double momentum)
+			throws LearningRateOutOfRangeException, MomentumOutOfRangeException {
+		if (learningRate <= 0 || learningRate > 1) {
+			throw new LearningRateOutOfRangeException();
+		}
+		if (momentum < 0 || momentum >= 1) {
+			throw new MomentumOutOfRangeException();
+		}
+		this.learningRate = learningRate;
+		this.momentum = momentum;
+	}
+
+	@Override
+	public int stateSize() {
+		return 1;
+	}
+
+	@Override
+	public double[] hyperParameters() {
+		return new double[] { learningRate, momentum };
+	}
+
+	@Override
+	public double update(final double[] parameters, final double[][] state, final int offset,
+			final double[] directions, final int directionsOffset, final double scale, final long step,
+			final int length) {
+		double[] velocities = state[0];
+		double rate = learningRate * scale;
+		double squaredNorm = 0;
+		double delta;
+		double applied;
+		for (int index = 0; index < length; index++) {
+			delta = rate * directions[directionsOffset + index];
+			velocities[offset + index] = momentum * velocities[offset + index] + delta;
+			applied = momentum * velocities[offset + index] + delta;
+			parameters[offset + index] += applied;
+			squaredNorm += applied * applied;
+		}
+		return squaredNorm;
+	}
+
+	@Override
+	public double update(final float[] parameters, final float[][] state, final int offset, final double[] directions,
+			final int directionsOffset, final double scale, final long step, final int length) {
+		float[] velocities = state[0];
+		double rate = learningRate * scale;
+		double squaredNorm = 0;
+		double delta;
+		double velocity;
+		double applied;
+		for (int index = 0; index < length; index++) {
+			delta = rate * directions[directionsOffset + index];
+			velocity = momentum * velocities[offset + index] + delta;
+			velocities[offset + index] = (float) velocity;
+			parameters[offset + index] = (float) (parameters[offset + index] + momentum * velocity + delta);
+			applied = momentum * velocity + delta;
+			squaredNorm += applied * applied;
+		}
+		return squaredNorm;
+	}
+
+	/**
+	 * Return the learning rate
+	 * 
+	 * @return the learning rate
+	 */
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	/**
+	 * Return the momentum
+	 * 
+	 * @return the momentum
+	 */
+	public double getMomentum() {
+		return momentum;
+	}
+
+}
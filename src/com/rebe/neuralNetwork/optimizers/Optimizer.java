@@ -0,0 +1,93 @@
+package com.rebe.neuralNetwork.optimizers;
+
+/**
+ * Update rule of the weights and biases of a connection layer. An optimizer
+ * only holds its hyper-parameters, so one instance can be shared by every
+ * connection layer: each connection layer owns the state arrays of its weights
+ * and of its biases, {@link #stateSize()} arrays with the same length and
+ * layout of the updated parameters.
+ * <p>
+ * The updates receive the descent directions, the negated gradients, scaled by
+ * a factor: the left neuron value for a row of weights of a single sample, or
+ * the inverse of the samples count for the accumulated gradients of a batch.
+ * Each implementation updates its state and the parameters in a single pass,
+ * and returns the squared euclidean norm of the steps it added to the
+ * parameters, which the training metrics report
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public interface Optimizer {
+
+	/**
+	 * Return the count of the state arrays of the updated parameters
+	 * 
+	 * @return the state size
+	 */
+	int stateSize();
+
+	/**
+	 * Return the hyper-parameters of the update rule, recorded by the
+	 * checkpoints so that the state of an optimizer is never restored in
+	 * another one. None by default
+	 * 
+	 * @return the hyper-parameters, in a fixed order
+	 */
+	default double[] hyperParameters() {
+		return new double[0];
+	}
+
+	/**
+	 * Update a slice of parameters in place
+	 * 
+	 * @param parameters
+	 *            array containing the parameters slice
+	 * @param state
+	 *            state arrays of the parameters, same layout of the parameters
+	 * @param offset
+	 *            index of the first parameter of the slice, in the parameters
+	 *            and in the state arrays
+	 * @param directions
+	 *            array containing the descent directions
+	 * @param directionsOffset
+	 *            index of the first direction
+	 * @param scale
+	 *            scale of the directions
+	 * @param step
+	 *            count of the updates of the parameters, this one included
+	 * @param length
+	 *            count of the parameters of the slice
+	 * @return the squared euclidean norm of the steps added to the parameters
+	 */
+	double update(double[] parameters, double[][] state, int offset, double[] directions, int directionsOffset,
+			double scale, long step, int length);
+
+	/**
+	 * Update a slice of single precision parameters in place, following the rule
+	 * of {@link #update(double[], double[][], int, double[], int, double, long, int)}.
+	 * The update is computed in double precision and rounded when stored
+	 * 
+	 * @param parameters
+	 *            array containing the parameters slice
+	 * @param state
+	 *            state arrays of the parameters, same layout of the parameters
+	 * @param offset
+	 *            index of the first parameter of the slice, in the parameters
+	 *            and in the state arrays
+	 * @param directions
+	 *            array containing the descent directions
+	 * @param directionsOffset
+	 *            index of the first direction
+	 * @param scale
+	 *            scale of the directions
+	 * @param step
+	 *            count of the updates of the parameters, this one included
+	 * @param length
+	 *            count of the parameters of the slice
+	 * @return the squared euclidean norm of the steps added to the parameters,
+	 *         before their rounding
+	 */
+	double update(float[] parameters, float[][] state, int offset, double[] directions, int directionsOffset,
+			double scale, long step, int length);
+
+}
@@ -0,0 +1,152 @@
+package com.rebe.neuralNetwork.optimizers;
+
+import com.rebe.neuralNetwork.exceptions.LearningRateOutOfRangeException;
+import com.rebe.neuralNetwork.exceptions.MomentumOutOfRangeException;
+
+/**
+ * RMSProp, which divides each step by the root of a moving average of the
+ * squared gradients: the mean square becomes decay * meanSquare + (1 - decay) *
+ * direction^2 and the parameter is increased by learningRate * direction /
+ * (sqrt(meanSquare) + epsilon)
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class RmsProp implements Optimizer {
+
+	/**
+	 * Value used to control the network learning speed
+	 */
+	private final double learningRate;
+
+	/**
+	 * Decay of the moving average of the squared gradients
+	 */
+	private final double decay;
+
+	/**
+	 * Value added to the root mean square, to avoid divisions by zero
+	 */
+	private final double epsilon;
+
+	/**
+	 * Constructor that build the optimizer with a decay of 0.9 and an epsilon of
+	 * 1e-8
+	 * 
+	 * @param learningRate
+	 *            value used to control the network learning speed, in ]0, 1]
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown if the learning rate is out of range
+	 */
+	public RmsProp(final double learningRate) throws LearningRateOutOfRangeException {
+		this.learningRate = checkLearningRate(learningRate);
+		this.decay = 0.9;
+		this.epsilon = 1e-8;
+	}
+
+	/**
+	 * Constructor that build the optimizer
+	 * 
+	 * @param learningRate
+	 *            value used to control the network learning speed, in ]0, 1]
+	 * @param decay
+	 *            decay of the moving average of the squared gradients, in [0, 1[
+	 * @param epsilon
+	 *            value added to the root mean square
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown if the learning rate is out of range
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown if the decay is out of range
+	 */
+	public RmsProp(final double learningRate, final double decay, final double epsilon)
+			throws LearningRateOutOfRangeException, MomentumOutOfRangeException {
+		if (decay < 0 || decay >= 1) {
+			throw new MomentumOutOfRangeException();
+		}
+		this.learningRate = checkLearningRate(learningRate);
+		this.decay = decay;
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * Check that the learning rate is in range
+	 * 
+	 * @param learningRate
+	 *            the learning rate
+	 * @return the learning rate
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown if the learning rate is out of range
+	 */
+	private static double checkLearningRate(final double learningRate) throws LearningRateOutOfRangeException {
+		if (learningRate <= 0 || learningRate > 1) {
+			throw new LearningRateOutOfRangeException();
+		}
+		return learningRate;
+	}
+
+	@Override
+	public int stateSize() {
+		return 1;
+	}
+
+	@Override
+	public double[] hyperParameters() {
+		return new double[] { learningRate, decay, epsilon };
+	}
+
+	@Override
+	public double update(final double[] parameters, final double[][] state, final int offset,
+			final double[] directions, final int directionsOffset, final double scale, final long step,
+			final int length) {
+		double[] meanSquares = state[0];
+		double squaredNorm = 0;
+		double direction;
+		double applied;
+		for (int index = 0; index < length; index++) {
+			direction = scale * directions[directionsOffset + index];
+			meanSquares[offset + index] = decay * meanSquares[offset + index] + (1 - decay) * direction * direction;
+			applied = learningRate * direction / (Math.sqrt(meanSquares[offset + index]) + epsilon);
+			parameters[offset + index] += applied;
+			squaredNorm += applied * applied;
+		}
+		return squaredNorm;
+	}
+
+	@Override
+	public double update(final float[] parameters, final float[][] state, final int offset, final double[] directions,
+			final int directionsOffset, final double scale, final long step, final int length) {
+		float[] meanSquares = state[0];
+		double squaredNorm = 0;
+		double direction;
+		double meanSquare;
+		double applied;
+		for (int index = 0; index < length; index++) {
+			direction = scale * directions[directionsOffset + index];
+			meanSquare = decay * meanSquares[offset + index] + (1 - decay) * direction * direction;
+			meanSquares[offset + index] = (float) meanSquare;
+			applied = learningRate * direction / (Math.sqrt(meanSquare) + epsilon);
+			parameters[offset + index] = (float) (parameters[offset + index] + applied);
+			squaredNorm += applied * applied;
+		}
+		return squaredNorm;
+	}
+
+	/**
+	 * Return the learning rate
+	 * 
+	 * @return the learning rate
+	 */
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	/**
+	 * Return the decay of the moving average of the squared gradients
+	 * 
+	 * @return the decay
+	 */
+	public double getDecay() {
+		return decay;
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.rebe.neuralNetwork.optimizers;
+
+import com.rebe.neuralNetwork.exceptions.LearningRateOutOfRangeException;
+import com.rebe.neuralNetwork.exceptions.MomentumOutOfRangeException;
+import com.rebe.neuralNetwork.math.Backends;
+import com.rebe.neuralNetwork.math.Kernels;
+
+/**
+ * Stochastic gradient descent with classical momentum, the default update rule
+ * of the network. The delta of each parameter is learningRate * direction, the
+ * parameter is increased by the delta plus momentum times the previous delta,
+ * the only state
+ * 
+ * @author Mattia Rebesan
+ *
+ */
+public class Sgd implements Optimizer {
+
+	/**
+	 * Value used to control the network learning speed
+	 */
+	private final double learningRate;
+
+	/**
+	 * Scale of the previous delta
+	 */
+	private final double momentum;
+
+	/**
+	 * Kernels used for the update
+	 */
+	private final Kernels kernels = Backends.kernels();
+
+	/**
+	 * Constructor that build the optimizer
+	 * 
+	 * @param learningRate
+	 *            value used to control the network learning speed, in ]0, 1]
+	 * @param momentum
+	 *            scale of the previous delta, in [0, 1[
+	 * @throws LearningRateOutOfRangeException
+	 *             Thrown if the learning rate is out of range
+	 * @throws MomentumOutOfRangeException
+	 *             Thrown if the momentum is out of range
+	 */
+	public Sgd(final double learningRate, final double momentum)
+			throws LearningRateOutOfRangeException, MomentumOutOfRangeException {
+		if (learningRate <= 0 || learningRate > 1) {
+			throw new LearningRateOutOfRangeException();
+		}
+		if (momentum < 0 || momentum >= 1) {
+			throw new MomentumOutOfRangeException();
+		}
+		this.learningRate = learningRate;
+		this.momentum = momentum;
+	}
+
+	@Override
+	public int stateSize() {
+		return 1;
+	}
+
+	@Override
+	public double[] hyperParameters() {
+		return new double[] { learningRate, momentum };
+	}
+
+	@Override
+	public double update(final double[] parameters, final double[][] state, final int offset,
+			final double[] directions, final int directionsOffset, final double scale, final long step,
+			final int length) {
+		return kernels.momentumUpdate(parameters, state[0], offset, learningRate * scale, directions, directionsOffset,
+				momentum, length);
+	}
+
+	@Override
+	public double update(final float[] parameters, final float[][] state, final int offset, final double[] directions,
+			final int directionsOffset, final double scale, final long step, final int length) {
+		return kernels.momentumUpdate(parameters, state[0], offset, learningRate * scale, directions, directionsOffset,
+				momentum, length);
+	}
+
+	/**
+	 * Return the learning rate
+	 * 
+	 * @return the learning rate
+	 */
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	/**
+	 * Return the momentum
+	 * 
+	 * @return the momentum
+	 */
+	public double getMomentum() {
+		return momentum;
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.rebe.neuralNetwork.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue for a single producer thread and a single consumer thread.
+ * The elements are stored in a ring buffer and each side owns one counter,
+ * published with an ordered store, so neither side takes a lock or writes a
+ * field written by the other one.
+ * <p>
+ * The blocking methods never wait for a signal: they spin for a short while,
+ * then yield, then park for a time that doubles at every attempt, from a few
+ * microseconds up to a millisecond. A stage that is kept busy by a stream of
+ * elements hands them over without ever sleeping, while an idle one wakes up
+ * about a thousand times a second
+ *
+ * @author Mattia Rebesan
+ *
+ * @param <E>
+ *            type of the elements
+ */
+public class SpscQueue<E> {
+
+	/**
+	 * Count of the spins before a waiting thread starts yielding
+	 */
+	private static final int SPINS = 100;
+
+	/**
+	 * Count of the yields before a waiting thread starts parking
+	 */
+	private static final int YIELDS = 100;
+
+	/**
+	 * Nanoseconds of the first park of a waiting thread
+	 */
+	private static final long MIN_PARK_NANOS = 20_000;
+
+	/**
+	 * Nanoseconds of the longest park of a waiting thread
+	 */
+	private static final long MAX_PARK_NANOS = 1_000_000;
+
+	/**
+	 * Ring buffer of the elements, its length a power of two
+	 */
+	private final Object[] elements;
+
+	/**
+	 * Mask turning a counter into a ring buffer index
+	 */
+	private final int mask;
+
+	/**
+	 * Count of the elements taken, written by the consumer only
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * Count of the elements added, written by the producer only
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Constructor that build an empty queue
+	 *
+	 * @param capacity
+	 *            the max count of queued elements, rounded up to a power of two
+	 */
+	public SpscQueue(final int capacity) {
+		int length = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.elements = new Object[length];
+		this.mask = length - 1;
+	}
+
+	/**
+	 * Add an element if the queue is not full. Called by the producer only
+	 *
+	 * @param element
+	 *            the element, not null
+	 * @return true if the element was added
+	 */
+	public boolean offer(final E element) {
+		long position = tail.get();
+		if (position - head.get() == elements.length) {
+			return false;
+		}
+		elements[(int) position & mask] = element;
+		tail.lazySet(position + 1);
+		return true;
+	}
+
+	/**
+	 * Take the oldest element if the queue is not empty. Called by the consumer
+	 * only
+	 *
+	 * @return the element, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long position = head.get();
+		if (position == tail.get()) {
+			return null;
+		}
+		int index = (int) position & mask;
+		E element = (E) elements[index];
+		elements[index] = null;
+		head.lazySet(position + 1);
+		return element;
+	}
+
+	/**
+	 * Add an element, waiting while the queue is full. Called by the producer
+	 * only
+	 *
+	 * @param element
+	 *            the element, not null
+	 * @throws InterruptedException
+	 *             Thrown if the producer is interrupted while waiting
+	 */
+	public void put(final E element) throws InterruptedException {
+		for (int attempt = 0; !offer(element); attempt++) {
+			backOff(attempt);
+		}
+	}
+
+	/**
+	 * Take the oldest element, waiting while the queue is empty. Called by the
+	 * consumer only
+	 *
+	 * @return the element
+	 * @throws InterruptedException
+	 *             Thrown if the consumer is interrupted while waiting
+	 */
+	public E take() throws InterruptedException {
+		E element;
+		for (int attempt = 0; (element = poll()) == null; attempt++) {
+			backOff(attempt);
+		}
+		return element;
+	}
+
+	/**
+	 * Wait before the next attempt of a blocking method
+	 *
+	 * @param attempt
+	 *            count of the failed attempts
+	 * @throws InterruptedException
+	 *             Thrown if the thread is interrupted
+	 */
+	private static void backOff(final int attempt) throws InterruptedException {
+		if (attempt < SPINS) {
+			Thread.onSpinWait();
+		} else if (attempt < SPINS + YIELDS) {
+			Thread.yield();
+		} else {
+			int parks = Math.min(attempt - SPINS - YIELDS, 6);
+			LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << parks, MAX_PARK_NANOS));
+		}
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.rebe.neuralNetwork.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Pool of reusable buffers shared by the threads of a network. The idle
+ * buffers are kept in an array of slots, a couple per processor, and each
+ * thread starts looking for a buffer from its own slot, so threads running
+ * concurrently seldom touch the same slot. Taking and giving back a buffer is
+ * a single atomic operation on a slot, with no lock and no allocation.
+ * <p>
+ * A thread that finds every slot empty builds a new buffer, and a buffer given
+ * back when every slot is full is dropped, so the pool never holds more than
+ * its slots count of buffers, however many threads used it. Unlike a thread
+ * local buffer, a buffer used by a short lived thread is reused by the
+ * following ones
+ *
+ * @author Mattia Rebesan
+ *
+ * @param <E>
+ *            type of the buffers
+ */
+public class StripedPool<E> {
+
+	/**
+	 * Idle buffers, null in the empty slots, its length a power of two
+	 */
+	private final AtomicReferenceArray<E> slots;
+
+	/**
+	 * Mask turning a thread identifier into a slot index
+	 */
+	private final int mask;
+
+	/**
+	 * Builder of a new buffer, called when every slot is empty
+	 */
+	private final Supplier<E> factory;
+
+	/**
+	 * Constructor that build an empty pool with two slots per processor
+	 *
+	 * @param factory
+	 *            builder of a new buffer
+	 */
+	public StripedPool(final Supplier<E> factory) {
+		this(factory, 2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor that build an empty pool
+	 *
+	 * @param factory
+	 *            builder of a new buffer
+	 * @param capacity
+	 *            the max count of idle buffers, rounded up to a power of two
+	 */
+	public StripedPool(final Supplier<E> factory, final int capacity) {
+		int length = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.slots = new AtomicReferenceArray<>(length);
+		this.mask = length - 1;
+		this.factory = factory;
+	}
+
+	/**
+	 * Take an idle buffer, or build a new one if there are none. The buffer
+	 * belongs to the calling thread until it is given back by
+	 * {@link #release(Object)}
+	 *
+	 * @return the buffer
+	 */
+	public E acquire() {
+		int stripe = stripe();
+		for (int attempt = 0; attempt <= mask; attempt++) {
+			int slot = (stripe + attempt) & mask;
+			if (slots.get(slot) != null) {
+				E buffer = slots.getAndSet(slot, null);
+				if (buffer != null) {
+					return buffer;
+				}
+			}
+		}
+		return factory.get();
+	}
+
+	/**
+	 * Give back a buffer taken by {@link #acquire()}, which must not be used
+	 * anymore by the calling thread
+	 *
+	 * @param buffer
+	 *            the buffer
+	 */
+	public void release(final E buffer) {
+		int stripe = stripe();
+		for (int attempt = 0; attempt <= mask; attempt++) {
+			int slot = (stripe + attempt) & mask;
+			if (slots.get(slot) == null && slots.compareAndSet(slot, null, buffer)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Return the first slot looked at by the calling thread
+	 *
+	 * @return the slot index
+	 */
+	private int stripe() {
+		return (int) Thread.currentThread().getId() & mask;
+	}
+
+}
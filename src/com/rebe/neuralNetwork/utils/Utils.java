@@ -1,5 +1,7 @@
 package com.rebe.neuralNetwork.utils;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Collection of utility methods
  * 
@@ -8,8 +10,7 @@ package com.rebe.neuralNetwork.utils;
  */
 public class Utils {
 
-	private static int neuronIdCounter = 0;
-	private static int connectionLayerIdCounter = 0;
+	private static final AtomicInteger connectionLayerIdCounter = new AtomicInteger();
 
 	/**
 	 * Sigmoid function
@@ -19,7 +20,7 @@ public class Utils {
 	 * @return computed result
 	 */
 	public static double activationFunction(double value) {
-		return (1 / (1 + Math.pow(Math.E, (-1 * value))));
+		return (1 / (1 + Math.exp(-value)));
 	}
 
 	/**
@@ -46,53 +47,44 @@ public class Utils {
 	}
 
 	/**
-	 * Return a sequential id for the neurons list
-	 * 
-	 * @return a sequential identifier
-	 */
-	public static int getNeuronId() {
-		return neuronIdCounter++;
-	}
-
-	/**
-	 * Return a sequential id for the connection layer list
+	 * Return a sequential id for the connection layer list. The ids are unique
+	 * even if networks are built concurrently, and the ones taken by a thread
+	 * are increasing, so the connection layers of a network stay in order
 	 * 
 	 * @return a sequential identifier
 	 */
 	public static int getConnectionLayerId() {
-		return connectionLayerIdCounter++;
+		return connectionLayerIdCounter.getAndIncrement();
 	}
 
 	/**
-	 * Method that transpose a Matrix
+	 * Compute the norm of the array, which is the sum of the absolute values
 	 * 
-	 * @param weightsMatrix
-	 *            matrix to be transposed
-	 * @return a new matrix that is the transposed of the received one
+	 * @param array
+	 *            to calculate the norm
+	 * @return the norm value
 	 */
-	public static double[][] transposeMatrix(double[][] weightsMatrix) {
-		double[][] transposedMatrix = new double[weightsMatrix[0].length][weightsMatrix.length];
-		for (int i = 0; i < weightsMatrix.length; i++) {
-			for (int j = 0; j < weightsMatrix[0].length; j++) {
-				transposedMatrix[j][i] = weightsMatrix[i][j];
-			}
-		}
-
-		return transposedMatrix;
+	public static double norm(double[] array) {
+		return norm(array, 0, array.length);
 	}
 
 	/**
-	 * Compute the norm of the array, which is the sum of the absolute values
+	 * Compute the norm of a slice of the array, which is the sum of the absolute
+	 * values
 	 * 
 	 * @param array
-	 *            to calculate the norm
+	 *            containing the slice
+	 * @param offset
+	 *            index of the first value of the slice
+	 * @param length
+	 *            count of the values of the slice
 	 * @return the norm value
 	 */
-	public static double norm(double[] array) {
+	public static double norm(double[] array, int offset, int length) {
 
 		double norm = 0;
 
-		for (int index = 0; index < array.length; index++) {
+		for (int index = offset; index < offset + length; index++) {
 			norm += Math.abs(array[index]);
 		}
 